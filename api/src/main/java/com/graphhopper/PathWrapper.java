@@ -231,6 +231,13 @@ public class PathWrapper {
         return str;
     }
 
+    /**
+     * @return true if the instructions were created, see {@link #getInstructions()}
+     */
+    public boolean hasInstructions() {
+        return instructions != null;
+    }
+
     public InstructionList getInstructions() {
         check("getInstructions");
         if (instructions == null)
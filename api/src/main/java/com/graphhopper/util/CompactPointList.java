@@ -0,0 +1,214 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import java.util.Arrays;
+
+/**
+ * A PointList that stores its coordinates as fixed-point integers instead of doubles, which halves
+ * the memory usage e.g. for the geometry of long routes. Latitude and longitude are stored with 7
+ * decimal places (about 1cm) and the elevation in millimeters, which is at least the precision of
+ * the coordinates stored in the graph.
+ */
+public final class CompactPointList extends PointList {
+    private static final double DEGREE_FACTOR = 1e7;
+    private static final double ELE_FACTOR = 1e3;
+    // used to store NaN, e.g. DouglasPeucker marks removed points with NaN
+    private static final int NAN = Integer.MIN_VALUE;
+
+    private int[] latitudes;
+    private int[] longitudes;
+    private int[] elevations;
+
+    public CompactPointList(int cap, boolean is3D) {
+        super(0, is3D);
+        latitudes = new int[cap];
+        longitudes = new int[cap];
+        if (is3D)
+            elevations = new int[cap];
+    }
+
+    private static int toInt(double value, double factor) {
+        return Double.isNaN(value) ? NAN : (int) Math.round(value * factor);
+    }
+
+    private static double toDouble(int value, double factor) {
+        return value == NAN ? Double.NaN : value / factor;
+    }
+
+    @Override
+    public void ensureNode(int nodeId) {
+        incCap(nodeId + 1);
+    }
+
+    @Override
+    public void set(int index, double lat, double lon, double ele) {
+        ensureMutability();
+        if (index >= size)
+            throw new ArrayIndexOutOfBoundsException("index has to be smaller than size " + size);
+
+        latitudes[index] = toInt(lat, DEGREE_FACTOR);
+        longitudes[index] = toInt(lon, DEGREE_FACTOR);
+        if (is3D)
+            elevations[index] = toInt(ele, ELE_FACTOR);
+        else if (!Double.isNaN(ele))
+            throw new IllegalStateException("This is a 2D list we cannot store elevation: " + ele);
+    }
+
+    private void incCap(int newSize) {
+        if (newSize <= latitudes.length)
+            return;
+
+        int cap = newSize * 2;
+        if (cap < 15)
+            cap = 15;
+        latitudes = Arrays.copyOf(latitudes, cap);
+        longitudes = Arrays.copyOf(longitudes, cap);
+        if (is3D)
+            elevations = Arrays.copyOf(elevations, cap);
+    }
+
+    @Override
+    public void add(double lat, double lon, double ele) {
+        ensureMutability();
+        int newSize = size + 1;
+        incCap(newSize);
+        latitudes[size] = toInt(lat, DEGREE_FACTOR);
+        longitudes[size] = toInt(lon, DEGREE_FACTOR);
+        if (is3D)
+            elevations[size] = toInt(ele, ELE_FACTOR);
+        else if (!Double.isNaN(ele))
+            throw new IllegalStateException("This is a 2D list we cannot store elevation: " + ele);
+        size = newSize;
+    }
+
+    @Override
+    public void add(PointList points) {
+        ensureMutability();
+        int newSize = size + points.getSize();
+        incCap(newSize);
+        if (points instanceof CompactPointList) {
+            CompactPointList other = (CompactPointList) points;
+            System.arraycopy(other.latitudes, 0, latitudes, size, other.size);
+            System.arraycopy(other.longitudes, 0, longitudes, size, other.size);
+            if (is3D)
+                System.arraycopy(other.elevations, 0, elevations, size, other.size);
+        } else {
+            for (int i = 0; i < points.getSize(); i++) {
+                int tmp = size + i;
+                latitudes[tmp] = toInt(points.getLatitude(i), DEGREE_FACTOR);
+                longitudes[tmp] = toInt(points.getLongitude(i), DEGREE_FACTOR);
+                if (is3D)
+                    elevations[tmp] = toInt(points.getElevation(i), ELE_FACTOR);
+            }
+        }
+        size = newSize;
+    }
+
+    @Override
+    public double getLatitude(int index) {
+        if (index >= size)
+            throw new ArrayIndexOutOfBoundsException(ERR_MSG + " index:" + index + ", size:" + size);
+
+        return toDouble(latitudes[index], DEGREE_FACTOR);
+    }
+
+    @Override
+    public double getLongitude(int index) {
+        if (index >= size)
+            throw new ArrayIndexOutOfBoundsException(ERR_MSG + " index:" + index + ", size:" + size);
+
+        return toDouble(longitudes[index], DEGREE_FACTOR);
+    }
+
+    @Override
+    public double getElevation(int index) {
+        if (index >= size)
+            throw new ArrayIndexOutOfBoundsException(ERR_MSG + " index:" + index + ", size:" + size);
+        if (!is3D)
+            return Double.NaN;
+
+        return toDouble(elevations[index], ELE_FACTOR);
+    }
+
+    @Override
+    public void setElevation(int index, double ele) {
+        if (index >= size)
+            throw new ArrayIndexOutOfBoundsException(ERR_MSG + " index:" + index + ", size:" + size);
+        if (!is3D)
+            throw new IllegalStateException("This is a 2D PointList, you cannot set it's elevation");
+        elevations[index] = toInt(ele, ELE_FACTOR);
+    }
+
+    @Override
+    public void reverse() {
+        ensureMutability();
+        // in-place reverse
+        int max = size / 2;
+        for (int i = 0; i < max; i++) {
+            int swapIndex = size - i - 1;
+
+            int tmp = latitudes[i];
+            latitudes[i] = latitudes[swapIndex];
+            latitudes[swapIndex] = tmp;
+
+            tmp = longitudes[i];
+            longitudes[i] = longitudes[swapIndex];
+            longitudes[swapIndex] = tmp;
+
+            if (is3D) {
+                tmp = elevations[i];
+                elevations[i] = elevations[swapIndex];
+                elevations[swapIndex] = tmp;
+            }
+        }
+    }
+
+    /**
+     * This method does a deep copy of this object for the specified range. The copy is a
+     * CompactPointList as well.
+     */
+    @Override
+    public PointList copy(int from, int end) {
+        if (from > end)
+            throw new IllegalArgumentException("from must be smaller or equal to end");
+        if (from < 0 || end > getSize())
+            throw new IllegalArgumentException("Illegal interval: " + from + ", " + end + ", size:" + getSize());
+
+        int len = end - from;
+        CompactPointList copyPL = new CompactPointList(len, is3D);
+        copyPL.size = len;
+        if (isImmutable())
+            copyPL.makeImmutable();
+        System.arraycopy(latitudes, from, copyPL.latitudes, 0, len);
+        System.arraycopy(longitudes, from, copyPL.longitudes, 0, len);
+        if (is3D)
+            System.arraycopy(elevations, from, copyPL.elevations, 0, len);
+        return copyPL;
+    }
+
+    @Override
+    int getCapacity() {
+        return latitudes.length;
+    }
+
+    private void ensureMutability() {
+        if (isImmutable())
+            throw new IllegalStateException("You cannot change an immutable PointList");
+    }
+}
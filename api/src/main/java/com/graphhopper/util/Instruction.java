@@ -20,7 +20,7 @@ package com.graphhopper.util;
 import java.util.HashMap;
 import java.util.Map;
 
-public class Instruction {
+public class Instruction implements Cloneable {
     public static final int UNKNOWN = -99;
     public static final int U_TURN_UNKNOWN = -98;
     public static final int U_TURN_LEFT = -8;
@@ -133,6 +133,20 @@ public class Instruction {
         return points;
     }
 
+    /**
+     * @return a copy of this instruction of the same class with its own extra info. The points
+     * are shared.
+     */
+    public Instruction copy() {
+        try {
+            Instruction copy = (Instruction) super.clone();
+            copy.extraInfo = new HashMap<>(extraInfo);
+            return copy;
+        } catch (CloneNotSupportedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     public void setPoints(PointList points) {
         this.points = points;
     }
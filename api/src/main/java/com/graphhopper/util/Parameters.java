@@ -74,6 +74,8 @@ public class Parameters {
             public static final String MAX_WEIGHT = ALT_ROUTE + ".max_weight_factor";
 
             public static final String MAX_SHARE = ALT_ROUTE + ".max_share_factor";
+
+            public static final String LOCAL_OPTIMALITY = ALT_ROUTE + ".local_optimality_factor";
         }
 
         public static final class AStar {
@@ -91,7 +93,16 @@ public class Parameters {
             public static final String DISTANCE = ROUND_TRIP + ".distance";
             public static final String SEED = ROUND_TRIP + ".seed";
             public static final String POINTS = ROUND_TRIP + ".points";
+            /**
+             * the number of round trips with different seeds that are calculated in parallel, the
+             * one with the least overlap is returned
+             */
+            public static final String CANDIDATES = ROUND_TRIP + ".candidates";
             public static final String INIT_MAX_RETRIES = ROUTING_INIT_PREFIX + ROUND_TRIP + ".max_retries";
+            /**
+             * the number of threads that are shared by all requests to calculate the candidates
+             */
+            public static final String INIT_THREADS = ROUTING_INIT_PREFIX + ROUND_TRIP + ".threads";
         }
     }
 
@@ -139,6 +150,23 @@ public class Parameters {
          * time-dependent routing requires compatible algorithm and weighting
          */
         public static final String TIME_DEPENDENT = "time_dependent";
+        /**
+         * true or false. If true the node-based bidirectional algorithms (dijkstrabi, astarbi and
+         * dijkstrabi for CH) store their shortest path trees in primitive arrays instead of maps.
+         */
+        public static final String PRIMITIVE_ARRAYS = "primitive_arrays";
+        /**
+         * the maximum number of route results that are cached for identical requests, 0 disables the cache
+         */
+        public static final String INIT_CACHE_SIZE = ROUTING_INIT_PREFIX + "cache_size";
+        /**
+         * the maximum sum of the points and path edges of all cached route results
+         */
+        public static final String INIT_CACHE_MAX_POINTS = ROUTING_INIT_PREFIX + "cache_max_points";
+        /**
+         * if true the points of a route are stored with 7 decimal places, which halves their memory
+         */
+        public static final String INIT_COMPACT_POINTS = ROUTING_INIT_PREFIX + "compact_points";
     }
 
     /**
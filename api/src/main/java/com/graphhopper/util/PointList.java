@@ -29,7 +29,8 @@ import java.util.NoSuchElementException;
 
 /**
  * Slim list to store several points (without the need for a point object). Be aware that the PointList is closely
- * coupled with the {@link ShallowImmutablePointList} both are not designed for inheritance (but final is not possible if we keep it simple).
+ * coupled with the {@link ShallowImmutablePointList} and the {@link CompactPointList}, they are not designed for inheritance
+ * (but final is not possible if we keep it simple).
  *
  * @author Peter Karich
  */
@@ -493,22 +494,20 @@ public class PointList implements Iterable<GHPoint3D>, PointAccess {
             throw new IllegalArgumentException("Illegal interval: " + from + ", " + end + ", size:" + getSize());
 
 
-        PointList thisPL = this;
         if (this instanceof ShallowImmutablePointList) {
+            // the wrapped PointList might be a CompactPointList with a different storage
             ShallowImmutablePointList spl = (ShallowImmutablePointList) this;
-            thisPL = spl.wrappedPointList;
-            from = spl.fromOffset + from;
-            end = spl.fromOffset + end;
+            return spl.wrappedPointList.copy(spl.fromOffset + from, spl.fromOffset + end);
         }
 
         int len = end - from;
         PointList copyPL = new PointList(len, is3D());
         copyPL.size = len;
         copyPL.isImmutable = isImmutable();
-        System.arraycopy(thisPL.latitudes, from, copyPL.latitudes, 0, len);
-        System.arraycopy(thisPL.longitudes, from, copyPL.longitudes, 0, len);
+        System.arraycopy(latitudes, from, copyPL.latitudes, 0, len);
+        System.arraycopy(longitudes, from, copyPL.longitudes, 0, len);
         if (is3D())
-            System.arraycopy(thisPL.elevations, from, copyPL.elevations, 0, len);
+            System.arraycopy(elevations, from, copyPL.elevations, 0, len);
         return copyPL;
     }
 
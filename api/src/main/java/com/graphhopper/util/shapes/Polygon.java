@@ -135,6 +135,21 @@ public class Polygon implements Shape {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    /**
+     * @return the number of points of this polygon
+     */
+    public int size() {
+        return lat.length;
+    }
+
+    public double getLat(int index) {
+        return lat[index];
+    }
+
+    public double getLon(int index) {
+        return lon[index];
+    }
+
     @Override
     public BBox getBounds() {
         return new BBox(minLon, maxLon, minLat, maxLat);
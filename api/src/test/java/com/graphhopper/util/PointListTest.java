@@ -244,4 +244,46 @@ public class PointListTest {
         oneLength.add(0, 0, 0);
         assertEquals(2, oneLength.toLineString(false).getNumPoints());
     }
+
+    @Test
+    public void testCompactPointList() {
+        PointList pl = new CompactPointList(2, true);
+        pl.add(49.9412345678, 11.5765432101, 350.1234);
+        pl.add(-33.8, -151.2, 5);
+        pl.add(0, 0, 0);
+        assertEquals(3, pl.size());
+        assertEquals(49.9412346, pl.getLatitude(0), 1e-9);
+        assertEquals(11.5765432, pl.getLongitude(0), 1e-9);
+        assertEquals(350.123, pl.getElevation(0), 1e-9);
+        // DouglasPeucker marks removed points with NaN
+        pl.set(2, Double.NaN, Double.NaN, Double.NaN);
+        assertTrue(Double.isNaN(pl.getLatitude(2)));
+        assertTrue(Double.isNaN(pl.getElevation(2)));
+        pl.set(2, 0, 0, 0);
+
+        PointList other = new PointList(3, true);
+        other.add(pl);
+        assertEquals(other, pl);
+
+        pl.reverse();
+        assertEquals(-151.2, pl.getLongitude(1), 1e-9);
+        assertEquals(49.9412346, pl.getLatitude(2), 1e-9);
+
+        PointList copy = pl.shallowCopy(1, 3, false).copy(0, 2);
+        assertTrue(copy instanceof CompactPointList);
+        assertEquals(pl.shallowCopy(1, 3, false), copy);
+
+        PointList merged = new CompactPointList(0, true);
+        merged.add(pl);
+        merged.add(copy);
+        assertEquals(5, merged.size());
+        assertEquals(pl.get(2), merged.get(4));
+
+        merged.makeImmutable();
+        try {
+            merged.add(1, 1, 1);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential and random int access of the DataAccess implementations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataAccessBenchmark {
+    private static final int INTS = 1 << 20;
+    private static final String LOCATION = "benchmark/target/benchmark-da";
+
+    @Param({"RAM", "RAM_INT", "MMAP", "UNSAFE"})
+    public String type;
+
+    private GHDirectory dir;
+    private DataAccess da;
+    private int[] randomPositions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Helper.removeDir(new File(LOCATION));
+        dir = new GHDirectory(LOCATION, toDAType(type));
+        dir.create();
+        da = dir.find("benchmark");
+        da.create(4L * INTS);
+        for (int i = 0; i < INTS; i++) {
+            da.setInt(4L * i, i);
+        }
+        Random rand = new Random(123);
+        randomPositions = new int[INTS];
+        for (int i = 0; i < INTS; i++) {
+            randomPositions[i] = rand.nextInt(INTS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        da.close();
+        Helper.removeDir(new File(LOCATION));
+    }
+
+    private static DAType toDAType(String type) {
+        switch (type) {
+            case "RAM":
+                return DAType.RAM;
+            case "RAM_INT":
+                return DAType.RAM_INT;
+            case "MMAP":
+                return DAType.MMAP;
+            case "UNSAFE":
+                return DAType.UNSAFE_STORE;
+            default:
+                throw new IllegalArgumentException("Unknown DAType " + type);
+        }
+    }
+
+    @Benchmark
+    public long getIntSequential() {
+        long sum = 0;
+        for (int i = 0; i < INTS; i++) {
+            sum += da.getInt(4L * i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long getIntRandom() {
+        long sum = 0;
+        for (int i = 0; i < INTS; i++) {
+            sum += da.getInt(4L * randomPositions[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void setIntSequential() {
+        for (int i = 0; i < INTS; i++) {
+            da.setInt(4L * i, i);
+        }
+    }
+}
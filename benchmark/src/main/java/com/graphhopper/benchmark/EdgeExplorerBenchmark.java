@@ -0,0 +1,85 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterates the edges of all nodes of the graph like a graph search does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EdgeExplorerBenchmark {
+    private Graph graph;
+    private EdgeExplorer allExplorer;
+    private EdgeExplorer outExplorer;
+
+    @Setup(Level.Trial)
+    public void setUp(GraphHopperState state) {
+        graph = state.hopper.getGraphHopperStorage();
+        FlagEncoder encoder = state.hopper.getEncodingManager().getEncoder("car");
+        allExplorer = graph.createEdgeExplorer();
+        outExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.outEdges(encoder));
+    }
+
+    @Benchmark
+    public long iterateAllEdges() {
+        return iterate(allExplorer);
+    }
+
+    @Benchmark
+    public long iterateOutEdges() {
+        return iterate(outExplorer);
+    }
+
+    @Benchmark
+    public double iterateAndReadDistance() {
+        double sum = 0;
+        int nodes = graph.getNodes();
+        for (int node = 0; node < nodes; node++) {
+            EdgeIterator iter = allExplorer.setBaseNode(node);
+            while (iter.next()) {
+                sum += iter.getDistance();
+            }
+        }
+        return sum;
+    }
+
+    private long iterate(EdgeExplorer explorer) {
+        long sum = 0;
+        int nodes = graph.getNodes();
+        for (int node = 0; node < nodes; node++) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                sum += iter.getAdjNode();
+            }
+        }
+        return sum;
+    }
+}
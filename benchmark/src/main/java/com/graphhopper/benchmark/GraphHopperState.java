@@ -0,0 +1,79 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.reader.osm.GraphHopperOSM;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Parameters.CH;
+import com.graphhopper.util.Parameters.Landmark;
+import com.graphhopper.util.shapes.GHPoint;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+
+/**
+ * Imports the bundled OSM extract once with CH and LM for car and loads the graph in every fork.
+ * Use the system properties benchmark.osm and benchmark.graph to use another file or graph folder.
+ * The paths are relative to the working directory, i.e. the benchmarks should be started from the
+ * root folder of the repository.
+ * <p>
+ * The query points are the coordinates of random nodes with a fixed seed, so every run uses the
+ * same queries.
+ */
+@State(Scope.Benchmark)
+public class GraphHopperState {
+    static final int QUERIES = 1000;
+    GraphHopper hopper;
+    GHPoint[] points;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String osmFile = System.getProperty("benchmark.osm", "core/files/andorra.osm.pbf");
+        String graphLocation = System.getProperty("benchmark.graph", "benchmark/target/benchmark-gh");
+        CmdArgs args = new CmdArgs().
+                put("datareader.file", osmFile).
+                put("graph.location", graphLocation).
+                put("graph.flag_encoders", "car").
+                put(CH.PREPARE + "weightings", "fastest").
+                put(Landmark.PREPARE + "weightings", "fastest").
+                put(CH.INIT_DISABLING_ALLOWED, true).
+                put(Landmark.INIT_DISABLING_ALLOWED, true);
+        hopper = new GraphHopperOSM().init(args).forServer();
+        hopper.importOrLoad();
+
+        NodeAccess na = hopper.getGraphHopperStorage().getNodeAccess();
+        int nodes = hopper.getGraphHopperStorage().getNodes();
+        Random rand = new Random(123);
+        points = new GHPoint[2 * QUERIES];
+        for (int i = 0; i < points.length; i++) {
+            int node = rand.nextInt(nodes);
+            points[i] = new GHPoint(na.getLatitude(node), na.getLongitude(node));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hopper.close();
+    }
+}
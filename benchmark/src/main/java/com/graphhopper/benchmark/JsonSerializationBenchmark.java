@@ -0,0 +1,67 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.http.WebHelper;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.util.Parameters;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts route responses with instructions into JSON like the route endpoint does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonSerializationBenchmark {
+    @Param({"true", "false"})
+    public boolean pointsEncoded;
+
+    private final List<GHResponse> responses = new ArrayList<>();
+    private ObjectMapper objectMapper;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp(GraphHopperState state) {
+        objectMapper = Jackson.newObjectMapper();
+        for (int i = 0; i < GraphHopperState.QUERIES; i++) {
+            GHRequest req = new GHRequest(state.points[2 * i], state.points[2 * i + 1]).setVehicle("car");
+            req.getHints().put(Parameters.Routing.INSTRUCTIONS, true);
+            GHResponse rsp = state.hopper.route(req);
+            if (!rsp.hasErrors())
+                responses.add(rsp);
+        }
+    }
+
+    @Benchmark
+    public String writeJson() throws JsonProcessingException {
+        GHResponse rsp = responses.get(counter++ % responses.size());
+        return objectMapper.writeValueAsString(WebHelper.jsonObject(rsp, true, true, false, pointsEncoded, 0));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snaps random points within the bounds of the graph with LocationIndexTree.findClosest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LocationIndexBenchmark {
+    private LocationIndex index;
+    private EdgeFilter edgeFilter;
+    private GHPoint[] points;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp(GraphHopperState state) {
+        index = state.hopper.getLocationIndex();
+        edgeFilter = DefaultEdgeFilter.allEdges(state.hopper.getEncodingManager().getEncoder("car"));
+        BBox bounds = state.hopper.getGraphHopperStorage().getBounds();
+        Random rand = new Random(123);
+        points = new GHPoint[GraphHopperState.QUERIES];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new GHPoint(bounds.minLat + rand.nextDouble() * (bounds.maxLat - bounds.minLat),
+                    bounds.minLon + rand.nextDouble() * (bounds.maxLon - bounds.minLon));
+        }
+    }
+
+    @Benchmark
+    public QueryResult findClosest() {
+        GHPoint point = points[counter++ % points.length];
+        return index.findClosest(point.lat, point.lon, edgeFilter);
+    }
+}
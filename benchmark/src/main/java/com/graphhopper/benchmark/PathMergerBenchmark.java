@@ -0,0 +1,90 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.util.DouglasPeucker;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.PathMerger;
+import com.graphhopper.util.Translation;
+import com.graphhopper.util.details.PathDetailsBuilderFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The post-processing of found paths, i.e. the calculation of the points, the instructions and the
+ * path details and the simplification of the points. The paths are calculated once with CH.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PathMergerBenchmark {
+    @Param({"false", "true"})
+    public boolean instructions;
+
+    @Param({"false", "true"})
+    public boolean pathDetails;
+
+    private final List<List<Path>> pathLists = new ArrayList<>();
+    private EncodingManager encodingManager;
+    private Translation translation;
+    private PathDetailsBuilderFactory pathDetailsBuilderFactory;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp(GraphHopperState state) {
+        encodingManager = state.hopper.getEncodingManager();
+        translation = state.hopper.getTranslationMap().getWithFallBack(Locale.US);
+        pathDetailsBuilderFactory = new PathDetailsBuilderFactory();
+        for (int i = 0; i < GraphHopperState.QUERIES; i++) {
+            GHRequest req = new GHRequest(state.points[2 * i], state.points[2 * i + 1]).setVehicle("car");
+            GHResponse rsp = new GHResponse();
+            List<Path> paths = state.hopper.calcPaths(req, rsp);
+            if (!rsp.hasErrors())
+                pathLists.add(paths);
+        }
+    }
+
+    @Benchmark
+    public PathWrapper doWork() {
+        PathMerger pathMerger = new PathMerger().
+                setCalcPoints(true).
+                setDouglasPeucker(new DouglasPeucker().setMaxDistance(1)).
+                setEnableInstructions(instructions).
+                setPathDetailsBuilders(pathDetailsBuilderFactory, pathDetails
+                        ? Arrays.asList(Parameters.Details.AVERAGE_SPEED, Parameters.Details.STREET_NAME, Parameters.Details.EDGE_ID)
+                        : Collections.<String>emptyList()).
+                setSimplifyResponse(true);
+        PathWrapper pathWrapper = new PathWrapper();
+        pathMerger.doWork(pathWrapper, pathLists.get(counter++ % pathLists.size()), encodingManager, translation);
+        return pathWrapper;
+    }
+}
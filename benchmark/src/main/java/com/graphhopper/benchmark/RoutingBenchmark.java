@@ -0,0 +1,101 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.Parameters.Algorithms;
+import com.graphhopper.util.Parameters.CH;
+import com.graphhopper.util.Parameters.Landmark;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
+import com.graphhopper.util.shapes.GHPoint;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates routes between random nodes with the different routing algorithms. Instructions and
+ * points are disabled, see {@link PathMergerBenchmark} for the post-processing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoutingBenchmark {
+    @Param({"dijkstra", "astarbi", "astarbi_arrays", "ch", "ch_arrays", "lm", "td_dijkstra"})
+    public String algorithm;
+
+    private GraphHopperState state;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp(GraphHopperState state) {
+        this.state = state;
+    }
+
+    @Benchmark
+    public GHResponse route() {
+        int index = 2 * (counter++ % GraphHopperState.QUERIES);
+        GHResponse rsp = state.hopper.route(createRequest(state.points[index], state.points[index + 1]));
+        if (rsp.hasErrors() && !(rsp.getErrors().get(0) instanceof ConnectionNotFoundException))
+            throw new IllegalStateException("Routing failed for " + algorithm + ": " + rsp.getErrors());
+        return rsp;
+    }
+
+    GHRequest createRequest(GHPoint from, GHPoint to) {
+        GHRequest req = new GHRequest(from, to).setVehicle("car").setWeighting("fastest");
+        req.getHints().put(Parameters.Routing.INSTRUCTIONS, false).
+                put(Parameters.Routing.CALC_POINTS, false).
+                put(CH.DISABLE, true).
+                put(Landmark.DISABLE, true);
+        switch (algorithm) {
+            case "dijkstra":
+                req.setAlgorithm(Algorithms.DIJKSTRA);
+                break;
+            case "astarbi":
+                req.setAlgorithm(Algorithms.ASTAR_BI);
+                break;
+            case "astarbi_arrays":
+                req.setAlgorithm(Algorithms.ASTAR_BI);
+                req.getHints().put(Parameters.Routing.PRIMITIVE_ARRAYS, true);
+                break;
+            case "ch":
+                req.setAlgorithm(Algorithms.DIJKSTRA_BI);
+                req.getHints().put(CH.DISABLE, false);
+                break;
+            case "ch_arrays":
+                req.setAlgorithm(Algorithms.DIJKSTRA_BI);
+                req.getHints().put(CH.DISABLE, false).put(Parameters.Routing.PRIMITIVE_ARRAYS, true);
+                break;
+            case "lm":
+                req.setAlgorithm(Algorithms.ASTAR_BI);
+                req.getHints().put(Landmark.DISABLE, false);
+                break;
+            case "td_dijkstra":
+                req.setAlgorithm(Algorithms.TD_DIJKSTRA).setWeighting("td_fastest");
+                req.getHints().put("departure", "2019-06-03T08:00:00Z");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+        }
+        return req;
+    }
+}
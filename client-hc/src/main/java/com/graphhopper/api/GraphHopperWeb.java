@@ -23,6 +23,7 @@ import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.PathWrapper;
+import com.graphhopper.http.BinaryRouteFormat;
 import com.graphhopper.http.WebHelper;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.jackson.PathWrapperDeserializer;
@@ -165,6 +166,12 @@ public class GraphHopperWeb implements GraphHopperAPI {
         try {
             Request okRequest = createRequest(request);
             rspBody = getClientForRequest(request).newCall(okRequest).execute().body();
+            boolean tmpTurnDescription = request.getHints().getBool("turn_description", true);
+            // for type=binary errors are still returned as JSON
+            if (rspBody.contentType() != null && BinaryRouteFormat.MEDIA_TYPE.equals(
+                    rspBody.contentType().type() + "/" + rspBody.contentType().subtype()))
+                return BinaryRouteFormat.read(rspBody.byteStream(), tmpTurnDescription);
+
             JsonNode json = objectMapper.reader().readTree(rspBody.byteStream());
 
             GHResponse res = new GHResponse();
@@ -175,7 +182,6 @@ public class GraphHopperWeb implements GraphHopperAPI {
             JsonNode paths = json.get("paths");
 
             boolean tmpElevation = request.getHints().getBool("elevation", elevation);
-            boolean tmpTurnDescription = request.getHints().getBool("turn_description", true);
 
             for (JsonNode path : paths) {
                 PathWrapper altRsp = PathWrapperDeserializer.createPathWrapper(objectMapper, path, tmpElevation, tmpTurnDescription);
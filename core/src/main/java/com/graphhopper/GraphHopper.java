@@ -17,6 +17,7 @@
  */
 package com.graphhopper;
 
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.json.geo.JsonFeature;
 import com.graphhopper.reader.DataReader;
 import com.graphhopper.reader.dem.*;
@@ -41,6 +42,7 @@ import com.graphhopper.storage.*;
 import com.graphhopper.storage.change.ChangeGraphHelper;
 import com.graphhopper.storage.change.ChangeGraphResponse;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexSegmentGrid;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.*;
@@ -60,6 +62,9 @@ import java.io.File;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -99,19 +104,32 @@ public class GraphHopper implements GraphHopperAPI {
     private boolean allowWrites = true;
     private boolean fullyLoaded = false;
     private boolean smoothElevation = false;
+    private int elevationInterpolationThreads = 1;
     // for routing
     private int maxRoundTripRetries = 3;
+    private int roundTripThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService roundTripExecutor;
     private boolean simplifyResponse = true;
     private int maxVisitedNodes = Integer.MAX_VALUE;
+    private RouteResultCache routeCache;
 
     private int nonChMaxWaypointDistance = Integer.MAX_VALUE;
     // for index
     private LocationIndex locationIndex;
     private int preciseIndexResolution = 300;
     private int maxRegionSearch = 4;
+    private int indexPreparationThreads = 1;
+    private boolean indexFlatLayout = false;
+    private String indexType = "tree";
     // for prepare
     private int minNetworkSize = 200;
     private int minOneWayNetworkSize = 0;
+    private int subnetworkThreads = 1;
+    // for precomputed edge weights
+    private final List<String> edgeWeightingStrings = new ArrayList<>();
+    private final Map<String, EdgeWeightStorage> edgeWeightStorages = new LinkedHashMap<>();
+    // the request parameters that change the weights of the weightings supported by the EdgeWeightStorage
+    private static final String[] EDGE_WEIGHTING_PARAMETERS = {ShortFastestWeighting.TIME_FACTOR, ShortFastestWeighting.DISTANCE_FACTOR};
 
     // for LM prepare
     private final LMAlgoFactoryDecorator lmFactoryDecorator = new LMAlgoFactoryDecorator();
@@ -124,12 +142,14 @@ public class GraphHopper implements GraphHopperAPI {
     private double dataReaderWayPointMaxDistance = 1;
     private int dataReaderWorkerThreads = 2;
     private boolean calcPoints = true;
+    private boolean compactPoints = false;
     private ElevationProvider eleProvider = ElevationProvider.NOOP;
     private FlagEncoderFactory flagEncoderFactory = new DefaultFlagEncoderFactory();
     private EncodedValueFactory encodedValueFactory = new DefaultEncodedValueFactory();
     private TagParserFactory tagParserFactory = new DefaultTagParserFactory();
     private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
     private PathDetailsBuilderFactory pathBuilderFactory = new PathDetailsBuilderFactory();
+    private ImportProfile importProfile = new ImportProfile();
 
     // ORS-GH MOD START
     protected EdgeFilterFactory edgeFilterFactory = EdgeFilterFactory.DEFAULT;
@@ -256,6 +276,16 @@ public class GraphHopper implements GraphHopperAPI {
         return pathBuilderFactory;
     }
 
+    /**
+     * @return the time and memory usage of the different import phases. If the graph was loaded
+     * instead of imported this is the profile of the original import, which is stored in the graph
+     * folder as {@link ImportProfile#FILE_NAME}. Without this file only the phases of the post
+     * processing e.g. loading the location index or the landmarks are contained.
+     */
+    public ImportProfile getImportProfile() {
+        return importProfile;
+    }
+
     /**
      * Configures the underlying storage and response to be used on a well equipped server. Result
      * also optimized for usage in the web module i.e. try reduce network IO.
@@ -300,6 +330,14 @@ public class GraphHopper implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * Specifies the number of flag encoders for which the subnetworks are searched in parallel.
+     */
+    public GraphHopper setSubnetworkThreads(int subnetworkThreads) {
+        this.subnetworkThreads = subnetworkThreads;
+        return this;
+    }
+
     /**
      * This method call results in an in-memory graph.
      */
@@ -377,6 +415,57 @@ public class GraphHopper implements GraphHopperAPI {
         this.maxVisitedNodes = maxVisitedNodes;
     }
 
+    /**
+     * Sets the number of threads that calculate the candidates of round trip requests. The threads
+     * are shared by all requests.
+     */
+    public GraphHopper setRoundTripThreads(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive but was " + threads);
+        ensureNotLoaded();
+        this.roundTripThreads = threads;
+        return this;
+    }
+
+    private synchronized ExecutorService getRoundTripExecutor() {
+        if (roundTripExecutor == null)
+            roundTripExecutor = Executors.newFixedThreadPool(roundTripThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "round-trip");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        return roundTripExecutor;
+    }
+
+    /**
+     * Enables a cache for the results of identical route requests, i.e. requests with the same
+     * parameters where the points are snapped to the same locations. Use 0 to disable it. The
+     * cache is not used with a custom PathProcessorFactory, as the path processors of a request
+     * would not see the edges of a cached result.
+     */
+    public GraphHopper setRouteCacheSize(int maxSize) {
+        return setRouteCacheSize(maxSize, 1_000_000);
+    }
+
+    /**
+     * @param maxPoints limits the memory of the cache by the sum of the points and path edges of
+     *                  all cached results
+     */
+    public GraphHopper setRouteCacheSize(int maxSize, long maxPoints) {
+        routeCache = maxSize > 0 ? new RouteResultCache(maxSize, maxPoints) : null;
+        return this;
+    }
+
+    /**
+     * @return the cache for route results or null if it is disabled
+     */
+    public RouteResultCache getRouteCache() {
+        return routeCache;
+    }
+
     /**
      * @return true if storing and fetching elevation data is enabled. Default is false
      */
@@ -411,6 +500,15 @@ public class GraphHopper implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * If enabled the points of a route are stored with 7 decimal places, which halves their memory
+     * but rounds them, see CompactPointList.
+     */
+    public GraphHopper setCompactPoints(boolean compactPoints) {
+        this.compactPoints = compactPoints;
+        return this;
+    }
+
     /**
      * This method specifies if the returned path should be simplified or not, via douglas-peucker
      * or similar algorithm.
@@ -471,6 +569,8 @@ public class GraphHopper implements GraphHopperAPI {
 
     public void setGraphHopperStorage(GraphHopperStorage ghStorage) {
         this.ghStorage = ghStorage;
+        if (routeCache != null)
+            routeCache.clear();
         fullyLoaded = true;
     }
 
@@ -599,6 +699,7 @@ public class GraphHopper implements GraphHopperAPI {
         // elevation
         String eleProviderStr = toLowerCase(args.get("graph.elevation.provider", "noop"));
         this.smoothElevation = args.getBool("graph.elevation.smoothing", false);
+        elevationInterpolationThreads = args.getInt("graph.elevation.interpolation_threads", elevationInterpolationThreads);
 
         // keep fallback until 0.8
         boolean eleCalcMean = args.has("graph.elevation.calcmean")
@@ -635,11 +736,18 @@ public class GraphHopper implements GraphHopperAPI {
         if (!baseURL.isEmpty())
             tmpProvider.setBaseURL(baseURL);
         tmpProvider.setDAType(elevationDAType);
+        if (args.has("graph.elevation.max_tiles"))
+            tmpProvider.setMaxTiles(args.getInt("graph.elevation.max_tiles", Integer.MAX_VALUE));
         setElevationProvider(tmpProvider);
 
         // optimizable prepare
         minNetworkSize = args.getInt("prepare.min_network_size", minNetworkSize);
         minOneWayNetworkSize = args.getInt("prepare.min_one_way_network_size", minOneWayNetworkSize);
+        subnetworkThreads = args.getInt("prepare.subnetworks.threads", subnetworkThreads);
+        for (String edgeWeightingStr : args.get("prepare.edge_weights.weightings", "").split(",")) {
+            if (!edgeWeightingStr.trim().isEmpty())
+                edgeWeightingStrings.add(edgeWeightingStr.trim());
+        }
 
         // prepare CH, LM, ...
         for (RoutingAlgorithmFactoryDecorator decorator : algoDecorators) {
@@ -654,11 +762,17 @@ public class GraphHopper implements GraphHopperAPI {
         // index
         preciseIndexResolution = args.getInt("index.high_resolution", preciseIndexResolution);
         maxRegionSearch = args.getInt("index.max_region_search", maxRegionSearch);
+        indexPreparationThreads = args.getInt("prepare.index.threads", indexPreparationThreads);
+        indexFlatLayout = args.getBool("index.flat_layout", indexFlatLayout);
+        indexType = args.get("index.type", indexType);
 
         // routing
         maxVisitedNodes = args.getInt(Routing.INIT_MAX_VISITED_NODES, Integer.MAX_VALUE);
         maxRoundTripRetries = args.getInt(RoundTrip.INIT_MAX_RETRIES, maxRoundTripRetries);
+        setRoundTripThreads(args.getInt(RoundTrip.INIT_THREADS, roundTripThreads));
         nonChMaxWaypointDistance = args.getInt(Parameters.NON_CH.MAX_NON_CH_POINT_DISTANCE, Integer.MAX_VALUE);
+        setRouteCacheSize(args.getInt(Routing.INIT_CACHE_SIZE, 0), args.getLong(Routing.INIT_CACHE_MAX_POINTS, 1_000_000));
+        compactPoints = args.getBool(Routing.INIT_COMPACT_POINTS, compactPoints);
 
         return this;
     }
@@ -700,8 +814,12 @@ public class GraphHopper implements GraphHopperAPI {
 
             readData();
             cleanUp();
+            compactTurnCosts();
             postProcessing();
             flush();
+            if (ghStorage.getDirectory().getDefaultType().isStoring())
+                importProfile.write(new File(graphHopperLocation));
+            logger.info("import profile: " + importProfile);
         } finally {
             if (lock != null)
                 lock.release();
@@ -750,7 +868,8 @@ public class GraphHopper implements GraphHopperAPI {
                 setElevationProvider(eleProvider).
                 setWorkerThreads(dataReaderWorkerThreads).
                 setWayPointMaxDistance(dataReaderWayPointMaxDistance).
-                setSmoothElevation(this.smoothElevation);
+                setSmoothElevation(this.smoothElevation).
+                setImportProfile(importProfile);
     }
 
     /**
@@ -835,6 +954,13 @@ public class GraphHopper implements GraphHopperAPI {
                 return false;
 
             postProcessing();
+            logger.info("load profile: " + importProfile);
+            // the phases of the post processing are only logged, the import phases are more relevant
+            ImportProfile storedProfile = ImportProfile.read(new File(ghLocation));
+            if (storedProfile != null)
+                importProfile = storedProfile;
+            if (routeCache != null)
+                routeCache.clear();
             fullyLoaded = true;
             return true;
         } finally {
@@ -925,33 +1051,53 @@ public class GraphHopper implements GraphHopperAPI {
             if (ghStorage.isCHPossible() && isCHPrepared())
                 throw new IllegalArgumentException("Sorting a prepared CHGraph is not possible yet. See #12");
 
+            importProfile.start("sort");
             GraphHopperStorage newGraph = GHUtility.newStorage(ghStorage);
             GHUtility.sortDFS(ghStorage, newGraph);
             logger.info("graph sorted (" + getMemInfo() + ")");
             ghStorage = newGraph;
+            stopPhase(ghStorage.getNodes());
         }
 
         if (!hasInterpolated() && hasElevation()) {
+            importProfile.start("elevation_interpolation");
             interpolateBridgesAndOrTunnels();
+            stopPhase(ghStorage.getEdges());
         }
 
         BBox bb = ghStorage.getBounds();
         ghStorage.setTimeZoneMap(TimeZoneMap.forRegion(bb.minLat, bb.minLon, bb.maxLat, bb.maxLon));
 
+        importProfile.start("location_index");
         initLocationIndex();
+        stopPhase(ghStorage.getEdges());
 
         // ORS-GH MOD START
         matchTraffic();
         // ORS-GH MOD END
 
+        importProfile.start("ch");
         if (chFactoryDecorator.isEnabled())
             chFactoryDecorator.createPreparations(ghStorage);
         if (!isCHPrepared())
             prepareCH();
+        stopPhase(ghStorage.getNodes());
 
+        importProfile.start("lm");
         if (lmFactoryDecorator.isEnabled())
             lmFactoryDecorator.createPreparations(ghStorage, locationIndex);
         loadOrPrepareLM();
+        stopPhase(ghStorage.getNodes());
+
+        if (!edgeWeightingStrings.isEmpty()) {
+            importProfile.start("edge_weights");
+            loadOrPrepareEdgeWeights();
+            stopPhase(ghStorage.getEdges());
+        }
+    }
+
+    private void stopPhase(long elements) {
+        importProfile.recordDataAccess(ghStorage.getDirectory()).stop(elements);
     }
 
     // ORS-GH MOD START
@@ -968,10 +1114,12 @@ public class GraphHopper implements GraphHopperAPI {
         if (ghStorage.getEncodingManager().hasEncodedValue(RoadEnvironment.KEY)) {
             EnumEncodedValue<RoadEnvironment> roadEnvEnc = ghStorage.getEncodingManager().getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class);
             StopWatch sw = new StopWatch().start();
-            new EdgeElevationInterpolator(ghStorage, roadEnvEnc, RoadEnvironment.TUNNEL).execute();
+            new EdgeElevationInterpolator(ghStorage, roadEnvEnc, RoadEnvironment.TUNNEL).
+                    setThreads(elevationInterpolationThreads).execute();
             float tunnel = sw.stop().getSeconds();
             sw = new StopWatch().start();
-            new EdgeElevationInterpolator(ghStorage, roadEnvEnc, RoadEnvironment.BRIDGE).execute();
+            new EdgeElevationInterpolator(ghStorage, roadEnvEnc, RoadEnvironment.BRIDGE).
+                    setThreads(elevationInterpolationThreads).execute();
             ghStorage.getProperties().put(INTERPOLATION_KEY, true);
             logger.info("Bridge interpolation " + (int) sw.stop().getSeconds() + "s, " + "tunnel interpolation " + (int) tunnel + "s");
         }
@@ -1040,6 +1188,24 @@ public class GraphHopper implements GraphHopperAPI {
         return weighting;
     }
 
+    /**
+     * Wraps the specified weighting into a PrecomputedWeighting if its weights were stored, see
+     * prepare.edge_weights.weightings. The weights were stored with the default parameters, so they
+     * are not used if the request specifies a parameter of the weighting.
+     */
+    protected Weighting createPrecomputedWeighting(Weighting weighting, HintsMap hints) {
+        EdgeWeightStorage storage = edgeWeightStorages.get(weighting.toString());
+        if (storage == null || weighting.isTimeDependent() || storage.getWeighting().getClass() != weighting.getClass())
+            return weighting;
+
+        for (String parameter : EDGE_WEIGHTING_PARAMETERS) {
+            if (hints.has(parameter))
+                return weighting;
+        }
+
+        return new PrecomputedWeighting(weighting, storage);
+    }
+
     /**
      * Potentially wraps the specified weighting into a TurnWeighting instance.
      */
@@ -1135,7 +1301,8 @@ public class GraphHopper implements GraphHopperAPI {
 
             RoutingTemplate routingTemplate;
             if (ROUND_TRIP.equalsIgnoreCase(algoStr))
-                routingTemplate = new RoundTripRoutingTemplate(request, ghRsp, locationIndex, encodingManager, maxRoundTripRetries);
+                routingTemplate = new RoundTripRoutingTemplate(request, ghRsp, locationIndex, encodingManager, maxRoundTripRetries).
+                        setExecutor(getRoundTripExecutor());
             else if (ALT_ROUTE.equalsIgnoreCase(algoStr))
                 routingTemplate = new AlternativeRoutingTemplate(request, ghRsp, locationIndex, encodingManager);
             else
@@ -1184,8 +1351,19 @@ public class GraphHopper implements GraphHopperAPI {
                 if (ghRsp.hasErrors())
                     return Collections.emptyList();
 
+                String cacheKey = null;
+                // a hit skips the PathMerger, i.e. the fresh path processors would stay empty
+                if (routeCache != null && pathProcessorFactory == PathProcessorFactory.DEFAULT) {
+                    cacheKey = RouteResultCache.createKey(request, algoStr, qResults);
+                    List<Path> cachedPaths = routeCache.get(cacheKey, ghRsp);
+                    if (cachedPaths != null) {
+                        ghRsp.addDebugInfo("routeCache:hit");
+                        return cachedPaths;
+                    }
+                }
+
                 RoutingAlgorithmFactory tmpAlgoFactory = getAlgorithmFactory(hints);
-                Weighting weighting;
+                Weighting chWeighting = null;
                 QueryGraph queryGraph;
 
                 if (chFactoryDecorator.isEnabled() && !disableCH) {
@@ -1202,7 +1380,7 @@ public class GraphHopper implements GraphHopperAPI {
                         CHProfile chProfile = ((PrepareContractionHierarchies) chAlgoFactory).getCHProfile();
                         queryGraph = new QueryGraph(ghStorage.getCHGraph(chProfile));
                         queryGraph.lookup(qResults);
-                        weighting = chProfile.getWeighting();
+                        chWeighting = chProfile.getWeighting();
                     } else {
                         throw new IllegalStateException("Although CH was enabled a non-CH algorithm factory was returned " + tmpAlgoFactory);
                     }
@@ -1210,7 +1388,6 @@ public class GraphHopper implements GraphHopperAPI {
                     checkNonChMaxWaypointDistance(points);
                     queryGraph = new QueryGraph(ghStorage);
                     queryGraph.lookup(qResults);
-                    weighting = createWeighting(hints, encoder, queryGraph);
                 }
                 ghRsp.addDebugInfo("tmode:" + tMode.toString());
 
@@ -1218,14 +1395,15 @@ public class GraphHopper implements GraphHopperAPI {
                 if (maxVisitedNodesForRequest > maxVisitedNodes)
                     throw new IllegalArgumentException("The max_visited_nodes parameter has to be below or equal to:" + maxVisitedNodes);
 
-                weighting = createTimeDependentAccessWeighting(weighting, algoStr);
-
                 int uTurnCostInt = request.getHints().getInt(Routing.U_TURN_COSTS, INFINITE_U_TURN_COSTS);
                 if (uTurnCostInt != INFINITE_U_TURN_COSTS && !tMode.isEdgeBased()) {
                     throw new IllegalArgumentException("Finite u-turn costs can only be used for edge-based routing, use `" + Routing.EDGE_BASED + "=true'");
                 }
                 double uTurnCosts = uTurnCostInt == INFINITE_U_TURN_COSTS ? Double.POSITIVE_INFINITY : uTurnCostInt;
-                weighting = createTurnWeighting(queryGraph, weighting, tMode, uTurnCosts);
+                Weighting weighting = createRequestWeighting(hints, encoder, queryGraph, chWeighting, algoStr, tMode, uTurnCosts);
+                if (routingTemplate instanceof RoundTripRoutingTemplate)
+                    ((RoundTripRoutingTemplate) routingTemplate).setWeightingFactory(
+                            createCandidateWeightingFactory(hints, encoder, queryGraph, chWeighting, algoStr, tMode, uTurnCosts));
 
                 if (weighting.isTimeDependent()) {
                     String departureTimeString = hints.get("pt.earliest_departure_time", "");
@@ -1253,6 +1431,7 @@ public class GraphHopper implements GraphHopperAPI {
                 DouglasPeucker peucker = new DouglasPeucker().setMaxDistance(wayPointMaxDistance);
                 PathMerger pathMerger = new PathMerger().
                         setCalcPoints(tmpCalcPoints).
+                        setCompactPoints(compactPoints).
                         setDouglasPeucker(peucker).
                         setEnableInstructions(tmpEnableInstructions).
                         setPathDetailsBuilders(pathBuilderFactory, request.getPathDetails()).
@@ -1264,8 +1443,11 @@ public class GraphHopper implements GraphHopperAPI {
                 if (request.hasFavoredHeading(0))
                     pathMerger.setFavoredHeading(request.getFavoredHeading(0));
 
-                if (routingTemplate.isReady(pathMerger, tr))
+                if (routingTemplate.isReady(pathMerger, tr)) {
+                    if (cacheKey != null && !ghRsp.hasErrors())
+                        routeCache.put(cacheKey, altPaths, ghRsp);
                     break;
+                }
             }
 
             return altPaths;
@@ -1278,6 +1460,28 @@ public class GraphHopper implements GraphHopperAPI {
         }
     }
 
+    /**
+     * Creates the weighting of a route request. If chWeighting is null the weighting is created
+     * from the hints.
+     */
+    private Weighting createRequestWeighting(HintsMap hints, FlagEncoder encoder, QueryGraph queryGraph, Weighting chWeighting,
+                                             String algoStr, TraversalMode tMode, double uTurnCosts) {
+        Weighting weighting = chWeighting == null ? createPrecomputedWeighting(createWeighting(hints, encoder, queryGraph), hints) : chWeighting;
+        weighting = createTimeDependentAccessWeighting(weighting, algoStr);
+        return createTurnWeighting(queryGraph, weighting, tMode, uTurnCosts);
+    }
+
+    private RoundTripRoutingTemplate.CandidateWeightingFactory createCandidateWeightingFactory(
+            final HintsMap hints, final FlagEncoder encoder, final QueryGraph queryGraph, final Weighting chWeighting,
+            final String algoStr, final TraversalMode tMode, final double uTurnCosts) {
+        return new RoundTripRoutingTemplate.CandidateWeightingFactory() {
+            @Override
+            public Weighting createWeighting() {
+                return createRequestWeighting(hints, encoder, queryGraph, chWeighting, algoStr, tMode, uTurnCosts);
+            }
+        };
+    }
+
     /**
      * This method applies the changes to the graph specified as feature collection. It does so by locking the routing
      * to avoid concurrent changes which could result in incorrect routing (like when done while a Dijkstra search) or
@@ -1293,6 +1497,14 @@ public class GraphHopper implements GraphHopperAPI {
         try {
             ChangeGraphHelper overlay = createChangeGraphHelper(ghStorage, locationIndex);
             long updateCount = overlay.applyChanges(encodingManager, collection);
+            // the stored weights of the changed edges are outdated
+            for (EdgeWeightStorage storage : edgeWeightStorages.values()) {
+                for (IntCursor edge : overlay.getChangedEdges()) {
+                    storage.calculate(ghStorage.getEdgeIteratorState(edge.value, Integer.MIN_VALUE));
+                }
+            }
+            if (routeCache != null)
+                routeCache.clear();
             return new ChangeGraphResponse(updateCount);
         } finally {
             writeLock.unlock();
@@ -1343,9 +1555,23 @@ public class GraphHopper implements GraphHopperAPI {
     }
 
     protected LocationIndex createLocationIndex(Directory dir) {
-        LocationIndexTree tmpIndex = new LocationIndexTree(ghStorage, dir);
-        tmpIndex.setResolution(preciseIndexResolution);
-        tmpIndex.setMaxRegionSearch(maxRegionSearch);
+        LocationIndex tmpIndex;
+        if ("segments".equals(indexType)) {
+            LocationIndexSegmentGrid grid = new LocationIndexSegmentGrid(ghStorage, dir);
+            grid.setMinResolutionInMeter(preciseIndexResolution);
+            grid.setMaxRegionSearch(maxRegionSearch);
+            tmpIndex = grid;
+        } else if ("tree".equals(indexType)) {
+            LocationIndexTree tree = new LocationIndexTree(ghStorage, dir);
+            tree.setResolution(preciseIndexResolution);
+            tree.setMaxRegionSearch(maxRegionSearch);
+            tree.setPreparationThreads(indexPreparationThreads);
+            tree.setFlatLayout(indexFlatLayout);
+            tmpIndex = tree;
+        } else {
+            throw new IllegalArgumentException("Unknown location index type: " + indexType);
+        }
+
         if (!tmpIndex.loadExisting()) {
             ensureWriteAccess();
             tmpIndex.prepareIndex();
@@ -1398,26 +1624,70 @@ public class GraphHopper implements GraphHopperAPI {
         }
     }
 
+    /**
+     * Loads the stored edge weights or calculates them for every weighting of
+     * prepare.edge_weights.weightings and every flag encoder.
+     */
+    protected void loadOrPrepareEdgeWeights() {
+        if (weightingFactory != null)
+            throw new IllegalArgumentException("Edge weights cannot be stored for weightings of a custom WeightingFactory");
+        for (FlagEncoder encoder : encodingManager.fetchEdgeEncoders()) {
+            for (String weightingStr : edgeWeightingStrings) {
+                Weighting weighting = createWeighting(new HintsMap(weightingStr), encoder, ghStorage);
+                if (weighting instanceof GenericWeighting)
+                    throw new IllegalArgumentException("Edge weights cannot be stored for " + weighting + " as its weights depend on the request");
+                EdgeWeightStorage storage = new EdgeWeightStorage(ghStorage.getDirectory(), weighting);
+                if (!storage.loadExisting()) {
+                    ensureWriteAccess();
+                    storage.calculate(ghStorage);
+                    storage.flush();
+                } else if (storage.getEdges() != ghStorage.getAllEdges().length()) {
+                    throw new IllegalStateException("Cannot load edge weights for " + weighting + " as they were written for "
+                            + storage.getEdges() + " edges, not " + ghStorage.getAllEdges().length());
+                }
+                edgeWeightStorages.put(weighting.toString(), storage);
+            }
+        }
+    }
+
     /**
      * Internal method to clean up the graph.
      */
     protected void cleanUp() {
+        importProfile.start("subnetworks");
         int prevNodeCount = ghStorage.getNodes();
         PrepareRoutingSubnetworks preparation = new PrepareRoutingSubnetworks(ghStorage, encodingManager.fetchEdgeEncoders());
         preparation.setMinNetworkSize(minNetworkSize);
         preparation.setMinOneWayNetworkSize(minOneWayNetworkSize);
+        preparation.setThreads(subnetworkThreads);
         preparation.doWork();
         int currNodeCount = ghStorage.getNodes();
         logger.info("edges: " + Helper.nf(ghStorage.getAllEdges().length()) + ", nodes " + Helper.nf(currNodeCount)
                 + ", there were " + Helper.nf(preparation.getMaxSubnetworks())
                 + " subnetworks. removed them => " + Helper.nf(prevNodeCount - currNodeCount)
                 + " less nodes");
+        stopPhase(prevNodeCount);
+    }
+
+    /**
+     * Rewrites the turn costs into the compact layout used for routing, see TurnCostExtension.compact
+     */
+    protected void compactTurnCosts() {
+        TurnCostExtension turnCostExt = HelperORS.getTurnCostExtensions(ghStorage.getExtension());
+        if (turnCostExt == null)
+            return;
+
+        importProfile.start("turn_costs");
+        turnCostExt.compact();
+        stopPhase(ghStorage.getNodes());
     }
 
     protected void flush() {
         logger.info("flushing graph " + ghStorage.toString() + ", details:" + ghStorage.toDetailsString() + ", "
                 + getMemInfo() + ")");
+        importProfile.start("flush");
         ghStorage.flush();
+        stopPhase(ghStorage.getNodes());
         logger.info("flushed graph " + getMemInfo() + ")");
         fullyLoaded = true;
     }
@@ -1427,12 +1697,26 @@ public class GraphHopper implements GraphHopperAPI {
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        if (routeCache != null)
+            routeCache.clear();
+
+        synchronized (this) {
+            if (roundTripExecutor != null)
+                roundTripExecutor.shutdownNow();
+            roundTripExecutor = null;
+        }
+
         if (ghStorage != null)
             ghStorage.close();
 
         if (locationIndex != null)
             locationIndex.close();
 
+        for (EdgeWeightStorage storage : edgeWeightStorages.values()) {
+            storage.close();
+        }
+        edgeWeightStorages.clear();
+
         try {
             lockFactory.forceRemove(fileLockName, true);
         } catch (Exception ex) {
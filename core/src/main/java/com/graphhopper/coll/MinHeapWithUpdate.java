@@ -0,0 +1,163 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min heap of int ids with double keys. Unlike
+ * {@link com.graphhopper.apache.commons.collections.IntDoubleBinaryHeap} the position of every id
+ * within the heap is stored in an array, so the key of an id can be changed in O(log n) instead
+ * of searching the whole heap. The ids must be in the range [0, capacity), e.g. node ids.
+ * <p>
+ * Clearing the heap only costs O(size), so the same instance can be reused for many searches.
+ */
+public class MinHeapWithUpdate {
+    private static final int NOT_PRESENT = 0;
+    // the heap is 1-based, i.e. the tree and keys arrays at index 0 are not used
+    private int[] tree;
+    private double[] keys;
+    private final int[] positions;
+    private int size;
+
+    public MinHeapWithUpdate(int capacity) {
+        tree = new int[Math.min(capacity, 1000) + 1];
+        keys = new double[tree.length];
+        positions = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getCapacity() {
+        return positions.length;
+    }
+
+    public boolean contains(int id) {
+        return positions[id] != NOT_PRESENT;
+    }
+
+    /**
+     * Adds the id with the specified key. The id must not be contained in the heap.
+     */
+    public void push(int id, double key) {
+        if (contains(id))
+            throw new IllegalStateException("Element with id " + id + " was already pushed, use update instead");
+        size++;
+        if (size == tree.length) {
+            tree = Arrays.copyOf(tree, Math.min(tree.length * 2, positions.length + 1));
+            keys = Arrays.copyOf(keys, tree.length);
+        }
+        tree[size] = id;
+        keys[size] = key;
+        positions[id] = size;
+        percolateUp(size);
+    }
+
+    /**
+     * Changes the key of the specified id, which must be contained in the heap. The key can be
+     * smaller (decrease-key) or larger than the previous one.
+     */
+    public void update(int id, double key) {
+        int index = positions[id];
+        if (index == NOT_PRESENT)
+            throw new IllegalStateException("Element with id " + id + " was not pushed, use push instead");
+        double prevKey = keys[index];
+        keys[index] = key;
+        if (key < prevKey)
+            percolateUp(index);
+        else if (key > prevKey)
+            percolateDown(index);
+    }
+
+    public int peekId() {
+        if (isEmpty())
+            throw new NoSuchElementException("Heap is empty. Cannot peek element.");
+        return tree[1];
+    }
+
+    public double peekKey() {
+        if (isEmpty())
+            throw new NoSuchElementException("Heap is empty. Cannot peek key.");
+        return keys[1];
+    }
+
+    /**
+     * Removes the id with the smallest key and returns it.
+     */
+    public int poll() {
+        int id = peekId();
+        positions[id] = NOT_PRESENT;
+        tree[1] = tree[size];
+        keys[1] = keys[size];
+        size--;
+        if (size > 0) {
+            positions[tree[1]] = 1;
+            percolateDown(1);
+        }
+        return id;
+    }
+
+    public void clear() {
+        for (int i = 1; i <= size; i++) {
+            positions[tree[i]] = NOT_PRESENT;
+        }
+        size = 0;
+    }
+
+    private void percolateUp(int index) {
+        int id = tree[index];
+        double key = keys[index];
+        int parent = index >> 1;
+        while (parent > 0 && key < keys[parent]) {
+            tree[index] = tree[parent];
+            keys[index] = keys[parent];
+            positions[tree[index]] = index;
+            index = parent;
+            parent = index >> 1;
+        }
+        tree[index] = id;
+        keys[index] = key;
+        positions[id] = index;
+    }
+
+    private void percolateDown(int index) {
+        int id = tree[index];
+        double key = keys[index];
+        while (index << 1 <= size) {
+            int child = index << 1;
+            if (child != size && keys[child + 1] < keys[child])
+                child++;
+            if (keys[child] >= key)
+                break;
+            tree[index] = tree[child];
+            keys[index] = keys[child];
+            positions[tree[index]] = index;
+            index = child;
+        }
+        tree[index] = id;
+        keys[index] = key;
+        positions[id] = index;
+    }
+}
@@ -19,6 +19,7 @@ package com.graphhopper.reader;
 
 import com.graphhopper.reader.dem.ElevationProvider;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.util.ImportProfile;
 
 import java.io.File;
 import java.io.IOException;
@@ -38,6 +39,11 @@ public interface DataReader {
 
     DataReader setSmoothElevation(boolean smoothElevation);
 
+    /**
+     * Specifies where the reader should record time and memory usage of its different phases.
+     */
+    DataReader setImportProfile(ImportProfile importProfile);
+
     /**
      * This method triggers reading the underlying data to create a graph
      */
@@ -18,6 +18,7 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.util.Downloader;
@@ -40,6 +41,7 @@ public abstract class AbstractElevationProvider implements ElevationProvider {
     Directory dir;
     DAType daType = DAType.MMAP;
     boolean calcMean = false;
+    int maxTiles = Integer.MAX_VALUE;
     boolean autoRemoveTemporary = true;
     long sleep = 2000;
 
@@ -59,6 +61,14 @@ public abstract class AbstractElevationProvider implements ElevationProvider {
         calcMean = eleCalcMean;
     }
 
+    @Override
+    public ElevationProvider setMaxTiles(int maxTiles) {
+        if (maxTiles <= 0)
+            throw new IllegalArgumentException("The maximum number of tiles has to be positive but was " + maxTiles);
+        this.maxTiles = maxTiles;
+        return this;
+    }
+
     void setSleep(long sleep) {
         this.sleep = sleep;
     }
@@ -101,6 +111,26 @@ public abstract class AbstractElevationProvider implements ElevationProvider {
         return dir = new GHDirectory(cacheDir.getAbsolutePath(), daType);
     }
 
+    void initTileCache(HeightTileCache<?> cache) {
+        if (maxTiles != cache.getMaxTiles())
+            cache.setMaxTiles(maxTiles);
+    }
+
+    /**
+     * Finds the DataAccess for the heights of a tile. If the tile was closed by the HeightTileCache
+     * a new DataAccess is returned, which loads the stored heights again for a storing DAType like
+     * the default MMAP.
+     */
+    DataAccess findHeights(String name) {
+        Directory directory = getDirectory();
+        DataAccess heights = directory.find(name);
+        if (heights.isClosed()) {
+            directory.close(heights);
+            heights = directory.find(name);
+        }
+        return heights;
+    }
+
     /**
      * Return the local file name without file ending, has to be lower case, because DataAccess only supports lower case names.
      */
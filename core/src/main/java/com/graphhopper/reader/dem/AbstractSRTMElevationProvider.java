@@ -17,7 +17,6 @@
  */
 package com.graphhopper.reader.dem;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.Downloader;
@@ -40,7 +39,10 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
     private final int WIDTH_BYTE_INDEX = 0;
     private final int DEGREE = 1;
     // use a map as an array is not quite useful if we want to hold only parts of the world
-    private final GHIntObjectHashMap<HeightTile> cacheData = new GHIntObjectHashMap<>();
+    private final HeightTileCache<Integer> cacheData = new HeightTileCache<>();
+    // consecutive requests are usually for the same tile
+    private int lastIntKey = -1;
+    private HeightTile lastTile;
     private final double precision = 1e7;
     private final double invPrecision = 1 / precision;
 
@@ -60,6 +62,7 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
     @Override
     public void release() {
         cacheData.clear();
+        lastTile = null;
 
         // for memory mapped type we create temporary unpacked files which should be removed
         if (autoRemoveTemporary && dir != null)
@@ -91,8 +94,10 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
         lat = (int) (lat * precision) / precision;
         lon = (int) (lon * precision) / precision;
         int intKey = calcIntKey(lat, lon);
-        HeightTile demProvider = cacheData.get(intKey);
+        HeightTile demProvider = intKey == lastIntKey ? lastTile : cacheData.get(intKey);
         if (demProvider == null) {
+            // the last tile could be closed when the new tile is added
+            lastTile = null;
             if (!cacheDir.exists())
                 cacheDir.mkdirs();
 
@@ -103,7 +108,7 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
             if (fileName == null)
                 return 0;
 
-            DataAccess heights = getDirectory().find("dem" + intKey);
+            DataAccess heights = findHeights("dem" + intKey);
             boolean loadExisting = false;
             try {
                 loadExisting = heights.loadExisting();
@@ -116,6 +121,7 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
                     updateHeightsFromFile(lat, lon, heights);
                 } catch (FileNotFoundException ex) {
                     demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
+                    initTileCache(cacheData);
                     cacheData.put(intKey, demProvider);
                     demProvider.setHeights(heights);
                     demProvider.setSeaLevel(true);
@@ -131,10 +137,13 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
                 width = DEFAULT_WIDTH;
 
             demProvider = new HeightTile(minLat, minLon, width, width, precision, DEGREE, DEGREE);
+            initTileCache(cacheData);
             cacheData.put(intKey, demProvider);
             demProvider.setCalcMean(calcMean);
             demProvider.setHeights(heights);
         }
+        lastIntKey = intKey;
+        lastTile = demProvider;
 
         if (demProvider.isSeaLevel())
             return 0;
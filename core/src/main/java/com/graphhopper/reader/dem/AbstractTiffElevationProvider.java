@@ -24,8 +24,6 @@ import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Provides basic methods that are usually used in an ElevationProvider that reads tiff files.
@@ -33,7 +31,10 @@ import java.util.Map;
  * @author Robin Boldt
  */
 public abstract class AbstractTiffElevationProvider extends AbstractElevationProvider {
-    private final Map<String, HeightTile> cacheData = new HashMap<>();
+    // distance to the tile border in degrees for which the last tile is reused without calculating the file name
+    private static final double LAST_TILE_MARGIN = 1e-6;
+    private final HeightTileCache<String> cacheData = new HeightTileCache<>();
+    private HeightTile lastTile;
     final double precision = 1e7;
 
     private final int WIDTH;
@@ -57,6 +58,7 @@ public abstract class AbstractTiffElevationProvider extends AbstractElevationPro
     @Override
     public void release() {
         cacheData.clear();
+        lastTile = null;
 
         // for memory mapped type we create temporary unpacked files which should be removed
         if (autoRemoveTemporary && dir != null)
@@ -91,9 +93,15 @@ public abstract class AbstractTiffElevationProvider extends AbstractElevationPro
 
         lat = (int) (lat * precision) / precision;
         lon = (int) (lon * precision) / precision;
+        HeightTile demProvider = lastTile;
+        if (demProvider != null && isInside(demProvider, lat, lon))
+            return demProvider.isSeaLevel() ? 0 : demProvider.getHeight(lat, lon);
+
         String name = getFileName(lat, lon);
-        HeightTile demProvider = cacheData.get(name);
+        demProvider = cacheData.get(name);
         if (demProvider == null) {
+            // the last tile could be closed when the new tile is added
+            lastTile = null;
             if (!cacheDir.exists())
                 cacheDir.mkdirs();
 
@@ -103,8 +111,9 @@ public abstract class AbstractTiffElevationProvider extends AbstractElevationPro
             demProvider = new HeightTile(minLat, minLon, WIDTH, HEIGHT, LON_DEGREE * precision, LON_DEGREE, LAT_DEGREE);
             demProvider.setCalcMean(calcMean);
 
+            initTileCache(cacheData);
             cacheData.put(name, demProvider);
-            DataAccess heights = getDirectory().find(name + ".gh");
+            DataAccess heights = findHeights(name + ".gh");
             demProvider.setHeights(heights);
             boolean loadExisting = false;
             try {
@@ -135,6 +144,8 @@ public abstract class AbstractTiffElevationProvider extends AbstractElevationPro
 
             } // loadExisting
         }
+        // only reuse the tile if the file name is the same for all points within the margin
+        lastTile = isInside(demProvider, lat, lon) ? demProvider : null;
 
         if (demProvider.isSeaLevel())
             return 0;
@@ -142,6 +153,11 @@ public abstract class AbstractTiffElevationProvider extends AbstractElevationPro
         return demProvider.getHeight(lat, lon);
     }
 
+    private boolean isInside(HeightTile tile, double lat, double lon) {
+        return lat >= tile.getMinLat() + LAST_TILE_MARGIN && lat < tile.getMinLat() + LAT_DEGREE - LAST_TILE_MARGIN
+                && lon >= tile.getMinLon() + LAST_TILE_MARGIN && lon < tile.getMinLon() + LON_DEGREE - LAST_TILE_MARGIN;
+    }
+
     abstract Raster generateRasterFromFile(File file, String tifName);
 
     /**
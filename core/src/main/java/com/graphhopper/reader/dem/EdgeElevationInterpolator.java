@@ -29,6 +29,12 @@ import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.util.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * Abstract base class for tunnel/bridge edge elevation interpolators. This
  * class estimates elevation of inner nodes of a tunnel/bridge based on
@@ -49,6 +55,10 @@ import com.graphhopper.util.*;
  * Earth surface. Elevations of inner nodes are then interpolated from the outer
  * nodes using {@link NodeElevationInterpolator}. Elevations of pillar nodes are
  * calculated using linear interpolation on distances from tower nodes.
+ * <p>
+ * The connected components do not share any node, so their elevations can be calculated in
+ * parallel, see {@link #setThreads(int)}. The calculated elevations are written in the order of
+ * the components, so the result does not depend on the number of threads.
  *
  * @author Alexey Valikov
  */
@@ -59,6 +69,7 @@ public class EdgeElevationInterpolator {
     private final NodeElevationInterpolator nodeElevationInterpolator;
     private final RoadEnvironment interpolateKey;
     private final ElevationInterpolator elevationInterpolator = new ElevationInterpolator();
+    private int threads = 1;
 
     public EdgeElevationInterpolator(GraphHopperStorage storage, EnumEncodedValue<RoadEnvironment> roadEnvironmentEnc, RoadEnvironment interpolateKey) {
         this.storage = storage;
@@ -75,6 +86,17 @@ public class EdgeElevationInterpolator {
         return storage;
     }
 
+    /**
+     * Specifies the number of threads that calculate the elevations of the tower and pillar nodes.
+     * Default is 1.
+     */
+    public EdgeElevationInterpolator setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
     public void execute() {
         interpolateElevationsOfTowerNodes();
         interpolateElevationsOfPillarNodes();
@@ -84,24 +106,40 @@ public class EdgeElevationInterpolator {
         final AllEdgesIterator edge = storage.getAllEdges();
         final GHBitSet visitedEdgeIds = new GHBitSetImpl(edge.length());
         final EdgeExplorer edgeExplorer = storage.createEdgeExplorer();
+        final List<int[]> outerNodeIdsList = new ArrayList<>();
+        final List<int[]> innerNodeIdsList = new ArrayList<>();
 
         while (edge.next()) {
             final int edgeId = edge.getEdge();
             if (isInterpolatableEdge(edge)) {
                 if (!visitedEdgeIds.contains(edgeId)) {
-                    interpolateEdge(edge, visitedEdgeIds, edgeExplorer);
+                    final IntSet outerNodeIds = new GHIntHashSet();
+                    final GHIntHashSet innerNodeIds = new GHIntHashSet();
+                    gatherOuterAndInnerNodeIds(edgeExplorer, edge, visitedEdgeIds, outerNodeIds, innerNodeIds);
+                    outerNodeIdsList.add(outerNodeIds.toArray());
+                    innerNodeIdsList.add(innerNodeIds.toArray());
                 }
             }
             visitedEdgeIds.add(edgeId);
         }
-    }
 
-    private void interpolateEdge(final EdgeIteratorState interpolatableEdge,
-                                 final GHBitSet visitedEdgeIds, final EdgeExplorer edgeExplorer) {
-        final IntSet outerNodeIds = new GHIntHashSet();
-        final GHIntHashSet innerNodeIds = new GHIntHashSet();
-        gatherOuterAndInnerNodeIds(edgeExplorer, interpolatableEdge, visitedEdgeIds, outerNodeIds, innerNodeIds);
-        nodeElevationInterpolator.interpolateElevationsOfInnerNodes(outerNodeIds.toArray(), innerNodeIds.toArray());
+        final int components = outerNodeIdsList.size();
+        final double[][] elevations = new double[components][];
+        runInParallel(new Task() {
+            @Override
+            public void run(int offset, int step) {
+                for (int component = offset; component < components; component += step) {
+                    elevations[component] = nodeElevationInterpolator.calculateElevationsOfInnerNodes(
+                            outerNodeIdsList.get(component), innerNodeIdsList.get(component));
+                }
+            }
+        });
+
+        // updating the nodes changes the bounds of the graph, so this is done sequentially
+        for (int component = 0; component < components; component++) {
+            if (elevations[component] != null)
+                nodeElevationInterpolator.setElevations(innerNodeIdsList.get(component), elevations[component]);
+        }
     }
 
     public void gatherOuterAndInnerNodeIds(final EdgeExplorer edgeExplorer,
@@ -130,11 +168,24 @@ public class EdgeElevationInterpolator {
         gatherOuterAndInnerNodeIdsSearch.start(edgeExplorer, interpolatableEdge.getBaseNode());
     }
 
+    /**
+     * The pillar nodes of an edge are stored at the existing position of its geometry, so several
+     * threads can update different edges.
+     */
     private void interpolateElevationsOfPillarNodes() {
+        runInParallel(new Task() {
+            @Override
+            public void run(int offset, int step) {
+                interpolateElevationsOfPillarNodes(offset, step);
+            }
+        });
+    }
+
+    private void interpolateElevationsOfPillarNodes(int offset, int step) {
         final EdgeIterator edge = storage.getAllEdges();
         final NodeAccess nodeAccess = storage.getNodeAccess();
         while (edge.next()) {
-            if (isInterpolatableEdge(edge)) {
+            if (edge.getEdge() % step == offset && isInterpolatableEdge(edge)) {
                 int firstNodeId = edge.getBaseNode();
                 int secondNodeId = edge.getAdjNode();
 
@@ -163,4 +214,39 @@ public class EdgeElevationInterpolator {
             }
         }
     }
+
+    /**
+     * Runs the task in every thread, thread i processes the elements i, i + threads, ...
+     */
+    private void runInParallel(final Task task) {
+        if (threads == 1) {
+            task.run(0, 1);
+            return;
+        }
+
+        ExecutorService threadPool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int thread = 0; thread < threads; thread++) {
+                final int offset = thread;
+                futures.add(threadPool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        task.run(offset, threads);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception ex) {
+            throw new IllegalStateException("Problem while interpolating elevations", ex);
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    private interface Task {
+        void run(int offset, int step);
+    }
 }
@@ -18,6 +18,7 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.util.PointList;
 
 /**
  * @author Peter Karich
@@ -50,6 +51,11 @@ public interface ElevationProvider {
         @Override
         public void setCalcMean(boolean eleCalcMean) {
         }
+
+        @Override
+        public ElevationProvider setMaxTiles(int maxTiles) {
+            return this;
+        }
     };
 
     /**
@@ -57,6 +63,20 @@ public interface ElevationProvider {
      */
     double getEle(double lat, double lon);
 
+    /**
+     * Sets the elevation of all points of the specified 3D point list, e.g. of a whole way
+     * geometry. Consecutive points are usually in the same tile, which is then reused without a
+     * lookup.
+     */
+    default void fillElevation(PointList pointList) {
+        if (!pointList.is3D())
+            throw new IllegalArgumentException("The point list has to be 3D");
+
+        for (int i = 0; i < pointList.getSize(); i++) {
+            pointList.setElevation(i, getEle(pointList.getLatitude(i), pointList.getLongitude(i)));
+        }
+    }
+
     /**
      * Specifies the service URL where to download the elevation data. An empty string should set it
      * to the default URL. Default is a provider-dependent URL which should work out of the box.
@@ -74,6 +94,14 @@ public interface ElevationProvider {
      */
     void setCalcMean(boolean calcMean);
 
+    /**
+     * Limits the number of tiles that are kept open. If more tiles are needed the least recently
+     * used one is closed and its heights are loaded again from the cache directory when it is
+     * needed. For a DataAccess type that does not store the heights they are created again from
+     * the downloaded file. Unlimited by default.
+     */
+    ElevationProvider setMaxTiles(int maxTiles);
+
     /**
      * Release resources.
      */
@@ -77,6 +77,21 @@ public class HeightTile {
         this.heights = da;
     }
 
+    int getMinLat() {
+        return minLat;
+    }
+
+    int getMinLon() {
+        return minLon;
+    }
+
+    /**
+     * Releases the heights of this tile. The tile cannot be used afterwards.
+     */
+    void close() {
+        heights.close();
+    }
+
     public double getHeight(double lat, double lon) {
         double deltaLat = Math.abs(lat - minLat);
         double deltaLon = Math.abs(lon - minLon);
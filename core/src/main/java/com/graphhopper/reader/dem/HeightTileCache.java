@@ -0,0 +1,72 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the loaded HeightTiles of an ElevationProvider. If more than maxTiles tiles are loaded the
+ * least recently used tile is closed, which releases the memory or the mapping of its heights. If
+ * the tile is requested later its heights are loaded again from the cache directory, see
+ * AbstractElevationProvider.findHeights. Only for a DAType that does not store the heights they
+ * are created again from the downloaded file.
+ */
+class HeightTileCache<K> {
+    private final Map<K, HeightTile> map;
+    private int maxTiles = Integer.MAX_VALUE;
+
+    HeightTileCache() {
+        this.map = new LinkedHashMap<K, HeightTile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, HeightTile> eldest) {
+                if (size() <= maxTiles)
+                    return false;
+
+                eldest.getValue().close();
+                return true;
+            }
+        };
+    }
+
+    void setMaxTiles(int maxTiles) {
+        if (maxTiles <= 0)
+            throw new IllegalArgumentException("The maximum number of tiles has to be positive but was " + maxTiles);
+        this.maxTiles = maxTiles;
+    }
+
+    int getMaxTiles() {
+        return maxTiles;
+    }
+
+    HeightTile get(K key) {
+        return map.get(key);
+    }
+
+    void put(K key, HeightTile tile) {
+        map.put(key, tile);
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    void clear() {
+        map.clear();
+    }
+}
@@ -82,6 +82,13 @@ public class MultiSourceElevationProvider implements ElevationProvider {
         globalProvider.setCalcMean(calcMean);
     }
 
+    @Override
+    public ElevationProvider setMaxTiles(int maxTiles) {
+        srtmProvider.setMaxTiles(maxTiles);
+        globalProvider.setMaxTiles(maxTiles);
+        return this;
+    }
+
     @Override
     public void release() {
         srtmProvider.release();
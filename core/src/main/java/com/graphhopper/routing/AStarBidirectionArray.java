@@ -0,0 +1,73 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.lm.LMApproximator;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.BeelineWeightApproximator;
+import com.graphhopper.routing.weighting.ConsistentWeightApproximator;
+import com.graphhopper.routing.weighting.WeightApproximator;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Parameters;
+
+/**
+ * A bidirectional A* like {@link AStarBidirection}, but the shortest path trees are stored in
+ * primitive arrays, see {@link AbstractBidirArrayAlgo}. The heap key of a node is the weight of
+ * the visited path plus the approximated weight to the other end.
+ */
+public class AStarBidirectionArray extends AbstractBidirArrayAlgo {
+    private ConsistentWeightApproximator weightApprox;
+
+    public AStarBidirectionArray(Graph graph, Weighting weighting, TraversalMode tMode) {
+        super(graph, weighting, tMode);
+        BeelineWeightApproximator defaultApprox = new BeelineWeightApproximator(nodeAccess, weighting);
+        defaultApprox.setDistanceCalc(Helper.DIST_PLANE);
+        setApproximation(defaultApprox);
+    }
+
+    @Override
+    void init(int from, double fromWeight, int to, double toWeight) {
+        weightApprox.setFrom(from);
+        weightApprox.setTo(to);
+        // see the ALT patch in AStarBidirection
+        approximatorOffset = weightApprox.getApproximation() instanceof LMApproximator
+                ? 2.0D * ((LMApproximator) weightApprox.getApproximation()).getFactor() : 0;
+        super.init(from, fromWeight, to, toWeight);
+    }
+
+    @Override
+    protected double approximate(int node, boolean reverse) {
+        return weightApprox.approximate(node, reverse);
+    }
+
+    public WeightApproximator getApproximation() {
+        return weightApprox.getApproximation();
+    }
+
+    public AStarBidirectionArray setApproximation(WeightApproximator approx) {
+        weightApprox = new ConsistentWeightApproximator(approx);
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return Parameters.Algorithms.ASTAR_BI + "|array|" + weightApprox;
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.GHIntArrayList;
+import com.graphhopper.coll.MinHeapWithUpdate;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.SPTEntry;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Common subclass for bidirectional node-based algorithms that store the shortest path trees in
+ * primitive arrays indexed by node instead of a map of {@link SPTEntry} objects (see
+ * {@link AbstractBidirAlgo}). The open sets are {@link MinHeapWithUpdate}s, which makes a
+ * decrease-key O(log n) and avoids allocating an object per visited node. SPTEntry objects are only
+ * created for the nodes of the found path to extract it.
+ * <p>
+ * The arrays are as large as the graph, so they are not allocated per instance. Every thread keeps
+ * its search trees and lends them to the instance for one calcPath call. Before a search only the
+ * nodes that were visited in the previous search are reset. Edge-based traversal is not supported.
+ */
+public abstract class AbstractBidirArrayAlgo extends AbstractRoutingAlgorithm {
+    // more than two trees are only needed if searches of one thread are nested
+    private static final int MAX_POOLED_TREES = 4;
+    private static final ThreadLocal<ArrayDeque<SearchTree>> TREE_POOL = new ThreadLocal<ArrayDeque<SearchTree>>() {
+        @Override
+        protected ArrayDeque<SearchTree> initialValue() {
+            return new ArrayDeque<>(MAX_POOLED_TREES);
+        }
+    };
+    // only set during calcPath
+    protected SearchTree fromTree;
+    protected SearchTree toTree;
+    private int visitedNodes;
+    protected PathBidirRef bestPath;
+    protected double bestWeight;
+    protected int meetingNode;
+    protected double approximatorOffset = 0.0;
+
+    public AbstractBidirArrayAlgo(Graph graph, Weighting weighting, TraversalMode tMode) {
+        super(graph, weighting, tMode);
+        if (tMode.isEdgeBased())
+            throw new IllegalArgumentException(getClass().getSimpleName() + " does not support edge-based traversal");
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        fromTree = acquireTree(graph.getNodes());
+        toTree = acquireTree(graph.getNodes());
+        try {
+            bestWeight = Double.MAX_VALUE;
+            meetingNode = -1;
+            bestPath = createAndInitPath();
+            init(from, 0, to, 0);
+            runAlgo();
+            return extractPath();
+        } finally {
+            visitedNodes = fromTree.visited + toTree.visited;
+            releaseTree(fromTree);
+            releaseTree(toTree);
+            fromTree = null;
+            toTree = null;
+        }
+    }
+
+    private static SearchTree acquireTree(int nodes) {
+        SearchTree tree = TREE_POOL.get().poll();
+        if (tree == null)
+            tree = new SearchTree();
+        tree.reset(nodes);
+        return tree;
+    }
+
+    private static void releaseTree(SearchTree tree) {
+        ArrayDeque<SearchTree> pool = TREE_POOL.get();
+        if (pool.size() < MAX_POOLED_TREES)
+            pool.push(tree);
+    }
+
+    protected PathBidirRef createAndInitPath() {
+        return new PathBidirRef(graph, weighting);
+    }
+
+    void init(int from, double fromWeight, int to, double toWeight) {
+        fromTree.start(from, fromWeight, fromWeight + approximate(from, false));
+        toTree.start(to, toWeight, toWeight + approximate(to, true));
+        if (from == to) {
+            bestWeight = fromWeight + toWeight;
+            meetingNode = from;
+        }
+        fromTree.finished = !fillEdges(fromTree, toTree, outEdgeExplorer, false);
+        toTree.finished = !fillEdges(toTree, fromTree, inEdgeExplorer, true);
+    }
+
+    protected void runAlgo() {
+        while (!finished() && !isMaxVisitedNodesExceeded()) {
+            if (!fromTree.finished)
+                fromTree.finished = !fillEdges(fromTree, toTree, outEdgeExplorer, false);
+
+            if (!toTree.finished)
+                toTree.finished = !fillEdges(toTree, fromTree, inEdgeExplorer, true);
+        }
+    }
+
+    @Override
+    protected boolean finished() {
+        if (fromTree.finished || toTree.finished)
+            return true;
+
+        return fromTree.currKey + toTree.currKey - approximatorOffset >= bestWeight;
+    }
+
+    /**
+     * @return false if the search in this direction cannot continue
+     */
+    private boolean fillEdges(SearchTree tree, SearchTree otherTree, EdgeExplorer explorer, boolean reverse) {
+        if (tree.heap.isEmpty())
+            return false;
+
+        tree.currKey = tree.heap.peekKey();
+        int node = tree.heap.poll();
+        tree.currNode = node;
+        tree.visited++;
+        if (entryCanBeSkipped(tree, node, reverse))
+            return true;
+
+        double currWeight = tree.weights[node];
+        int currEdge = tree.edges[node];
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            if (!accept(iter, currEdge))
+                continue;
+
+            double weight = weighting.calcWeight(iter, reverse, currEdge) + currWeight;
+            if (Double.isInfinite(weight))
+                continue;
+
+            int adjNode = iter.getAdjNode();
+            if (weight >= tree.weights[adjNode])
+                continue;
+
+            tree.update(adjNode, weight, weight + approximate(adjNode, reverse), iter.getEdge(), node);
+            double otherWeight = otherTree.weights[adjNode];
+            if (otherWeight < Double.POSITIVE_INFINITY && weight + otherWeight < bestWeight) {
+                bestWeight = weight + otherWeight;
+                meetingNode = adjNode;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the estimated weight from the specified node to the target (or from the source if
+     * reverse is true), 0 for Dijkstra
+     */
+    protected double approximate(int node, boolean reverse) {
+        return 0;
+    }
+
+    /**
+     * @return true if the specified node, which was just taken from the heap, should not be
+     * expanded, e.g. for stall-on-demand
+     */
+    protected boolean entryCanBeSkipped(SearchTree tree, int node, boolean reverse) {
+        return false;
+    }
+
+    @Override
+    protected Path extractPath() {
+        if (!finished() || meetingNode < 0)
+            return bestPath;
+
+        bestPath.setSPTEntry(fromTree.createEntries(meetingNode));
+        bestPath.setSPTEntryTo(toTree.createEntries(meetingNode));
+        bestPath.setWeight(bestWeight);
+        return bestPath.extract();
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        if (fromTree != null)
+            return fromTree.visited + toTree.visited;
+        return visitedNodes;
+    }
+
+    /**
+     * The shortest path tree of one search direction.
+     */
+    protected static final class SearchTree {
+        double[] weights;
+        int[] edges;
+        int[] parents;
+        MinHeapWithUpdate heap;
+        final GHIntArrayList changedNodes = new GHIntArrayList();
+        int currNode;
+        double currKey;
+        boolean finished;
+        int visited;
+
+        SearchTree() {
+            allocate(0);
+        }
+
+        private void allocate(int nodes) {
+            weights = new double[nodes];
+            Arrays.fill(weights, Double.POSITIVE_INFINITY);
+            edges = new int[nodes];
+            parents = new int[nodes];
+            heap = new MinHeapWithUpdate(nodes);
+            changedNodes.clear();
+        }
+
+        void reset(int nodes) {
+            if (nodes > weights.length) {
+                // leave room for the virtual nodes of later queries
+                allocate(nodes + (nodes >> 6));
+            } else {
+                for (int i = 0; i < changedNodes.size(); i++) {
+                    weights[changedNodes.get(i)] = Double.POSITIVE_INFINITY;
+                }
+                changedNodes.clear();
+                heap.clear();
+            }
+            currNode = -1;
+            currKey = 0;
+            finished = false;
+            visited = 0;
+        }
+
+        void start(int node, double weight, double key) {
+            update(node, weight, key, EdgeIterator.NO_EDGE, -1);
+            currNode = node;
+            currKey = key;
+        }
+
+        void update(int node, double weight, double key, int edge, int parent) {
+            if (weights[node] == Double.POSITIVE_INFINITY)
+                changedNodes.add(node);
+            weights[node] = weight;
+            edges[node] = edge;
+            parents[node] = parent;
+            // a node that was already settled is pushed again, like in AbstractBidirAlgo
+            if (heap.contains(node))
+                heap.update(node, key);
+            else
+                heap.push(node, key);
+        }
+
+        public double getWeight(int node) {
+            return weights[node];
+        }
+
+        public int getEdge(int node) {
+            return edges[node];
+        }
+
+        public int getCurrentNode() {
+            return currNode;
+        }
+
+        public double getCurrentKey() {
+            return currKey;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * Creates the SPTEntry chain from the specified node back to the root of this tree.
+         */
+        SPTEntry createEntries(int node) {
+            SPTEntry entry = new SPTEntry(edges[node], node, weights[node]);
+            SPTEntry curr = entry;
+            while (EdgeIterator.Edge.isValid(curr.edge)) {
+                int parent = parents[curr.adjNode];
+                curr.parent = new SPTEntry(edges[parent], parent, weights[parent]);
+                curr = curr.parent;
+            }
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntIndexedContainer;
+import com.carrotsearch.hppc.cursors.IntObjectCursor;
+import com.graphhopper.routing.ch.Path4CH;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.SPTEntry;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Parameters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Calculates alternative routes on a node-based CHGraph with the via-node method: both CH searches
+ * are continued until they cannot find paths shorter than maxWeightFactor times the best weight.
+ * Every node settled by both searches is a candidate for a path s-v-t, which is accepted if it
+ * shares at most maxShareFactor of the best weight with the best path and if it is locally optimal,
+ * i.e. the part of length localOptimalityFactor times the best weight before and after v is a
+ * shortest path. The latter is checked with an additional CH query. See {@link AlternativeRoute}
+ * for the plateau method on the base graph, the factors have the same meaning.
+ */
+public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
+    private int maxPaths = 2;
+    private double maxWeightFactor = 1.4;
+    private double maxShareFactor = 0.6;
+    private double localOptimalityFactor = 0.25;
+    private int extraVisitedNodes;
+
+    public AlternativeRouteCH(Graph graph, Weighting weighting) {
+        super(graph, weighting);
+    }
+
+    /**
+     * Specifies how many paths (including the optimal) are returned. (default is 2)
+     */
+    public AlternativeRouteCH setMaxPaths(int maxPaths) {
+        if (maxPaths < 2)
+            throw new IllegalArgumentException("Use normal algorithm with less overhead instead if no alternatives are required");
+        this.maxPaths = maxPaths;
+        return this;
+    }
+
+    /**
+     * Increases the maximum weight of an alternative in relation to the best path. (default is 1.4)
+     */
+    public AlternativeRouteCH setMaxWeightFactor(double maxWeightFactor) {
+        this.maxWeightFactor = maxWeightFactor;
+        return this;
+    }
+
+    /**
+     * The maximum weight an alternative may share with the best path in relation to the weight of
+     * the best path. (default is 0.6)
+     */
+    public AlternativeRouteCH setMaxShareFactor(double maxShareFactor) {
+        this.maxShareFactor = maxShareFactor;
+        return this;
+    }
+
+    /**
+     * The weight of the part around the via node that has to be a shortest path in relation to the
+     * weight of the best path. A higher value avoids more detours but rejects more alternatives.
+     * The factor can be set per request via {@link Parameters.Algorithms.AltRoute#LOCAL_OPTIMALITY}
+     * (default is 0.25)
+     */
+    public AlternativeRouteCH setLocalOptimalityFactor(double localOptimalityFactor) {
+        this.localOptimalityFactor = localOptimalityFactor;
+        return this;
+    }
+
+    @Override
+    public boolean finished() {
+        if (finishedFrom && finishedTo)
+            return true;
+
+        // in contrast to a normal CH query both searches have to explore all paths up to the weight of the longest
+        // possible alternative
+        double maxWeight = maxWeightFactor * bestPath.getWeight();
+        return currFrom.weight >= maxWeight && currTo.weight >= maxWeight;
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        return calcPaths(from, to).get(0);
+    }
+
+    @Override
+    public List<Path> calcPaths(int from, int to) {
+        Path best = super.calcPath(from, to);
+        List<Path> paths = new ArrayList<>(maxPaths);
+        paths.add(best);
+        if (!best.isFound())
+            return paths;
+
+        final double bestWeight = best.getWeight();
+        IntHashSet bestEdges = new IntHashSet();
+        for (EdgeIteratorState edge : best.calcEdges()) {
+            bestEdges.add(edge.getEdge());
+        }
+        // the nodes of the accepted paths, all other candidates on them would lead to the same path
+        IntHashSet coveredNodes = new IntHashSet();
+        coveredNodes.addAll(best.calcNodes());
+
+        final double maxWeight = maxWeightFactor * bestWeight;
+        List<SPTEntry[]> candidates = new ArrayList<>();
+        for (IntObjectCursor<SPTEntry> cursor : bestWeightMapFrom) {
+            SPTEntry toEntry = bestWeightMapTo.get(cursor.key);
+            if (toEntry != null && cursor.value.weight + toEntry.weight <= maxWeight)
+                candidates.add(new SPTEntry[]{cursor.value, toEntry});
+        }
+        Collections.sort(candidates, new Comparator<SPTEntry[]>() {
+            @Override
+            public int compare(SPTEntry[] o1, SPTEntry[] o2) {
+                return Double.compare(o1[0].weight + o1[1].weight, o2[0].weight + o2[1].weight);
+            }
+        });
+
+        for (SPTEntry[] candidate : candidates) {
+            if (paths.size() >= maxPaths)
+                break;
+
+            int viaNode = candidate[0].adjNode;
+            if (coveredNodes.contains(viaNode))
+                continue;
+
+            PathBidirRef path = new Path4CH(graph, graph.getBaseGraph(), weighting);
+            path.setSPTEntry(candidate[0]);
+            path.setSPTEntryTo(candidate[1]);
+            path.setWeight(candidate[0].weight + candidate[1].weight);
+            path.extract();
+
+            IntIndexedContainer nodes = path.calcNodes();
+            IntHashSet uniqueNodes = new IntHashSet(nodes);
+            // the forward and backward paths to the via node can overlap
+            if (uniqueNodes.size() != nodes.size())
+                continue;
+
+            List<EdgeIteratorState> edges = path.calcEdges();
+            double[] weights = new double[edges.size() + 1];
+            double shareWeight = 0;
+            int prevEdge = EdgeIterator.NO_EDGE;
+            for (int i = 0; i < edges.size(); i++) {
+                EdgeIteratorState edge = edges.get(i);
+                double weight = weighting.calcWeight(edge, false, prevEdge);
+                weights[i + 1] = weights[i] + weight;
+                if (bestEdges.contains(edge.getEdge()))
+                    shareWeight += weight;
+                prevEdge = edge.getEdge();
+            }
+            if (shareWeight > maxShareFactor * bestWeight)
+                continue;
+
+            if (!isLocallyOptimal(nodes, weights, nodes.indexOf(viaNode), localOptimalityFactor * bestWeight))
+                continue;
+
+            paths.add(path);
+            coveredNodes.addAll(nodes);
+        }
+        return paths;
+    }
+
+    /**
+     * Checks with a CH query that the sub path from the node at least tWeight before the via node to
+     * the node at least tWeight after it is a shortest path.
+     */
+    private boolean isLocallyOptimal(IntIndexedContainer nodes, double[] weights, int viaIndex, double tWeight) {
+        int fromIndex = viaIndex;
+        while (fromIndex > 0 && weights[viaIndex] - weights[fromIndex] < tWeight) {
+            fromIndex--;
+        }
+        int toIndex = viaIndex;
+        while (toIndex < nodes.size() - 1 && weights[toIndex] - weights[viaIndex] < tWeight) {
+            toIndex++;
+        }
+        if (fromIndex == toIndex)
+            return true;
+
+        DijkstraBidirectionCH tTest = new DijkstraBidirectionCH(graph, weighting);
+        tTest.setEdgeFilter(additionalEdgeFilter);
+        Path shortest = tTest.calcPath(nodes.get(fromIndex), nodes.get(toIndex));
+        extraVisitedNodes += tTest.getVisitedNodes();
+        double subPathWeight = weights[toIndex] - weights[fromIndex];
+        // the weights of the shortcuts are rounded
+        return shortest.isFound() && shortest.getWeight() >= subPathWeight - 1e-3 * subPathWeight - 1e-2;
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return super.getVisitedNodes() + extraVisitedNodes;
+    }
+
+    @Override
+    public String getName() {
+        return Parameters.Algorithms.ALT_ROUTE + "|ch";
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.ch.Path4CH;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+/**
+ * The CH query of {@link DijkstraBidirectionCH} including stall-on-demand, but the shortest path
+ * trees are stored in primitive arrays, see {@link AbstractBidirArrayAlgo}.
+ */
+public class DijkstraBidirectionCHArray extends AbstractBidirArrayAlgo {
+    private final boolean stallOnDemand;
+
+    public DijkstraBidirectionCHArray(Graph graph, Weighting weighting) {
+        this(graph, weighting, true);
+    }
+
+    public DijkstraBidirectionCHArray(Graph graph, Weighting weighting, boolean stallOnDemand) {
+        super(graph, weighting, TraversalMode.NODE_BASED);
+        this.stallOnDemand = stallOnDemand;
+    }
+
+    @Override
+    protected PathBidirRef createAndInitPath() {
+        return new Path4CH(graph, graph.getBaseGraph(), weighting);
+    }
+
+    @Override
+    protected boolean finished() {
+        // we need to finish BOTH searches for CH!
+        if (fromTree.finished && toTree.finished)
+            return true;
+
+        return fromTree.currKey >= bestWeight && toTree.currKey >= bestWeight;
+    }
+
+    @Override
+    protected boolean entryCanBeSkipped(SearchTree tree, int node, boolean reverse) {
+        if (!stallOnDemand)
+            return false;
+
+        // see DijkstraBidirectionCH.entryIsStallable
+        EdgeExplorer explorer = reverse ? outEdgeExplorer : inEdgeExplorer;
+        int edge = tree.edges[node];
+        double weight = tree.weights[node];
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            if (iter.getEdge() == edge)
+                continue;
+            double adjWeight = tree.weights[iter.getAdjNode()];
+            if (adjWeight < Double.POSITIVE_INFINITY
+                    && adjWeight + weighting.calcWeight(iter, !reverse, edge) - weight < -0.001)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return stallOnDemand ? "dijkstrabi|ch|array" : "dijkstrabi|ch|no_sod|array";
+    }
+
+    @Override
+    public String toString() {
+        return getName() + "|" + weighting;
+    }
+}
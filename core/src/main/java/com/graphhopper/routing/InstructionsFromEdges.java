@@ -126,6 +126,11 @@ public class InstructionsFromEdges implements Path.EdgeVisitor {
 
     @Override
     public void next(EdgeIteratorState edge, int index, int prevEdgeId) {
+        next(edge, index, prevEdgeId, edge.fetchWayGeometry(3));
+    }
+
+    @Override
+    public void next(EdgeIteratorState edge, int index, int prevEdgeId, PointList wayGeo) {
         // baseNode is the current node and adjNode is the next
         int adjNode = edge.getAdjNode();
         int baseNode = edge.getBaseNode();
@@ -134,7 +139,6 @@ public class InstructionsFromEdges implements Path.EdgeVisitor {
         double adjLon = nodeAccess.getLongitude(adjNode);
         double latitude, longitude;
 
-        PointList wayGeo = edge.fetchWayGeometry(3);
         boolean isRoundabout = roundaboutEnc.getBool(false, flags);
 
         if (wayGeo.getSize() <= 2) {
@@ -162,6 +162,13 @@ public class Path {
         return edgeIds.size();
     }
 
+    /**
+     * @return true if the points of this path include the elevation
+     */
+    public boolean is3D() {
+        return nodeAccess.is3D();
+    }
+
     public boolean isFound() {
         return found;
     }
@@ -299,6 +306,35 @@ public class Path {
         visitor.finish();
     }
 
+    /**
+     * Iterates over all edges in this path like {@link #forEveryEdge(EdgeVisitor)} but feeds all
+     * specified visitors in one pass. The way geometry of every edge, including base and adjacent
+     * node, is fetched only once and handed to every visitor.
+     */
+    protected void forEveryEdge(List<EdgeVisitor> visitors) {
+        int tmpNode = getFromNode();
+        int len = edgeIds.size();
+        int prevEdgeId = EdgeIterator.NO_EDGE;
+        for (int i = 0; i < len; i++) {
+            EdgeIteratorState edgeBase = graph.getEdgeIteratorState(edgeIds.get(i), tmpNode);
+            if (edgeBase == null)
+                throw new IllegalStateException("Edge " + edgeIds.get(i) + " was empty when requested with node " + tmpNode
+                        + ", array index:" + i + ", edges:" + edgeIds.size());
+
+            tmpNode = edgeBase.getBaseNode();
+            edgeBase = graph.getEdgeIteratorState(edgeBase.getEdge(), tmpNode);
+            PointList geometry = edgeBase.fetchWayGeometry(3);
+            for (EdgeVisitor visitor : visitors) {
+                visitor.next(edgeBase, i, prevEdgeId, geometry);
+            }
+
+            prevEdgeId = edgeBase.getEdge();
+        }
+        for (EdgeVisitor visitor : visitors) {
+            visitor.finish();
+        }
+    }
+
     /**
      * Returns the list of all edges.
      */
@@ -383,6 +419,68 @@ public class Path {
         return points;
     }
 
+    /**
+     * Calculates the points, the instructions and the path details of this path in a single
+     * iteration over its edges. This is cheaper than calling calcPoints, calcInstructions and
+     * calcDetails separately as every edge and its geometry is fetched only once.
+     *
+     * @param points       the points of this path are appended to this list. Can be null.
+     * @param instructions the instructions of this path are appended to this list. Can be null.
+     * @return the path details, empty if no path details were requested
+     */
+    public Map<String, List<PathDetail>> calcPointsInstructionsAndDetails(final PointList points, InstructionList instructions,
+                                                                          BooleanEncodedValue roundaboutEnc, Translation tr,
+                                                                          PathProcessor pathProcessor, List<String> requestedPathDetails,
+                                                                          PathDetailsBuilderFactory pathBuilderFactory, int previousIndex) {
+        if (edgeIds.isEmpty()) {
+            if (isFound()) {
+                if (points != null)
+                    points.add(nodeAccess, endNode);
+                if (instructions != null)
+                    instructions.add(new FinishInstruction(nodeAccess, endNode));
+            }
+            return points == null ? Collections.<String, List<PathDetail>>emptyMap()
+                    : calcDetails(requestedPathDetails, pathBuilderFactory, previousIndex);
+        }
+
+        List<EdgeVisitor> visitors = new ArrayList<>(3);
+        if (points != null) {
+            points.add(nodeAccess, getFromNode());
+            visitors.add(new EdgeVisitor() {
+                @Override
+                public void next(EdgeIteratorState eb, int index, int prevEdgeId) {
+                    next(eb, index, prevEdgeId, eb.fetchWayGeometry(3));
+                }
+
+                @Override
+                public void next(EdgeIteratorState eb, int index, int prevEdgeId, PointList geometry) {
+                    // skip the base node as it was already added by the previous edge
+                    for (int j = 1; j < geometry.getSize(); j++) {
+                        points.add(geometry, j);
+                    }
+                }
+
+                @Override
+                public void finish() {
+                }
+            });
+        }
+
+        List<PathDetailsBuilder> pathBuilders = Collections.emptyList();
+        if (points != null && isFound() && !requestedPathDetails.isEmpty()) {
+            pathBuilders = pathBuilderFactory.createPathDetailsBuilders(requestedPathDetails, encoder, weighting);
+            if (!pathBuilders.isEmpty())
+                visitors.add(new PathDetailsFromEdges(pathBuilders, previousIndex));
+        }
+
+        if (instructions != null)
+            visitors.add(new InstructionsFromEdges(getFromNode(), graph, weighting, encoder, roundaboutEnc, nodeAccess, tr,
+                    instructions, pathProcessor, times));
+
+        forEveryEdge(visitors);
+        return buildDetails(pathBuilders);
+    }
+
     /**
      * @return the list of instructions for this path.
      */
@@ -420,6 +518,12 @@ public class Path {
             return Collections.emptyMap();
 
         forEveryEdge(new PathDetailsFromEdges(pathBuilders, previousIndex));
+        return buildDetails(pathBuilders);
+    }
+
+    private static Map<String, List<PathDetail>> buildDetails(List<PathDetailsBuilder> pathBuilders) {
+        if (pathBuilders.isEmpty())
+            return Collections.emptyMap();
 
         Map<String, List<PathDetail>> pathDetails = new HashMap<>(pathBuilders.size());
         for (PathDetailsBuilder builder : pathBuilders) {
@@ -454,6 +558,15 @@ public class Path {
     public interface EdgeVisitor {
         void next(EdgeIteratorState edge, int index, int prevEdgeId);
 
+        /**
+         * Same as {@link #next(EdgeIteratorState, int, int)} but with the already fetched way
+         * geometry of the edge, including base and adjacent node (fetchWayGeometry(3)). Visitors
+         * that need the geometry should override this method to avoid fetching it again.
+         */
+        default void next(EdgeIteratorState edge, int index, int prevEdgeId, PointList geometry) {
+            next(edge, index, prevEdgeId);
+        }
+
         void finish();
     }
 }
@@ -0,0 +1,221 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.InstructionList;
+import com.graphhopper.util.details.PathDetail;
+import com.graphhopper.util.shapes.GHPoint3D;
+
+import java.util.*;
+
+/**
+ * A bounded cache of route results for repeated requests. The key consists of all request
+ * parameters and of the snapped start, via and end points, so two requests with different query
+ * points that are snapped to the same location share the result. The least recently used entries
+ * are removed if the cache has too many entries or too many points.
+ * <p>
+ * Every hit gets its own copies of the PathWrappers, instructions and path details. The point
+ * lists are shared and made immutable instead, as they use most of the memory. The cached Path
+ * objects must not be modified. The debug information, the hints and the return objects of the
+ * response belong to the request that calculated the result and are not cached. The cache has to
+ * be cleared whenever the graph changes.
+ */
+public class RouteResultCache {
+    private final int maxSize;
+    private final long maxPoints;
+    private final Map<String, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+    private long points;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxPoints the maximum sum of the points and path edges of all cached results. A result
+     *                  with more points is not cached at all.
+     */
+    public RouteResultCache(int maxSize, long maxPoints) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("The cache size has to be positive but was " + maxSize);
+        if (maxPoints <= 0)
+            throw new IllegalArgumentException("The maximum points have to be positive but were " + maxPoints);
+        this.maxSize = maxSize;
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * @return the key for the specified request and the snapped points of it
+     */
+    public static String createKey(GHRequest request, String algorithm, List<QueryResult> queryResults) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(algorithm).append('|').append(request.getLocale());
+        sb.append('|').append(new TreeMap<>(request.getHints().toMap()));
+        if (request.getAdditionalHints() != null)
+            sb.append('|').append(new TreeMap<>(request.getAdditionalHints().toMap()));
+        sb.append('|').append(request.getPathDetails());
+        sb.append('|').append(request.getPointHints());
+        sb.append('|').append(request.getSnapPreventions());
+        for (int i = 0; i < queryResults.size(); i++) {
+            if (request.hasFavoredHeading(i))
+                sb.append('|').append(request.getFavoredHeading(i));
+            QueryResult qr = queryResults.get(i);
+            GHPoint3D snapped = qr.getSnappedPoint();
+            sb.append('|').append(qr.getClosestEdge().getEdge()).append(',').append(qr.getClosestNode()).
+                    append(',').append(qr.getWayIndex()).append(',').append(qr.getSnappedPosition()).
+                    append(',').append(snapped.lat).append(',').append(snapped.lon);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Adds copies of the cached PathWrappers to the specified response. Its hints and return
+     * objects are not changed.
+     *
+     * @return the cached paths or null if there is no entry for the specified key
+     */
+    public synchronized List<Path> get(String key, GHResponse response) {
+        Entry entry = map.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        for (PathWrapper pathWrapper : entry.pathWrappers) {
+            response.add(copy(pathWrapper));
+        }
+        return entry.paths;
+    }
+
+    /**
+     * Caches copies of the PathWrappers of the specified response. Their point lists are made
+     * immutable, also for the specified response.
+     */
+    public synchronized void put(String key, List<Path> paths, GHResponse response) {
+        Entry entry = new Entry(paths, response);
+        if (entry.points > maxPoints)
+            return;
+
+        Entry old = map.put(key, entry);
+        if (old != null)
+            points -= old.points;
+        points += entry.points;
+        // the new entry is the most recently used one and fits into the cache on its own
+        Iterator<Entry> iter = map.values().iterator();
+        while (map.size() > maxSize || points > maxPoints) {
+            points -= iter.next().points;
+            iter.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        points = 0;
+    }
+
+    public synchronized int getSize() {
+        return map.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the sum of the points and path edges of all cached results
+     */
+    public synchronized long getPoints() {
+        return points;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "size:" + map.size() + "/" + maxSize + ", points:" + points + "/" + maxPoints + ", hits:" + hits + ", misses:" + misses;
+    }
+
+    private static PathWrapper copy(PathWrapper original) {
+        PathWrapper copy = new PathWrapper();
+        copy.addErrors(original.getErrors());
+        copy.setDescription(new ArrayList<>(original.getDescription()));
+        copy.setPointsOrder(original.getPointsOrder());
+        copy.setPoints(original.getPoints());
+        copy.setWaypoints(original.getWaypoints());
+        copy.setDistance(original.getDistance()).setAscend(original.getAscend()).setDescend(original.getDescend()).
+                setTime(original.getTime()).setRouteWeight(original.getRouteWeight());
+        if (original.hasInstructions()) {
+            InstructionList instructions = new InstructionList(original.getInstructions().size(), original.getInstructions().getTr());
+            for (Instruction instruction : original.getInstructions()) {
+                instructions.add(instruction.copy());
+            }
+            copy.setInstructions(instructions);
+        }
+        Map<String, List<PathDetail>> details = new HashMap<>();
+        for (Map.Entry<String, List<PathDetail>> detailEntry : original.getPathDetails().entrySet()) {
+            List<PathDetail> list = new ArrayList<>(detailEntry.getValue().size());
+            for (PathDetail detail : detailEntry.getValue()) {
+                list.add(detail.copy());
+            }
+            details.put(detailEntry.getKey(), list);
+        }
+        copy.addPathDetails(details);
+        copy.setNumChanges(original.getNumChanges());
+        copy.getLegs().addAll(original.getLegs());
+        copy.setFare(original.getFare());
+        copy.setImpossible(original.isImpossible());
+        return copy;
+    }
+
+    private static class Entry {
+        final List<Path> paths;
+        final List<PathWrapper> pathWrappers;
+        final long points;
+
+        Entry(List<Path> paths, GHResponse response) {
+            this.paths = Collections.unmodifiableList(new ArrayList<>(paths));
+            this.pathWrappers = new ArrayList<>(response.getAll().size());
+            long tmpPoints = 0;
+            for (Path path : paths) {
+                tmpPoints += path.getEdgeCount();
+            }
+            for (PathWrapper pathWrapper : response.getAll()) {
+                // the caller keeps the original PathWrappers, so only the immutable points are shared
+                pathWrapper.getPoints().makeImmutable();
+                pathWrapper.getWaypoints().makeImmutable();
+                tmpPoints += pathWrapper.getPoints().size() + pathWrapper.getWaypoints().size();
+                if (pathWrapper.hasInstructions()) {
+                    for (Instruction instruction : pathWrapper.getInstructions()) {
+                        instruction.getPoints().makeImmutable();
+                    }
+                    tmpPoints += pathWrapper.getInstructions().size();
+                }
+                this.pathWrappers.add(copy(pathWrapper));
+            }
+            this.points = tmpPoints;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.graphhopper.routing.weighting.WeightApproximator;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.Parameters;
 
 import static com.graphhopper.util.Parameters.Algorithms.*;
 import static com.graphhopper.util.Parameters.Algorithms.AltRoute.*;
@@ -43,8 +44,13 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
     public RoutingAlgorithm createAlgo(Graph g, AlgorithmOptions opts) {
         RoutingAlgorithm ra;
         String algoStr = opts.getAlgorithm();
+        boolean primitiveArrays = !opts.getTraversalMode().isEdgeBased()
+                && opts.getHints().getBool(Parameters.Routing.PRIMITIVE_ARRAYS, false);
         if (DIJKSTRA_BI.equalsIgnoreCase(algoStr)) {
-            ra = new DijkstraBidirectionRef(g, opts.getWeighting(), opts.getTraversalMode());
+            if (primitiveArrays)
+                ra = new DijkstraBidirectionArray(g, opts.getWeighting(), opts.getTraversalMode());
+            else
+                ra = new DijkstraBidirectionRef(g, opts.getWeighting(), opts.getTraversalMode());
         } else if (DIJKSTRA.equalsIgnoreCase(algoStr)) {
             ra = new Dijkstra(g, opts.getWeighting(), opts.getTraversalMode());
 
@@ -54,7 +60,11 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
                 tdd.reverse();
             ra = tdd;
 
-        }else if (ASTAR_BI.equalsIgnoreCase(algoStr)) {
+        }else if (ASTAR_BI.equalsIgnoreCase(algoStr) && primitiveArrays) {
+            ra = new AStarBidirectionArray(g, opts.getWeighting(), opts.getTraversalMode()).
+                    setApproximation(getApproximation(ASTAR_BI, opts, g.getNodeAccess()));
+
+        } else if (ASTAR_BI.equalsIgnoreCase(algoStr)) {
             AStarBidirection aStarBi = new AStarBidirection(g, opts.getWeighting(),
                     opts.getTraversalMode());
             aStarBi.setApproximation(getApproximation(ASTAR_BI, opts, g.getNodeAccess()));
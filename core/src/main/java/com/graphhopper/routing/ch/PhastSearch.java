@@ -0,0 +1,206 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.coll.MinHeapWithUpdate;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+
+/**
+ * Calculates the weights from one or more source nodes to all nodes of the graph (or from all nodes
+ * to the sources if reverse is true) using a node-based CHGraph, see PHAST by Delling et al. First an
+ * upward search from the sources only relaxes edges to nodes with a higher level. Then all nodes are
+ * swept in descending level order and every node takes the minimum over its edges from nodes with a
+ * higher level, which were already finalized. The sweep is a linear pass without a priority queue
+ * and replaces the Dijkstra over the full graph, which makes large one-to-all searches like
+ * isochrones much faster.
+ * <p>
+ * The graph must be fully contracted, i.e. every node needs a distinct level. Creating an instance
+ * is linear in the number of nodes, like a single search. An instance can be reused for many
+ * searches, but it is not thread safe.
+ */
+public class PhastSearch {
+    private final Weighting weighting;
+    private final boolean reverse;
+    private final int[] levels;
+    // the nodes in descending level order
+    private final int[] sweepOrder;
+    private final EdgeExplorer upExplorer;
+    private final EdgeExplorer downExplorer;
+    private final double[] weights;
+    // the index of the closest source for every node
+    private final int[] sources;
+    private final MinHeapWithUpdate heap;
+    private double weightLimit = Double.MAX_VALUE;
+    private int visitedNodes;
+    private int reachedNodes;
+
+    public PhastSearch(CHGraph chGraph, boolean reverse) {
+        if (chGraph.getCHProfile().isEdgeBased())
+            throw new IllegalArgumentException("PhastSearch does not support edge-based CH");
+
+        Weighting chWeighting = chGraph.getCHProfile().getWeighting();
+        this.weighting = new PreparationWeighting(chWeighting);
+        this.reverse = reverse;
+        FlagEncoder encoder = chWeighting.getFlagEncoder();
+        upExplorer = chGraph.createEdgeExplorer(reverse ? DefaultEdgeFilter.inEdges(encoder) : DefaultEdgeFilter.outEdges(encoder));
+        downExplorer = chGraph.createEdgeExplorer(reverse ? DefaultEdgeFilter.outEdges(encoder) : DefaultEdgeFilter.inEdges(encoder));
+
+        int nodes = chGraph.getNodes();
+        levels = new int[nodes];
+        sweepOrder = new int[nodes];
+        Arrays.fill(sweepOrder, -1);
+        for (int node = 0; node < nodes; node++) {
+            int level = chGraph.getLevel(node);
+            // a fully contracted graph has the levels 0 to nodes - 1, so no sorting is necessary
+            if (level < 0 || level >= nodes || sweepOrder[nodes - 1 - level] >= 0)
+                throw new IllegalArgumentException("PhastSearch requires a fully contracted graph, but node "
+                        + node + " has the level " + level);
+            levels[node] = level;
+            sweepOrder[nodes - 1 - level] = node;
+        }
+        weights = new double[nodes];
+        sources = new int[nodes];
+        heap = new MinHeapWithUpdate(nodes);
+    }
+
+    /**
+     * Nodes with a larger weight than the specified limit are not reached. This makes the upward
+     * search cheaper, the sweep still has to look at all nodes.
+     */
+    public PhastSearch setWeightLimit(double weightLimit) {
+        this.weightLimit = weightLimit;
+        return this;
+    }
+
+    public void search(int node) {
+        search(new int[]{node}, new double[]{0});
+    }
+
+    /**
+     * Starts the search from all the specified nodes with the specified initial weights, e.g. for
+     * the two nodes of the edge a location was snapped to or for many depots. Every node is labeled
+     * with the index of its closest source, see {@link #getSource(int)}.
+     */
+    public void search(int[] nodes, double[] initialWeights) {
+        if (nodes.length != initialWeights.length)
+            throw new IllegalArgumentException("nodes and initialWeights must have the same length");
+
+        Arrays.fill(weights, Double.POSITIVE_INFINITY);
+        heap.clear();
+        visitedNodes = 0;
+        reachedNodes = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if (initialWeights[i] > weightLimit || initialWeights[i] >= weights[nodes[i]])
+                continue;
+            weights[nodes[i]] = initialWeights[i];
+            sources[nodes[i]] = i;
+            if (heap.contains(nodes[i]))
+                heap.update(nodes[i], initialWeights[i]);
+            else
+                heap.push(nodes[i], initialWeights[i]);
+        }
+
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            visitedNodes++;
+            double weight = weights[node];
+            EdgeIterator iter = upExplorer.setBaseNode(node);
+            while (iter.next()) {
+                int adjNode = iter.getAdjNode();
+                if (levels[adjNode] <= levels[node])
+                    continue;
+
+                double adjWeight = weight + weighting.calcWeight(iter, reverse, EdgeIterator.NO_EDGE);
+                if (adjWeight > weightLimit || adjWeight >= weights[adjNode])
+                    continue;
+                weights[adjNode] = adjWeight;
+                sources[adjNode] = sources[node];
+                if (heap.contains(adjNode))
+                    heap.update(adjNode, adjWeight);
+                else
+                    heap.push(adjNode, adjWeight);
+            }
+        }
+
+        for (int node : sweepOrder) {
+            double best = weights[node];
+            int bestSource = sources[node];
+            EdgeIterator iter = downExplorer.setBaseNode(node);
+            while (iter.next()) {
+                int adjNode = iter.getAdjNode();
+                if (levels[adjNode] <= levels[node] || weights[adjNode] > weightLimit)
+                    continue;
+
+                double weight = weights[adjNode] + weighting.calcWeight(iter, !reverse, EdgeIterator.NO_EDGE);
+                if (weight < best) {
+                    best = weight;
+                    bestSource = sources[adjNode];
+                }
+            }
+            if (best <= weightLimit) {
+                weights[node] = best;
+                reachedNodes++;
+            } else {
+                weights[node] = Double.POSITIVE_INFINITY;
+            }
+            sources[node] = bestSource;
+        }
+        visitedNodes += sweepOrder.length;
+    }
+
+    /**
+     * @return the weight of the specified node or infinity if it was not reached
+     */
+    public double getWeight(int node) {
+        return weights[node];
+    }
+
+    /**
+     * @return the index of the source in the array passed to {@link #search(int[], double[])} from
+     * which the specified node was reached. Only valid if the node was reached.
+     */
+    public int getSource(int node) {
+        return sources[node];
+    }
+
+    /**
+     * @return the weights of all nodes. The array is reused by the next search.
+     */
+    public double[] getWeights() {
+        return weights;
+    }
+
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    /**
+     * @return the number of nodes within the weight limit. Unlike {@link #getVisitedNodes()} this
+     * does not include the sweep over all nodes, so it grows with the limit like for a Dijkstra.
+     */
+    public int getReachedNodes() {
+        return reachedNodes;
+    }
+}
@@ -34,6 +34,7 @@ import java.util.Random;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
 import static com.graphhopper.util.Helper.nf;
+import static com.graphhopper.util.Parameters.Algorithms.ALT_ROUTE;
 import static com.graphhopper.util.Parameters.Algorithms.ASTAR_BI;
 import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
 
@@ -143,13 +144,13 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
     @Override
     public RoutingAlgorithm createAlgo(Graph graph, AlgorithmOptions opts) {
-        AbstractBidirAlgo algo = doCreateAlgo(graph, opts);
+        AbstractRoutingAlgorithm algo = doCreateAlgo(graph, opts);
         algo.setEdgeFilter(new LevelEdgeFilter(prepareGraph));
         algo.setMaxVisitedNodes(opts.getMaxVisitedNodes());
         return algo;
     }
 
-    private AbstractBidirAlgo doCreateAlgo(Graph graph, AlgorithmOptions opts) {
+    private AbstractRoutingAlgorithm doCreateAlgo(Graph graph, AlgorithmOptions opts) {
         if (chProfile.isEdgeBased()) {
             return createAlgoEdgeBased(graph, opts);
         } else {
@@ -168,16 +169,24 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         }
     }
 
-    private AbstractBidirAlgo createAlgoNodeBased(Graph graph, AlgorithmOptions opts) {
+    private AbstractRoutingAlgorithm createAlgoNodeBased(Graph graph, AlgorithmOptions opts) {
         if (ASTAR_BI.equals(opts.getAlgorithm())) {
             return new AStarBidirectionCH(graph, prepareWeighting)
                     .setApproximation(RoutingAlgorithmFactorySimple.getApproximation(ASTAR_BI, opts, graph.getNodeAccess()));
         } else if (DIJKSTRA_BI.equals(opts.getAlgorithm())) {
-            if (opts.getHints().getBool("stall_on_demand", true)) {
+            if (opts.getHints().getBool(Parameters.Routing.PRIMITIVE_ARRAYS, false)) {
+                return new DijkstraBidirectionCHArray(graph, prepareWeighting, opts.getHints().getBool("stall_on_demand", true));
+            } else if (opts.getHints().getBool("stall_on_demand", true)) {
                 return new DijkstraBidirectionCH(graph, prepareWeighting);
             } else {
                 return new DijkstraBidirectionCHNoSOD(graph, prepareWeighting);
             }
+        } else if (ALT_ROUTE.equals(opts.getAlgorithm())) {
+            return new AlternativeRouteCH(graph, prepareWeighting)
+                    .setMaxPaths(opts.getHints().getInt(Parameters.Algorithms.AltRoute.MAX_PATHS, 2))
+                    .setMaxWeightFactor(opts.getHints().getDouble(Parameters.Algorithms.AltRoute.MAX_WEIGHT, 1.4))
+                    .setMaxShareFactor(opts.getHints().getDouble(Parameters.Algorithms.AltRoute.MAX_SHARE, 0.6))
+                    .setLocalOptimalityFactor(opts.getHints().getDouble(Parameters.Algorithms.AltRoute.LOCAL_OPTIMALITY, 0.25));
         } else {
             throw new IllegalArgumentException("Algorithm " + opts.getAlgorithm() + " not supported for node-based Contraction Hierarchies. Try with ch.disable=true");
         }
@@ -155,6 +155,15 @@ public class PrepareLandmarks extends AbstractAlgoPreparation {
             astarbi.setApproximation(new LMApproximator(qGraph, this.graph.getNodes(), lms, activeLM, lms.getFactor(), false).
                     setEpsilon(epsilon));
             return algo;
+        } else if (algo instanceof AStarBidirectionArray) {
+            if (!lms.isInitialized())
+                throw new IllegalStateException("Initialize landmark storage before creating algorithms");
+
+            double epsilon = opts.getHints().getDouble(Parameters.Algorithms.AStarBi.EPSILON, 1);
+            AStarBidirectionArray astarbi = (AStarBidirectionArray) algo;
+            astarbi.setApproximation(new LMApproximator(qGraph, this.graph.getNodes(), lms, activeLM, lms.getFactor(), false).
+                    setEpsilon(epsilon));
+            return algo;
         } else if (algo instanceof AlternativeRoute) {
             if (!lms.isInitialized())
                 throw new IllegalStateException("Initialize landmark storage before creating algorithms");
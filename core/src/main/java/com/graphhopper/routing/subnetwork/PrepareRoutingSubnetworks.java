@@ -32,6 +32,10 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -39,6 +43,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  * also small subnetworks which could be bugs in OSM data or indicate otherwise disconnected areas
  * e.g. via barriers or one way problems - see #86.
  * <p>
+ * The subnetworks of every encoder are searched independently and without modifying the graph, so
+ * this can be done in parallel, see setThreads. Afterwards the edges are made inaccessible in the
+ * order of the encoders.
  *
  * @author Peter Karich
  */
@@ -51,6 +58,7 @@ public class PrepareRoutingSubnetworks {
     private int minNetworkSize = 200;
     private int minOneWayNetworkSize = 0;
     private int subnetworks = -1;
+    private int threads = 1;
 
     public PrepareRoutingSubnetworks(GraphHopperStorage ghStorage, List<FlagEncoder> encoders) {
         this.ghStorage = ghStorage;
@@ -71,22 +79,31 @@ public class PrepareRoutingSubnetworks {
         return this;
     }
 
+    /**
+     * Specifies the number of encoders that are analyzed in parallel. Every thread needs two bit sets
+     * of the size of the graph. (default is 1)
+     */
+    public PrepareRoutingSubnetworks setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
     public void doWork() {
         if (minNetworkSize <= 0 && minOneWayNetworkSize <= 0)
             return;
 
-        logger.info("start finding subnetworks (min:" + minNetworkSize + ", min one way:" + minOneWayNetworkSize + ") " + Helper.getMemInfo());
+        logger.info("start finding subnetworks (min:" + minNetworkSize + ", min one way:" + minOneWayNetworkSize
+                + ", threads:" + threads + ") " + Helper.getMemInfo());
+        List<EncoderResult> results = analyzeEncoders();
+
         int unvisitedDeadEnds = 0;
-        for (FlagEncoder encoder : encoders) {
-            // mark edges for one vehicle as inaccessible
-            DefaultEdgeFilter filter = DefaultEdgeFilter.allEdges(encoder);
-            if (minOneWayNetworkSize > 0)
-                unvisitedDeadEnds += removeDeadEndUnvisitedNetworks(filter);
-
-            List<IntArrayList> components = findSubnetworks(filter);
-            keepLargeNetworks(filter, components);
-            subnetworks = Math.max(components.size(), subnetworks);
-            logger.info(components.size() + " subnetworks found for " + encoder + ", " + Helper.getMemInfo());
+        for (int i = 0; i < encoders.size(); i++) {
+            EncoderResult result = results.get(i);
+            removeEdges(accessEncList.get(i), result.removedEdges);
+            unvisitedDeadEnds += result.unvisitedDeadEnds;
+            subnetworks = Math.max(result.subnetworks, subnetworks);
         }
 
         markNodesRemovedIfUnreachable();
@@ -97,6 +114,58 @@ public class PrepareRoutingSubnetworks {
         ghStorage.optimize();
     }
 
+    /**
+     * @return the results in the order of the encoders
+     */
+    private List<EncoderResult> analyzeEncoders() {
+        List<EncoderResult> results = new ArrayList<>(encoders.size());
+        if (threads == 1 || encoders.size() == 1) {
+            for (FlagEncoder encoder : encoders) {
+                results.add(analyze(encoder));
+            }
+            return results;
+        }
+
+        ExecutorService threadPool = Executors.newFixedThreadPool(Math.min(threads, encoders.size()));
+        try {
+            List<Future<EncoderResult>> futures = new ArrayList<>(encoders.size());
+            for (final FlagEncoder encoder : encoders) {
+                futures.add(threadPool.submit(new Callable<EncoderResult>() {
+                    @Override
+                    public EncoderResult call() {
+                        return analyze(encoder);
+                    }
+                }));
+            }
+            for (Future<EncoderResult> future : futures) {
+                results.add(future.get());
+            }
+        } catch (Exception ex) {
+            throw new RuntimeException("Cannot find subnetworks", ex);
+        } finally {
+            threadPool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Determines the edges that have to be made inaccessible for the specified encoder. The graph is
+     * only read.
+     */
+    private EncoderResult analyze(FlagEncoder encoder) {
+        DefaultEdgeFilter filter = DefaultEdgeFilter.allEdges(encoder);
+        GHBitSet removedEdges = new GHBitSetImpl(ghStorage.getAllEdges().length());
+        EncoderResult result = new EncoderResult(removedEdges);
+        if (minOneWayNetworkSize > 0)
+            result.unvisitedDeadEnds = findDeadEndUnvisitedNetworks(filter, removedEdges);
+
+        List<IntArrayList> components = findSubnetworks(filter, removedEdges);
+        findSmallNetworks(filter, components, removedEdges);
+        result.subnetworks = components.size();
+        logger.info(components.size() + " subnetworks found for " + encoder + ", " + Helper.getMemInfo());
+        return result;
+    }
+
     public int getMaxSubnetworks() {
         return subnetworks;
     }
@@ -105,6 +174,14 @@ public class PrepareRoutingSubnetworks {
      * This method finds the double linked components according to the specified filter.
      */
     List<IntArrayList> findSubnetworks(DefaultEdgeFilter filter) {
+        return findSubnetworks(filter, new GHBitSetImpl());
+    }
+
+    /**
+     * This method finds the double linked components according to the specified filter and ignores
+     * the edges contained in removedEdges.
+     */
+    List<IntArrayList> findSubnetworks(DefaultEdgeFilter filter, final GHBitSet removedEdges) {
         final BooleanEncodedValue accessEnc = filter.getAccessEnc();
         final EdgeExplorer explorer = ghStorage.createEdgeExplorer(filter);
         int locs = ghStorage.getNodes();
@@ -126,9 +203,7 @@ public class PrepareRoutingSubnetworks {
 
                 @Override
                 protected final boolean goFurther(int nodeId) {
-                    if (tmpCounter > maxEdgesPerNode.get())
-                        maxEdgesPerNode.set(tmpCounter);
-
+                    updateMaxEdgesPerNode(tmpCounter);
                     tmpCounter = 0;
                     intList.add(nodeId);
                     return true;
@@ -136,7 +211,7 @@ public class PrepareRoutingSubnetworks {
 
                 @Override
                 protected final boolean checkAdjacent(EdgeIteratorState edge) {
-                    if (edge.get(accessEnc) || edge.getReverse(accessEnc)) {
+                    if ((edge.get(accessEnc) || edge.getReverse(accessEnc)) && !removedEdges.contains(edge.getEdge())) {
                         tmpCounter++;
                         return true;
                     }
@@ -149,17 +224,35 @@ public class PrepareRoutingSubnetworks {
         return list;
     }
 
+    private void updateMaxEdgesPerNode(int edges) {
+        int max = maxEdgesPerNode.get();
+        while (edges > max && !maxEdgesPerNode.compareAndSet(max, edges)) {
+            max = maxEdgesPerNode.get();
+        }
+    }
+
     /**
      * Deletes all but the largest subnetworks.
      */
     int keepLargeNetworks(DefaultEdgeFilter filter, List<IntArrayList> components) {
+        GHBitSet removedEdges = new GHBitSetImpl(ghStorage.getAllEdges().length());
+        int allRemoved = findSmallNetworks(filter, components, removedEdges);
+        removeEdges(filter.getAccessEnc(), removedEdges);
+        return allRemoved;
+    }
+
+    /**
+     * Adds the edges of all but the largest subnetworks to removedEdges.
+     *
+     * @return number of newly added edges
+     */
+    int findSmallNetworks(DefaultEdgeFilter filter, List<IntArrayList> components, GHBitSet removedEdges) {
         if (components.size() <= 1)
             return 0;
 
         int maxCount = -1;
         IntIndexedContainer oldComponent = null;
         int allRemoved = 0;
-        BooleanEncodedValue accessEnc = filter.getAccessEnc();
         EdgeExplorer explorer = ghStorage.createEdgeExplorer(filter);
         for (IntArrayList component : components) {
             if (maxCount < 0) {
@@ -168,18 +261,18 @@ public class PrepareRoutingSubnetworks {
                 continue;
             }
 
-            int removedEdges;
+            int removedEdgeCount;
             if (maxCount < component.size()) {
                 // new biggest area found. remove old
-                removedEdges = removeEdges(explorer, accessEnc, oldComponent, minNetworkSize);
+                removedEdgeCount = markEdges(explorer, oldComponent, minNetworkSize, removedEdges);
 
                 maxCount = component.size();
                 oldComponent = component;
             } else {
-                removedEdges = removeEdges(explorer, accessEnc, component, minNetworkSize);
+                removedEdgeCount = markEdges(explorer, component, minNetworkSize, removedEdges);
             }
 
-            allRemoved += removedEdges;
+            allRemoved += removedEdgeCount;
         }
 
         if (allRemoved > ghStorage.getAllEdges().length() / 2)
@@ -196,6 +289,19 @@ public class PrepareRoutingSubnetworks {
      * @return number of removed edges
      */
     int removeDeadEndUnvisitedNetworks(final DefaultEdgeFilter bothFilter) {
+        GHBitSet removedEdges = new GHBitSetImpl(ghStorage.getAllEdges().length());
+        int removed = findDeadEndUnvisitedNetworks(bothFilter, removedEdges);
+        removeEdges(bothFilter.getAccessEnc(), removedEdges);
+        return removed;
+    }
+
+    /**
+     * Adds the edges of the networks that will be never be visited by this filter to removedEdges,
+     * see removeDeadEndUnvisitedNetworks.
+     *
+     * @return number of newly added edges
+     */
+    int findDeadEndUnvisitedNetworks(final DefaultEdgeFilter bothFilter, GHBitSet removedEdges) {
         StopWatch sw = new StopWatch(bothFilter.getAccessEnc() + " findComponents").start();
         final EdgeFilter outFilter = DefaultEdgeFilter.outEdges(bothFilter.getAccessEnc());
 
@@ -204,38 +310,47 @@ public class PrepareRoutingSubnetworks {
         List<IntArrayList> components = tarjan.findComponents();
         logger.info(sw.stop() + ", size:" + components.size());
 
-        return removeEdges(bothFilter, components, minOneWayNetworkSize);
-    }
-
-    /**
-     * This method removes the access to edges available from the nodes contained in the components.
-     * But only if a components' size is smaller then the specified min value.
-     *
-     * @return number of removed edges
-     */
-    int removeEdges(final DefaultEdgeFilter bothFilter, List<IntArrayList> components, int min) {
         // remove edges determined from nodes but only if less than minimum size
         EdgeExplorer explorer = ghStorage.createEdgeExplorer(bothFilter);
-        int removedEdges = 0;
+        int removed = 0;
         for (IntArrayList component : components) {
-            removedEdges += removeEdges(explorer, bothFilter.getAccessEnc(), component, min);
+            removed += markEdges(explorer, component, minOneWayNetworkSize, removedEdges);
         }
-        return removedEdges;
+        return removed;
     }
 
-    int removeEdges(EdgeExplorer explorer, BooleanEncodedValue accessEnc, IntIndexedContainer component, int min) {
-        int removedEdges = 0;
+    /**
+     * Adds the edges available from the nodes contained in the component to removedEdges. But only
+     * if the component's size is smaller than the specified min value.
+     *
+     * @return number of newly added edges
+     */
+    int markEdges(EdgeExplorer explorer, IntIndexedContainer component, int min, GHBitSet removedEdges) {
+        int removed = 0;
         if (component.size() < min) {
             for (int i = 0; i < component.size(); i++) {
                 EdgeIterator edge = explorer.setBaseNode(component.get(i));
                 while (edge.next()) {
-                    edge.set(accessEnc, false).setReverse(accessEnc, false);
-                    removedEdges++;
+                    if (removedEdges.contains(edge.getEdge()))
+                        continue;
+
+                    removedEdges.add(edge.getEdge());
+                    removed++;
                 }
             }
         }
 
-        return removedEdges;
+        return removed;
+    }
+
+    /**
+     * Makes the specified edges inaccessible in both directions.
+     */
+    void removeEdges(BooleanEncodedValue accessEnc, GHBitSet removedEdges) {
+        for (int edgeId = removedEdges.next(0); edgeId >= 0; edgeId = removedEdges.next(edgeId + 1)) {
+            EdgeIteratorState edge = ghStorage.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+            edge.set(accessEnc, false).setReverse(accessEnc, false);
+        }
     }
 
     /**
@@ -270,4 +385,14 @@ public class PrepareRoutingSubnetworks {
 
         return true;
     }
+
+    private static class EncoderResult {
+        final GHBitSet removedEdges;
+        int unvisitedDeadEnds;
+        int subnetworks;
+
+        EncoderResult(GHBitSet removedEdges) {
+            this.removedEdges = removedEdges;
+        }
+    }
 }
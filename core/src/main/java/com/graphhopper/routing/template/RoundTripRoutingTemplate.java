@@ -17,6 +17,7 @@
  */
 package com.graphhopper.routing.template;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.PathWrapper;
@@ -28,8 +29,10 @@ import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.tour.MultiPointTour;
 import com.graphhopper.routing.util.tour.TourStrategy;
 import com.graphhopper.routing.weighting.AvoidEdgesWeighting;
+import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.Parameters;
 import com.graphhopper.util.Parameters.Algorithms;
@@ -43,10 +46,20 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Implementation of calculating a route with one or more round trip (route with identical start and
  * end).
+ * <p>
+ * If more than one candidate is requested via {@link RoundTrip#CANDIDATES} the tour points are
+ * generated with different seeds and the candidates are routed on the same QueryGraph. The
+ * candidate that uses the fewest roads twice is returned. The candidates are only routed in
+ * parallel if an executor and a {@link CandidateWeightingFactory} are set, as weightings like the
+ * BlockAreaWeighting remember results of a search. The edge filter is shared by the threads.
  *
  * @author Peter Karich
  */
@@ -57,8 +70,12 @@ public class RoundTripRoutingTemplate extends AbstractRoutingTemplate implements
     private final LocationIndex locationIndex;
     private final EncodingManager encodingManager;
     private PathWrapper altResponse;
+    // the query results of every candidate tour, starting and ending with the start point
+    private List<List<QueryResult>> candidates;
     // result from route
     private List<Path> pathList;
+    private ExecutorService executor;
+    private CandidateWeightingFactory weightingFactory;
 
     public RoundTripRoutingTemplate(GHRequest request, GHResponse ghRsp, LocationIndex locationIndex, EncodingManager encodingManager, int maxRetries) {
         this.ghRequest = request;
@@ -68,6 +85,19 @@ public class RoundTripRoutingTemplate extends AbstractRoutingTemplate implements
         this.maxRetries = maxRetries;
     }
 
+    /**
+     * Sets the executor that calculates the candidates. It is not shut down by this class.
+     */
+    public RoundTripRoutingTemplate setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public RoundTripRoutingTemplate setWeightingFactory(CandidateWeightingFactory weightingFactory) {
+        this.weightingFactory = weightingFactory;
+        return this;
+    }
+
     @Override
     public List<QueryResult> lookup(List<GHPoint> points, FlagEncoder encoder) {
         if (points.size() != 1 || ghRequest.getPoints().size() != 1)
@@ -76,10 +106,9 @@ public class RoundTripRoutingTemplate extends AbstractRoutingTemplate implements
         final long seed = ghRequest.getHints().getLong(RoundTrip.SEED, 0L);
         double initialHeading = ghRequest.getFavoredHeading(0);
         final int roundTripPointCount = Math.min(20, ghRequest.getHints().getInt(RoundTrip.POINTS, 2 + (int) (distanceInMeter / 50000)));
+        final int candidateCount = Math.max(1, Math.min(10, ghRequest.getHints().getInt(RoundTrip.CANDIDATES, 1)));
         final GHPoint start = points.get(0);
 
-        TourStrategy strategy = new MultiPointTour(new Random(seed), distanceInMeter, roundTripPointCount, initialHeading);
-        queryResults = new ArrayList<>(2 + strategy.getNumberOfGeneratedPoints());
         // ORS-GH MOD START
         // ORS TODO: provide a reason for this change
         // EdgeFilter edgeFilter = DefaultEdgeFilter.allEdges(encoder);
@@ -88,32 +117,110 @@ public class RoundTripRoutingTemplate extends AbstractRoutingTemplate implements
         if (!startQR.isValid())
             throw new PointNotFoundException("Cannot find point 0: " + start, 0);
 
-        queryResults.add(startQR);
-
-        GHPoint last = start;
-        for (int i = 0; i < strategy.getNumberOfGeneratedPoints(); i++) {
-            double heading = strategy.getHeadingForIteration(i);
-            QueryResult result = generateValidPoint(last, strategy.getDistanceForIteration(i), heading, edgeFilter);
-            if (result == null) {
-                ghResponse.addError(new IllegalStateException("Could not find a valid point after " + maxRetries + " tries, for the point:" + last));
-                return Collections.emptyList();
+        candidates = new ArrayList<>(candidateCount);
+        GHPoint failedPoint = null;
+        for (int candidate = 0; candidate < candidateCount; candidate++) {
+            TourStrategy strategy = new MultiPointTour(new Random(seed + candidate), distanceInMeter, roundTripPointCount, initialHeading);
+            List<QueryResult> candidateResults = new ArrayList<>(2 + strategy.getNumberOfGeneratedPoints());
+            candidateResults.add(startQR);
+            GHPoint last = start;
+            for (int i = 0; i < strategy.getNumberOfGeneratedPoints(); i++) {
+                double heading = strategy.getHeadingForIteration(i);
+                QueryResult result = generateValidPoint(last, strategy.getDistanceForIteration(i), heading, edgeFilter);
+                if (result == null) {
+                    failedPoint = last;
+                    candidateResults = null;
+                    break;
+                }
+                last = result.getSnappedPoint();
+                candidateResults.add(result);
             }
-            last = result.getSnappedPoint();
-            queryResults.add(result);
+            if (candidateResults != null) {
+                candidateResults.add(startQR);
+                candidates.add(candidateResults);
+            }
+        }
+        if (candidates.isEmpty()) {
+            ghResponse.addError(new IllegalStateException("Could not find a valid point after " + maxRetries + " tries, for the point:" + failedPoint));
+            return Collections.emptyList();
         }
 
-        queryResults.add(startQR);
+        // all candidates are routed on the same QueryGraph, so it needs all their points
+        queryResults = new ArrayList<>(candidates.get(0));
+        for (int candidate = 1; candidate < candidates.size(); candidate++) {
+            List<QueryResult> candidateResults = candidates.get(candidate);
+            queryResults.addAll(candidateResults.subList(1, candidateResults.size() - 1));
+        }
         return queryResults;
     }
 
     void setQueryResults(List<QueryResult> queryResults) {
         this.queryResults = queryResults;
+        this.candidates = Collections.singletonList(queryResults);
     }
 
     @Override
-    public List<Path> calcPaths(QueryGraph queryGraph, RoutingAlgorithmFactory algoFactory, AlgorithmOptions algoOpts) {
-        pathList = new ArrayList<>(queryResults.size() - 1);
+    public List<Path> calcPaths(final QueryGraph queryGraph, final RoutingAlgorithmFactory algoFactory, final AlgorithmOptions algoOpts) {
+        List<Candidate> results = new ArrayList<>(candidates.size());
+        if (candidates.size() == 1 || executor == null || weightingFactory == null) {
+            for (List<QueryResult> candidateResults : candidates) {
+                results.add(calcCandidate(candidateResults, queryGraph, algoFactory, algoOpts));
+            }
+        } else {
+            List<Future<Candidate>> futures = new ArrayList<>(candidates.size() - 1);
+            for (final List<QueryResult> candidateResults : candidates.subList(1, candidates.size())) {
+                // every thread needs its own weighting
+                final AlgorithmOptions candidateOpts = AlgorithmOptions.start(algoOpts).
+                        weighting(weightingFactory.createWeighting()).build();
+                futures.add(executor.submit(new Callable<Candidate>() {
+                    @Override
+                    public Candidate call() {
+                        return calcCandidate(candidateResults, queryGraph, algoFactory, candidateOpts);
+                    }
+                }));
+            }
+            try {
+                // the first candidate is calculated by this thread
+                results.add(calcCandidate(candidates.get(0), queryGraph, algoFactory, algoOpts));
+                for (Future<Candidate> future : futures) {
+                    results.add(future.get());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                throw new RuntimeException(ex.getCause());
+            } finally {
+                // stops the remaining candidates if one failed
+                for (Future<Candidate> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        Candidate best = results.get(0);
+        long visitedNodesSum = 0L;
+        for (Candidate candidate : results) {
+            visitedNodesSum += candidate.visitedNodes;
+            if (candidate.isBetterThan(best))
+                best = candidate;
+        }
+        queryResults = best.queryResults;
+        pathList = best.paths;
+
+        ghResponse.getHints().put("visited_nodes.sum", visitedNodesSum);
+        ghResponse.getHints().put("visited_nodes.average", (float) visitedNodesSum / (results.size() * (queryResults.size() - 1)));
+        if (results.size() > 1)
+            ghResponse.getHints().put("round_trip.overlap", (float) best.overlapDistance);
+
+        return pathList;
+    }
 
+    private Candidate calcCandidate(List<QueryResult> candidateResults, QueryGraph queryGraph,
+                                    RoutingAlgorithmFactory algoFactory, AlgorithmOptions algoOpts) {
+        Candidate candidate = new Candidate(candidateResults);
         AvoidEdgesWeighting avoidPathWeighting = new AvoidEdgesWeighting(algoOpts.getWeighting());
         avoidPathWeighting.setEdgePenaltyFactor(5);
         algoOpts = AlgorithmOptions.start(algoOpts).
@@ -121,31 +228,27 @@ public class RoundTripRoutingTemplate extends AbstractRoutingTemplate implements
                 weighting(avoidPathWeighting).build();
         algoOpts.getHints().put(Algorithms.AStarBi.EPSILON, 2);
 
-        long visitedNodesSum = 0L;
-        QueryResult start = queryResults.get(0);
-        for (int qrIndex = 1; qrIndex < queryResults.size(); qrIndex++) {
+        QueryResult start = candidateResults.get(0);
+        for (int qrIndex = 1; qrIndex < candidateResults.size(); qrIndex++) {
             RoutingAlgorithm algo = algoFactory.createAlgo(queryGraph, algoOpts);
             // instead getClosestNode (which might be a virtual one and introducing unnecessary tails of the route)
             // use next tower node -> getBaseNode or getAdjNode
             // Later: remove potential route tail
-            QueryResult startQR = queryResults.get(qrIndex - 1);
+            QueryResult startQR = candidateResults.get(qrIndex - 1);
             int startNode = (startQR == start) ? startQR.getClosestNode() : startQR.getClosestEdge().getBaseNode();
-            QueryResult endQR = queryResults.get(qrIndex);
+            QueryResult endQR = candidateResults.get(qrIndex);
             int endNode = (endQR == start) ? endQR.getClosestNode() : endQR.getClosestEdge().getBaseNode();
 
             Path path = algo.calcPath(startNode, endNode);
-            visitedNodesSum += algo.getVisitedNodes();
+            candidate.visitedNodes += algo.getVisitedNodes();
 
-            pathList.add(path);
+            candidate.paths.add(path);
 
             // it is important to avoid previously visited nodes for future paths
             avoidPathWeighting.addEdges(path.calcEdges());
         }
-
-        ghResponse.getHints().put("visited_nodes.sum", visitedNodesSum);
-        ghResponse.getHints().put("visited_nodes.average", (float) visitedNodesSum / (queryResults.size() - 1));
-
-        return pathList;
+        candidate.calcOverlap();
+        return candidate;
     }
 
     public void setPaths(List<Path> pathList) {
@@ -184,4 +287,45 @@ public class RoundTripRoutingTemplate extends AbstractRoutingTemplate implements
         // with potentially retrying, including generating new route points, for now disabled
         return 1;
     }
+
+    /**
+     * Creates a new weighting for a candidate that is calculated in another thread. It has to be
+     * equal to the weighting of the AlgorithmOptions passed to calcPaths.
+     */
+    public interface CandidateWeightingFactory {
+        Weighting createWeighting();
+    }
+
+    private static class Candidate {
+        final List<QueryResult> queryResults;
+        final List<Path> paths;
+        long visitedNodes;
+        boolean found = true;
+        double distance;
+        // the distance of the roads that are used more than once
+        double overlapDistance;
+
+        Candidate(List<QueryResult> queryResults) {
+            this.queryResults = queryResults;
+            this.paths = new ArrayList<>(queryResults.size() - 1);
+        }
+
+        void calcOverlap() {
+            IntHashSet edges = new IntHashSet();
+            for (Path path : paths) {
+                found &= path.isFound();
+                distance += path.getDistance();
+                for (EdgeIteratorState edge : path.calcEdges()) {
+                    if (!edges.add(edge.getEdge()))
+                        overlapDistance += edge.getDistance();
+                }
+            }
+        }
+
+        boolean isBetterThan(Candidate other) {
+            if (found != other.found)
+                return found;
+            return overlapDistance / Math.max(1, distance) < other.overlapDistance / Math.max(1, other.distance);
+        }
+    }
 }
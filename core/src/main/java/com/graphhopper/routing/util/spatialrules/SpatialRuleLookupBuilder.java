@@ -2,6 +2,7 @@ package com.graphhopper.routing.util.spatialrules;
 
 import com.graphhopper.json.geo.JsonFeature;
 import com.graphhopper.json.geo.JsonFeatureCollection;
+import com.graphhopper.storage.Directory;
 import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.Polygon;
 import org.locationtech.jts.geom.Geometry;
@@ -34,11 +35,13 @@ public class SpatialRuleLookupBuilder {
      * @param spatialRuleFactory    a factory which is called with all the (id, geometry) pairs.
      *                              It should provide a SpatialRule for each id it knows about,
      *                              and SpatialRule.EMPTY otherwise.
+     * @param resolution            the minimum cell size of the {@link SpatialRuleLookupQuadTree} in degrees
      * @param maxBBox               limit the maximum BBox of the SpatialRuleLookup to the given BBox
+     * @param dir                   the directory to store and reuse the lookup, can be null
      * @return the fully constructed SpatialRuleLookup.
      */
     public static SpatialRuleLookup buildIndex(JsonFeatureCollection jsonFeatureCollection, String jsonIdField,
-                                               SpatialRuleFactory spatialRuleFactory, double resolution, BBox maxBBox) {
+                                               SpatialRuleFactory spatialRuleFactory, double resolution, BBox maxBBox, Directory dir) {
         BBox polygonBounds = BBox.createInverse(false);
         List<SpatialRule> spatialRules = new ArrayList<>();
 
@@ -74,13 +77,22 @@ public class SpatialRuleLookupBuilder {
         if (calculatedBounds == null)
             return SpatialRuleLookup.EMPTY;
 
-        SpatialRuleLookup spatialRuleLookup = new SpatialRuleLookupArray(spatialRules, resolution, true, calculatedBounds);
+        SpatialRuleLookup spatialRuleLookup = new SpatialRuleLookupQuadTree(spatialRules, resolution, calculatedBounds, dir);
 
         logger.info("Created the SpatialRuleLookup with the following rules: " + Arrays.toString(spatialRules.toArray()));
 
         return spatialRuleLookup;
     }
 
+    /**
+     * Wrapper Method for {@link SpatialRuleLookupBuilder#buildIndex(JsonFeatureCollection, String, SpatialRuleFactory, double, BBox, Directory)}
+     * that does not store the SpatialRuleLookup.
+     */
+    public static SpatialRuleLookup buildIndex(JsonFeatureCollection jsonFeatureCollection, String jsonIdField,
+                                               SpatialRuleFactory spatialRuleFactory, double resolution, BBox maxBBox) {
+        return buildIndex(jsonFeatureCollection, jsonIdField, spatialRuleFactory, resolution, maxBBox, null);
+    }
+
     /**
      * Wrapper Method for {@link SpatialRuleLookupBuilder#buildIndex(JsonFeatureCollection, String, SpatialRuleFactory, double, BBox)}.
      * This method simply passes a world-wide BBox, this won't limit the SpatialRuleLookup.
@@ -23,6 +23,9 @@ import com.graphhopper.routing.profiles.Country;
 import com.graphhopper.routing.util.parsers.TagParserFactory;
 import com.graphhopper.routing.util.parsers.SpatialRuleParser;
 import com.graphhopper.routing.util.parsers.TagParser;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.shapes.BBox;
 import org.slf4j.Logger;
@@ -38,19 +41,28 @@ public class SpatialRuleLookupHelper {
 
     private static final Logger logger = LoggerFactory.getLogger(SpatialRuleLookupHelper.class);
 
-    public static void buildAndInjectSpatialRuleIntoGH(GraphHopper graphHopper, BBox maxBounds, JsonFeatureCollection jsonFeatureCollection) {
-        final SpatialRuleLookup index = SpatialRuleLookupBuilder.buildIndex(jsonFeatureCollection, "ISO_A3", new CountriesSpatialRuleFactory(), .1, maxBounds);
-        logger.info("Set spatial rule lookup with " + index.size() + " rules");
+    /**
+     * The index is created when the SpatialRuleParser is created, i.e. after the location of the graph
+     * is known. It is stored in the graph folder, so it has to be created only once.
+     */
+    public static void buildAndInjectSpatialRuleIntoGH(final GraphHopper graphHopper, final BBox maxBounds, final JsonFeatureCollection jsonFeatureCollection) {
         final TagParserFactory oldTPF = graphHopper.getTagParserFactory();
         graphHopper.setTagParserFactory(new TagParserFactory() {
 
             @Override
             public TagParser create(String name, PMap configuration) {
                 if (name.equals(Country.KEY))
-                    return new SpatialRuleParser(index);
+                    return new SpatialRuleParser(buildIndex(graphHopper.getGraphHopperLocation(), maxBounds, jsonFeatureCollection));
 
                 return oldTPF.create(name, configuration);
             }
         });
     }
+
+    private static SpatialRuleLookup buildIndex(String location, BBox maxBounds, JsonFeatureCollection jsonFeatureCollection) {
+        Directory dir = location.isEmpty() ? null : new GHDirectory(location, DAType.RAM_STORE);
+        SpatialRuleLookup index = SpatialRuleLookupBuilder.buildIndex(jsonFeatureCollection, "ISO_A3", new CountriesSpatialRuleFactory(), .1, maxBounds, dir);
+        logger.info("Set spatial rule lookup with " + index.size() + " rules");
+        return index;
+    }
 }
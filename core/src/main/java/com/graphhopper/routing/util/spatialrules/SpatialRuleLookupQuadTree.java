@@ -0,0 +1,455 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util.spatialrules;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import com.graphhopper.util.shapes.Polygon;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * SpatialRuleLookup implementation using a quadtree. A cell is only split if a border of a polygon
+ * crosses it, so large areas inside or outside of all polygons are covered by a few big cells and
+ * the memory depends on the length of the borders and not on the covered area. A lookup descends
+ * at most maxDepth levels and only if the point is in a border cell of the finest resolution the
+ * polygons crossing this cell are checked. The result is always exact: if several rules contain a
+ * point the first one is returned.
+ * <p>
+ * The tree can be stored in a Directory, e.g. the graph folder, and is reused as long as the rules,
+ * their borders, the resolution and the bounds do not change.
+ */
+public class SpatialRuleLookupQuadTree implements SpatialRuleLookup {
+    private static final int EMPTY_RULE_INDEX = 0;
+    private static final int MAX_DEPTH = 24;
+    private static final int MAGIC_INT = Integer.MAX_VALUE / 77773;
+    private final BBox bounds;
+    private final double resolution;
+    private final int maxDepth;
+    private final List<SpatialRule> rules = new ArrayList<>();
+    private final Map<SpatialRule, Integer> ruleIndices = new HashMap<>();
+    private final List<Polygon> polygons = new ArrayList<>();
+    private final IntArrayList polygonRules = new IntArrayList();
+    // Every inner node has 4 entries, one for every quadrant. An entry is either the offset of the
+    // child node (always positive as the root node is at 0) or -leaf. A leaf smaller than the
+    // number of rules is the index of the rule, otherwise it references a border leaf.
+    private int[] tree;
+    // A border leaf contains the polygons that cross the cell in the order of the rules followed by
+    // the rule which is used if none of the polygons contains the point.
+    private int[] borderLeafOffsets;
+    private int[] borderLeafData;
+
+    /**
+     * @param spatialRules the spatial rules
+     * @param resolution   the minimum size of a cell in decimal degrees
+     * @param bounds       create the SpatialRuleLookup for the given BBox
+     */
+    public SpatialRuleLookupQuadTree(List<SpatialRule> spatialRules, double resolution, BBox bounds) {
+        this(spatialRules, resolution, bounds, null);
+    }
+
+    /**
+     * @param dir the tree is loaded from this directory if it was created for the same rules before,
+     *            otherwise it is created and stored there. Can be null.
+     */
+    public SpatialRuleLookupQuadTree(List<SpatialRule> spatialRules, double resolution, BBox bounds, Directory dir) {
+        if (!bounds.isValid())
+            throw new IllegalStateException("Bounds are not valid: " + bounds);
+        if (resolution < 1e-100)
+            throw new IllegalArgumentException("resolution cannot be that high " + resolution);
+
+        this.bounds = bounds;
+        this.resolution = resolution;
+        int depth = 1;
+        double maxExtent = Math.max(bounds.maxLat - bounds.minLat, bounds.maxLon - bounds.minLon);
+        while (depth < MAX_DEPTH && maxExtent / (1 << depth) > resolution) {
+            depth++;
+        }
+        this.maxDepth = depth;
+
+        addRule(SpatialRule.EMPTY);
+        for (SpatialRule spatialRule : spatialRules) {
+            if (spatialRule == null)
+                throw new IllegalArgumentException("rule cannot be null");
+            if (spatialRule.equals(SpatialRule.EMPTY))
+                throw new IllegalArgumentException("rule cannot be EMPTY");
+
+            int ruleIndex = addRule(spatialRule);
+            for (Polygon polygon : spatialRule.getBorders()) {
+                polygons.add(polygon);
+                polygonRules.add(ruleIndex);
+            }
+        }
+
+        if (dir == null || !loadExisting(dir)) {
+            new Builder().build();
+            if (dir != null)
+                store(dir);
+        }
+    }
+
+    private int addRule(SpatialRule rule) {
+        if (ruleIndices.containsKey(rule))
+            throw new IllegalArgumentException("Rule " + rule + " already contained at " + ruleIndices.get(rule));
+
+        int index = rules.size();
+        ruleIndices.put(rule, index);
+        rules.add(rule);
+        return index;
+    }
+
+    @Override
+    public SpatialRule lookupRule(double lat, double lon) {
+        if (lon < bounds.minLon || lon > bounds.maxLon || lat < bounds.minLat || lat > bounds.maxLat)
+            return SpatialRule.EMPTY;
+
+        double minLat = bounds.minLat, maxLat = bounds.maxLat;
+        double minLon = bounds.minLon, maxLon = bounds.maxLon;
+        int entry = 0;
+        do {
+            double midLat = (minLat + maxLat) / 2;
+            double midLon = (minLon + maxLon) / 2;
+            int quadrant = 0;
+            if (lat >= midLat) {
+                quadrant = 2;
+                minLat = midLat;
+            } else {
+                maxLat = midLat;
+            }
+            if (lon >= midLon) {
+                quadrant++;
+                minLon = midLon;
+            } else {
+                maxLon = midLon;
+            }
+            entry = tree[entry + quadrant];
+        } while (entry > 0);
+
+        int leaf = -entry;
+        if (leaf < rules.size())
+            return rules.get(leaf);
+
+        leaf -= rules.size();
+        int end = borderLeafOffsets[leaf + 1] - 1;
+        for (int i = borderLeafOffsets[leaf]; i < end; i++) {
+            int polygon = borderLeafData[i];
+            if (polygons.get(polygon).contains(lat, lon))
+                return rules.get(polygonRules.get(polygon));
+        }
+        return rules.get(borderLeafData[end]);
+    }
+
+    @Override
+    public SpatialRule lookupRule(GHPoint point) {
+        return lookupRule(point.getLat(), point.getLon());
+    }
+
+    @Override
+    public int getSpatialId(SpatialRule rule) {
+        if (rule == null)
+            throw new IllegalArgumentException("rule parameter cannot be null");
+
+        Integer integ = ruleIndices.get(rule);
+        if (integ == null)
+            throw new IllegalArgumentException("Cannot find rule " + rule);
+        return integ;
+    }
+
+    @Override
+    public SpatialRule getSpatialRule(int id) {
+        if (id < 0 || id >= rules.size())
+            throw new IllegalArgumentException("SpatialRuleId " + id + " is illegal");
+        return rules.get(id);
+    }
+
+    @Override
+    public int size() {
+        return rules.size();
+    }
+
+    @Override
+    public BBox getBounds() {
+        return bounds;
+    }
+
+    /**
+     * @return the number of inner nodes of the tree
+     */
+    int getNodes() {
+        return tree.length / 4;
+    }
+
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    private boolean loadExisting(Directory dir) {
+        DataAccess da = dir.find("spatial_rules");
+        boolean loaded = false;
+        try {
+            if (!da.loadExisting())
+                return false;
+            // the checksum is only 32 bits, so the counts and the rule ids are compared as well
+            byte[] ruleIds = getRuleIds();
+            if (da.getHeader(0) != MAGIC_INT || da.getHeader(4) != calcChecksum()
+                    || da.getHeader(5 * 4) != rules.size() || da.getHeader(6 * 4) != ruleIds.length
+                    || da.getHeader(7 * 4) != polygons.size() || da.getHeader(8 * 4) != getSegments())
+                return false;
+
+            int[] loadedTree = new int[da.getHeader(2 * 4)];
+            int[] loadedBorderLeafOffsets = new int[da.getHeader(3 * 4)];
+            int[] loadedBorderLeafData = new int[da.getHeader(4 * 4)];
+            long pointer = 0;
+            for (int[] array : Arrays.asList(loadedTree, loadedBorderLeafOffsets, loadedBorderLeafData)) {
+                for (int i = 0; i < array.length; i++, pointer += 4) {
+                    array[i] = da.getInt(pointer);
+                }
+            }
+            byte[] storedRuleIds = new byte[ruleIds.length];
+            da.getBytes(pointer, storedRuleIds, storedRuleIds.length);
+            if (!Arrays.equals(ruleIds, storedRuleIds))
+                return false;
+
+            tree = loadedTree;
+            borderLeafOffsets = loadedBorderLeafOffsets;
+            borderLeafData = loadedBorderLeafData;
+            loaded = true;
+            return true;
+        } finally {
+            // a closed DataAccess cannot be created again, so store needs a new one
+            if (loaded)
+                da.close();
+            else
+                dir.remove(da);
+        }
+    }
+
+    private void store(Directory dir) {
+        dir.create();
+        DataAccess da = dir.find("spatial_rules");
+        byte[] ruleIds = getRuleIds();
+        long pointer = 0;
+        da.create((long) (tree.length + borderLeafOffsets.length + borderLeafData.length) * 4 + ruleIds.length);
+        for (int[] array : Arrays.asList(tree, borderLeafOffsets, borderLeafData)) {
+            for (int i = 0; i < array.length; i++, pointer += 4) {
+                da.setInt(pointer, array[i]);
+            }
+        }
+        da.setBytes(pointer, ruleIds, ruleIds.length);
+        da.setHeader(0, MAGIC_INT);
+        da.setHeader(4, calcChecksum());
+        da.setHeader(2 * 4, tree.length);
+        da.setHeader(3 * 4, borderLeafOffsets.length);
+        da.setHeader(4 * 4, borderLeafData.length);
+        da.setHeader(5 * 4, rules.size());
+        da.setHeader(6 * 4, ruleIds.length);
+        da.setHeader(7 * 4, polygons.size());
+        da.setHeader(8 * 4, getSegments());
+        da.flush();
+        da.close();
+    }
+
+    /**
+     * @return the ids of all rules in their order, every id is terminated by a zero byte
+     */
+    private byte[] getRuleIds() {
+        StringBuilder sb = new StringBuilder();
+        for (SpatialRule rule : rules) {
+            sb.append(rule.getId()).append('\0');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private int getSegments() {
+        int segments = 0;
+        for (Polygon polygon : polygons) {
+            segments += polygon.size();
+        }
+        return segments;
+    }
+
+    private int calcChecksum() {
+        int hash = 31 * Double.hashCode(resolution) + bounds.hashCode();
+        for (SpatialRule rule : rules) {
+            hash = 31 * hash + rule.getId().hashCode();
+        }
+        for (int p = 0; p < polygons.size(); p++) {
+            Polygon polygon = polygons.get(p);
+            hash = 31 * hash + polygonRules.get(p);
+            for (int i = 0; i < polygon.size(); i++) {
+                hash = 31 * hash + Double.hashCode(polygon.getLat(i));
+                hash = 31 * hash + Double.hashCode(polygon.getLon(i));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Creates the tree. Every cell keeps the border segments that cross it, so the work per cell
+     * decreases with the cell size.
+     */
+    private class Builder {
+        private final IntArrayList treeList = new IntArrayList();
+        private final IntArrayList leafOffsets = new IntArrayList();
+        private final IntArrayList leafData = new IntArrayList();
+        private final Map<IntArrayList, Integer> borderLeafIndices = new HashMap<>();
+        private final boolean[] crossed = new boolean[polygons.size()];
+        private final int[] segmentPolygons;
+        private final double[] segmentCoordinates;
+
+        Builder() {
+            int segments = 0;
+            for (Polygon polygon : polygons) {
+                segments += polygon.size();
+            }
+            segmentPolygons = new int[segments];
+            segmentCoordinates = new double[segments * 4];
+            int segment = 0;
+            for (int p = 0; p < polygons.size(); p++) {
+                Polygon polygon = polygons.get(p);
+                // the same segments as used in Polygon.contains
+                for (int i = 0; i < polygon.size(); i++, segment++) {
+                    int next = (i + 1) % polygon.size();
+                    segmentPolygons[segment] = p;
+                    segmentCoordinates[segment * 4] = polygon.getLat(i);
+                    segmentCoordinates[segment * 4 + 1] = polygon.getLon(i);
+                    segmentCoordinates[segment * 4 + 2] = polygon.getLat(next);
+                    segmentCoordinates[segment * 4 + 3] = polygon.getLon(next);
+                }
+            }
+        }
+
+        void build() {
+            IntArrayList candidates = new IntArrayList(polygons.size());
+            for (int p = 0; p < polygons.size(); p++) {
+                candidates.add(p);
+            }
+            IntArrayList segments = new IntArrayList(segmentPolygons.length);
+            for (int s = 0; s < segmentPolygons.length; s++) {
+                segments.add(s);
+            }
+            treeList.add(0, 0, 0, 0);
+            fillNode(0, bounds.minLat, bounds.minLon, bounds.maxLat, bounds.maxLon, 1, candidates, EMPTY_RULE_INDEX, segments);
+
+            leafOffsets.add(leafData.size());
+            tree = treeList.toArray();
+            borderLeafOffsets = leafOffsets.toArray();
+            borderLeafData = leafData.toArray();
+        }
+
+        private void fillNode(int node, double minLat, double minLon, double maxLat, double maxLon, int depth,
+                              IntArrayList candidates, int fallbackRule, IntArrayList segments) {
+            double midLat = (minLat + maxLat) / 2;
+            double midLon = (minLon + maxLon) / 2;
+            treeList.set(node, createEntry(minLat, minLon, midLat, midLon, depth, candidates, fallbackRule, segments));
+            treeList.set(node + 1, createEntry(minLat, midLon, midLat, maxLon, depth, candidates, fallbackRule, segments));
+            treeList.set(node + 2, createEntry(midLat, minLon, maxLat, midLon, depth, candidates, fallbackRule, segments));
+            treeList.set(node + 3, createEntry(midLat, midLon, maxLat, maxLon, depth, candidates, fallbackRule, segments));
+        }
+
+        /**
+         * @param parentCandidates the polygons crossing the parent cell in the order of the rules
+         * @param fallbackRule     the rule used if none of the candidates contains a point
+         */
+        private int createEntry(double minLat, double minLon, double maxLat, double maxLon, int depth,
+                                IntArrayList parentCandidates, int fallbackRule, IntArrayList parentSegments) {
+            IntArrayList segments = new IntArrayList();
+            for (int i = 0; i < parentSegments.size(); i++) {
+                int segment = parentSegments.get(i);
+                if (intersects(segment, minLat, minLon, maxLat, maxLon)) {
+                    segments.add(segment);
+                    crossed[segmentPolygons[segment]] = true;
+                }
+            }
+
+            // a polygon that does not cross the cell contains either the whole cell or nothing of it
+            double centerLat = (minLat + maxLat) / 2;
+            double centerLon = (minLon + maxLon) / 2;
+            IntArrayList candidates = new IntArrayList();
+            for (int i = 0; i < parentCandidates.size(); i++) {
+                int polygon = parentCandidates.get(i);
+                if (crossed[polygon]) {
+                    candidates.add(polygon);
+                } else if (polygons.get(polygon).contains(centerLat, centerLon)) {
+                    fallbackRule = polygonRules.get(polygon);
+                    break;
+                }
+            }
+            for (int i = 0; i < segments.size(); i++) {
+                crossed[segmentPolygons[segments.get(i)]] = false;
+            }
+
+            if (candidates.isEmpty())
+                return -fallbackRule;
+
+            if (depth >= maxDepth)
+                return -(rules.size() + getBorderLeaf(candidates, fallbackRule));
+
+            // segments of polygons after a containing polygon are no longer necessary
+            int last = candidates.get(candidates.size() - 1);
+            int size = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                int segment = segments.get(i);
+                if (segmentPolygons[segment] <= last)
+                    segments.set(size++, segment);
+            }
+            segments.elementsCount = size;
+
+            int node = treeList.size();
+            treeList.add(0, 0, 0, 0);
+            fillNode(node, minLat, minLon, maxLat, maxLon, depth + 1, candidates, fallbackRule, segments);
+            return node;
+        }
+
+        private int getBorderLeaf(IntArrayList candidates, int fallbackRule) {
+            candidates.add(fallbackRule);
+            Integer index = borderLeafIndices.get(candidates);
+            if (index == null) {
+                index = leafOffsets.size();
+                borderLeafIndices.put(candidates, index);
+                leafOffsets.add(leafData.size());
+                leafData.addAll(candidates);
+            }
+            return index;
+        }
+
+        /**
+         * @return true if the segment touches the rectangle
+         */
+        private boolean intersects(int segment, double minLat, double minLon, double maxLat, double maxLon) {
+            double lat1 = segmentCoordinates[segment * 4], lon1 = segmentCoordinates[segment * 4 + 1];
+            double lat2 = segmentCoordinates[segment * 4 + 2], lon2 = segmentCoordinates[segment * 4 + 3];
+            if (Math.max(lat1, lat2) < minLat || Math.min(lat1, lat2) > maxLat
+                    || Math.max(lon1, lon2) < minLon || Math.min(lon1, lon2) > maxLon)
+                return false;
+
+            // the line crosses the rectangle if its corners are not all on the same side of it
+            double dLat = lat2 - lat1, dLon = lon2 - lon1;
+            double side1 = dLon * (minLat - lat1) - dLat * (minLon - lon1);
+            double side2 = dLon * (minLat - lat1) - dLat * (maxLon - lon1);
+            double side3 = dLon * (maxLat - lat1) - dLat * (minLon - lon1);
+            double side4 = dLon * (maxLat - lat1) - dLat * (maxLon - lon1);
+            return !(side1 > 0 && side2 > 0 && side3 > 0 && side4 > 0)
+                    && !(side1 < 0 && side2 < 0 && side3 < 0 && side4 < 0);
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package com.graphhopper.routing.weighting;
 
+import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.storage.GraphEdgeIdFinder;
 import com.graphhopper.util.EdgeIteratorState;
 
 /**
  * This weighting is a wrapper for every weighting to support block_area
+ * <p>
+ * The result of the blocked shapes is remembered for every adjacent node, so later edges with the
+ * same adjacent node only need a bit set lookup. Because of this an instance must only be used by
+ * one search at a time, while the BlockArea itself can be shared.
  */
 public class BlockAreaWeighting extends AbstractAdjustedWeighting {
 
     private GraphEdgeIdFinder.BlockArea blockArea;
+    private final GHBitSetImpl checkedNodes = new GHBitSetImpl();
+    private final GHBitSetImpl blockedNodes = new GHBitSetImpl();
 
     public BlockAreaWeighting(Weighting superWeighting, GraphEdgeIdFinder.BlockArea blockArea) {
         super(superWeighting);
@@ -22,12 +29,25 @@ public class BlockAreaWeighting extends AbstractAdjustedWeighting {
 
     @Override
     public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId, long edgeEnterTime) {
-        if (blockArea.contains(edgeState))
+        if (blockArea.containsEdge(edgeState.getEdge()) || isBlocked(edgeState.getAdjNode()))
             return Double.POSITIVE_INFINITY;
 
         return superWeighting.calcWeight(edgeState, reverse, prevOrNextEdgeId, edgeEnterTime);
     }
 
+    private boolean isBlocked(int node) {
+        if (!blockArea.hasShapes())
+            return false;
+        if (checkedNodes.contains(node))
+            return blockedNodes.contains(node);
+
+        boolean blocked = blockArea.containsNode(node);
+        checkedNodes.add(node);
+        if (blocked)
+            blockedNodes.add(node);
+        return blocked;
+    }
+
     @Override
     public String getName() {
         return "block_area";
@@ -0,0 +1,171 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.profiles.BooleanEncodedValue;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.Storable;
+import com.graphhopper.util.BitUtil;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Stores the weight and the time of every edge in both directions as calculated by the specified
+ * Weighting, see PrecomputedWeighting. The weights are stored as double, so they are identical to
+ * the calculated ones. A time of -1 marks a direction without access.
+ */
+public class EdgeWeightStorage implements Storable<EdgeWeightStorage> {
+    // forward weight, backward weight (two ints each), forward millis, backward millis
+    private static final int ENTRY_BYTES = 24;
+    private static final int MILLIS_OFFSET = 16;
+    private final Weighting weighting;
+    private final DataAccess da;
+    private int edges;
+
+    public EdgeWeightStorage(Directory dir, Weighting weighting) {
+        if (weighting.isTimeDependent())
+            throw new IllegalArgumentException("Cannot store weights of the time dependent weighting " + weighting);
+
+        this.weighting = weighting;
+        this.da = dir.find("edge_weights_" + AbstractWeighting.weightingToFileName(weighting));
+    }
+
+    public Weighting getWeighting() {
+        return weighting;
+    }
+
+    /**
+     * Calculates the weights and times of all edges of the specified graph.
+     */
+    public EdgeWeightStorage calculate(Graph graph) {
+        edges = graph.getAllEdges().length();
+        create((long) edges * ENTRY_BYTES);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            calculate(iter);
+        }
+        da.setHeader(0, edges);
+        return this;
+    }
+
+    /**
+     * Calculates the weights and times of the specified edge again, e.g. after its speed or access
+     * was changed. The edge has to be in the direction as stored in the graph.
+     */
+    public EdgeWeightStorage calculate(EdgeIteratorState edge) {
+        if (edge.getEdge() >= edges)
+            throw new IllegalArgumentException("Edge " + edge.getEdge() + " is not stored, edges: " + edges);
+
+        long pointer = (long) edge.getEdge() * ENTRY_BYTES;
+        // loop edges are calculated by the Weighting itself
+        if (edge.getBaseNode() == edge.getAdjNode()) {
+            setEntry(pointer, Double.NaN, Double.NaN, -1, -1);
+            return this;
+        }
+
+        BooleanEncodedValue accessEnc = weighting.getFlagEncoder().getAccessEnc();
+        double fwdWeight = weighting.calcWeight(edge, false, EdgeIterator.NO_EDGE);
+        double bwdWeight = weighting.calcWeight(edge, true, EdgeIterator.NO_EDGE);
+        long fwdMillis = edge.get(accessEnc) ? weighting.calcMillis(edge, false, EdgeIterator.NO_EDGE) : -1;
+        long bwdMillis = edge.getReverse(accessEnc) ? weighting.calcMillis(edge, true, EdgeIterator.NO_EDGE) : -1;
+        setEntry(pointer, fwdWeight, bwdWeight, fwdMillis, bwdMillis);
+        return this;
+    }
+
+    private void setEntry(long pointer, double fwdWeight, double bwdWeight, long fwdMillis, long bwdMillis) {
+        setDouble(pointer, fwdWeight);
+        setDouble(pointer + 8, bwdWeight);
+        da.setInt(pointer + MILLIS_OFFSET, toInt(fwdMillis));
+        da.setInt(pointer + MILLIS_OFFSET + 4, toInt(bwdMillis));
+    }
+
+    private void setDouble(long pointer, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        da.setInt(pointer, BitUtil.LITTLE.getIntLow(bits));
+        da.setInt(pointer + 4, BitUtil.LITTLE.getIntHigh(bits));
+    }
+
+    // times that do not fit are calculated by the Weighting
+    private static int toInt(long millis) {
+        return millis > Integer.MAX_VALUE ? -1 : (int) millis;
+    }
+
+    /**
+     * @return the number of edges with stored weights. Edges with a higher id like virtual edges or
+     * shortcuts are not covered.
+     */
+    public int getEdges() {
+        return edges;
+    }
+
+    /**
+     * @param reverse if true the weight in the direction from the adjacent node to the base node of
+     *                the edge as stored in the graph is returned
+     * @return the weight or NaN if it is not stored
+     */
+    public double getWeight(int edge, boolean reverse) {
+        long pointer = (long) edge * ENTRY_BYTES + (reverse ? 8 : 0);
+        return Double.longBitsToDouble(BitUtil.LITTLE.combineIntsToLong(da.getInt(pointer), da.getInt(pointer + 4)));
+    }
+
+    /**
+     * @return the time in milliseconds or -1 if it is not stored
+     */
+    public int getMillis(int edge, boolean reverse) {
+        return da.getInt((long) edge * ENTRY_BYTES + MILLIS_OFFSET + (reverse ? 4 : 0));
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+
+        edges = da.getHeader(0);
+        return true;
+    }
+
+    @Override
+    public EdgeWeightStorage create(long byteCount) {
+        da.create(Math.max(byteCount, 1024));
+        da.ensureCapacity(byteCount);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        da.flush();
+    }
+
+    @Override
+    public void close() {
+        da.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return da.isClosed();
+    }
+
+    @Override
+    public long getCapacity() {
+        return da.getCapacity();
+    }
+}
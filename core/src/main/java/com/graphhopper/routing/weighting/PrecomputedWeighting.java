@@ -0,0 +1,83 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.util.HintsMap;
+import com.graphhopper.routing.util.SpeedCalculator;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Reads the weights and times from an EdgeWeightStorage instead of decoding the edge flags. Virtual
+ * edges, loop edges and edges without a stored value are calculated by the wrapped Weighting. The
+ * stored values are only valid for the wrapped Weighting with its default parameters, so if the
+ * SpeedCalculator is replaced all values are calculated again.
+ */
+public class PrecomputedWeighting extends AbstractAdjustedWeighting {
+    private final EdgeWeightStorage storage;
+    private final int edges;
+    private boolean enabled = true;
+
+    public PrecomputedWeighting(Weighting superWeighting, EdgeWeightStorage storage) {
+        super(superWeighting);
+        this.storage = storage;
+        this.edges = storage.getEdges();
+    }
+
+    @Override
+    public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId, long edgeEnterTime) {
+        int edge = edgeState.getEdge();
+        if (enabled && edge < edges) {
+            double weight = storage.getWeight(edge, reverse != edgeState.get(EdgeIteratorState.REVERSE_STATE));
+            if (!Double.isNaN(weight))
+                return weight;
+        }
+        return superWeighting.calcWeight(edgeState, reverse, prevOrNextEdgeId, edgeEnterTime);
+    }
+
+    @Override
+    public long calcMillis(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId, long edgeEnterTime) {
+        int edge = edgeState.getEdge();
+        if (enabled && edge < edges) {
+            int millis = storage.getMillis(edge, reverse != edgeState.get(EdgeIteratorState.REVERSE_STATE));
+            if (millis >= 0)
+                return millis;
+        }
+        return superWeighting.calcMillis(edgeState, reverse, prevOrNextEdgeId, edgeEnterTime);
+    }
+
+    @Override
+    public void setSpeedCalculator(SpeedCalculator speedCalculator) {
+        super.setSpeedCalculator(speedCalculator);
+        enabled = false;
+    }
+
+    @Override
+    public boolean matches(HintsMap reqMap) {
+        return superWeighting.matches(reqMap);
+    }
+
+    @Override
+    public String getName() {
+        return superWeighting.getName();
+    }
+
+    @Override
+    public String toString() {
+        return superWeighting.toString();
+    }
+}
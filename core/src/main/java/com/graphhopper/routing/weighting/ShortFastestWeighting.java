@@ -30,8 +30,8 @@ import com.graphhopper.util.PMap;
 public class ShortFastestWeighting extends FastestWeighting {
     // For now keep parameters local within class
     private static final String NAME = "short_fastest";
-    private static final String TIME_FACTOR = "short_fastest.time_factor";
-    private static final String DISTANCE_FACTOR = "short_fastest.distance_factor";
+    public static final String TIME_FACTOR = "short_fastest.time_factor";
+    public static final String DISTANCE_FACTOR = "short_fastest.distance_factor";
     private final double distanceFactor;
     private final double timeFactor;
 
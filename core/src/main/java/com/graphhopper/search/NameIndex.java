@@ -25,18 +25,36 @@ import com.graphhopper.util.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
+ * Stores the names of the edges. Every name is stored only once as long as it is one of the
+ * recently stored names, see {@link #setMaxDeduplicationEntries(int)}. Street names are usually
+ * repeated by nearby ways, so this removes most duplicates.
+ * <p>
+ * Every thread caches the recently decoded names, so repeated calls of get for the same pointer,
+ * e.g. while creating the instructions and path details of a route, do not create new Strings.
+ *
  * @author Ottavio Campana
  * @author Peter Karich
  */
 public class NameIndex implements Storable<NameIndex> {
     private static final Logger logger = LoggerFactory.getLogger(NameIndex.class);
     private static final long START_POINTER = 1;
+    private static final int DECODE_CACHE_BITS = 10;
     private final DataAccess names;
     private long bytePointer = START_POINTER;
-    // minor optimization for the previous stored name
-    private String lastName;
-    private long lastIndex;
+    private int maxDeduplicationEntries = 100_000;
+    // the pointers of the recently stored names, least recently used first
+    private final Map<String, Long> storedNames = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > maxDeduplicationEntries;
+        }
+    };
+    // replaced if the content changes, so the caches of all threads are invalid
+    private volatile ThreadLocal<DecodeCache> decodeCache = createDecodeCache();
 
     public NameIndex(Directory dir) {
         this(dir, "names");
@@ -46,9 +64,21 @@ public class NameIndex implements Storable<NameIndex> {
         names = dir.find(filename);
     }
 
+    /**
+     * Specifies how many of the recently stored names are used to avoid storing a name again.
+     * Default is 100000.
+     */
+    public NameIndex setMaxDeduplicationEntries(int maxDeduplicationEntries) {
+        if (maxDeduplicationEntries < 1)
+            throw new IllegalArgumentException("maxDeduplicationEntries must be positive but was " + maxDeduplicationEntries);
+        this.maxDeduplicationEntries = maxDeduplicationEntries;
+        return this;
+    }
+
     @Override
     public NameIndex create(long initBytes) {
         names.create(initBytes);
+        clearCaches();
         return this;
     }
 
@@ -56,6 +86,7 @@ public class NameIndex implements Storable<NameIndex> {
     public boolean loadExisting() {
         if (names.loadExisting()) {
             bytePointer = BitUtil.LITTLE.combineIntsToLong(names.getHeader(0), names.getHeader(4));
+            clearCaches();
             return true;
         }
 
@@ -69,8 +100,9 @@ public class NameIndex implements Storable<NameIndex> {
         if (name == null || name.isEmpty()) {
             return 0;
         }
-        if (name.equals(lastName)) {
-            return lastIndex;
+        Long storedPointer = storedNames.get(name);
+        if (storedPointer != null) {
+            return storedPointer;
         }
         byte[] bytes = getBytes(name);
         long oldPointer = bytePointer;
@@ -82,8 +114,7 @@ public class NameIndex implements Storable<NameIndex> {
         bytePointer++;
         names.setBytes(bytePointer, bytes, bytes.length);
         bytePointer += bytes.length;
-        lastName = name;
-        lastIndex = oldPointer;
+        storedNames.put(name, oldPointer);
         return oldPointer;
     }
 
@@ -115,12 +146,33 @@ public class NameIndex implements Storable<NameIndex> {
         if (pointer == 0)
             return "";
 
-        byte[] sizeBytes = new byte[1];
-        names.getBytes(pointer, sizeBytes, 1);
-        int size = sizeBytes[0] & 0xFF;
+        DecodeCache cache = decodeCache.get();
+        int cacheIndex = (int) ((pointer * 0x9E3779B97F4A7C15L) >>> (64 - DECODE_CACHE_BITS));
+        if (cache.pointers[cacheIndex] == pointer)
+            return cache.names[cacheIndex];
+
+        names.getBytes(pointer, cache.sizeBytes, 1);
+        int size = cache.sizeBytes[0] & 0xFF;
         byte[] bytes = new byte[size];
-        names.getBytes(pointer + sizeBytes.length, bytes, size);
-        return new String(bytes, Helper.UTF_CS);
+        names.getBytes(pointer + 1, bytes, size);
+        String name = new String(bytes, Helper.UTF_CS);
+        cache.pointers[cacheIndex] = pointer;
+        cache.names[cacheIndex] = name;
+        return name;
+    }
+
+    private void clearCaches() {
+        storedNames.clear();
+        decodeCache = createDecodeCache();
+    }
+
+    private static ThreadLocal<DecodeCache> createDecodeCache() {
+        return new ThreadLocal<DecodeCache>() {
+            @Override
+            protected DecodeCache initialValue() {
+                return new DecodeCache();
+            }
+        };
     }
 
     @Override
@@ -151,5 +203,17 @@ public class NameIndex implements Storable<NameIndex> {
 
     public void copyTo(NameIndex nameIndex) {
         names.copyTo(nameIndex.names);
+        nameIndex.bytePointer = bytePointer;
+        nameIndex.clearCaches();
+    }
+
+    /**
+     * A direct mapped cache of decoded names. The names are never modified, so an entry is valid
+     * until the content of the whole index changes.
+     */
+    private static class DecodeCache {
+        final long[] pointers = new long[1 << DECODE_CACHE_BITS];
+        final String[] names = new String[1 << DECODE_CACHE_BITS];
+        final byte[] sizeBytes = new byte[1];
     }
 }
@@ -57,6 +57,12 @@ public interface Directory {
      */
     void remove(DataAccess da);
 
+    /**
+     * Closes the specified object if not yet done and removes it from the directory, but in contrast
+     * to remove its stored data is kept. So it can be loaded again via find and loadExisting.
+     */
+    void close(DataAccess da);
+
     /**
      * @return the default type of a newly created DataAccess object
      */
@@ -120,6 +120,13 @@ public class GHDirectory implements Directory {
         removeDA(da, da.getName());
     }
 
+    @Override
+    public void close(DataAccess da) {
+        removeFromMap(da.getName());
+        if (!da.isClosed())
+            da.close();
+    }
+
     void removeDA(DataAccess da, String name) {
         da.close();
         if (da.getType().isStoring())
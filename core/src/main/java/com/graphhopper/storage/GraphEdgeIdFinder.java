@@ -18,6 +18,7 @@
 package com.graphhopper.storage;
 
 import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHIntArrayList;
 import com.graphhopper.coll.GHIntHashSet;
 import com.graphhopper.coll.GHTBitSet;
 import com.graphhopper.routing.util.EdgeFilter;
@@ -189,11 +190,18 @@ public class GraphEdgeIdFinder {
 
     /**
      * This class handles edges and areas where access should be blocked.
+     * <p>
+     * The blocked shapes are put into a grid of their bounding boxes when they are first evaluated,
+     * so that only the shapes of the grid cell containing a node are checked. Once all shapes are
+     * added the BlockArea can be used by several threads. Results per node are not remembered here,
+     * see BlockAreaWeighting.
      */
     public static class BlockArea {
         final GHIntHashSet blockedEdges = new GHIntHashSet();
         final List<Shape> blockedShapes = new ArrayList<>();
         private final NodeAccess na;
+        // built lazily and reset whenever a shape is added
+        private volatile ShapeGrid shapeGrid;
 
         public BlockArea(Graph g) {
             na = g.getNodeAccess();
@@ -205,23 +213,109 @@ public class GraphEdgeIdFinder {
 
         public void add(Shape shape) {
             blockedShapes.add(shape);
+            shapeGrid = null;
         }
 
         /**
          * @return true if the specified edgeState is part of this BlockArea
          */
         public final boolean contains(EdgeIteratorState edgeState) {
-            if (!blockedEdges.isEmpty() && blockedEdges.contains(edgeState.getEdge())) {
-                return true;
+            return containsEdge(edgeState.getEdge()) || containsNode(edgeState.getAdjNode());
+        }
+
+        /**
+         * @return true if the specified edge is blocked explicitly
+         */
+        public final boolean containsEdge(int edgeId) {
+            return !blockedEdges.isEmpty() && blockedEdges.contains(edgeId);
+        }
+
+        /**
+         * @return true if the specified node is inside one of the blocked shapes
+         */
+        public final boolean containsNode(int node) {
+            if (!hasShapes())
+                return false;
+            return getShapeGrid().contains(na.getLatitude(node), na.getLongitude(node));
+        }
+
+        public final boolean hasShapes() {
+            return !blockedShapes.isEmpty() && na != null;
+        }
+
+        private ShapeGrid getShapeGrid() {
+            ShapeGrid grid = shapeGrid;
+            if (grid == null) {
+                synchronized (this) {
+                    grid = shapeGrid;
+                    if (grid == null)
+                        shapeGrid = grid = new ShapeGrid(new ArrayList<>(blockedShapes));
+                }
             }
+            return grid;
+        }
+    }
 
-            if (!blockedShapes.isEmpty() && na != null) {
-                for (Shape shape : blockedShapes) {
-                    if (shape.contains(na.getLatitude(edgeState.getAdjNode()), na.getLongitude(edgeState.getAdjNode())))
-                        return true;
+    /**
+     * An immutable grid over the bounding boxes of the shapes.
+     */
+    private static class ShapeGrid {
+        private static final int MAX_GRID_SIZE = 64;
+        private final List<Shape> shapes;
+        private final BBox shapeBounds;
+        private final int gridSize;
+        private final int[][] grid;
+
+        ShapeGrid(List<Shape> shapes) {
+            this.shapes = shapes;
+            shapeBounds = BBox.createInverse(false);
+            for (Shape shape : shapes) {
+                BBox bounds = shape.getBounds();
+                shapeBounds.update(bounds.minLat, bounds.minLon);
+                shapeBounds.update(bounds.maxLat, bounds.maxLon);
+            }
+            // about four shapes per cell if they do not overlap
+            gridSize = Math.max(1, Math.min(MAX_GRID_SIZE, (int) Math.ceil(Math.sqrt(shapes.size() / 4.0))));
+            GHIntArrayList[] cells = new GHIntArrayList[gridSize * gridSize];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = new GHIntArrayList(4);
+            }
+            for (int shapeIndex = 0; shapeIndex < shapes.size(); shapeIndex++) {
+                BBox bounds = shapes.get(shapeIndex).getBounds();
+                int minY = getIndex(bounds.minLat, shapeBounds.minLat, shapeBounds.maxLat);
+                int maxY = getIndex(bounds.maxLat, shapeBounds.minLat, shapeBounds.maxLat);
+                int minX = getIndex(bounds.minLon, shapeBounds.minLon, shapeBounds.maxLon);
+                int maxX = getIndex(bounds.maxLon, shapeBounds.minLon, shapeBounds.maxLon);
+                for (int y = minY; y <= maxY; y++) {
+                    for (int x = minX; x <= maxX; x++) {
+                        cells[y * gridSize + x].add(shapeIndex);
+                    }
                 }
             }
+            grid = new int[cells.length][];
+            for (int i = 0; i < cells.length; i++) {
+                grid[i] = cells[i].toArray();
+            }
+        }
+
+        boolean contains(double lat, double lon) {
+            if (!shapeBounds.contains(lat, lon))
+                return false;
+
+            int cell = getIndex(lat, shapeBounds.minLat, shapeBounds.maxLat) * gridSize
+                    + getIndex(lon, shapeBounds.minLon, shapeBounds.maxLon);
+            for (int shapeIndex : grid[cell]) {
+                if (shapes.get(shapeIndex).contains(lat, lon))
+                    return true;
+            }
             return false;
         }
+
+        private int getIndex(double value, double min, double max) {
+            if (max <= min)
+                return 0;
+            int index = (int) ((value - min) / (max - min) * gridSize);
+            return Math.max(0, Math.min(gridSize - 1, index));
+        }
     }
-}
\ No newline at end of file
+}
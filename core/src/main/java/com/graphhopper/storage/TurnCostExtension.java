@@ -17,13 +17,19 @@
  */
 package com.graphhopper.storage;
 
+import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.util.EdgeIterator;
 
+import java.util.BitSet;
+
 /**
  * Holds turn cost tables for each node. The additional field of a node will be used to point
  * towards the first entry within a node cost table to identify turn restrictions, or later, turn
  * getCosts.
  * <p>
+ * While importing, the entries of a node form a linked list. After the import {@link #compact()}
+ * stores the entries of every node in one block sorted by the from and to edge and keeps a bit set
+ * of the nodes with entries, which makes the lookup cheaper.
  *
  * @author Karl Hübner
  * @author Peter Karich
@@ -43,7 +49,11 @@ public class TurnCostExtension implements GraphExtension {
     private int turnCostsEntryIndex = -4;
     private int turnCostsEntryBytes;
     private int turnCostsCount;
+    private Graph graph;
     private NodeAccess nodeAccess;
+    private boolean compacted;
+    // only available if compacted or entries were added after that
+    private GHBitSetImpl nodesWithEntries;
 
     public TurnCostExtension() {
         TC_FROM = nextTurnCostEntryIndex();
@@ -59,6 +69,7 @@ public class TurnCostExtension implements GraphExtension {
         if (turnCostsCount > 0)
             throw new AssertionError("The turn cost storage must be initialized only once.");
 
+        this.graph = graph;
         this.nodeAccess = graph.getNodeAccess();
         this.turnCosts = dir.find("turn_costs");
     }
@@ -83,6 +94,19 @@ public class TurnCostExtension implements GraphExtension {
     public void flush() {
         turnCosts.setHeader(0, turnCostsEntryBytes);
         turnCosts.setHeader(1 * 4, turnCostsCount);
+        turnCosts.setHeader(2 * 4, compacted ? 1 : 0);
+        if (compacted) {
+            // the bit set is stored behind the entries
+            long[] words = nodesWithEntries.toLongArray();
+            long pointer = (long) turnCostsCount * turnCostsEntryBytes;
+            turnCosts.ensureCapacity(pointer + (long) words.length * 8);
+            for (long word : words) {
+                turnCosts.setInt(pointer, (int) word);
+                turnCosts.setInt(pointer + 4, (int) (word >>> 32));
+                pointer += 8;
+            }
+            turnCosts.setHeader(3 * 4, words.length);
+        }
         turnCosts.flush();
     }
 
@@ -103,6 +127,17 @@ public class TurnCostExtension implements GraphExtension {
 
         turnCostsEntryBytes = turnCosts.getHeader(0);
         turnCostsCount = turnCosts.getHeader(4);
+        compacted = turnCosts.getHeader(2 * 4) == 1;
+        if (compacted) {
+            long[] words = new long[turnCosts.getHeader(3 * 4)];
+            long pointer = (long) turnCostsCount * turnCostsEntryBytes;
+            for (int i = 0; i < words.length; i++) {
+                words[i] = (turnCosts.getInt(pointer) & 0xFFFFFFFFL) | ((long) turnCosts.getInt(pointer + 4) << 32);
+                pointer += 8;
+            }
+            nodesWithEntries = new GHBitSetImpl(words.length * 64);
+            nodesWithEntries.or(BitSet.valueOf(words));
+        }
         return true;
     }
 
@@ -129,6 +164,11 @@ public class TurnCostExtension implements GraphExtension {
      *                  new flags and write this merged flag.
      */
     public void mergeOrOverwriteTurnInfo(int fromEdge, int viaNode, int toEdge, long turnFlags, boolean merge) {
+        // the new entry is linked like before the compaction and would break the sort order
+        compacted = false;
+        if (nodesWithEntries != null)
+            nodesWithEntries.add(viaNode);
+
         int newEntryIndex = turnCostsCount;
         ensureTurnCostIndex(newEntryIndex);
         boolean oldEntryFound = false;
@@ -194,7 +234,105 @@ public class TurnCostExtension implements GraphExtension {
         if (nodeVia < 0)
             throw new IllegalArgumentException("via node cannot be negative");
 
-        return nextCostFlags(edgeFrom, nodeVia, edgeTo);
+        if (nodesWithEntries != null && !nodesWithEntries.contains(nodeVia))
+            return EMPTY_FLAGS;
+        return compacted ? compactedCostFlags(edgeFrom, nodeVia, edgeTo) : nextCostFlags(edgeFrom, nodeVia, edgeTo);
+    }
+
+    /**
+     * Rewrites the entries so that the entries of every node are stored one after another, sorted by
+     * the from and then by the to edge, and marks the nodes with entries in a bit set. Entries that
+     * are no longer referenced by a node are dropped. The lookup then skips nodes without entries
+     * without reading the node storage and stops as soon as it passes the requested edges. This
+     * should be called after the import, adding entries afterwards is possible but falls back to the
+     * slower lookup.
+     */
+    public void compact() {
+        int nodes = graph.getNodes();
+        int[] froms = new int[turnCostsCount];
+        int[] tos = new int[turnCostsCount];
+        int[] flags = new int[turnCostsCount];
+        int[] nexts = new int[turnCostsCount];
+        GHBitSetImpl bitSet = new GHBitSetImpl(nodes);
+        int count = 0;
+        for (int node = 0; node < nodes; node++) {
+            int index = nodeAccess.getAdditionalNodeField(node);
+            if (index == NO_TURN_ENTRY)
+                continue;
+
+            int start = count;
+            for (int i = 0; index != NO_TURN_ENTRY; i++) {
+                if (i > 1000)
+                    throw new IllegalStateException("something went wrong: there seems to be no end of the turn cost-list!?");
+                long turnCostPtr = (long) index * turnCostsEntryBytes;
+                froms[count] = turnCosts.getInt(turnCostPtr + TC_FROM);
+                tos[count] = turnCosts.getInt(turnCostPtr + TC_TO);
+                flags[count] = turnCosts.getInt(turnCostPtr + TC_FLAGS);
+                count++;
+                index = turnCosts.getInt(turnCostPtr + TC_NEXT);
+            }
+            sortEntries(froms, tos, flags, start, count);
+            for (int i = start; i < count - 1; i++) {
+                nexts[i] = i + 1;
+            }
+            nexts[count - 1] = NO_TURN_ENTRY;
+            nodeAccess.setAdditionalNodeField(node, start);
+            bitSet.add(node);
+        }
+
+        for (int i = 0; i < count; i++) {
+            long turnCostPtr = (long) i * turnCostsEntryBytes;
+            turnCosts.setInt(turnCostPtr + TC_FROM, froms[i]);
+            turnCosts.setInt(turnCostPtr + TC_TO, tos[i]);
+            turnCosts.setInt(turnCostPtr + TC_FLAGS, flags[i]);
+            turnCosts.setInt(turnCostPtr + TC_NEXT, nexts[i]);
+        }
+        turnCostsCount = count;
+        nodesWithEntries = bitSet;
+        compacted = true;
+    }
+
+    public boolean isCompacted() {
+        return compacted;
+    }
+
+    /**
+     * Insertion sort of the entries in [from, end) by the from and to edge, a node has only a few
+     * entries.
+     */
+    private static void sortEntries(int[] froms, int[] tos, int[] flags, int from, int end) {
+        for (int i = from + 1; i < end; i++) {
+            int fromEdge = froms[i], toEdge = tos[i], flag = flags[i];
+            int j = i - 1;
+            while (j >= from && (froms[j] > fromEdge || froms[j] == fromEdge && tos[j] > toEdge)) {
+                froms[j + 1] = froms[j];
+                tos[j + 1] = tos[j];
+                flags[j + 1] = flags[j];
+                j--;
+            }
+            froms[j + 1] = fromEdge;
+            tos[j + 1] = toEdge;
+            flags[j + 1] = flag;
+        }
+    }
+
+    private long compactedCostFlags(int edgeFrom, int nodeVia, int edgeTo) {
+        int turnCostIndex = nodeAccess.getAdditionalNodeField(nodeVia);
+        while (turnCostIndex != NO_TURN_ENTRY) {
+            long turnCostPtr = (long) turnCostIndex * turnCostsEntryBytes;
+            int from = turnCosts.getInt(turnCostPtr + TC_FROM);
+            if (from > edgeFrom)
+                break;
+            if (from == edgeFrom) {
+                int to = turnCosts.getInt(turnCostPtr + TC_TO);
+                if (to == edgeTo)
+                    return turnCosts.getInt(turnCostPtr + TC_FLAGS);
+                if (to > edgeTo)
+                    break;
+            }
+            turnCostIndex = turnCosts.getInt(turnCostPtr + TC_NEXT);
+        }
+        return EMPTY_FLAGS;
     }
 
     public boolean isUTurn(int edgeFrom, int edgeTo) {
@@ -264,6 +402,11 @@ public class TurnCostExtension implements GraphExtension {
 
         turnCosts.copyTo(clonedTC.turnCosts);
         clonedTC.turnCostsCount = turnCostsCount;
+        clonedTC.compacted = compacted;
+        if (nodesWithEntries != null) {
+            clonedTC.nodesWithEntries = new GHBitSetImpl(nodesWithEntries.length());
+            nodesWithEntries.copyTo(clonedTC.nodesWithEntries);
+        }
 
         return clonedStorage;
     }
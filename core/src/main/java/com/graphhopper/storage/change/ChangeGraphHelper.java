@@ -49,6 +49,7 @@ public class ChangeGraphHelper {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final Graph graph;
     private final GraphEdgeIdFinder graphBrowser;
+    private final GHIntHashSet changedEdges = new GHIntHashSet();
     private boolean enableLogging = false;
 
     public ChangeGraphHelper(Graph graph, LocationIndex locationIndex) {
@@ -60,6 +61,13 @@ public class ChangeGraphHelper {
         enableLogging = log;
     }
 
+    /**
+     * @return the ids of the edges that were changed by applyChanges
+     */
+    public GHIntHashSet getChangedEdges() {
+        return changedEdges;
+    }
+
     /**
      * This method applies changes to the graph, specified by the json features.
      *
@@ -113,6 +121,7 @@ public class ChangeGraphHelper {
                 if (enableLogging)
                     logger.info(encoder.toString() + " - access change via feature " + jsonFeature.getId());
                 edge.set(accessEnc, value).setReverse(accessEnc, value);
+                changedEdges.add(edgeId);
 
             } else if (props.containsKey("speed")) {
                 // TODO use different speed for the different directions (see e.g. Bike2WeightFlagEncoder)
@@ -123,6 +132,7 @@ public class ChangeGraphHelper {
                     if (enableLogging)
                         logger.info(encoder.toString() + " - speed change via feature " + jsonFeature.getId() + ". Old: " + oldSpeed + ", new:" + value);
                     edge.set(avSpeedEnc, value);
+                    changedEdges.add(edgeId);
                 }
             }
         }
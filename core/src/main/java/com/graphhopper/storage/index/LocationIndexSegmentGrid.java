@@ -0,0 +1,566 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.cursors.LongIntCursor;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * A LocationIndex that stores the segments of the edge geometries instead of the tower nodes. The
+ * bounds of the graph are divided into a regular grid and every segment is stored in all cells it
+ * crosses, together with its coordinates. findClosest calculates the exact distance to the
+ * segments of the cells around the query point, ring by ring, until no segment outside of the
+ * searched cells can be closer. In contrast to LocationIndexTree the graph is not explored, so the
+ * effort only depends on the number of segments per cell and the search radius, also for sparse
+ * areas with long edges. The graph is only accessed to check the edge filter for better candidates.
+ * <p>
+ * Only the non-empty cells are stored, sorted by their key row * columns + column. The layout of
+ * the DataAccess is: the keys (two ints per cell), the offsets of the first entry of every cell
+ * (cells + 1 ints) and the entries. An entry consists of the edge id, the index of the segment in
+ * the full way geometry and the coordinates of both segment points (six ints per entry).
+ */
+public class LocationIndexSegmentGrid implements LocationIndex {
+    private static final int ENTRY_INTS = 6;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final int MAGIC_INT;
+    private final Graph graph;
+    private final DataAccess dataAccess;
+    private DistanceCalc distCalc = Helper.DIST_PLANE;
+    private DistanceCalc preciseDistCalc = Helper.DIST_EARTH;
+    private int minResolutionInMeter = 300;
+    private int maxRegionSearch = 4;
+    private double minLat;
+    private double minLon;
+    private double deltaLat;
+    private double deltaLon;
+    private int rows;
+    private int columns;
+    private int cells;
+    private long offsetsPointer;
+    private long entriesPointer;
+    private boolean initialized = false;
+
+    public LocationIndexSegmentGrid(Graph g, Directory dir) {
+        if (g instanceof CHGraph)
+            throw new IllegalArgumentException("Use base graph for LocationIndexSegmentGrid instead of CHGraph");
+
+        MAGIC_INT = Integer.MAX_VALUE / 22319;
+        this.graph = g;
+        dataAccess = dir.find("location_index_segments", DAType.getPreferredInt(dir.getDefaultType()));
+    }
+
+    public int getMinResolutionInMeter() {
+        return minResolutionInMeter;
+    }
+
+    /**
+     * Minimum width in meter of one cell. A smaller value means less segments to check per cell,
+     * but more cells for a certain search radius and a bigger index.
+     */
+    public LocationIndexSegmentGrid setMinResolutionInMeter(int minResolutionInMeter) {
+        this.minResolutionInMeter = minResolutionInMeter;
+        return this;
+    }
+
+    /**
+     * Specifies how many rings of cells around the cell of the query point are searched at most.
+     * Default is 4, i.e. the closest segment is found if it is within roughly 4 * resolution.
+     */
+    public LocationIndexSegmentGrid setMaxRegionSearch(int rings) {
+        if (rings < 1)
+            throw new IllegalArgumentException("Region of location index must be at least 1 but was " + rings);
+
+        this.maxRegionSearch = rings;
+        return this;
+    }
+
+    @Override
+    public LocationIndex setResolution(int minResolutionInMeter) {
+        if (minResolutionInMeter <= 0)
+            throw new IllegalStateException("Negative precision is not allowed!");
+
+        setMinResolutionInMeter(minResolutionInMeter);
+        return this;
+    }
+
+    @Override
+    public LocationIndex setApproximation(boolean approx) {
+        if (approx)
+            distCalc = Helper.DIST_PLANE;
+        else
+            distCalc = Helper.DIST_EARTH;
+        return this;
+    }
+
+    void prepareAlgo() {
+        BBox bounds = graph.getBounds();
+        if (graph.getNodes() == 0)
+            throw new IllegalStateException("Cannot create location index of empty graph!");
+
+        if (!bounds.isValid())
+            throw new IllegalStateException("Cannot create location index when graph has invalid bounds: " + bounds);
+
+        // the cells are narrowest at the latitude that is farthest from the equator
+        double lat = Math.min(Math.max(Math.abs(bounds.maxLat), Math.abs(bounds.minLat)), 89);
+        minLat = bounds.minLat;
+        minLon = bounds.minLon;
+        deltaLat = minResolutionInMeter * 360 / DistanceCalcEarth.C;
+        deltaLon = minResolutionInMeter * 360 / preciseDistCalc.calcCircumference(lat);
+        rows = Math.max(1, (int) Math.ceil((bounds.maxLat - bounds.minLat) / deltaLat));
+        columns = Math.max(1, (int) Math.ceil((bounds.maxLon - bounds.minLon) / deltaLon));
+    }
+
+    @Override
+    public LocationIndex prepareIndex() {
+        if (initialized)
+            throw new IllegalStateException("Call prepareIndex only once");
+
+        StopWatch sw = new StopWatch().start();
+        prepareAlgo();
+
+        // 1. count the entries per cell
+        final LongIntHashMap cellEntries = new LongIntHashMap();
+        long entryCount = forEachSegment(new SegmentVisitor() {
+            @Override
+            public void onSegment(long cellKey, int edge, int segment, double lat1, double lon1, double lat2, double lon2) {
+                cellEntries.addTo(cellKey, 1);
+            }
+        });
+        if (entryCount > Integer.MAX_VALUE)
+            throw new IllegalStateException("Too many segment entries for location index: " + entryCount);
+
+        // 2. store the sorted keys and the offsets and replace the counts with the offsets
+        cells = cellEntries.size();
+        long[] keys = new long[cells];
+        int index = 0;
+        for (LongIntCursor cursor : cellEntries) {
+            keys[index++] = cursor.key;
+        }
+        Arrays.sort(keys);
+        initPointers();
+        dataAccess.create(64 * 1024);
+        dataAccess.ensureCapacity(entriesPointer + entryCount * ENTRY_INTS * 4);
+        int offset = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            long key = keys[cell];
+            dataAccess.setInt((long) cell * 8, BitUtil.BIG.getIntHigh(key));
+            dataAccess.setInt((long) cell * 8 + 4, BitUtil.BIG.getIntLow(key));
+            dataAccess.setInt(offsetsPointer + (long) cell * 4, offset);
+            int count = cellEntries.get(key);
+            cellEntries.put(key, offset);
+            offset += count;
+        }
+        dataAccess.setInt(offsetsPointer + (long) cells * 4, offset);
+
+        // 3. store the entries, in every cell they are sorted by edge and segment
+        forEachSegment(new SegmentVisitor() {
+            @Override
+            public void onSegment(long cellKey, int edge, int segment, double lat1, double lon1, double lat2, double lon2) {
+                int entry = cellEntries.addTo(cellKey, 1) - 1;
+                long pointer = entriesPointer + (long) entry * ENTRY_INTS * 4;
+                dataAccess.setInt(pointer, edge);
+                dataAccess.setInt(pointer + 4, segment);
+                dataAccess.setInt(pointer + 8, Helper.degreeToInt(lat1));
+                dataAccess.setInt(pointer + 12, Helper.degreeToInt(lon1));
+                dataAccess.setInt(pointer + 16, Helper.degreeToInt(lat2));
+                dataAccess.setInt(pointer + 20, Helper.degreeToInt(lon2));
+            }
+        });
+
+        flush();
+        initialized = true;
+        logger.info("location index with segments created in " + sw.stop().getSeconds()
+                + "s, cells:" + Helper.nf(cells) + " of " + Helper.nf((long) rows * columns)
+                + ", entries:" + Helper.nf(entryCount)
+                + ", precision:" + minResolutionInMeter
+                + ", checksum:" + calcChecksum());
+        return this;
+    }
+
+    private void initPointers() {
+        offsetsPointer = (long) cells * 8;
+        entriesPointer = offsetsPointer + (long) (cells + 1) * 4;
+    }
+
+    interface SegmentVisitor {
+        void onSegment(long cellKey, int edge, int segment, double lat1, double lon1, double lat2, double lon2);
+    }
+
+    /**
+     * Calls the visitor for every segment of every edge and for every cell the segment crosses.
+     *
+     * @return the number of calls
+     */
+    long forEachSegment(SegmentVisitor visitor) {
+        long count = 0;
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            PointList points = iter.fetchWayGeometry(3);
+            for (int i = 1; i < points.getSize(); i++) {
+                double lat1 = points.getLatitude(i - 1), lon1 = points.getLongitude(i - 1);
+                double lat2 = points.getLatitude(i), lon2 = points.getLongitude(i);
+                if (distCalc.isCrossBoundary(lon1, lon2))
+                    continue;
+
+                count += addSegment(visitor, iter.getEdge(), i - 1, lat1, lon1, lat2, lon2);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Visits all cells the segment crosses, see "A Fast Voxel Traversal Algorithm for Ray Tracing"
+     * by Amanatides and Woo. Unlike the Bresenham line it does not skip cells that are only touched
+     * at a corner.
+     */
+    private int addSegment(SegmentVisitor visitor, int edge, int segment,
+                           double lat1, double lon1, double lat2, double lon2) {
+        double x1 = (lon1 - minLon) / deltaLon, y1 = (lat1 - minLat) / deltaLat;
+        double x2 = (lon2 - minLon) / deltaLon, y2 = (lat2 - minLat) / deltaLat;
+        int column = (int) Math.floor(x1), row = (int) Math.floor(y1);
+        int endColumn = (int) Math.floor(x2), endRow = (int) Math.floor(y2);
+        int stepX = Integer.signum(endColumn - column), stepY = Integer.signum(endRow - row);
+        double dx = Math.abs(x2 - x1), dy = Math.abs(y2 - y1);
+        double tDeltaX = dx == 0 ? Double.POSITIVE_INFINITY : 1 / dx;
+        double tDeltaY = dy == 0 ? Double.POSITIVE_INFINITY : 1 / dy;
+        double tMaxX = stepX > 0 ? (column + 1 - x1) * tDeltaX : stepX < 0 ? (x1 - column) * tDeltaX : Double.POSITIVE_INFINITY;
+        double tMaxY = stepY > 0 ? (row + 1 - y1) * tDeltaY : stepY < 0 ? (y1 - row) * tDeltaY : Double.POSITIVE_INFINITY;
+
+        int count = 0;
+        long lastKey = -1;
+        for (int steps = Math.abs(endColumn - column) + Math.abs(endRow - row); ; steps--) {
+            // points outside of the bounds, e.g. pillar nodes, are stored in the border cells
+            long key = getCellKey(clamp(row, rows), clamp(column, columns));
+            if (key != lastKey) {
+                visitor.onSegment(key, edge, segment, lat1, lon1, lat2, lon2);
+                lastKey = key;
+                count++;
+            }
+            if (steps == 0)
+                break;
+
+            if (tMaxX < tMaxY && column != endColumn || row == endRow) {
+                column += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                row += stepY;
+                tMaxY += tDeltaY;
+            }
+        }
+        return count;
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    private long getCellKey(int row, int column) {
+        return (long) row * columns + column;
+    }
+
+    private int getRow(double lat) {
+        return clamp((int) Math.floor((lat - minLat) / deltaLat), rows);
+    }
+
+    private int getColumn(double lon) {
+        return clamp((int) Math.floor((lon - minLon) / deltaLon), columns);
+    }
+
+    /**
+     * @return the index of the cell with the specified key or a negative value if it is empty
+     */
+    private int findCell(long key) {
+        int low = 0, high = cells - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long pointer = (long) mid * 8;
+            long midKey = BitUtil.BIG.combineIntsToLong(dataAccess.getInt(pointer + 4), dataAccess.getInt(pointer));
+            if (midKey < key)
+                low = mid + 1;
+            else if (midKey > key)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    @Override
+    public QueryResult findClosest(final double queryLat, final double queryLon, final EdgeFilter edgeFilter) {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+
+        Candidate candidate = new Candidate(queryLat, queryLon, edgeFilter);
+        int queryRow = getRow(queryLat), queryColumn = getColumn(queryLon);
+        for (int ring = 0; ring < maxRegionSearch; ring++) {
+            for (int row = queryRow - ring; row <= queryRow + ring; row++) {
+                if (row < 0 || row >= rows)
+                    continue;
+
+                // only the border of the block is new for this ring
+                int columnStep = row == queryRow - ring || row == queryRow + ring ? 1 : Math.max(1, 2 * ring);
+                for (int column = queryColumn - ring; column <= queryColumn + ring; column += columnStep) {
+                    if (column >= 0 && column < columns)
+                        checkCell(getCellKey(row, column), candidate);
+                }
+            }
+
+            if (candidate.edge >= 0 && candidate.normedDist <= distCalc.calcNormalizedDist(
+                    calcDistToBorder(queryLat, queryLon, queryRow, queryColumn, ring)))
+                break;
+        }
+
+        QueryResult result = new QueryResult(queryLat, queryLon);
+        if (candidate.edge >= 0)
+            candidate.fill(result);
+        return result;
+    }
+
+    private void checkCell(long key, Candidate candidate) {
+        int cell = findCell(key);
+        if (cell < 0)
+            return;
+
+        int end = dataAccess.getInt(offsetsPointer + (long) (cell + 1) * 4);
+        for (int entry = dataAccess.getInt(offsetsPointer + (long) cell * 4); entry < end; entry++) {
+            long pointer = entriesPointer + (long) entry * ENTRY_INTS * 4;
+            double lat1 = Helper.intToDegree(dataAccess.getInt(pointer + 8));
+            double lon1 = Helper.intToDegree(dataAccess.getInt(pointer + 12));
+            double lat2 = Helper.intToDegree(dataAccess.getInt(pointer + 16));
+            double lon2 = Helper.intToDegree(dataAccess.getInt(pointer + 20));
+            double queryLat = candidate.queryLat, queryLon = candidate.queryLon;
+            int segment = dataAccess.getInt(pointer + 4);
+            if (distCalc.validEdgeDistance(queryLat, queryLon, lat1, lon1, lat2, lon2)) {
+                double normedDist = distCalc.calcNormalizedEdgeDistance(queryLat, queryLon, lat1, lon1, lat2, lon2);
+                candidate.check(dataAccess.getInt(pointer), normedDist, segment, true);
+            } else {
+                double normedDist1 = distCalc.calcNormalizedDist(queryLat, queryLon, lat1, lon1);
+                double normedDist2 = distCalc.calcNormalizedDist(queryLat, queryLon, lat2, lon2);
+                if (normedDist1 <= normedDist2)
+                    candidate.check(dataAccess.getInt(pointer), normedDist1, segment, false);
+                else
+                    candidate.check(dataAccess.getInt(pointer), normedDist2, segment + 1, false);
+            }
+        }
+    }
+
+    /**
+     * @return the distance in meter from the query point to the border of the block of cells with
+     * the specified number of rings around the cell of the query point
+     */
+    private double calcDistToBorder(double queryLat, double queryLon, int queryRow, int queryColumn, int ring) {
+        double blockMinLat = minLat + (queryRow - ring) * deltaLat;
+        double blockMaxLat = minLat + (queryRow + ring + 1) * deltaLat;
+        double blockMinLon = minLon + (queryColumn - ring) * deltaLon;
+        double blockMaxLon = minLon + (queryColumn + ring + 1) * deltaLon;
+        double borderLat = queryLat - blockMinLat < blockMaxLat - queryLat ? blockMinLat : blockMaxLat;
+        double borderLon = queryLon - blockMinLon < blockMaxLon - queryLon ? blockMinLon : blockMaxLon;
+        return Math.min(distCalc.calcDist(queryLat, queryLon, borderLat, queryLon),
+                distCalc.calcDist(queryLat, queryLon, queryLat, borderLon));
+    }
+
+    /**
+     * The closest accepted segment or point found so far.
+     */
+    private class Candidate {
+        final double queryLat;
+        final double queryLon;
+        final EdgeFilter edgeFilter;
+        double normedDist = Double.MAX_VALUE;
+        int edge = -1;
+        int wayIndex;
+        boolean onSegment;
+        EdgeIteratorState edgeState;
+        boolean reverse;
+        // the last edge that was checked against the filter, the entries of a cell are sorted by edge
+        int filterEdge = -1;
+        EdgeIteratorState filterEdgeState;
+        boolean filterReverse;
+
+        Candidate(double queryLat, double queryLon, EdgeFilter edgeFilter) {
+            this.queryLat = queryLat;
+            this.queryLon = queryLon;
+            this.edgeFilter = edgeFilter;
+        }
+
+        void check(int edge, double normedDist, int wayIndex, boolean onSegment) {
+            if (normedDist >= this.normedDist)
+                return;
+
+            if (edge != filterEdge) {
+                filterEdge = edge;
+                filterEdgeState = accept(edge);
+            }
+            if (filterEdgeState == null)
+                return;
+
+            this.normedDist = normedDist;
+            this.edge = edge;
+            this.wayIndex = wayIndex;
+            this.onSegment = onSegment;
+            this.edgeState = filterEdgeState;
+            this.reverse = filterReverse;
+        }
+
+        /**
+         * @return the edge in the direction that is accepted by the filter, preferably the stored
+         * direction, or null if the filter accepts no direction
+         */
+        private EdgeIteratorState accept(int edge) {
+            EdgeIteratorState state = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            filterReverse = false;
+            if (edgeFilter.accept(state))
+                return state;
+
+            EdgeIteratorState reverseState = graph.getEdgeIteratorState(edge, state.getBaseNode());
+            filterReverse = true;
+            return edgeFilter.accept(reverseState) ? reverseState : null;
+        }
+
+        void fill(QueryResult result) {
+            PointList points = edgeState.fetchWayGeometry(3);
+            int last = points.getSize() - 1;
+            // the stored way index refers to the stored direction of the edge
+            int index = wayIndex;
+            if (reverse)
+                index = onSegment ? last - 1 - wayIndex : last - wayIndex;
+
+            QueryResult.Position pos;
+            int closestNode;
+            if (!onSegment && (index == 0 || index == last)) {
+                pos = QueryResult.Position.TOWER;
+                closestNode = index == 0 ? edgeState.getBaseNode() : edgeState.getAdjNode();
+            } else {
+                pos = onSegment ? QueryResult.Position.EDGE : QueryResult.Position.PILLAR;
+                double baseDist = distCalc.calcNormalizedDist(queryLat, queryLon, points.getLatitude(0), points.getLongitude(0));
+                double adjDist = distCalc.calcNormalizedDist(queryLat, queryLon, points.getLatitude(last), points.getLongitude(last));
+                closestNode = adjDist < baseDist ? edgeState.getAdjNode() : edgeState.getBaseNode();
+            }
+
+            result.setQueryDistance(distCalc.calcDenormalizedDist(normedDist));
+            result.setClosestNode(closestNode);
+            result.setClosestEdge(edgeState);
+            result.setWayIndex(index);
+            result.setSnappedPosition(pos);
+            result.calcSnappedPoint(distCalc);
+        }
+    }
+
+    @Override
+    public void query(BBox queryBBox, Visitor function) {
+        int minRow = getRow(queryBBox.minLat), maxRow = getRow(queryBBox.maxLat);
+        int minColumn = getColumn(queryBBox.minLon), maxColumn = getColumn(queryBBox.maxLon);
+        IntHashSet edges = new IntHashSet();
+        IntHashSet nodes = new IntHashSet();
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                int cell = findCell(getCellKey(row, column));
+                if (cell < 0)
+                    continue;
+
+                if (function.isTileInfo()) {
+                    double cellMinLat = minLat + row * deltaLat, cellMinLon = minLon + column * deltaLon;
+                    function.onTile(new BBox(cellMinLon, cellMinLon + deltaLon, cellMinLat, cellMinLat + deltaLat), 0);
+                }
+                int end = dataAccess.getInt(offsetsPointer + (long) (cell + 1) * 4);
+                for (int entry = dataAccess.getInt(offsetsPointer + (long) cell * 4); entry < end; entry++) {
+                    int edge = dataAccess.getInt(entriesPointer + (long) entry * ENTRY_INTS * 4);
+                    if (!edges.add(edge))
+                        continue;
+
+                    EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+                    if (nodes.add(edgeState.getBaseNode()))
+                        function.onNode(edgeState.getBaseNode());
+                    if (nodes.add(edgeState.getAdjNode()))
+                        function.onNode(edgeState.getAdjNode());
+                }
+            }
+        }
+    }
+
+    @Override
+    public LocationIndexSegmentGrid create(long size) {
+        throw new UnsupportedOperationException("Not supported. Use prepareIndex instead.");
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (initialized)
+            throw new IllegalStateException("Call loadExisting only once");
+
+        if (!dataAccess.loadExisting())
+            return false;
+
+        if (dataAccess.getHeader(0) != MAGIC_INT)
+            throw new IllegalStateException("incorrect location index version, expected:" + MAGIC_INT);
+
+        if (dataAccess.getHeader(1 * 4) != calcChecksum())
+            throw new IllegalStateException("location index was opened with incorrect graph: "
+                    + dataAccess.getHeader(1 * 4) + " vs. " + calcChecksum());
+
+        setMinResolutionInMeter(dataAccess.getHeader(2 * 4));
+        cells = dataAccess.getHeader(3 * 4);
+        prepareAlgo();
+        initPointers();
+        initialized = true;
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        dataAccess.setHeader(0, MAGIC_INT);
+        dataAccess.setHeader(1 * 4, calcChecksum());
+        dataAccess.setHeader(2 * 4, minResolutionInMeter);
+        dataAccess.setHeader(3 * 4, cells);
+        dataAccess.flush();
+    }
+
+    int calcChecksum() {
+        return graph.getNodes();
+    }
+
+    @Override
+    public void close() {
+        dataAccess.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return dataAccess.isClosed();
+    }
+
+    @Override
+    public long getCapacity() {
+        return dataAccess.getCapacity();
+    }
+
+    @Override
+    public void setSegmentSize(int bytes) {
+        dataAccess.setSegmentSize(bytes);
+    }
+}
@@ -19,6 +19,7 @@ package com.graphhopper.storage.index;
 
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.LongArrayList;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.carrotsearch.hppc.predicates.IntPredicate;
 import com.graphhopper.coll.GHBitSet;
@@ -35,6 +36,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class implements a Quadtree to get the closest node or edge from GPS coordinates.
@@ -77,7 +81,21 @@ public class LocationIndexTree implements LocationIndex {
     private double deltaLat;
     private double deltaLon;
     private int initSizeLeafEntries = 4;
+    private int preparationThreads = 1;
+    private boolean flatLayout = false;
+    // the leafs of the tree sorted by their spatial key, the ids of leaf i are stored from
+    // flatIds[flatOffsets[i]] to flatIds[flatOffsets[i + 1] - 1]. Only used if flatLayout is true.
+    private long[] flatKeys;
+    private int[] flatOffsets;
+    private int[] flatIds;
     private boolean initialized = false;
+    // shared by all instances so that it does not keep a reference to the graph
+    private static final ThreadLocal<QueryContext> QUERY_CONTEXT = new ThreadLocal<QueryContext>() {
+        @Override
+        protected QueryContext initialValue() {
+            return new QueryContext();
+        }
+    };
     private static final Comparator<QueryResult> QR_COMPARATOR = new Comparator<QueryResult>() {
         @Override
         public int compare(QueryResult o1, QueryResult o2) {
@@ -133,6 +151,33 @@ public class LocationIndexTree implements LocationIndex {
         return this;
     }
 
+    /**
+     * Specifies the number of threads that rasterize the edges in prepareIndex. Every thread builds
+     * its own in-memory tree, so more threads need more memory. The stored index does not depend on
+     * the number of threads. Default is 1.
+     */
+    public LocationIndexTree setPreparationThreads(int preparationThreads) {
+        if (preparationThreads < 1)
+            throw new IllegalArgumentException("preparationThreads must be at least 1 but was " + preparationThreads);
+
+        this.preparationThreads = preparationThreads;
+        return this;
+    }
+
+    /**
+     * Copies the leafs of the tree into flat arrays on the heap after the index was loaded or
+     * created. Then a lookup is a binary search over the spatial keys of the leafs and the ids of a
+     * leaf are read from a contiguous array instead of traversing the tree in the DataAccess. This
+     * needs additional heap memory of roughly the size of the index. Default is false.
+     */
+    public LocationIndexTree setFlatLayout(boolean flatLayout) {
+        if (initialized)
+            throw new IllegalStateException("Call setFlatLayout before loadExisting or prepareIndex");
+
+        this.flatLayout = flatLayout;
+        return this;
+    }
+
     void prepareAlgo() {
         // 0.1 meter should count as 'equal'
         equalNormedDelta = distCalc.calcNormalizedDist(0.1);
@@ -225,7 +270,7 @@ public class LocationIndexTree implements LocationIndex {
 
     InMemConstructionIndex getPrepareInMemIndex() {
         InMemConstructionIndex memIndex = new InMemConstructionIndex(entries[0]);
-        memIndex.prepare();
+        memIndex.prepare(preparationThreads);
         return memIndex;
     }
 
@@ -269,6 +314,8 @@ public class LocationIndexTree implements LocationIndex {
 
         setMinResolutionInMeter(dataAccess.getHeader(2 * 4));
         prepareAlgo();
+        if (flatLayout)
+            createFlatLayout();
         initialized = true;
         return true;
     }
@@ -302,12 +349,16 @@ public class LocationIndexTree implements LocationIndex {
             throw new IllegalStateException("Problem while storing location index. " + Helper.getMemInfo(), ex);
         }
         float entriesPerLeaf = (float) inMem.size / inMem.leafs;
+        if (flatLayout)
+            createFlatLayout();
         initialized = true;
         logger.info("location index created in " + sw.stop().getSeconds()
                 + "s, size:" + Helper.nf(inMem.size)
                 + ", leafs:" + Helper.nf(inMem.leafs)
                 + ", precision:" + minResolutionInMeter
                 + ", depth:" + entries.length
+                + ", threads:" + preparationThreads
+                + ", flatLayout:" + flatLayout
                 + ", checksum:" + calcChecksum()
                 + ", entries:" + Arrays.toString(entries)
                 + ", entriesPerLeaf:" + entriesPerLeaf);
@@ -315,6 +366,47 @@ public class LocationIndexTree implements LocationIndex {
         return this;
     }
 
+    /**
+     * Traverses the stored tree and copies the leafs into the flat arrays.
+     */
+    void createFlatLayout() {
+        LongArrayList keys = new LongArrayList();
+        IntArrayList offsets = new IntArrayList();
+        IntArrayList ids = new IntArrayList();
+        collectLeafs(START_POINTER, 0, 0, keys, offsets, ids);
+        offsets.add(ids.size());
+        flatKeys = keys.toArray();
+        flatOffsets = offsets.toArray();
+        flatIds = ids.toArray();
+    }
+
+    private void collectLeafs(int intPointer, long key, int depth, LongArrayList keys, IntArrayList offsets, IntArrayList ids) {
+        long pointer = (long) intPointer << 2;
+        if (depth == entries.length) {
+            keys.add(key);
+            offsets.add(ids.size());
+            int nextIntPointer = dataAccess.getInt(pointer);
+            if (nextIntPointer < 0) {
+                ids.add(-(nextIntPointer + 1));
+            } else {
+                long max = (long) nextIntPointer * 4;
+                for (long leafIndex = pointer + 4; leafIndex < max; leafIndex += 4) {
+                    ids.add(dataAccess.getInt(leafIndex));
+                }
+            }
+            return;
+        }
+        int shift = shifts[depth];
+        // the cell index is a part of the reverse spatial key. Visiting the cells in the order of the
+        // forward key parts collects the leafs sorted by their spatial key
+        for (int keyPart = 0; keyPart < (1 << shift); keyPart++) {
+            int cellIndex = (int) BitUtil.BIG.reverse(keyPart, shift);
+            int nextIntPointer = dataAccess.getInt(pointer + (cellIndex << 2));
+            if (nextIntPointer > 0)
+                collectLeafs(nextIntPointer, (key << shift) | keyPart, depth + 1, keys, offsets, ids);
+        }
+    }
+
     int calcChecksum() {
         // do not include the edges as we could get problem with CHGraph due to shortcuts
         // ^ graph.getAllEdges().count();
@@ -323,6 +415,9 @@ public class LocationIndexTree implements LocationIndex {
 
     @Override
     public void close() {
+        flatKeys = null;
+        flatOffsets = null;
+        flatIds = null;
         dataAccess.close();
     }
 
@@ -351,25 +446,41 @@ public class LocationIndexTree implements LocationIndex {
      */
     final void fillIDs(long keyPart, int intPointer, GHIntHashSet set, int depth) {
         long pointer = (long) intPointer << 2;
-        if (depth == entries.length) {
-            int nextIntPointer = dataAccess.getInt(pointer);
-            if (nextIntPointer < 0) {
-                // single data entries (less disc space)
-                set.add(-(nextIntPointer + 1));
-            } else {
-                long max = (long) nextIntPointer * 4;
-                // leaf entry => nextIntPointer is maxPointer
-                for (long leafIndex = pointer + 4; leafIndex < max; leafIndex += 4) {
-                    set.add(dataAccess.getInt(leafIndex));
-                }
+        for (; depth < entries.length; depth++) {
+            int offset = (int) (bitmasks[depth] & keyPart) << 2;
+            int nextIntPointer = dataAccess.getInt(pointer + offset);
+            if (nextIntPointer <= 0)
+                return;
+
+            // tree entry => positive value points to subentries
+            keyPart = keyPart >>> shifts[depth];
+            pointer = (long) nextIntPointer << 2;
+        }
+
+        int nextIntPointer = dataAccess.getInt(pointer);
+        if (nextIntPointer < 0) {
+            // single data entries (less disc space)
+            set.add(-(nextIntPointer + 1));
+        } else {
+            long max = (long) nextIntPointer * 4;
+            // leaf entry => nextIntPointer is maxPointer
+            for (long leafIndex = pointer + 4; leafIndex < max; leafIndex += 4) {
+                set.add(dataAccess.getInt(leafIndex));
             }
-            return;
         }
-        int offset = (int) (bitmasks[depth] & keyPart) << 2;
-        int nextIntPointer = dataAccess.getInt(pointer + offset);
-        if (nextIntPointer > 0) {
-            // tree entry => negative value points to subentries
-            fillIDs(keyPart >>> shifts[depth], nextIntPointer, set, depth + 1);
+    }
+
+    /**
+     * This method fills the set with the node IDs of the leaf with the specified spatial key from
+     * the flat arrays.
+     */
+    final void fillFlatIDs(long key, GHIntHashSet set) {
+        int index = Arrays.binarySearch(flatKeys, key);
+        if (index < 0)
+            return;
+
+        for (int i = flatOffsets[index]; i < flatOffsets[index + 1]; i++) {
+            set.add(flatIds[i]);
         }
     }
 
@@ -579,6 +690,10 @@ public class LocationIndexTree implements LocationIndex {
     }
 
     final void findNetworkEntriesSingleRegion(GHIntHashSet storedNetworkEntryIds, double queryLat, double queryLon) {
+        if (flatKeys != null) {
+            fillFlatIDs(keyAlgo.encode(queryLat, queryLon), storedNetworkEntryIds);
+            return;
+        }
         long keyPart = createReverseKey(queryLat, queryLon);
         fillIDs(keyPart, START_POINTER, storedNetworkEntryIds, 0);
     }
@@ -588,43 +703,50 @@ public class LocationIndexTree implements LocationIndex {
         if (isClosed())
             throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
 
-        GHIntHashSet allCollectedEntryIds = new GHIntHashSet();
+        // the sets are reused for all queries of the current thread
+        QueryContext context = QUERY_CONTEXT.get();
+        GHIntHashSet allCollectedEntryIds = context.allCollectedEntryIds;
+        allCollectedEntryIds.clear();
+        final EdgeExplorer explorer = graph.createEdgeExplorer();
         final QueryResult closestMatch = new QueryResult(queryLat, queryLon);
         for (int iteration = 0; iteration < maxRegionSearch; iteration++) {
-            GHIntHashSet storedNetworkEntryIds = new GHIntHashSet();
+            GHIntHashSet storedNetworkEntryIds = context.storedNetworkEntryIds;
+            storedNetworkEntryIds.clear();
             boolean earlyFinish = findNetworkEntries(queryLat, queryLon, storedNetworkEntryIds, iteration);
             storedNetworkEntryIds.removeAll(allCollectedEntryIds);
             allCollectedEntryIds.addAll(storedNetworkEntryIds);
 
-            // clone storedIds to avoid interference with forEach
-            final GHBitSet checkBitset = new GHTBitSet(new GHIntHashSet(storedNetworkEntryIds));
+            context.checkedIds.clear();
+            context.checkedIds.addAll(storedNetworkEntryIds);
+            final GHBitSet checkBitset = context.checkBitset;
+            // the iteration order of the reused set depends on previous queries, sort the entries
+            // to break ties between equally close edges always in the same way
+            IntArrayList sortedEntryIds = context.sortedEntryIds;
+            sortedEntryIds.clear();
+            sortedEntryIds.addAll(storedNetworkEntryIds);
+            Arrays.sort(sortedEntryIds.buffer, 0, sortedEntryIds.size());
             // find nodes from the network entries which are close to 'point'
-            final EdgeExplorer explorer = graph.createEdgeExplorer();
-            storedNetworkEntryIds.forEach(new IntPredicate() {
-                @Override
-                public boolean apply(int networkEntryNodeId) {
-                    new XFirstSearchCheck(queryLat, queryLon, checkBitset, edgeFilter) {
-                        @Override
-                        protected double getQueryDistance() {
-                            return closestMatch.getQueryDistance();
-                        }
+            for (int i = 0; i < sortedEntryIds.size(); i++) {
+                new XFirstSearchCheck(queryLat, queryLon, checkBitset, edgeFilter) {
+                    @Override
+                    protected double getQueryDistance() {
+                        return closestMatch.getQueryDistance();
+                    }
 
-                        @Override
-                        protected boolean check(int node, double normedDist, int wayIndex, EdgeIteratorState edge, QueryResult.Position pos) {
-                            if (normedDist < closestMatch.getQueryDistance()) {
-                                closestMatch.setQueryDistance(normedDist);
-                                closestMatch.setClosestNode(node);
-                                closestMatch.setClosestEdge(edge.detach(false));
-                                closestMatch.setWayIndex(wayIndex);
-                                closestMatch.setSnappedPosition(pos);
-                                return true;
-                            }
-                            return false;
+                    @Override
+                    protected boolean check(int node, double normedDist, int wayIndex, EdgeIteratorState edge, QueryResult.Position pos) {
+                        if (normedDist < closestMatch.getQueryDistance()) {
+                            closestMatch.setQueryDistance(normedDist);
+                            closestMatch.setClosestNode(node);
+                            closestMatch.setClosestEdge(edge.detach(false));
+                            closestMatch.setWayIndex(wayIndex);
+                            closestMatch.setSnappedPosition(pos);
+                            return true;
                         }
-                    }.start(explorer, networkEntryNodeId);
-                    return true;
-                }
-            });
+                        return false;
+                    }
+                }.start(explorer, sortedEntryIds.get(i));
+            }
 
             // do early finish only if something was found (#318)
             if (earlyFinish && closestMatch.isValid())
@@ -637,6 +759,8 @@ public class LocationIndexTree implements LocationIndex {
             closestMatch.calcSnappedPoint(distCalc);
         }
 
+        if (context.isOversized())
+            QUERY_CONTEXT.remove();
         return closestMatch;
     }
 
@@ -851,9 +975,103 @@ public class LocationIndexTree implements LocationIndex {
         }
 
         void prepare() {
+            addEdges(root, 0, 1);
+        }
+
+        /**
+         * Every thread rasterizes every threads-th edge into its own tree, afterwards the subtrees of
+         * the root cells are merged in parallel. The leafs are sorted sets, so the resulting tree is
+         * identical to the one of prepare().
+         */
+        void prepare(final int threads) {
+            if (threads <= 1) {
+                prepare();
+                return;
+            }
+
+            final InMemTreeEntry[] roots = new InMemTreeEntry[threads];
+            ExecutorService threadPool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int thread = 0; thread < threads; thread++) {
+                    final int offset = thread;
+                    roots[offset] = new InMemTreeEntry(root.subEntries.length);
+                    futures.add(threadPool.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            addEdges(roots[offset], offset, threads);
+                        }
+                    }));
+                }
+                waitFor(futures);
+
+                for (int cell = 0; cell < root.subEntries.length; cell++) {
+                    final int index = cell;
+                    futures.add(threadPool.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            InMemEntry merged = null;
+                            for (InMemTreeEntry tmpRoot : roots) {
+                                merged = merge(merged, tmpRoot.getSubEntry(index));
+                            }
+                            root.setSubEntry(index, merged);
+                        }
+                    }));
+                }
+                waitFor(futures);
+            } finally {
+                threadPool.shutdownNow();
+            }
+        }
+
+        private void waitFor(List<Future<?>> futures) {
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (Exception ex) {
+                throw new IllegalStateException("Problem while preparing location index", ex);
+            }
+            futures.clear();
+        }
+
+        /**
+         * Adds the entries of source to target.
+         *
+         * @return the merged entry, target is modified
+         */
+        InMemEntry merge(InMemEntry target, InMemEntry source) {
+            if (target == null)
+                return source;
+            if (source == null)
+                return target;
+
+            if (target.isLeaf()) {
+                InMemLeafEntry leaf = (InMemLeafEntry) target;
+                IntArrayList nodes = ((InMemLeafEntry) source).getResults();
+                for (int i = 0; i < nodes.size(); i++) {
+                    leaf.addNode(nodes.get(i));
+                }
+            } else {
+                InMemTreeEntry tree = (InMemTreeEntry) target;
+                InMemTreeEntry sourceTree = (InMemTreeEntry) source;
+                for (int i = 0; i < tree.subEntries.length; i++) {
+                    tree.subEntries[i] = merge(tree.subEntries[i], sourceTree.subEntries[i]);
+                }
+            }
+            return target;
+        }
+
+        /**
+         * Adds all edges with an id that has the specified remainder when divided by step.
+         */
+        void addEdges(InMemTreeEntry tmpRoot, int offset, int step) {
             final EdgeIterator allIter = graph.getAllEdges();
             try {
                 while (allIter.next()) {
+                    if (allIter.getEdge() % step != offset)
+                        continue;
+
                     int nodeA = allIter.getBaseNode();
                     int nodeB = allIter.getAdjNode();
                     double lat1 = nodeAccess.getLatitude(nodeA);
@@ -865,13 +1083,13 @@ public class LocationIndexTree implements LocationIndex {
                     for (int i = 0; i < len; i++) {
                         lat2 = points.getLatitude(i);
                         lon2 = points.getLongitude(i);
-                        addNode(nodeA, nodeB, lat1, lon1, lat2, lon2);
+                        addNode(tmpRoot, nodeA, nodeB, lat1, lon1, lat2, lon2);
                         lat1 = lat2;
                         lon1 = lon2;
                     }
                     lat2 = nodeAccess.getLatitude(nodeB);
                     lon2 = nodeAccess.getLongitude(nodeB);
-                    addNode(nodeA, nodeB, lat1, lon1, lat2, lon2);
+                    addNode(tmpRoot, nodeA, nodeB, lat1, lon1, lat2, lon2);
                 }
             } catch (Exception ex) {
                 logger.error("Problem! base:" + allIter.getBaseNode() + ", adj:" + allIter.getAdjNode()
@@ -879,7 +1097,7 @@ public class LocationIndexTree implements LocationIndex {
             }
         }
 
-        void addNode(final int nodeA, final int nodeB,
+        void addNode(final InMemTreeEntry tmpRoot, final int nodeA, final int nodeB,
                      final double lat1, final double lon1,
                      final double lat2, final double lon2) {
             PointEmitter pointEmitter = new PointEmitter() {
@@ -888,7 +1106,7 @@ public class LocationIndexTree implements LocationIndex {
                     long key = keyAlgo.encode(lat, lon);
                     long keyPart = createReverseKey(key);
                     // no need to feed both nodes as we search neighbors in fillIDs
-                    addNode(root, nodeA, 0, keyPart, key);
+                    addNode(tmpRoot, nodeA, 0, keyPart, key);
                 }
             };
 
@@ -1013,6 +1231,28 @@ public class LocationIndexTree implements LocationIndex {
         }
     }
 
+    /**
+     * The sets that findClosest needs for every query. One instance is reused per thread, unless a
+     * query let the sets grow above MAX_REUSED_CAPACITY: the sets never shrink and clearing them is
+     * linear in their capacity, so a single large query would slow down all later queries of the
+     * thread and keep the memory.
+     */
+    static class QueryContext {
+        static final int MAX_REUSED_CAPACITY = 1 << 14;
+        final GHIntHashSet allCollectedEntryIds = new GHIntHashSet();
+        final GHIntHashSet storedNetworkEntryIds = new GHIntHashSet();
+        final GHIntHashSet checkedIds = new GHIntHashSet();
+        final GHBitSet checkBitset = new GHTBitSet(checkedIds);
+        final IntArrayList sortedEntryIds = new IntArrayList();
+
+        boolean isOversized() {
+            return allCollectedEntryIds.keys.length > MAX_REUSED_CAPACITY
+                    || storedNetworkEntryIds.keys.length > MAX_REUSED_CAPACITY
+                    || checkedIds.keys.length > MAX_REUSED_CAPACITY
+                    || sortedEntryIds.buffer.length > MAX_REUSED_CAPACITY;
+        }
+    }
+
     /**
      * Make it possible to collect nearby location also for other purposes.
      */
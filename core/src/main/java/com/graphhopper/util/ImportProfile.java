@@ -0,0 +1,360 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Records wall time, CPU time, throughput and memory usage for the different phases of an import
+ * (e.g. preprocess, nodes, ways, relations, subnetworks, CH, LM). Phases are measured in the order
+ * they are started and are not allowed to overlap. The result can be written as JSON into the
+ * graph folder to find out which phase dominates time or memory of large builds.
+ * <p>
+ * This class is not thread safe, all phases have to be started and stopped from the same thread.
+ */
+public class ImportProfile {
+    public static final String FILE_NAME = "import_profile.json";
+    private static final long MB = 1L << 20;
+    private static final Pattern JSON_VALUE = Pattern.compile("\"(\\w+)\": (?:\"([^\"]*)\"|([^,}\\s]+))");
+
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private final List<Phase> phases = new ArrayList<>();
+    private final Map<String, DataAccessInfo> dataAccessInfos = new TreeMap<>();
+    private Phase current;
+
+    public ImportProfile() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid())
+                heapPools.add(pool);
+        }
+    }
+
+    /**
+     * Starts a new phase and stops the current one if there is one.
+     */
+    public ImportProfile start(String name) {
+        if (current != null)
+            stop(current.elements);
+
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+        }
+        current = new Phase(name);
+        current.startNanos = System.nanoTime();
+        current.startCpuNanos = getCpuNanos();
+        return this;
+    }
+
+    /**
+     * Adds the specified number of processed elements to the current phase. Does nothing if no
+     * phase was started.
+     */
+    public ImportProfile count(long elements) {
+        if (current != null)
+            current.elements += elements;
+        return this;
+    }
+
+    /**
+     * Stops the current phase if there is one.
+     */
+    public ImportProfile stop() {
+        if (current != null)
+            stop(current.elements);
+        return this;
+    }
+
+    /**
+     * Stops the current phase and sets the number of processed elements to the specified value.
+     */
+    public ImportProfile stop(long elements) {
+        if (current == null)
+            throw new IllegalStateException("No phase was started");
+
+        current.elements = elements;
+        current.wallNanos = System.nanoTime() - current.startNanos;
+        long cpu = getCpuNanos();
+        current.cpuNanos = cpu < 0 || current.startCpuNanos < 0 ? -1 : cpu - current.startCpuNanos;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = pool.getPeakUsage();
+            if (usage != null)
+                peak += usage.getUsed();
+        }
+        current.peakHeapBytes = peak;
+        current.usedHeapBytes = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        phases.add(current);
+        current = null;
+        return this;
+    }
+
+    /**
+     * Records the capacity of all DataAccess objects of the specified directory. DataAccess objects
+     * that do not reside in the JVM heap (e.g. MMAP) are reported as off-heap and are attributed to
+     * the current phase or, if there is none, to the last stopped phase. If called repeatedly the
+     * largest capacity per DataAccess is kept.
+     */
+    public ImportProfile recordDataAccess(Directory dir) {
+        long offHeap = 0;
+        for (DataAccess da : dir.getAll()) {
+            DataAccessInfo info = dataAccessInfos.get(da.getName());
+            if (info == null) {
+                info = new DataAccessInfo(da.getName(), da.getType().toString(), !da.getType().isInMemory());
+                dataAccessInfos.put(da.getName(), info);
+            }
+            info.peakBytes = Math.max(info.peakBytes, da.getCapacity());
+            if (info.offHeap)
+                offHeap += da.getCapacity();
+        }
+        Phase phase = current != null ? current : phases.isEmpty() ? null : phases.get(phases.size() - 1);
+        if (phase != null)
+            phase.offHeapBytes = Math.max(phase.offHeapBytes, offHeap);
+        return this;
+    }
+
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    /**
+     * @return the phase with the specified name or null if not found
+     */
+    public Phase getPhase(String name) {
+        for (Phase phase : phases) {
+            if (phase.getName().equals(name))
+                return phase;
+        }
+        return null;
+    }
+
+    public Collection<DataAccessInfo> getDataAccessInfos() {
+        return Collections.unmodifiableCollection(dataAccessInfos.values());
+    }
+
+    public long getTotalMillis() {
+        long sum = 0;
+        for (Phase phase : phases) {
+            sum += phase.getWallMillis();
+        }
+        return sum;
+    }
+
+    public void write(File folder) {
+        File file = new File(folder, FILE_NAME);
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        } catch (IOException ex) {
+            throw new RuntimeException("Cannot write import profile to " + file, ex);
+        }
+    }
+
+    /**
+     * Reads the profile that {@link #write(File)} stored in the specified folder. Times and memory
+     * usage have the precision of the file, i.e. milliseconds and megabytes.
+     *
+     * @return the stored profile or null if the folder does not contain one
+     */
+    public static ImportProfile read(File folder) {
+        File file = new File(folder, FILE_NAME);
+        if (!file.exists())
+            return null;
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new RuntimeException("Cannot read import profile from " + file, ex);
+        }
+        ImportProfile profile = new ImportProfile();
+        // toJson writes every phase and every DataAccess into its own line
+        for (String line : lines) {
+            Map<String, String> values = new HashMap<>();
+            Matcher matcher = JSON_VALUE.matcher(line);
+            while (matcher.find()) {
+                values.put(matcher.group(1), matcher.group(2) != null ? matcher.group(2) : matcher.group(3));
+            }
+            if (values.containsKey("wall_ms")) {
+                Phase phase = new Phase(values.get("name"));
+                phase.wallNanos = Long.parseLong(values.get("wall_ms")) * 1_000_000;
+                long cpuMillis = Long.parseLong(values.get("cpu_ms"));
+                phase.cpuNanos = cpuMillis < 0 ? -1 : cpuMillis * 1_000_000;
+                phase.elements = Long.parseLong(values.get("elements"));
+                phase.peakHeapBytes = Long.parseLong(values.get("peak_heap_mb")) * MB;
+                phase.usedHeapBytes = Long.parseLong(values.get("used_heap_mb")) * MB;
+                phase.offHeapBytes = Long.parseLong(values.get("off_heap_mb")) * MB;
+                profile.phases.add(phase);
+            } else if (values.containsKey("peak_bytes")) {
+                DataAccessInfo info = new DataAccessInfo(values.get("name"), values.get("type"),
+                        Boolean.parseBoolean(values.get("off_heap")));
+                info.peakBytes = Long.parseLong(values.get("peak_bytes"));
+                profile.dataAccessInfos.put(info.getName(), info);
+            }
+        }
+        return profile;
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"total_ms\": ").append(getTotalMillis()).append(",\n  \"phases\": [");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    {\"name\": \"").append(phase.getName()).append("\"").
+                    append(", \"wall_ms\": ").append(phase.getWallMillis()).
+                    append(", \"cpu_ms\": ").append(phase.getCpuMillis()).
+                    append(", \"elements\": ").append(phase.getElements()).
+                    append(", \"elements_per_second\": ").append(Math.round(phase.getElementsPerSecond())).
+                    append(", \"peak_heap_mb\": ").append(phase.getPeakHeapBytes() / MB).
+                    append(", \"used_heap_mb\": ").append(phase.getUsedHeapBytes() / MB).
+                    append(", \"off_heap_mb\": ").append(phase.getOffHeapBytes() / MB).
+                    append("}");
+        }
+        sb.append("\n  ],\n  \"data_access\": [");
+        int i = 0;
+        for (DataAccessInfo info : dataAccessInfos.values()) {
+            sb.append(i++ == 0 ? "\n" : ",\n");
+            sb.append("    {\"name\": \"").append(info.getName()).append("\"").
+                    append(", \"type\": \"").append(info.getType()).append("\"").
+                    append(", \"off_heap\": ").append(info.isOffHeap()).
+                    append(", \"peak_bytes\": ").append(info.getPeakBytes()).
+                    append("}");
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    private long getCpuNanos() {
+        if (!threadBean.isCurrentThreadCpuTimeSupported())
+            return -1;
+        try {
+            return threadBean.getCurrentThreadCpuTime();
+        } catch (UnsupportedOperationException ex) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : phases) {
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(phase);
+        }
+        return sb.toString();
+    }
+
+    public static class Phase {
+        private final String name;
+        private long startNanos;
+        private long startCpuNanos;
+        private long wallNanos;
+        private long cpuNanos;
+        private long elements;
+        private long peakHeapBytes;
+        private long usedHeapBytes;
+        private long offHeapBytes;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWallMillis() {
+            return wallNanos / 1_000_000;
+        }
+
+        /**
+         * @return the CPU time of the importing thread or -1 if not supported by the JVM. Note that
+         * this excludes the time spent in worker threads e.g. while parsing PBF files.
+         */
+        public long getCpuMillis() {
+            return cpuNanos < 0 ? -1 : cpuNanos / 1_000_000;
+        }
+
+        public long getElements() {
+            return elements;
+        }
+
+        public double getElementsPerSecond() {
+            return wallNanos <= 0 ? 0 : elements * 1e9 / wallNanos;
+        }
+
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        public long getUsedHeapBytes() {
+            return usedHeapBytes;
+        }
+
+        public long getOffHeapBytes() {
+            return offHeapBytes;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + getWallMillis() + "ms (" + Helper.nf(elements) + ", peak heap " + peakHeapBytes / MB + "MB)";
+        }
+    }
+
+    public static class DataAccessInfo {
+        private final String name;
+        private final String type;
+        private final boolean offHeap;
+        private long peakBytes;
+
+        DataAccessInfo(String name, String type, boolean offHeap) {
+            this.name = name;
+            this.type = type;
+            this.offHeap = offHeap;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public boolean isOffHeap() {
+            return offHeap;
+        }
+
+        public long getPeakBytes() {
+            return peakBytes;
+        }
+    }
+}
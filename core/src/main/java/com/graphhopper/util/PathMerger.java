@@ -24,12 +24,14 @@ import com.graphhopper.routing.profiles.BooleanEncodedValue;
 import com.graphhopper.routing.profiles.Roundabout;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.PathProcessor;
+import com.graphhopper.util.details.PathDetail;
 import com.graphhopper.util.details.PathDetailsBuilderFactory;
 import com.graphhopper.util.exceptions.ConnectionNotFoundException;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class merges multiple {@link Path} objects into one continuous object that
@@ -50,6 +52,7 @@ public class PathMerger {
     private boolean simplifyResponse = true;
     private DouglasPeucker douglasPeucker = DP;
     private boolean calcPoints = true;
+    private boolean compactPoints = false;
     private PathDetailsBuilderFactory pathBuilderFactory;
     private List<String> requestedPathDetails = Collections.EMPTY_LIST;
     private double favoredHeading = Double.NaN;
@@ -74,6 +77,15 @@ public class PathMerger {
         return this;
     }
 
+    /**
+     * If true the points of the route are stored with 7 decimal places, see CompactPointList. This
+     * halves their memory but rounds them, so the points differ slightly from the graph.
+     */
+    public PathMerger setCompactPoints(boolean compactPoints) {
+        this.compactPoints = compactPoints;
+        return this;
+    }
+
     public PathMerger setDouglasPeucker(DouglasPeucker douglasPeucker) {
         this.douglasPeucker = douglasPeucker;
         return this;
@@ -104,6 +116,16 @@ public class PathMerger {
 
         InstructionList fullInstructions = new InstructionList(tr);
         PointList fullPoints = PointList.EMPTY;
+        if (calcPoints || enableInstructions) {
+            int edges = 0;
+            boolean is3D = false;
+            for (Path path : paths) {
+                edges += path.getEdgeCount();
+                is3D |= path.is3D();
+            }
+            // all points are directly appended to this list
+            fullPoints = compactPoints ? new CompactPointList(edges + 1, is3D) : new PointList(edges + 1, is3D);
+        }
         List<String> description = new ArrayList<>();
         BooleanEncodedValue roundaboutEnc = encodingManager.getBooleanEncodedValue(Roundabout.KEY);
         for (int pathIndex = 0; pathIndex < paths.size(); pathIndex++) {
@@ -116,36 +138,31 @@ public class PathMerger {
             fullTimeInMillis += path.getTime();
             fullDistance += path.getDistance();
             fullWeight += path.getWeight();
-            if (enableInstructions) {
-                // ORS-GH MOD START
-//                InstructionList il = path.calcInstructions(roundaboutEnc, tr);
-                InstructionList il = path.calcInstructions(roundaboutEnc, tr, pathProcessor[ppIndex]);
-                // ORS-GH MOD END
-
-                if (!il.isEmpty()) {
-                    fullInstructions.addAll(il);
-
-                    // for all paths except the last replace the FinishInstruction with a ViaInstructionn
-                    if (pathIndex + 1 < paths.size()) {
-                        ViaInstruction newInstr = new ViaInstruction(fullInstructions.get(fullInstructions.size() - 1));
-                        newInstr.setViaCount(pathIndex + 1);
-                        fullInstructions.set(fullInstructions.size() - 1, newInstr);
-                    }
-                }
+            // points, instructions and details are calculated in one pass over the edges of the path
+            InstructionList il = enableInstructions ? new InstructionList(path.getEdgeCount() / 4, tr) : null;
+            PointList tmpPoints = calcPoints || enableInstructions ? fullPoints : null;
+            // ORS-GH MOD START - use path processor
+            Map<String, List<PathDetail>> details = path.calcPointsInstructionsAndDetails(tmpPoints, il, roundaboutEnc, tr,
+                    pathProcessor[ppIndex], requestedPathDetails, pathBuilderFactory, origPoints);
+            // ORS-GH MOD END
+            if (il != null && !il.isEmpty()) {
+                fullInstructions.addAll(il);
 
+                // for all paths except the last replace the FinishInstruction with a ViaInstructionn
+                if (pathIndex + 1 < paths.size()) {
+                    ViaInstruction newInstr = new ViaInstruction(fullInstructions.get(fullInstructions.size() - 1));
+                    newInstr.setViaCount(pathIndex + 1);
+                    fullInstructions.set(fullInstructions.size() - 1, newInstr);
+                }
             }
-            if (calcPoints || enableInstructions) {
-                PointList tmpPoints = path.calcPoints();
-                if (fullPoints.isEmpty())
-                    fullPoints = new PointList(tmpPoints.size(), tmpPoints.is3D());
 
+            if (tmpPoints != null) {
                 // Remove duplicated points, see #1138
-                if (pathIndex + 1 < paths.size()) {
-                    tmpPoints.removeLastPoint();
+                if (pathIndex + 1 < paths.size() && !fullPoints.isEmpty()) {
+                    fullPoints.removeLastPoint();
                 }
 
-                fullPoints.add(tmpPoints);
-                altRsp.addPathDetails(path.calcDetails(requestedPathDetails, pathBuilderFactory, origPoints));
+                altRsp.addPathDetails(details);
                 origPoints = fullPoints.size();
             }
 
@@ -182,6 +199,32 @@ public class PathMerger {
             PathSimplification ps = new PathSimplification(altRsp, douglasPeucker, enableInstructions);
             ps.simplify();
         }
+
+        if (enableInstructions)
+            shareInstructionPoints(fullInstructions, fullPoints);
+    }
+
+    /**
+     * Replaces the points of every instruction with a view of the specified points, so that the
+     * geometry of the route is stored only once. Does nothing if the instructions do not match the
+     * points, e.g. if the points were changed by the PathProcessor.
+     */
+    static void shareInstructionPoints(InstructionList instructions, PointList points) {
+        if (instructions.isEmpty())
+            return;
+        int lastIndex = 0;
+        for (Instruction instruction : instructions) {
+            lastIndex += instruction.getLength();
+        }
+        Instruction last = instructions.get(instructions.size() - 1);
+        if (lastIndex + last.getPoints().size() != points.size())
+            return;
+
+        int index = 0;
+        for (Instruction instruction : instructions) {
+            instruction.setPoints(points.shallowCopy(index, index + instruction.getPoints().size(), true));
+            index += instruction.getLength();
+        }
     }
 
     /**
@@ -19,6 +19,7 @@ package com.graphhopper.util.details;
 
 import com.graphhopper.routing.Path;
 import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PointList;
 
 import java.util.List;
 
@@ -44,13 +45,24 @@ public class PathDetailsFromEdges implements Path.EdgeVisitor {
 
     @Override
     public void next(EdgeIteratorState edge, int index, int prevEdgeId) {
+        startIntervals(edge);
+        lastIndex += edge.fetchWayGeometry(2).size();
+    }
+
+    @Override
+    public void next(EdgeIteratorState edge, int index, int prevEdgeId, PointList geometry) {
+        startIntervals(edge);
+        // the geometry includes the base node which is not part of the points of this edge
+        lastIndex += geometry.size() - 1;
+    }
+
+    private void startIntervals(EdgeIteratorState edge) {
         for (PathDetailsBuilder calc : calculators) {
             if (calc.isEdgeDifferentToLastEdge(edge)) {
                 calc.endInterval(lastIndex);
                 calc.startInterval(lastIndex);
             }
         }
-        lastIndex += edge.fetchWayGeometry(2).size();
     }
 
     @Override
@@ -18,8 +18,9 @@
 package com.graphhopper;
 
 import com.graphhopper.json.geo.JsonFeature;
-import com.graphhopper.routing.util.CarFlagEncoder;
-import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.reader.DataReader;
+import com.graphhopper.reader.dem.ElevationProvider;
+import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.util.parsers.OSMRoadEnvironmentParser;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphBuilder;
@@ -27,9 +28,17 @@ import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.storage.change.ChangeGraphHelper;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.CompactPointList;
+import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.ImportProfile;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.BBox;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
@@ -40,12 +49,14 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.graphhopper.util.Parameters.Algorithms.ASTAR_BI;
 import static org.junit.Assert.*;
 
 /**
  * @author Peter Karich
  */
 public class GraphHopperAPITest {
+    private static final String ghLoc = "./target/tmp-api-gh";
     final EncodingManager encodingManager = EncodingManager.create("car");
 
     void initGraph(GraphHopperStorage graph) {
@@ -59,6 +70,79 @@ public class GraphHopperAPITest {
         graph.edge(2, 3, 10, true);
     }
 
+    @Before
+    @After
+    public void cleanUp() {
+        Helper.removeDir(new File(ghLoc));
+    }
+
+    /**
+     * @return a GraphHopper that imports the graph of initGraph and the edge 1-2 instead of reading
+     * a data file, so the complete import is executed
+     */
+    private GraphHopper createImporter() {
+        return new GraphHopper() {
+            @Override
+            protected DataReader createReader(GraphHopperStorage ghStorage) {
+                return initDataReader(new GraphDataReader(ghStorage));
+            }
+        }.setMinNetworkSize(0, 0);
+    }
+
+    private class GraphDataReader implements DataReader {
+        private final GraphHopperStorage graph;
+        private ImportProfile importProfile = new ImportProfile();
+
+        GraphDataReader(GraphHopperStorage graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public DataReader setFile(File file) {
+            return this;
+        }
+
+        @Override
+        public DataReader setElevationProvider(ElevationProvider ep) {
+            return this;
+        }
+
+        @Override
+        public DataReader setWorkerThreads(int workerThreads) {
+            return this;
+        }
+
+        @Override
+        public DataReader setWayPointMaxDistance(double wayPointMaxDistance) {
+            return this;
+        }
+
+        @Override
+        public DataReader setSmoothElevation(boolean smoothElevation) {
+            return this;
+        }
+
+        @Override
+        public DataReader setImportProfile(ImportProfile importProfile) {
+            this.importProfile = importProfile;
+            return this;
+        }
+
+        @Override
+        public void readGraph() {
+            importProfile.start("ways");
+            graph.create(100);
+            initGraph(graph);
+            graph.edge(1, 2, 10, true);
+            importProfile.stop(graph.getEdges());
+        }
+
+        @Override
+        public Date getDataDate() {
+            return null;
+        }
+    }
+
     @Test
     public void testLoad() {
         GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
@@ -244,4 +328,235 @@ public class GraphHopperAPITest {
 
         assertEquals(2, checkPointCounter.get());
     }
+
+    @Test
+    public void testChangeGraphWithEdgeWeights() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+
+        GraphHopper instance = new GraphHopper().
+                init(new CmdArgs().put("graph.location", ghLoc).
+                        put("prepare.edge_weights.weightings", "fastest")).
+                setStoreOnFlush(false).
+                setEncodingManager(encodingManager).setCHEnabled(false).
+                loadGraph(graph);
+        instance.loadOrPrepareEdgeWeights();
+        GHResponse rsp = instance.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(rsp.hasErrors());
+        assertEquals(1800, rsp.getBest().getTime());
+
+        // the stored weights of the changed edges have to be calculated again
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("speed", 5);
+        instance.changeGraph(Collections.singletonList(new JsonFeature("1", "bbox",
+                new BBox(10.399, 10.4, 42.0, 42.001), null, properties)));
+        rsp = instance.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(rsp.hasErrors());
+        assertEquals(8400, rsp.getBest().getTime());
+        instance.close();
+    }
+
+    @Test
+    public void testImportProfile() {
+        GraphHopper instance = createImporter().setStoreOnFlush(true).
+                setEncodingManager(encodingManager).
+                setGraphHopperLocation(ghLoc).
+                setDataReaderFile("graph.osm");
+        instance.importOrLoad();
+
+        ImportProfile profile = instance.getImportProfile();
+        List<String> names = new ArrayList<>();
+        for (ImportProfile.Phase phase : profile.getPhases()) {
+            names.add(phase.getName());
+        }
+        assertEquals(Arrays.asList("ways", "subnetworks", "location_index", "ch", "lm", "flush"), names);
+        assertEquals(3, profile.getPhase("ways").getElements());
+        assertTrue(profile.getPhase("ways").getPeakHeapBytes() > 0);
+        assertFalse(profile.getDataAccessInfos().isEmpty());
+
+        File file = new File(ghLoc, ImportProfile.FILE_NAME);
+        assertTrue(file.exists());
+        instance.close();
+
+        // loading reads the stored import profile
+        instance = createImporter().setStoreOnFlush(true).
+                setEncodingManager(encodingManager).
+                setGraphHopperLocation(ghLoc);
+        instance.importOrLoad();
+        ImportProfile loaded = instance.getImportProfile();
+        names.clear();
+        for (ImportProfile.Phase phase : loaded.getPhases()) {
+            names.add(phase.getName());
+        }
+        assertEquals(Arrays.asList("ways", "subnetworks", "location_index", "ch", "lm", "flush"), names);
+        assertEquals(profile.getPhase("ways").getElements(), loaded.getPhase("ways").getElements());
+        assertEquals(profile.getPhase("ways").getWallMillis(), loaded.getPhase("ways").getWallMillis());
+        assertEquals(profile.getDataAccessInfos().size(), loaded.getDataAccessInfos().size());
+        assertTrue(file.exists());
+        instance.close();
+    }
+
+    @Test
+    public void testPrecomputedEdgeWeights() {
+        CmdArgs args = new CmdArgs().
+                put("datareader.file", "graph.osm").
+                put("graph.flag_encoders", "car").
+                put(Parameters.CH.PREPARE + "weightings", "no").
+                put("graph.location", ghLoc);
+        GraphHopper instance = createImporter().setStoreOnFlush(true).
+                init(new CmdArgs(args.toMap()).put("prepare.edge_weights.weightings", "fastest,short_fastest"));
+        instance.importOrLoad();
+        assertTrue(new File(ghLoc, "edge_weights_fastest_car").exists());
+        GHRequest req = new GHRequest(42.001, 10.399, 42.001, 10.001).setAlgorithm(ASTAR_BI);
+        PathWrapper precomputed = instance.route(req).getBest();
+        assertFalse(precomputed.hasErrors());
+        // the stored weights use the default distance factor, so they must not be used here
+        GHRequest shortFastestReq = new GHRequest(42.001, 10.399, 42.001, 10.001).setAlgorithm(ASTAR_BI).
+                setWeighting("short_fastest");
+        shortFastestReq.getHints().put("short_fastest.distance_factor", 1);
+        PathWrapper shortFastest = instance.route(shortFastestReq).getBest();
+        assertFalse(shortFastest.hasErrors());
+        instance.close();
+
+        instance = createImporter().setStoreOnFlush(true).init(args);
+        assertTrue(instance.load(ghLoc));
+        PathWrapper calculated = instance.route(req).getBest();
+        assertEquals(calculated.getRouteWeight(), precomputed.getRouteWeight(), 1e-6);
+        assertEquals(calculated.getTime(), precomputed.getTime());
+        assertEquals(calculated.getDistance(), precomputed.getDistance(), 1e-6);
+        assertEquals(calculated.getPoints(), precomputed.getPoints());
+        assertEquals(instance.route(shortFastestReq).getBest().getRouteWeight(), shortFastest.getRouteWeight(), 1e-6);
+        instance.close();
+    }
+
+    @Test
+    public void testCompactPoints() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+
+        // the snapped start point is not rounded to the precision of the graph
+        GHRequest req = new GHRequest(42.0512345678, 10.0412345678, 42, 10.4);
+        GraphHopper instance = new GraphHopper().
+                setStoreOnFlush(false).
+                setEncodingManager(encodingManager).setCHEnabled(false).
+                loadGraph(graph);
+        PointList points = instance.route(req).getBest().getPoints();
+        assertFalse(points instanceof CompactPointList);
+
+        instance.setCompactPoints(true);
+        PointList compactPoints = instance.route(req).getBest().getPoints();
+        assertTrue(compactPoints instanceof CompactPointList);
+        assertEquals(points.size(), compactPoints.size());
+        assertNotEquals(points.getLat(0), compactPoints.getLat(0), 0);
+        assertEquals(points.getLat(0), compactPoints.getLat(0), 1e-7);
+        assertEquals(points.getLon(0), compactPoints.getLon(0), 1e-7);
+        instance.close();
+    }
+
+    @Test
+    public void testRouteCache() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+
+        GraphHopper instance = new GraphHopper().
+                setStoreOnFlush(false).
+                setEncodingManager(encodingManager).setCHEnabled(false).
+                setRouteCacheSize(10).
+                loadGraph(graph);
+        GHResponse rsp = instance.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(rsp.hasErrors());
+        assertEquals(1800, rsp.getBest().getTime());
+        assertEquals(0, instance.getRouteCache().getHits());
+        assertEquals(1, instance.getRouteCache().getMisses());
+
+        GHResponse hit = instance.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(hit.hasErrors());
+        assertEquals(1800, hit.getBest().getTime());
+        assertEquals(1, instance.getRouteCache().getHits());
+        // every hit gets its own copy, only the immutable points are shared
+        assertNotSame(rsp.getBest(), hit.getBest());
+        assertTrue(hit.getBest().getPoints().isImmutable());
+        // the debug information and the path processors belong to the request
+        assertFalse(rsp.getBest().getDebugInfo().isEmpty());
+        assertEquals("", hit.getBest().getDebugInfo());
+        assertTrue(hit.getDebugInfo(), hit.getDebugInfo().endsWith("routeCache:hit; "));
+        assertEquals(1, hit.getReturnObjects().size());
+        assertNotSame(rsp.getReturnObjects().get(0), hit.getReturnObjects().get(0));
+        hit.getBest().getInstructions().get(0).setName("changed");
+        rsp = instance.route(new GHRequest(42, 10.4, 42, 10));
+        assertNotEquals("changed", rsp.getBest().getInstructions().get(0).getName());
+
+        // other parameters
+        rsp = instance.route(new GHRequest(42, 10.4, 42, 10).setAlgorithm("dijkstrabi"));
+        assertFalse(rsp.hasErrors());
+        assertEquals(2, instance.getRouteCache().getHits());
+        assertEquals(2, instance.getRouteCache().getSize());
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("speed", 5);
+        instance.changeGraph(Collections.singletonList(new JsonFeature("1", "bbox",
+                new BBox(10.399, 10.4, 42.0, 42.001), null, properties)));
+        assertEquals(0, instance.getRouteCache().getSize());
+
+        rsp = instance.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(rsp.hasErrors());
+        assertEquals(8400, rsp.getBest().getTime());
+        assertEquals(2, instance.getRouteCache().getHits());
+        instance.close();
+    }
+
+    @Test
+    public void testRouteCacheWithPathProcessors() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+
+        // a cached result would not be passed to the path processors
+        final AtomicInteger processedEdges = new AtomicInteger();
+        GraphHopper instance = new GraphHopper().
+                setStoreOnFlush(false).
+                setEncodingManager(encodingManager).setCHEnabled(false).
+                setRouteCacheSize(10);
+        instance.setPathProcessorFactory(new PathProcessorFactory() {
+            @Override
+            public PathProcessor createPathProcessor(PMap opts, FlagEncoder enc, GraphHopperStorage ghStorage) {
+                return new DefaultPathProcessor() {
+                    @Override
+                    public void processPathEdge(EdgeIteratorState edge, PointList geom) {
+                        processedEdges.incrementAndGet();
+                    }
+                };
+            }
+        });
+        instance.loadGraph(graph);
+        assertFalse(instance.route(new GHRequest(42, 10.4, 42, 10)).hasErrors());
+        int edges = processedEdges.get();
+        assertTrue(edges > 0);
+        assertFalse(instance.route(new GHRequest(42, 10.4, 42, 10)).hasErrors());
+        assertEquals(2 * edges, processedEdges.get());
+        assertEquals(0, instance.getRouteCache().getSize());
+        assertEquals(0, instance.getRouteCache().getHits());
+        instance.close();
+    }
+
+    @Test
+    public void testRouteCacheMaxPoints() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+
+        // a result with too many points is not cached
+        GraphHopper instance = new GraphHopper().
+                setStoreOnFlush(false).
+                setEncodingManager(encodingManager).setCHEnabled(false).
+                setRouteCacheSize(10, 3).
+                loadGraph(graph);
+        assertFalse(instance.route(new GHRequest(42, 10.4, 42, 10)).hasErrors());
+        assertEquals(0, instance.getRouteCache().getSize());
+        assertEquals(0, instance.getRouteCache().getPoints());
+        instance.close();
+    }
 }
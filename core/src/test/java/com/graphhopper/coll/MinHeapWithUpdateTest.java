@@ -0,0 +1,128 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import org.junit.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MinHeapWithUpdateTest {
+
+    @Test
+    public void pushAndPoll() {
+        MinHeapWithUpdate heap = new MinHeapWithUpdate(10);
+        heap.push(3, 2.5);
+        heap.push(7, 0.5);
+        heap.push(1, 4.0);
+        heap.push(0, 1.5);
+        assertEquals(4, heap.size());
+        assertTrue(heap.contains(3));
+        assertFalse(heap.contains(2));
+        assertEquals(7, heap.peekId());
+        assertEquals(0.5, heap.peekKey(), 1e-6);
+        assertEquals(7, heap.poll());
+        assertEquals(0, heap.poll());
+        assertEquals(3, heap.poll());
+        assertEquals(1, heap.poll());
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(7));
+    }
+
+    @Test
+    public void update() {
+        MinHeapWithUpdate heap = new MinHeapWithUpdate(10);
+        heap.push(1, 1);
+        heap.push(2, 2);
+        heap.push(3, 3);
+        heap.update(3, 0.5);
+        assertEquals(3, heap.peekId());
+        heap.update(3, 5);
+        assertEquals(1, heap.poll());
+        assertEquals(2, heap.poll());
+        assertEquals(3, heap.poll());
+    }
+
+    @Test
+    public void pushTwiceOrUpdateMissing() {
+        MinHeapWithUpdate heap = new MinHeapWithUpdate(10);
+        heap.push(1, 1);
+        try {
+            heap.push(1, 2);
+            fail("push of an existing id should fail");
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            heap.update(2, 2);
+            fail("update of a missing id should fail");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void clear() {
+        MinHeapWithUpdate heap = new MinHeapWithUpdate(5);
+        heap.push(4, 1);
+        heap.push(2, 3);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(4));
+        heap.push(4, 2);
+        heap.push(2, 1);
+        assertEquals(2, heap.poll());
+        assertEquals(4, heap.poll());
+    }
+
+    @Test
+    public void randomCompareToPriorityQueue() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        int capacity = 3000;
+        MinHeapWithUpdate heap = new MinHeapWithUpdate(capacity);
+        double[] keys = new double[capacity];
+        PriorityQueue<Integer> pq = new PriorityQueue<>(capacity, (a, b) -> Double.compare(keys[a], keys[b]));
+        for (int i = 0; i < 20_000; i++) {
+            int id = rnd.nextInt(capacity);
+            double key = rnd.nextDouble() * 100;
+            if (rnd.nextInt(3) == 0 && !pq.isEmpty()) {
+                int expected = pq.poll();
+                assertEquals("seed: " + seed, keys[expected], heap.peekKey(), 1e-10);
+                heap.poll();
+            } else if (heap.contains(id)) {
+                pq.remove(id);
+                keys[id] = key;
+                pq.add(id);
+                heap.update(id, key);
+            } else {
+                keys[id] = key;
+                pq.add(id);
+                heap.push(id, key);
+            }
+            assertEquals("seed: " + seed, pq.size(), heap.size());
+        }
+        double prev = -1;
+        while (!heap.isEmpty()) {
+            double key = heap.peekKey();
+            assertTrue("seed: " + seed, key >= prev);
+            assertTrue(pq.contains(heap.poll()));
+            prev = key;
+        }
+    }
+}
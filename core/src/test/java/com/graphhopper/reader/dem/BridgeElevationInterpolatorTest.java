@@ -20,7 +20,10 @@ package com.graphhopper.reader.dem;
 import com.graphhopper.coll.GHIntHashSet;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.routing.profiles.RoadEnvironment;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
@@ -129,4 +132,54 @@ public class BridgeElevationInterpolatorTest extends EdgeElevationInterpolatorTe
         assertEquals(18, edge17PointList.getEle(4), PRECISION);
         assertEquals(20, edge17PointList.getEle(5), PRECISION);
     }
+
+    @Test
+    public void interpolatesElevationsInParallel() {
+        GraphHopperStorage graph2 = new GraphHopperStorage(new RAMDirectory(), encodingManager, true,
+                new GraphExtension.NoOpExtension()).create(100);
+        try {
+            createStructures(graph);
+            createStructures(graph2);
+            edgeElevationInterpolator.execute();
+            new EdgeElevationInterpolator(graph2, roadEnvEnc, RoadEnvironment.BRIDGE).setThreads(3).execute();
+
+            NodeAccess na = graph.getNodeAccess();
+            NodeAccess na2 = graph2.getNodeAccess();
+            assertEquals(graph.getNodes(), graph2.getNodes());
+            for (int node = 0; node < graph.getNodes(); node++) {
+                assertEquals(na.getElevation(node), na2.getElevation(node), PRECISION);
+            }
+            for (int edge = 0; edge < graph.getAllEdges().length(); edge++) {
+                PointList pointList = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE).fetchWayGeometry(3);
+                PointList pointList2 = graph2.getEdgeIteratorState(edge, Integer.MIN_VALUE).fetchWayGeometry(3);
+                assertEquals(pointList, pointList2);
+            }
+            // inner node of the first bridge
+            assertEquals(20, na.getElevation(2), PRECISION);
+        } finally {
+            Helper.close(graph2);
+        }
+    }
+
+    /**
+     * Creates 20 bridges 0-1=2=3-4, 5-6=7=8-9, ... with a pillar node on every bridge edge.
+     */
+    private void createStructures(GraphHopperStorage g) {
+        NodeAccess na = g.getNodeAccess();
+        for (int structure = 0; structure < 20; structure++) {
+            int first = structure * 5;
+            for (int i = 0; i < 5; i++) {
+                na.setNode(first + i, structure, i, i == 2 ? 1000 : 10 * i + structure);
+            }
+            for (int i = 0; i < 4; i++) {
+                EdgeIteratorState edge = g.edge(first + i, first + i + 1, 10, true);
+                if (i == 0 || i == 3) {
+                    edge.setFlags(encodingManager.handleWayTags(normalWay, ACCEPT_WAY, 0));
+                } else {
+                    edge.setFlags(encodingManager.handleWayTags(interpolatableWay, ACCEPT_WAY, 0));
+                    edge.setWayGeometry(Helper.createPointList3D(structure, i + 0.5, 500));
+                }
+            }
+        }
+    }
 }
@@ -17,12 +17,15 @@
  */
 package com.graphhopper.reader.dem;
 
+import com.graphhopper.util.PointList;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 
@@ -99,6 +102,42 @@ public class SRTMProviderTest {
         assertEquals(161, instance.getEle(55.8943144, -3), 1e-1);
     }
 
+    @Test
+    public void testMaxTiles() {
+        final AtomicInteger decoded = new AtomicInteger();
+        instance = new SRTMProvider("./files/") {
+            @Override
+            byte[] readFile(File file) throws IOException {
+                decoded.incrementAndGet();
+                return super.readFile(file);
+            }
+        };
+        instance.setMaxTiles(1);
+        assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+        assertEquals(330, instance.getEle(49.958233, 11.558647), 1e-1);
+        // closes the first tile
+        assertEquals(1678, instance.getEle(-28.88316, -71.070557), 1e-1);
+        assertEquals(0, instance.getEle(55.4711873, 19.2501641), 1e-1);
+        int decodedTiles = decoded.get();
+        // loads the first tile again from the stored heights instead of decoding the downloaded file
+        assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+        assertEquals(1678, instance.getEle(-28.88316, -71.070557), 1e-1);
+        assertEquals(decodedTiles, decoded.get());
+    }
+
+    @Test
+    public void testFillElevation() {
+        instance = new SRTMProvider("./files/");
+        PointList pointList = new PointList(3, true);
+        pointList.add(49.968651, 11.574869, Double.NaN);
+        pointList.add(49.958233, 11.558647, Double.NaN);
+        pointList.add(-28.88316, -71.070557, Double.NaN);
+        instance.fillElevation(pointList);
+        assertEquals(466, pointList.getElevation(0), 1e-1);
+        assertEquals(330, pointList.getElevation(1), 1e-1);
+        assertEquals(1678, pointList.getElevation(2), 1e-1);
+    }
+
     @Ignore
     public void testGetEle() {
         instance = new SRTMProvider();
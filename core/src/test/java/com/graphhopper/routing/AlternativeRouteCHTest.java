@@ -0,0 +1,139 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ch.NodeOrderingProvider;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.ShortestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.CHProfile;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AlternativeRouteCHTest {
+    private Weighting weighting;
+    private GraphHopperStorage graph;
+    private CHGraph chGraph;
+    private PrepareContractionHierarchies pch;
+
+    @Before
+    public void setUp() {
+        CarFlagEncoder encoder = new CarFlagEncoder();
+        EncodingManager em = EncodingManager.create(encoder);
+        weighting = new ShortestWeighting(encoder);
+        CHProfile chProfile = CHProfile.nodeBased(weighting);
+        graph = new GraphBuilder(em).setCHProfiles(chProfile).create();
+        chGraph = graph.getCHGraph(chProfile);
+
+        //     7
+        //    / \
+        // 0-1---2-5
+        // |\     /|
+        // | 3---4 |
+        // 6-------/
+        graph.edge(0, 1, 100, true);
+        graph.edge(1, 2, 100, true);
+        graph.edge(2, 5, 100, true);
+        graph.edge(0, 3, 110, true);
+        graph.edge(3, 4, 110, true);
+        graph.edge(4, 5, 110, true);
+        graph.edge(0, 6, 250, true);
+        graph.edge(6, 5, 250, true);
+        // a detour of the best path that is not locally optimal
+        graph.edge(1, 7, 60, true);
+        graph.edge(7, 2, 60, true);
+        graph.freeze();
+        // in such a small graph the start or target would be the highest node with a computed node ordering, so
+        // there would be no via node candidates
+        final int[] nodeOrdering = {0, 5, 1, 2, 3, 6, 4, 7};
+        pch = PrepareContractionHierarchies.fromGraphHopperStorage(graph, chProfile).
+                useFixedNodeOrdering(new NodeOrderingProvider() {
+                    @Override
+                    public int getNodeIdForLevel(int level) {
+                        return nodeOrdering[level];
+                    }
+
+                    @Override
+                    public int getNumNodes() {
+                        return nodeOrdering.length;
+                    }
+                });
+        pch.doWork();
+    }
+
+    private List<Path> calcPaths(PMap hints) {
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm(Parameters.Algorithms.ALT_ROUTE).
+                weighting(weighting).hints(hints).build();
+        RoutingAlgorithm algo = pch.createAlgo(chGraph, opts);
+        assertTrue(algo instanceof AlternativeRouteCH);
+        return algo.calcPaths(0, 5);
+    }
+
+    @Test
+    public void testCalcAlternatives() {
+        List<Path> paths = calcPaths(new PMap().put(Parameters.Algorithms.AltRoute.MAX_PATHS, 3));
+        assertEquals(2, paths.size());
+        assertEquals(IntArrayList.from(0, 1, 2, 5), paths.get(0).calcNodes());
+        assertEquals(300, paths.get(0).getWeight(), 1e-2);
+        assertEquals(IntArrayList.from(0, 3, 4, 5), paths.get(1).calcNodes());
+        assertEquals(330, paths.get(1).getWeight(), 1e-2);
+        assertEquals(330, paths.get(1).getDistance(), 1e-2);
+    }
+
+    @Test
+    public void testMaxWeightFactor() {
+        // 0-6-5 has no node that is not too close to the start or target, so it would be rejected by the local
+        // optimality check
+        List<Path> paths = calcPaths(new PMap().put(Parameters.Algorithms.AltRoute.MAX_PATHS, 3).
+                put(Parameters.Algorithms.AltRoute.MAX_WEIGHT, 2).put(Parameters.Algorithms.AltRoute.LOCAL_OPTIMALITY, 0));
+        assertEquals(3, paths.size());
+        assertEquals(IntArrayList.from(0, 6, 5), paths.get(2).calcNodes());
+
+        paths = calcPaths(new PMap().put(Parameters.Algorithms.AltRoute.MAX_WEIGHT, 1.05));
+        assertEquals(1, paths.size());
+    }
+
+    @Test
+    public void testMaxShareAndLocalOptimality() {
+        // the detour via 7 shares 200 of 300 with the best path
+        PMap hints = new PMap().put(Parameters.Algorithms.AltRoute.MAX_SHARE, 0.7).
+                put(Parameters.Algorithms.AltRoute.LOCAL_OPTIMALITY, 0);
+        List<Path> paths = calcPaths(hints);
+        assertEquals(2, paths.size());
+        assertEquals(IntArrayList.from(0, 1, 7, 2, 5), paths.get(1).calcNodes());
+
+        // the local optimality check rejects it
+        hints.put(Parameters.Algorithms.AltRoute.LOCAL_OPTIMALITY, 0.25);
+        paths = calcPaths(hints);
+        assertEquals(2, paths.size());
+        assertEquals(IntArrayList.from(0, 3, 4, 5), paths.get(1).calcNodes());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.GHUtility;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the routing tests against the bidirectional algorithms with primitive array search trees
+ * and compares them to {@link DijkstraBidirectionRef}.
+ */
+@RunWith(Parameterized.class)
+public class BidirArrayAlgoTest extends AbstractRoutingAlgorithmTester {
+    private final boolean astar;
+
+    public BidirArrayAlgoTest(String name, boolean astar) {
+        this.astar = astar;
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> configs() {
+        return Arrays.asList(new Object[][]{
+                {"dijkstrabi", false},
+                {"astarbi", true}
+        });
+    }
+
+    @Override
+    public RoutingAlgorithmFactory createFactory(GraphHopperStorage prepareGraph, AlgorithmOptions prepareOpts) {
+        return new RoutingAlgorithmFactory() {
+            @Override
+            public RoutingAlgorithm createAlgo(Graph g, AlgorithmOptions opts) {
+                return astar
+                        ? new AStarBidirectionArray(g, opts.getWeighting(), TraversalMode.NODE_BASED)
+                        : new DijkstraBidirectionArray(g, opts.getWeighting(), TraversalMode.NODE_BASED);
+            }
+        };
+    }
+
+    @Test
+    public void testReuseAndCompareWithRef() {
+        GraphHopperStorage graph = createGHStorage(false);
+        long seed = 123;
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.2, true, true, carEncoder.getAverageSpeedEnc(), 0.7, 0.8, 0.8);
+        RoutingAlgorithm algo = createAlgo(graph);
+        for (int i = 0; i < 50; i++) {
+            int from = rnd.nextInt(graph.getNodes());
+            int to = rnd.nextInt(graph.getNodes());
+            Path refPath = new DijkstraBidirectionRef(graph, defaultOpts.getWeighting(), TraversalMode.NODE_BASED).calcPath(from, to);
+            // the same instance is used for all queries
+            Path path = algo.calcPath(from, to);
+            assertEquals("seed: " + seed + ", " + from + "->" + to, refPath.isFound(), path.isFound());
+            assertEquals("seed: " + seed + ", " + from + "->" + to, refPath.getWeight(), path.getWeight(), 1e-6);
+            assertEquals("seed: " + seed + ", " + from + "->" + to, refPath.getDistance(), path.getDistance(), 1e-6);
+            // a new instance uses the search trees of the previous ones
+            path = createAlgo(graph).calcPath(from, to);
+            assertEquals("seed: " + seed + ", " + from + "->" + to, refPath.getWeight(), path.getWeight(), 1e-6);
+        }
+    }
+}
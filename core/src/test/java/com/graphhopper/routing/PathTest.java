@@ -391,6 +391,30 @@ public class PathTest {
         assertEquals(4, timeDetails.get(3).getLast());
     }
 
+    @Test
+    public void testCalcPointsInstructionsAndDetailsInOnePass() {
+        Path p = new Dijkstra(roundaboutGraph.g, new ShortestWeighting(encoder), TraversalMode.NODE_BASED)
+                .calcPath(1, 8);
+        assertTrue(p.isFound());
+
+        PointList points = new PointList(10, false);
+        InstructionList instructions = new InstructionList(tr);
+        Map<String, List<PathDetail>> details = p.calcPointsInstructionsAndDetails(points, instructions, mixedManagerRoundabout, tr,
+                PathProcessor.DEFAULT, Arrays.asList(STREET_NAME, EDGE_ID), new PathDetailsBuilderFactory(), 0);
+
+        assertEquals(p.calcPoints(), points);
+        assertEquals(getTurnDescriptions(p.calcInstructions(mixedManagerRoundabout, tr)), getTurnDescriptions(instructions));
+        assertEquals(p.calcDetails(Arrays.asList(STREET_NAME, EDGE_ID), new PathDetailsBuilderFactory(), 0).toString(), details.toString());
+        assertEquals(points.size() - 1, details.get(EDGE_ID).get(details.get(EDGE_ID).size() - 1).getLast());
+
+        // without points no details are calculated
+        instructions = new InstructionList(tr);
+        details = p.calcPointsInstructionsAndDetails(null, instructions, mixedManagerRoundabout, tr,
+                PathProcessor.DEFAULT, Arrays.asList(STREET_NAME), new PathDetailsBuilderFactory(), 0);
+        assertTrue(details.isEmpty());
+        assertEquals(getTurnDescriptions(p.calcInstructions(mixedManagerRoundabout, tr)), getTurnDescriptions(instructions));
+    }
+
     @Test
     public void testCalcDistanceDetails() {
         Path p = new Dijkstra(pathDetailGraph, new ShortestWeighting(encoder), TraversalMode.NODE_BASED).calcPath(1, 5);
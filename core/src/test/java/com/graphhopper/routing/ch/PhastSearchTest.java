@@ -0,0 +1,136 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.CHProfile;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.GHUtility;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PhastSearchTest {
+    private CarFlagEncoder encoder;
+    private Weighting weighting;
+    private GraphHopperStorage graph;
+    private CHGraph chGraph;
+
+    @Before
+    public void setUp() {
+        encoder = new CarFlagEncoder();
+        EncodingManager em = EncodingManager.create(encoder);
+        weighting = new FastestWeighting(encoder);
+        CHProfile chProfile = CHProfile.nodeBased(weighting);
+        graph = new GraphBuilder(em).setCHProfiles(chProfile).create();
+        chGraph = graph.getCHGraph(chProfile);
+    }
+
+    private void prepare() {
+        graph.freeze();
+        PrepareContractionHierarchies.fromGraphHopperStorage(graph, chGraph.getCHProfile()).doWork();
+    }
+
+    @Test
+    public void testSmallGraph() {
+        // 0-1-2-3
+        //   |   |
+        //   4---5
+        graph.edge(0, 1, 100, true);
+        graph.edge(1, 2, 200, true);
+        graph.edge(2, 3, 300, false);
+        graph.edge(1, 4, 400, true);
+        graph.edge(4, 5, 100, true);
+        graph.edge(5, 3, 100, true);
+        prepare();
+
+        PhastSearch search = new PhastSearch(chGraph, false);
+        search.search(0);
+        for (int node = 0; node < graph.getNodes(); node++) {
+            assertEquals(calcWeight(0, node), search.getWeight(node), 1e-6);
+        }
+    }
+
+    @Test
+    public void testRandomGraph() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.2, true, true, encoder.getAverageSpeedEnc(), 0.7, 0.8, 0.8);
+        prepare();
+
+        PhastSearch forward = new PhastSearch(chGraph, false);
+        PhastSearch backward = new PhastSearch(chGraph, true);
+        for (int i = 0; i < 5; i++) {
+            int source = rnd.nextInt(graph.getNodes());
+            forward.search(source);
+            backward.search(source);
+            for (int node = 0; node < graph.getNodes(); node++) {
+                assertEquals("seed: " + seed + ", " + source + "->" + node, calcWeight(source, node), forward.getWeight(node), 1e-2);
+                assertEquals("seed: " + seed + ", " + node + "->" + source, calcWeight(node, source), backward.getWeight(node), 1e-2);
+            }
+        }
+    }
+
+    @Test
+    public void testWeightLimitAndMultipleSources() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.2, true, true, encoder.getAverageSpeedEnc(), 0.7, 0.8, 0.8);
+        prepare();
+
+        int source1 = rnd.nextInt(graph.getNodes());
+        int source2 = rnd.nextInt(graph.getNodes());
+        double limit = 40;
+        PhastSearch search = new PhastSearch(chGraph, false).setWeightLimit(limit);
+        search.search(new int[]{source1, source2}, new double[]{0, 5});
+        int reached = 0;
+        for (int node = 0; node < graph.getNodes(); node++) {
+            double weight1 = calcWeight(source1, node);
+            double weight2 = 5 + calcWeight(source2, node);
+            double expected = Math.min(weight1, weight2);
+            if (expected > limit) {
+                assertEquals("seed: " + seed + ", node: " + node, Double.POSITIVE_INFINITY, search.getWeight(node), 0);
+            } else {
+                assertEquals("seed: " + seed + ", node: " + node, expected, search.getWeight(node), 1e-2);
+                // ignore nodes that are almost equally close to both sources because of the rounding of the shortcuts
+                if (Math.abs(weight1 - weight2) > 0.1)
+                    assertEquals("seed: " + seed + ", node: " + node, weight1 < weight2 ? 0 : 1, search.getSource(node));
+                reached++;
+            }
+        }
+        assertTrue("seed: " + seed, reached >= 1);
+        assertEquals("seed: " + seed, reached, search.getReachedNodes());
+    }
+
+    private double calcWeight(int from, int to) {
+        Path path = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+        return path.isFound() ? path.getWeight() : Double.POSITIVE_INFINITY;
+    }
+}
@@ -166,6 +166,16 @@ public class PrepareLandmarksTest
         assertEquals(expectedAlgo.getVisitedNodes(), biDirAlgoWithLandmarks.getVisitedNodes() + 162);
         // ORS-GH MOD END
 
+        // landmarks with the array based bidir A*
+        AStarBidirectionArray expectedArrayAlgo = new AStarBidirectionArray(graph, weighting, tm);
+        expectedArrayAlgo.calcPath(41, 183);
+        RoutingAlgorithm arrayAlgoWithLandmarks = prepare.getDecoratedAlgorithm(graph,
+                new AStarBidirectionArray(graph, weighting, tm), opts);
+        assertTrue(((AStarBidirectionArray) arrayAlgoWithLandmarks).getApproximation() instanceof LMApproximator);
+        path = arrayAlgoWithLandmarks.calcPath(41, 183);
+        assertEquals(expectedPath.getWeight(), path.getWeight(), .1);
+        assertEquals(expectedPath.calcNodes(), path.calcNodes());
+        assertTrue(arrayAlgoWithLandmarks.getVisitedNodes() < expectedArrayAlgo.getVisitedNodes());
 
         // landmarks with A* and a QueryGraph. We expect slightly less optimal as two more cycles needs to be traversed
         // due to the two more virtual nodes but this should not harm in practise
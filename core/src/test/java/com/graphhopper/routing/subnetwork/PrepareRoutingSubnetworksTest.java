@@ -205,6 +205,41 @@ public class PrepareRoutingSubnetworksTest {
         assertEquals(6, g.getNodes());
     }
 
+    @Test
+    public void testParallelSameAsSequential() {
+        FlagEncoder carEncoder = new CarFlagEncoder();
+        BikeFlagEncoder bikeEncoder = new BikeFlagEncoder();
+        FootFlagEncoder footEncoder = new FootFlagEncoder();
+        EncodingManager em2 = EncodingManager.create(carEncoder, bikeEncoder, footEncoder);
+        List<GraphHopperStorage> graphs = new ArrayList<>();
+        for (int threads = 1; threads <= 3; threads++) {
+            GraphHopperStorage g = createDeadEndUnvisitedNetworkStorage(em2);
+            // makes 8-9-10-11 large enough for bike only
+            GHUtility.setProperties(g.edge(9, 10).setDistance(1), bikeEncoder, 5, true, true);
+            GHUtility.setProperties(g.edge(10, 11).setDistance(1), bikeEncoder, 5, true, true);
+            PrepareRoutingSubnetworks instance = new PrepareRoutingSubnetworks(g, em2.fetchEdgeEncoders()).
+                    setMinNetworkSize(4).setMinOneWayNetworkSize(3).setThreads(threads);
+            instance.doWork();
+            graphs.add(g);
+        }
+
+        GraphHopperStorage expected = graphs.get(0);
+        // 0-1-2-3-4 and 8-9-10-11
+        assertEquals(9, expected.getNodes());
+        for (GraphHopperStorage g : graphs.subList(1, graphs.size())) {
+            assertEquals(expected.getNodes(), g.getNodes());
+            assertEquals(expected.getAllEdges().length(), g.getAllEdges().length());
+            AllEdgesIterator expectedIter = expected.getAllEdges();
+            AllEdgesIterator iter = g.getAllEdges();
+            while (expectedIter.next() && iter.next()) {
+                for (FlagEncoder encoder : em2.fetchEdgeEncoders()) {
+                    assertEquals(expectedIter.get(encoder.getAccessEnc()), iter.get(encoder.getAccessEnc()));
+                    assertEquals(expectedIter.getReverse(encoder.getAccessEnc()), iter.getReverse(encoder.getAccessEnc()));
+                }
+            }
+        }
+    }
+
     GraphHopperStorage createDeadEndUnvisitedNetworkStorage(EncodingManager em) {
         GraphHopperStorage g = createStorage(em);
         // 0 <-> 1 <-> 2 <-> 3 <-> 4 <- 5 <-> 6
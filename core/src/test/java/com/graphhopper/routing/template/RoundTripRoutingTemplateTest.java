@@ -18,6 +18,7 @@
 package com.graphhopper.routing.template;
 
 import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIndexedContainer;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.routing.*;
@@ -38,10 +39,13 @@ import org.junit.Test;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.graphhopper.util.GHUtility.updateDistancesFor;
 import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Peter Karich
@@ -104,6 +108,52 @@ public class RoundTripRoutingTemplateTest {
         assertEquals(IntArrayList.from(new int[]{5, 4, 3, 2, 1, 0}), paths.get(1).calcNodes());
     }
 
+    @Test
+    public void testParallelCandidates() {
+        Graph g = createSquareGraph();
+        GHRequest ghRequest = new GHRequest(Collections.singletonList(new GHPoint(1, -1)), Collections.singletonList(180.0));
+        ghRequest.getHints().put(Parameters.Algorithms.RoundTrip.POINTS, 3);
+        ghRequest.getHints().put(Parameters.Algorithms.RoundTrip.DISTANCE, 670000);
+        ghRequest.getHints().put(Parameters.Algorithms.RoundTrip.CANDIDATES, 4);
+        LocationIndex locationIndex = new LocationIndexTree(g, new RAMDirectory()).prepareIndex();
+        GHResponse ghResponse = new GHResponse();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        RoundTripRoutingTemplate routingTemplate =
+                new RoundTripRoutingTemplate(ghRequest, ghResponse, locationIndex, em, 20).
+                        setExecutor(executor).
+                        setWeightingFactory(new RoundTripRoutingTemplate.CandidateWeightingFactory() {
+                            @Override
+                            public Weighting createWeighting() {
+                                return new FastestWeighting(carFE);
+                            }
+                        });
+        routingTemplate.setEdgeFilter(DefaultEdgeFilter.allEdges(carFE));
+        List<QueryResult> stagePoints = routingTemplate.lookup(ghRequest.getPoints(), carFE);
+        // the start point and two generated points for every candidate
+        assertEquals(1 + 4 * 2 + 1, stagePoints.size());
+
+        QueryGraph queryGraph = new QueryGraph(g);
+        queryGraph.lookup(stagePoints);
+        List<Path> paths;
+        try {
+            paths = routingTemplate.calcPaths(queryGraph, new RoutingAlgorithmFactorySimple(),
+                    new AlgorithmOptions(DIJKSTRA_BI, new FastestWeighting(carFE), tMode));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(3, paths.size());
+        // the paths are connected and form a round trip starting and ending at the start node 0
+        assertEquals(0, paths.get(0).calcNodes().get(0));
+        for (int i = 1; i < paths.size(); i++) {
+            IntIndexedContainer prevNodes = paths.get(i - 1).calcNodes();
+            assertEquals(prevNodes.get(prevNodes.size() - 1), paths.get(i).calcNodes().get(0));
+        }
+        IntIndexedContainer lastNodes = paths.get(2).calcNodes();
+        assertEquals(0, lastNodes.get(lastNodes.size() - 1));
+        assertEquals(4, routingTemplate.getWaypoints().size());
+        assertTrue(ghResponse.getHints().has("round_trip.overlap"));
+    }
+
     @Test
     public void testCalcRoundTrip() throws Exception {
         Weighting weighting = new FastestWeighting(carFE);
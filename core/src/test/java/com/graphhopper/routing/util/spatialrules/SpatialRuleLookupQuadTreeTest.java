@@ -0,0 +1,180 @@
+package com.graphhopper.routing.util.spatialrules;
+
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.json.geo.JsonFeatureCollection;
+import com.graphhopper.routing.profiles.RoadAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.Polygon;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SpatialRuleLookupQuadTreeTest {
+    private static final String COUNTRIES_FILE = "../core/files/spatialrules/countries.geo.json";
+    private final String location = "./target/tmp-spatial-rules";
+
+    @Before
+    @After
+    public void cleanUp() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testSmallScenario() {
+        List<SpatialRule> spatialRules = new ArrayList<>();
+        spatialRules.add(getSpatialRule(new Polygon(new double[]{1, 1, 2, 2}, new double[]{1, 2, 2, 1}), "1"));
+        spatialRules.add(getSpatialRule(new Polygon(new double[]{1, 1, 3.6, 3.6}, new double[]{3, 4, 4, 3}), "2"));
+        spatialRules.add(getSpatialRule(new Polygon(new double[]{1, 1, 2, 2}, new double[]{-1, 0, 0, -1}), "3"));
+
+        SpatialRuleLookupQuadTree lookup = new SpatialRuleLookupQuadTree(spatialRules, .1, new BBox(-1, 4, 1, 4));
+        assertEquals(4, lookup.size());
+        assertEquals("1", lookup.lookupRule(1.2, 1.7).getId());
+        assertEquals("2", lookup.lookupRule(1.2, 3.7).getId());
+        assertEquals("3", lookup.lookupRule(1.5, -0.5).getId());
+        assertEquals(RoadAccess.DESTINATION, lookup.lookupRule(1.2, 3.7).getAccess(null, TransportationMode.MOTOR_VEHICLE, RoadAccess.YES));
+        assertEquals(SpatialRule.EMPTY, lookup.lookupRule(3.9, 3.7));
+        assertEquals(SpatialRule.EMPTY, lookup.lookupRule(2.2, 1.7));
+        assertEquals(SpatialRule.EMPTY, lookup.lookupRule(0.9, 0.9));
+
+        SpatialRule rule = lookup.lookupRule(1.2, 1.7);
+        assertEquals(1, lookup.getSpatialId(rule));
+        assertEquals(rule, lookup.getSpatialRule(1));
+    }
+
+    @Test
+    public void testExactAdjacentBorder() {
+        List<SpatialRule> spatialRules = new ArrayList<>();
+        spatialRules.add(getSpatialRule(new Polygon(new double[]{1, 1, 1.5, 1.5}, new double[]{1, 2, 2, 1}), "top"));
+        spatialRules.add(getSpatialRule(new Polygon(new double[]{1.5, 1.5, 2, 2}, new double[]{1, 2, 2, 1}), "bottom"));
+
+        SpatialRuleLookup lookup = new SpatialRuleLookupQuadTree(spatialRules, 1, new BBox(1, 4, 1, 4));
+        assertEquals("top", lookup.lookupRule(1.4, 1.5).getId());
+        assertEquals("bottom", lookup.lookupRule(1.6, 1.5).getId());
+        assertEquals("top", lookup.lookupRule(1.4999, 1.5).getId());
+        assertEquals("bottom", lookup.lookupRule(1.5001, 1.5).getId());
+    }
+
+    @Test
+    public void testOverlappingRules() {
+        List<SpatialRule> spatialRules = new ArrayList<>();
+        spatialRules.add(getSpatialRule(new Polygon(new double[]{1, 1, 2, 2}, new double[]{1, 2, 2, 1}), "small"));
+        spatialRules.add(getSpatialRule(new Polygon(new double[]{0, 0, 3, 3}, new double[]{0, 3, 3, 0}), "big"));
+
+        // the first rule wins
+        SpatialRuleLookup lookup = new SpatialRuleLookupQuadTree(spatialRules, .1, new BBox(0, 3, 0, 3));
+        assertEquals("small", lookup.lookupRule(1.5, 1.5).getId());
+        assertEquals("small", lookup.lookupRule(1.01, 1.99).getId());
+        assertEquals("big", lookup.lookupRule(0.99, 1.5).getId());
+        assertEquals("big", lookup.lookupRule(2.5, 0.5).getId());
+    }
+
+    @Test
+    public void testSmallBoundsBigPolygon() {
+        List<SpatialRule> spatialRules = new ArrayList<>();
+        spatialRules.add(getSpatialRule(new Polygon(new double[]{-100, -100, 100, 100}, new double[]{-100, 100, 100, -100}), "big"));
+        SpatialRuleLookupQuadTree lookup = new SpatialRuleLookupQuadTree(spatialRules, 1, new BBox(1, 2, 1, 2));
+        assertEquals("big", lookup.lookupRule(1.5, 1.5).getId());
+        // no border crosses the bounds
+        assertEquals(1, lookup.getNodes());
+    }
+
+    @Test
+    public void testSameAsPolygonContains() throws IOException {
+        SpatialRuleLookup lookup;
+        try (FileReader reader = new FileReader(COUNTRIES_FILE)) {
+            lookup = SpatialRuleLookupBuilder.buildIndex(Jackson.newObjectMapper().readValue(reader, JsonFeatureCollection.class),
+                    "ISO_A3", new CountriesSpatialRuleFactory(), .1, new BBox(-180, 180, -90, 90));
+        }
+        assertTrue(lookup instanceof SpatialRuleLookupQuadTree);
+
+        Random rand = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            // Europe has many borders
+            double lat = 35 + rand.nextDouble() * 25;
+            double lon = -10 + rand.nextDouble() * 40;
+            assertEquals("unexpected rule for " + lat + "," + lon, findRule(lookup, lat, lon), lookup.lookupRule(lat, lon));
+        }
+    }
+
+    private SpatialRule findRule(SpatialRuleLookup lookup, double lat, double lon) {
+        for (int id = 1; id < lookup.size(); id++) {
+            SpatialRule rule = lookup.getSpatialRule(id);
+            for (Polygon polygon : rule.getBorders()) {
+                if (polygon.contains(lat, lon))
+                    return rule;
+            }
+        }
+        return SpatialRule.EMPTY;
+    }
+
+    @Test
+    public void testStore() throws IOException {
+        List<SpatialRule> spatialRules = new ArrayList<>();
+        spatialRules.add(getSpatialRule(new Polygon(new double[]{1, 1, 2, 2}, new double[]{1, 2, 2, 1}), "1"));
+        spatialRules.add(getSpatialRule(new Polygon(new double[]{1, 1, 3.6, 3.6}, new double[]{3, 4, 4, 3}), "2"));
+
+        SpatialRuleLookupQuadTree lookup = new SpatialRuleLookupQuadTree(spatialRules, .01, new BBox(1, 4, 1, 4),
+                new RAMDirectory(location, true));
+        assertTrue(new File(location, "spatial_rules").exists());
+
+        SpatialRuleLookupQuadTree loaded = new SpatialRuleLookupQuadTree(spatialRules, .01, new BBox(1, 4, 1, 4),
+                new RAMDirectory(location, true));
+        assertEquals(lookup.getNodes(), loaded.getNodes());
+        assertEquals("1", loaded.lookupRule(1.2, 1.7).getId());
+        assertEquals("2", loaded.lookupRule(3.5, 3.5).getId());
+        assertEquals(SpatialRule.EMPTY, loaded.lookupRule(3.7, 3.5));
+
+        // another resolution creates the tree again
+        loaded = new SpatialRuleLookupQuadTree(spatialRules, .1, new BBox(1, 4, 1, 4), new RAMDirectory(location, true));
+        assertTrue(loaded.getNodes() < lookup.getNodes());
+        assertEquals("2", loaded.lookupRule(3.5, 3.5).getId());
+
+        // "Aa" and "BB" have the same hash code, so only the stored rule ids detect the change
+        List<SpatialRule> otherRules = new ArrayList<>();
+        otherRules.add(getSpatialRule(new Polygon(new double[]{1, 1, 2, 2}, new double[]{1, 2, 2, 1}), "Aa"));
+        new SpatialRuleLookupQuadTree(otherRules, .01, new BBox(1, 4, 1, 4), new RAMDirectory(location, true));
+        otherRules.set(0, getSpatialRule(new Polygon(new double[]{1, 1, 2, 2}, new double[]{1, 2, 2, 1}), "BB"));
+        loaded = new SpatialRuleLookupQuadTree(otherRules, .01, new BBox(1, 4, 1, 4), new RAMDirectory(location, true));
+        assertEquals("BB", loaded.lookupRule(1.2, 1.7).getId());
+        String stored = new String(Files.readAllBytes(new File(location, "spatial_rules").toPath()), StandardCharsets.UTF_8);
+        assertTrue(stored.contains("BB\0"));
+        assertFalse(stored.contains("Aa\0"));
+
+        // an additional polygon creates the tree again
+        ((AbstractSpatialRule) otherRules.get(0)).addBorder(new Polygon(new double[]{3, 3, 3.5, 3.5}, new double[]{1, 2, 2, 1}));
+        loaded = new SpatialRuleLookupQuadTree(otherRules, .01, new BBox(1, 4, 1, 4), new RAMDirectory(location, true));
+        assertEquals("BB", loaded.lookupRule(3.2, 1.5).getId());
+    }
+
+    private SpatialRule getSpatialRule(Polygon p, final String name) {
+        return new AbstractSpatialRule() {
+            @Override
+            public double getMaxSpeed(String highwayTag, double _default) {
+                return _default;
+            }
+
+            @Override
+            public RoadAccess getAccess(String highwayTag, TransportationMode transportationMode, RoadAccess _default) {
+                return RoadAccess.DESTINATION;
+            }
+
+            @Override
+            public String getId() {
+                return name;
+            }
+        }.addBorder(p);
+    }
+}
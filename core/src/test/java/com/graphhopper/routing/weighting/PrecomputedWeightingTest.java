@@ -0,0 +1,133 @@
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.SpeedCalculator;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PrecomputedWeightingTest {
+    private final String location = "./target/tmp-edge-weights";
+    private final EncodingManager encodingManager = EncodingManager.create("car");
+    private final FlagEncoder encoder = encodingManager.getEncoder("car");
+    private GraphHopperStorage graph;
+
+    @Before
+    public void setUp() {
+        Helper.removeDir(new File(location));
+        graph = new GraphBuilder(encodingManager).create();
+        Random rand = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            int from = rand.nextInt(50);
+            int to = rand.nextInt(50);
+            EdgeIteratorState edge = graph.edge(from, to, 10 + rand.nextInt(1000), true);
+            edge.set(encoder.getAverageSpeedEnc(), 5 + 5 * rand.nextInt(20));
+            if (rand.nextInt(4) == 0)
+                edge.setReverse(encoder.getAccessEnc(), false);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testSameAsWeighting() {
+        Weighting weighting = new FastestWeighting(encoder);
+        EdgeWeightStorage storage = new EdgeWeightStorage(new RAMDirectory(), weighting).calculate(graph);
+        assertEquals(graph.getAllEdges().length(), storage.getEdges());
+        assertSameAsWeighting(weighting, new PrecomputedWeighting(weighting, storage));
+    }
+
+    @Test
+    public void testLoadExisting() {
+        Weighting weighting = new FastestWeighting(encoder);
+        EdgeWeightStorage storage = new EdgeWeightStorage(new RAMDirectory(location, true).create(), weighting).calculate(graph);
+        storage.flush();
+        storage.close();
+
+        storage = new EdgeWeightStorage(new RAMDirectory(location, true), weighting);
+        assertTrue(storage.loadExisting());
+        assertEquals(graph.getAllEdges().length(), storage.getEdges());
+        assertSameAsWeighting(weighting, new PrecomputedWeighting(weighting, storage));
+        assertFalse(new EdgeWeightStorage(new RAMDirectory(location, true), new ShortestWeighting(encoder)).loadExisting());
+    }
+
+    private void assertSameAsWeighting(Weighting weighting, Weighting precomputed) {
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int node = 0; node < graph.getNodes(); node++) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                for (boolean reverse : new boolean[]{false, true}) {
+                    assertEquals(weighting.calcWeight(iter, reverse, EdgeIterator.NO_EDGE),
+                            precomputed.calcWeight(iter, reverse, EdgeIterator.NO_EDGE), 0);
+                    boolean access = reverse ? iter.getReverse(encoder.getAccessEnc()) : iter.get(encoder.getAccessEnc());
+                    if (access || iter.getBaseNode() == iter.getAdjNode())
+                        assertEquals(weighting.calcMillis(iter, reverse, EdgeIterator.NO_EDGE),
+                                precomputed.calcMillis(iter, reverse, EdgeIterator.NO_EDGE));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMissingEdges() {
+        Weighting weighting = new FastestWeighting(encoder);
+        EdgeWeightStorage storage = new EdgeWeightStorage(new RAMDirectory(), weighting).calculate(graph);
+        Weighting precomputed = new PrecomputedWeighting(weighting, storage);
+
+        // e.g. virtual edges are calculated by the weighting
+        EdgeIteratorState edge = graph.edge(50, 51, 100, true);
+        edge.set(encoder.getAverageSpeedEnc(), 40);
+        assertEquals(9, precomputed.calcWeight(edge, false, EdgeIterator.NO_EDGE), 1e-8);
+        assertEquals(9_000, precomputed.calcMillis(edge, true, EdgeIterator.NO_EDGE));
+
+        // no access in reverse direction
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next() && (iter.getReverse(encoder.getAccessEnc()) || iter.getBaseNode() == iter.getAdjNode())) {
+        }
+        edge = graph.getEdgeIteratorState(iter.getEdge(), Integer.MIN_VALUE);
+        assertFalse(edge.getReverse(encoder.getAccessEnc()));
+        try {
+            precomputed.calcMillis(edge, true, EdgeIterator.NO_EDGE);
+            fail("time must not be calculated for an edge without access");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testSpeedCalculator() {
+        Weighting weighting = new FastestWeighting(encoder);
+        EdgeWeightStorage storage = new EdgeWeightStorage(new RAMDirectory(), weighting).calculate(graph);
+        Weighting precomputed = new PrecomputedWeighting(weighting, storage);
+        precomputed.setSpeedCalculator(new SpeedCalculator() {
+            @Override
+            public double getSpeed(EdgeIteratorState edge, boolean reverse, long time) {
+                return 36;
+            }
+
+            @Override
+            public boolean isTimeDependent() {
+                return false;
+            }
+        });
+
+        EdgeIteratorState edge = graph.getEdgeIteratorState(0, Integer.MIN_VALUE);
+        assertEquals(edge.getDistance() / 10, precomputed.calcWeight(edge, false, EdgeIterator.NO_EDGE), 1e-8);
+    }
+}
@@ -24,6 +24,7 @@ import org.junit.Test;
 import java.io.File;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -60,6 +61,42 @@ public class NameIndexTest {
         index.close();
     }
 
+    @Test
+    public void testDeduplication() {
+        NameIndex index = new NameIndex(new RAMDirectory()).create(1000);
+        long pointer1 = index.put("first");
+        long pointer2 = index.put("second");
+        assertEquals(pointer1, index.put("first"));
+        assertEquals(pointer2, index.put("second"));
+        assertEquals(pointer2 + "second".length() + 1, index.put("third"));
+
+        index.setMaxDeduplicationEntries(1);
+        index.put("fourth");
+        assertNotEquals(pointer1, index.put("first"));
+        assertEquals("first", index.get(pointer1));
+        index.close();
+    }
+
+    @Test
+    public void testCopyTo() {
+        NameIndex index = new NameIndex(new RAMDirectory()).create(1000);
+        NameIndex copy = new NameIndex(new RAMDirectory()).create(1000);
+        long pointer = copy.put("old");
+        assertEquals("old", copy.get(pointer));
+
+        assertEquals(pointer, index.put("new"));
+        long pointer2 = index.put("name");
+        index.copyTo(copy);
+        // cached names of the copy must not be used
+        assertEquals("new", copy.get(pointer));
+        long pointer3 = copy.put("another");
+        assertEquals(pointer2 + "name".length() + 1, pointer3);
+        assertEquals("name", copy.get(pointer2));
+        assertEquals("another", copy.get(pointer3));
+        index.close();
+        copy.close();
+    }
+
     @Test
     public void testCreate() {
         NameIndex index = new NameIndex(new RAMDirectory()).create(1000);
@@ -18,21 +18,29 @@
 package com.graphhopper.storage;
 
 import com.graphhopper.coll.GHIntHashSet;
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.CarFlagEncoder;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.BlockAreaWeighting;
+import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.Circle;
 import com.graphhopper.util.shapes.Shape;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static com.graphhopper.util.GHUtility.updateDistancesFor;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Peter Karich
@@ -133,4 +141,43 @@ public class GraphEdgeIdFinderTest {
         blockedEdges.addAll(4, 9, 6, 7);
         assertEquals(blockedEdges, blockArea.blockedEdges);
     }
+
+    @Test
+    public void testBlockAreaWithManyShapes() {
+        FlagEncoder encoder = new CarFlagEncoder();
+        EncodingManager em = EncodingManager.create(encoder);
+        GraphHopperStorage graph = new GraphBuilder(em).create();
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 500, 2.2, false, true, null, 0, 0.8, 0);
+        GraphEdgeIdFinder.BlockArea blockArea = new GraphEdgeIdFinder.BlockArea(graph);
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Shape shape = rnd.nextBoolean()
+                    ? new Circle(49.4 + rnd.nextDouble() * 0.01, 9.7 + rnd.nextDouble() * 0.01, 20 + rnd.nextInt(50))
+                    : new BBox(9.7 + rnd.nextDouble() * 0.009, 9.7091 + rnd.nextDouble() * 0.0009, 49.4 + rnd.nextDouble() * 0.009, 49.4091 + rnd.nextDouble() * 0.0009);
+            shapes.add(shape);
+            blockArea.add(shape);
+        }
+
+        NodeAccess na = graph.getNodeAccess();
+        BlockAreaWeighting weighting = new BlockAreaWeighting(new FastestWeighting(encoder), blockArea);
+        int blocked = 0;
+        // check every edge twice to use the results remembered by the weighting
+        for (int run = 0; run < 2; run++) {
+            AllEdgesIterator iter = graph.getAllEdges();
+            while (iter.next()) {
+                boolean expected = false;
+                for (Shape shape : shapes) {
+                    expected |= shape.contains(na.getLatitude(iter.getAdjNode()), na.getLongitude(iter.getAdjNode()));
+                }
+                assertEquals("seed: " + seed + ", edge: " + iter.getEdge(), expected, blockArea.contains(iter));
+                assertEquals("seed: " + seed + ", edge: " + iter.getEdge(), expected,
+                        Double.isInfinite(weighting.calcWeight(iter, false, EdgeIterator.NO_EDGE)));
+                if (expected)
+                    blocked++;
+            }
+        }
+        assertTrue("seed: " + seed, blocked > 0);
+    }
 }
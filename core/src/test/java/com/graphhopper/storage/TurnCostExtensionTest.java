@@ -4,10 +4,20 @@ import com.graphhopper.routing.util.BikeFlagEncoder;
 import com.graphhopper.routing.util.CarFlagEncoder;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.HelperORS;
 import org.junit.Test;
 
+import java.io.File;
+import java.util.Random;
+
 import static com.graphhopper.util.GHUtility.getEdge;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TurnCostExtensionTest {
 
@@ -115,4 +125,57 @@ public class TurnCostExtensionTest {
         assertEquals(Double.POSITIVE_INFINITY, carEncoder.getTurnCost(flags023), 0);
         assertEquals(Double.POSITIVE_INFINITY, bikeEncoder.getTurnCost(flags023), 0);
     }
+
+    @Test
+    public void testCompact() {
+        String location = "./target/tmp/turn-cost-compact";
+        Helper.removeDir(new File(location));
+        CarFlagEncoder carEncoder = new CarFlagEncoder(5, 5, 3);
+        EncodingManager manager = EncodingManager.create(carEncoder);
+        GraphHopperStorage g = new GraphBuilder(manager).setLocation(location).setStore(true).withTurnCosts(true).create();
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(g, rnd, 100, 2.5, true, true, carEncoder.getAverageSpeedEnc(), 0.7, 0.8, 0.8);
+        TurnCostExtension tcs = HelperORS.getTurnCostExtensions(g.getExtension());
+        // add the entries in random order
+        int edges = g.getEdges();
+        for (int i = 0; i < 500; i++) {
+            EdgeIteratorState edge = g.getEdgeIteratorState(rnd.nextInt(edges), Integer.MIN_VALUE);
+            tcs.addTurnInfo(rnd.nextInt(edges), edge.getBaseNode(), edge.getEdge(), rnd.nextBoolean() ? carEncoder.getTurnFlags(true, 0) : carEncoder.getTurnFlags(false, 1 + rnd.nextInt(2)));
+        }
+        long[] expected = getAllTurnCostFlags(g, tcs);
+
+        tcs.compact();
+        assertTrue(tcs.isCompacted());
+        assertArrayEquals("seed: " + seed, expected, getAllTurnCostFlags(g, tcs));
+
+        g.flush();
+        g.close();
+        g = new GraphBuilder(manager).setLocation(location).setStore(true).withTurnCosts(true).load();
+        tcs = HelperORS.getTurnCostExtensions(g.getExtension());
+        assertTrue(tcs.isCompacted());
+        assertArrayEquals("seed: " + seed, expected, getAllTurnCostFlags(g, tcs));
+
+        // adding entries is still possible
+        EdgeIteratorState edge = g.getEdgeIteratorState(0, Integer.MIN_VALUE);
+        long flags = carEncoder.getTurnFlags(true, 0);
+        tcs.mergeOrOverwriteTurnInfo(edge.getEdge(), edge.getBaseNode(), 1, flags, false);
+        assertFalse(tcs.isCompacted());
+        assertEquals(flags, tcs.getTurnCostFlags(edge.getEdge(), edge.getBaseNode(), 1));
+        g.close();
+        Helper.removeDir(new File(location));
+    }
+
+    private static long[] getAllTurnCostFlags(Graph g, TurnCostExtension tcs) {
+        int edges = g.getEdges();
+        long[] result = new long[edges * edges * 2];
+        for (int from = 0; from < edges; from++) {
+            for (int to = 0; to < edges; to++) {
+                EdgeIteratorState toEdge = g.getEdgeIteratorState(to, Integer.MIN_VALUE);
+                result[2 * (from * edges + to)] = tcs.getTurnCostFlags(from, toEdge.getBaseNode(), to);
+                result[2 * (from * edges + to) + 1] = tcs.getTurnCostFlags(from, toEdge.getAdjNode(), to);
+            }
+        }
+        return result;
+    }
 }
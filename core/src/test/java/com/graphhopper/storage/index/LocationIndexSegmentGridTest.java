@@ -0,0 +1,193 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.GHPoint3D;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LocationIndexSegmentGridTest extends AbstractLocationIndexTester {
+    @Override
+    public LocationIndexSegmentGrid createIndex(Graph g, int resolution) {
+        if (resolution < 0)
+            resolution = 500000;
+        LocationIndexSegmentGrid index = new LocationIndexSegmentGrid(g, new RAMDirectory(location));
+        index.setResolution(resolution);
+        index.prepareIndex();
+        return index;
+    }
+
+    @Override
+    public boolean hasEdgeSupport() {
+        return true;
+    }
+
+    @Test
+    public void testLongEdge() {
+        Graph graph = createGHStorage(EncodingManager.create("car"));
+        NodeAccess na = graph.getNodeAccess();
+        // a long diagonal edge and a short edge far away
+        na.setNode(0, 50, 9);
+        na.setNode(1, 50.5, 9.5);
+        na.setNode(2, 50.5, 9);
+        na.setNode(3, 50.5, 9.001);
+        graph.edge(0, 1, 1, true);
+        graph.edge(2, 3, 1, true);
+
+        LocationIndexSegmentGrid index = createIndex(graph, 500);
+        QueryResult qr = index.findClosest(50.25, 9.251, EdgeFilter.ALL_EDGES);
+        assertTrue(qr.isValid());
+        assertEquals(0, qr.getClosestEdge().getEdge());
+        assertEquals(QueryResult.Position.EDGE, qr.getSnappedPosition());
+        assertEquals(0, qr.getWayIndex());
+        assertEquals(50.2505, qr.getSnappedPoint().lat, 1e-3);
+        assertEquals(9.2505, qr.getSnappedPoint().lon, 1e-3);
+
+        // nothing within the searched cells
+        assertFalse(index.findClosest(50.25, 9.4, EdgeFilter.ALL_EDGES).isValid());
+    }
+
+    @Test
+    public void testWayGeometry() {
+        Graph graph = createGHStorage(EncodingManager.create("car"));
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 0, 0);
+        na.setNode(1, 0, 0.01);
+        // an unconnected node to get valid bounds
+        na.setNode(2, 0.01, 0.01);
+        graph.edge(0, 1, 1, true).setWayGeometry(Helper.createPointList(0.005, 0.002, 0.005, 0.008));
+
+        LocationIndexSegmentGrid index = createIndex(graph, 200);
+        QueryResult qr = index.findClosest(0.0051, 0.0019, EdgeFilter.ALL_EDGES);
+        assertEquals(QueryResult.Position.PILLAR, qr.getSnappedPosition());
+        assertEquals(1, qr.getWayIndex());
+        assertEquals(0, qr.getClosestNode());
+
+        qr = index.findClosest(0.0051, 0.005, EdgeFilter.ALL_EDGES);
+        assertEquals(QueryResult.Position.EDGE, qr.getSnappedPosition());
+        assertEquals(1, qr.getWayIndex());
+        assertEquals(0.005, qr.getSnappedPoint().lat, 1e-6);
+        assertEquals(0.005, qr.getSnappedPoint().lon, 1e-6);
+
+        qr = index.findClosest(-0.0001, 0.0101, EdgeFilter.ALL_EDGES);
+        assertEquals(QueryResult.Position.TOWER, qr.getSnappedPosition());
+        assertEquals(3, qr.getWayIndex());
+        assertEquals(1, qr.getClosestNode());
+    }
+
+    @Test
+    public void testEdgeFilterWithReverseDirection() {
+        Graph graph = createGHStorage(EncodingManager.create("car"));
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 0, 0);
+        na.setNode(1, 0, 0.01);
+        // an unconnected node to get valid bounds
+        na.setNode(2, 0.01, 0.01);
+        graph.edge(0, 1, 1, true).setWayGeometry(Helper.createPointList(0.005, 0.002));
+
+        LocationIndexSegmentGrid index = createIndex(graph, 200);
+        QueryResult qr = index.findClosest(0.0051, 0.0019, new EdgeFilter() {
+            @Override
+            public boolean accept(EdgeIteratorState edgeState) {
+                return edgeState.getBaseNode() == 1;
+            }
+        });
+        assertEquals(1, qr.getClosestEdge().getBaseNode());
+        assertEquals(QueryResult.Position.PILLAR, qr.getSnappedPosition());
+        // the pillar node is the second point of the reversed edge, too
+        assertEquals(1, qr.getWayIndex());
+        assertEquals(0.005, qr.getSnappedPoint().lat, 1e-6);
+        assertEquals(0.002, qr.getSnappedPoint().lon, 1e-6);
+    }
+
+    @Test
+    public void testSameDistanceAsBruteForce() {
+        Graph graph = createGHStorage(EncodingManager.create("car"));
+        NodeAccess na = graph.getNodeAccess();
+        Random rand = new Random(42);
+        for (int node = 0; node < 300; node++) {
+            na.setNode(node, 50 + rand.nextDouble() * 0.2, 9 + rand.nextDouble() * 0.2);
+        }
+        for (int i = 0; i < 500; i++) {
+            EdgeIteratorState edge = graph.edge(rand.nextInt(300), rand.nextInt(300), 1000, true);
+            if (rand.nextBoolean())
+                edge.setWayGeometry(Helper.createPointList(50 + rand.nextDouble() * 0.2, 9 + rand.nextDouble() * 0.2));
+        }
+
+        LocationIndexSegmentGrid index = createIndex(graph, 1000);
+        DistanceCalc distCalc = Helper.DIST_PLANE;
+        for (int i = 0; i < 500; i++) {
+            double lat = 50 + rand.nextDouble() * 0.2;
+            double lon = 9 + rand.nextDouble() * 0.2;
+            QueryResult qr = index.findClosest(lat, lon, EdgeFilter.ALL_EDGES);
+            assertTrue(qr.isValid());
+            double expected = calcMinDistance(graph, distCalc, lat, lon);
+            // the segments are stored with the integer precision of the node coordinates
+            assertEquals(expected, qr.getQueryDistance(), 0.05);
+            GHPoint3D snapped = qr.getSnappedPoint();
+            assertEquals(expected, distCalc.calcDist(lat, lon, snapped.lat, snapped.lon), 0.05);
+        }
+    }
+
+    private double calcMinDistance(Graph graph, DistanceCalc distCalc, double lat, double lon) {
+        double min = Double.MAX_VALUE;
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            PointList points = iter.fetchWayGeometry(3);
+            for (int i = 1; i < points.getSize(); i++) {
+                double lat1 = points.getLatitude(i - 1), lon1 = points.getLongitude(i - 1);
+                double lat2 = points.getLatitude(i), lon2 = points.getLongitude(i);
+                double dist;
+                if (distCalc.validEdgeDistance(lat, lon, lat1, lon1, lat2, lon2))
+                    dist = distCalc.calcNormalizedEdgeDistance(lat, lon, lat1, lon1, lat2, lon2);
+                else
+                    dist = Math.min(distCalc.calcNormalizedDist(lat, lon, lat1, lon1),
+                            distCalc.calcNormalizedDist(lat, lon, lat2, lon2));
+                min = Math.min(min, dist);
+            }
+        }
+        return distCalc.calcDenormalizedDist(min);
+    }
+
+    @Test
+    public void testLoadExisting() {
+        Graph graph = createSampleGraph(EncodingManager.create("car"));
+        LocationIndexSegmentGrid index = new LocationIndexSegmentGrid(graph, new RAMDirectory(location, true).create());
+        index.setResolution(50000);
+        index.prepareIndex();
+        index.flush();
+        int id = findID(index, 1.51, 2.11);
+        index.close();
+
+        index = new LocationIndexSegmentGrid(graph, new RAMDirectory(location, true));
+        assertTrue(index.loadExisting());
+        assertEquals(50000, index.getMinResolutionInMeter());
+        assertEquals(id, findID(index, 1.51, 2.11));
+        index.close();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.coll.GHIntHashSet;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the tests of LocationIndexTreeTest with the flat leaf layout.
+ */
+public class LocationIndexTreeFlatTest extends LocationIndexTreeTest {
+    @Override
+    public LocationIndexTree createIndexNoPrepare(Graph g, int resolution) {
+        Directory dir = new RAMDirectory(location);
+        LocationIndexTree tmpIdx = new LocationIndexTree(g, dir);
+        tmpIdx.setResolution(resolution);
+        tmpIdx.setFlatLayout(true);
+        return tmpIdx;
+    }
+
+    @Test
+    public void testSameEntriesAsTree() {
+        Graph graph = createGHStorage(EncodingManager.create("car"));
+        NodeAccess na = graph.getNodeAccess();
+        Random rand = new Random(42);
+        for (int node = 0; node < 500; node++) {
+            na.setNode(node, 50 + rand.nextDouble(), 9 + rand.nextDouble());
+        }
+        for (int i = 0; i < 1000; i++) {
+            graph.edge(rand.nextInt(500), rand.nextInt(500), 1000, true);
+        }
+
+        LocationIndexTree flatIndex = createIndex(graph, 1000);
+        LocationIndexTree treeIndex = new LocationIndexTree(graph, new RAMDirectory());
+        treeIndex.setResolution(1000);
+        treeIndex.prepareIndex();
+
+        for (int i = 0; i < 1000; i++) {
+            double lat = 50 + rand.nextDouble();
+            double lon = 9 + rand.nextDouble();
+            for (int iteration = 0; iteration < 3; iteration++) {
+                GHIntHashSet flatIds = new GHIntHashSet();
+                GHIntHashSet treeIds = new GHIntHashSet();
+                flatIndex.findNetworkEntries(lat, lon, flatIds, iteration);
+                treeIndex.findNetworkEntries(lat, lon, treeIds, iteration);
+                assertEquals(treeIds, flatIds);
+            }
+            QueryResult treeResult = treeIndex.findClosest(lat, lon, EdgeFilter.ALL_EDGES);
+            QueryResult flatResult = flatIndex.findClosest(lat, lon, EdgeFilter.ALL_EDGES);
+            assertEquals(treeResult.isValid(), flatResult.isValid());
+            assertEquals(treeResult.getClosestNode(), flatResult.getClosestNode());
+        }
+    }
+
+    @Test
+    public void testOversizedQueryContext() {
+        LocationIndexTree.QueryContext context = new LocationIndexTree.QueryContext();
+        assertFalse(context.isOversized());
+        for (int i = 0; i < LocationIndexTree.QueryContext.MAX_REUSED_CAPACITY; i++) {
+            context.checkedIds.add(i);
+        }
+        assertTrue(context.isOversized());
+        context.checkedIds.clear();
+        // the capacity is kept after clear
+        assertTrue(context.isOversized());
+    }
+
+    @Test
+    public void testLoadFlatLayout() {
+        Graph graph = createSampleGraph(EncodingManager.create("car"));
+        Directory dir = new RAMDirectory(location, true).create();
+        LocationIndexTree index = new LocationIndexTree(graph, dir);
+        index.setResolution(50000);
+        index.setFlatLayout(true);
+        index.prepareIndex();
+        index.flush();
+        int id = findID(index, 1.51, 2.11);
+        index.close();
+
+        index = new LocationIndexTree(graph, new RAMDirectory(location, true));
+        index.setFlatLayout(true);
+        assertTrue(index.loadExisting());
+        assertEquals(id, findID(index, 1.51, 2.11));
+    }
+}
@@ -250,6 +250,35 @@ public class LocationIndexTreeTest extends AbstractLocationIndexTester {
         assertEquals(2, findID(index, 51.2, 9.4));
     }
 
+    @Test
+    public void testParallelPreparation() {
+        Graph graph = createGHStorage(EncodingManager.create("car"));
+        NodeAccess na = graph.getNodeAccess();
+        Random rand = new Random(42);
+        for (int node = 0; node < 300; node++) {
+            na.setNode(node, 50 + rand.nextDouble(), 9 + rand.nextDouble());
+        }
+        for (int i = 0; i < 600; i++) {
+            int from = rand.nextInt(300);
+            int to = rand.nextInt(300);
+            EdgeIteratorState edge = graph.edge(from, to, 1000, true);
+            if (rand.nextBoolean())
+                edge.setWayGeometry(Helper.createPointList(50 + rand.nextDouble(), 9 + rand.nextDouble()));
+        }
+
+        LocationIndexTree index = createIndexNoPrepare(graph, 1000);
+        index.prepareIndex();
+        LocationIndexTree parallelIndex = new LocationIndexTree(graph, new RAMDirectory());
+        parallelIndex.setResolution(1000);
+        parallelIndex.setPreparationThreads(4).prepareIndex();
+
+        assertEquals(index.getCapacity(), parallelIndex.getCapacity());
+        for (long pointer = 0; pointer < index.getCapacity(); pointer += 4) {
+            assertEquals(index.dataAccess.getInt(pointer), parallelIndex.dataAccess.getInt(pointer));
+        }
+        assertEquals(findID(index, 50.5, 9.5), findID(parallelIndex, 50.5, 9.5));
+    }
+
     //    -1    0   1 1.5
     // --------------------
     // 1|         --A
@@ -167,6 +167,17 @@ public class PathSimplificationTest {
         ps.simplify();
 
         assertTrue(numberOfPoints > pathWrapper.getPoints().size());
+
+        // the instructions can share the simplified points
+        PointList points = pathWrapper.getPoints();
+        PathMerger.shareInstructionPoints(wayList, points);
+        int index = 0;
+        for (Instruction instruction : wayList) {
+            assertTrue(instruction.getPoints() instanceof ShallowImmutablePointList);
+            assertEquals(points.get(index), instruction.getPoints().get(0));
+            index += instruction.getLength();
+        }
+        assertEquals(points.size() - 1, index);
     }
 
 }
@@ -36,13 +36,55 @@ public class DelaunayTriangulationIsolineBuilder {
     /**
      * @return a list of polygons wrapping the specified points
      */
-    @SuppressWarnings("unchecked")
     public List<Coordinate[]> calcList(List<List<Coordinate>> pointLists, int maxIsolines) {
 
         if (maxIsolines > pointLists.size()) {
             throw new IllegalStateException("maxIsolines can only be smaller or equals to pointsList");
         }
 
+        QuadEdgeSubdivision tin = triangulate(pointLists);
+        ArrayList<Coordinate[]> polygonShells = new ArrayList<>();
+        ContourBuilder contourBuilder = new ContourBuilder(tin);
+        // ignore the last isoline as it forms just the convex hull
+        for (int i = 0; i < maxIsolines; i++) {
+            polygonShells.add(findMaxPolygonShell(contourBuilder.computeIsoline((double) i + 0.5)));
+        }
+        return polygonShells;
+    }
+
+    /**
+     * Triangulates the points of all catchments only once. For every catchment the vertices are
+     * relabelled to 0 for its own points and 1 for the points of the others, so the isoline at 0.5
+     * separates it from its neighbours.
+     *
+     * @return a list of polygons, the polygon i wraps the points of the catchment i
+     */
+    @SuppressWarnings("unchecked")
+    public List<Coordinate[]> calcCatchments(List<List<Coordinate>> catchments) {
+        QuadEdgeSubdivision tin = triangulate(catchments);
+        List<Vertex> vertices = new ArrayList<>();
+        for (Vertex vertex : (Collection<Vertex>) tin.getVertices(true)) {
+            if (!tin.isFrameVertex(vertex))
+                vertices.add(vertex);
+        }
+        double[] labels = new double[vertices.size()];
+        for (int v = 0; v < labels.length; v++) {
+            labels[v] = vertices.get(v).getZ();
+        }
+
+        ArrayList<Coordinate[]> polygonShells = new ArrayList<>(catchments.size());
+        ContourBuilder contourBuilder = new ContourBuilder(tin);
+        for (int i = 0; i < catchments.size(); i++) {
+            for (int v = 0; v < labels.length; v++) {
+                vertices.get(v).setZ(labels[v] == i ? 0 : 1);
+            }
+            polygonShells.add(findMaxPolygonShell(contourBuilder.computeIsoline(0.5)));
+        }
+        return polygonShells;
+    }
+
+    @SuppressWarnings("unchecked")
+    private QuadEdgeSubdivision triangulate(List<List<Coordinate>> pointLists) {
         Collection<ConstraintVertex> sites = new ArrayList<>();
         for (int i = 0; i < pointLists.size(); i++) {
             List<Coordinate> level = pointLists.get(i);
@@ -61,27 +103,23 @@ public class DelaunayTriangulationIsolineBuilder {
                 vertex.setZ(Double.MAX_VALUE);
             }
         }
-        ArrayList<Coordinate[]> polygonShells = new ArrayList<>();
-        ContourBuilder contourBuilder = new ContourBuilder(tin);
-        // ignore the last isoline as it forms just the convex hull
-        for (int i = 0; i < maxIsolines; i++) {
-            MultiPolygon multiPolygon = contourBuilder.computeIsoline((double) i + 0.5);
-            int maxPoints = 0;
-            Polygon maxPolygon = null;
-            for (int j = 0; j < multiPolygon.getNumGeometries(); j++) {
-                Polygon polygon = (Polygon) multiPolygon.getGeometryN(j);
-                if (polygon.getNumPoints() > maxPoints) {
-                    maxPoints = polygon.getNumPoints();
-                    maxPolygon = polygon;
-                }
-            }
-            if (maxPolygon == null) {
-                throw new IllegalStateException("no maximum polygon was found?");
-            } else {
-                polygonShells.add(maxPolygon.getExteriorRing().getCoordinates());
+        return tin;
+    }
+
+    private static Coordinate[] findMaxPolygonShell(MultiPolygon multiPolygon) {
+        int maxPoints = 0;
+        Polygon maxPolygon = null;
+        for (int j = 0; j < multiPolygon.getNumGeometries(); j++) {
+            Polygon polygon = (Polygon) multiPolygon.getGeometryN(j);
+            if (polygon.getNumPoints() > maxPoints) {
+                maxPoints = polygon.getNumPoints();
+                maxPolygon = polygon;
             }
         }
-        return polygonShells;
+        if (maxPolygon == null) {
+            throw new IllegalStateException("no maximum polygon was found?");
+        }
+        return maxPolygon.getExteriorRing().getCoordinates();
     }
 
 }
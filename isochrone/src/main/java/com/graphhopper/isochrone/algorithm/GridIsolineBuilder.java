@@ -0,0 +1,281 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates the same polygons as {@link DelaunayTriangulationIsolineBuilder} but without a
+ * triangulation: the bucket indices of the points are rasterized into a grid, where every grid
+ * vertex gets the smallest bucket of the points close to it, and the isolines are traced with
+ * marching squares. This is linear in the number of points and grid cells and allocates only a few
+ * arrays, so it is much faster for many points and buckets. The precision of the polygons is
+ * limited by the cell size.
+ */
+public class GridIsolineBuilder {
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    private static final double METERS_PER_DEGREE = 111_320;
+    private final double cellSizeInMeter;
+    private final int bufferCells;
+    private int maxCells = 4_000_000;
+
+    public GridIsolineBuilder() {
+        this(200, 1);
+    }
+
+    /**
+     * @param cellSizeInMeter the distance of the grid vertices
+     * @param bufferCells     every point marks the grid vertices within this number of cells as
+     *                        reached, which closes the gaps between the points of sparse roads
+     */
+    public GridIsolineBuilder(double cellSizeInMeter, int bufferCells) {
+        if (cellSizeInMeter <= 0)
+            throw new IllegalArgumentException("cell size has to be positive but was " + cellSizeInMeter);
+        if (bufferCells < 0)
+            throw new IllegalArgumentException("buffer cells cannot be negative but was " + bufferCells);
+        this.cellSizeInMeter = cellSizeInMeter;
+        this.bufferCells = bufferCells;
+    }
+
+    /**
+     * If the bounding box of the points would need more grid vertices the cell size is increased.
+     */
+    public GridIsolineBuilder setMaxCells(int maxCells) {
+        this.maxCells = maxCells;
+        return this;
+    }
+
+    /**
+     * @return a list of polygons wrapping the specified points, the polygon i contains all points of
+     * the buckets 0 to i
+     */
+    public List<Coordinate[]> calcList(List<List<Coordinate>> pointLists, int maxIsolines) {
+        if (maxIsolines > pointLists.size()) {
+            throw new IllegalStateException("maxIsolines can only be smaller or equals to pointsList");
+        }
+
+        // the points of the buckets after maxIsolines cannot be inside of any isoline
+        Grid grid = createGrid(pointLists, maxIsolines);
+        List<Coordinate[]> polygonShells = new ArrayList<>(maxIsolines);
+        for (int i = 0; i < maxIsolines; i++) {
+            polygonShells.add(grid.traceLargestRing(i));
+        }
+        return polygonShells;
+    }
+
+    /**
+     * Rasterizes all catchments into a single grid, labelled by the catchment index.
+     *
+     * @return a list of polygons, the polygon i wraps the points of the catchment i. Where the
+     * buffers of two catchments overlap the one with the smaller index wins.
+     */
+    public List<Coordinate[]> calcCatchments(List<List<Coordinate>> catchments) {
+        Grid grid = createGrid(catchments, catchments.size());
+        grid.exact = true;
+        List<Coordinate[]> polygonShells = new ArrayList<>(catchments.size());
+        for (int i = 0; i < catchments.size(); i++) {
+            polygonShells.add(grid.traceLargestRing(i));
+        }
+        return polygonShells;
+    }
+
+    private Grid createGrid(List<List<Coordinate>> pointLists, int count) {
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE, minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            for (Coordinate coord : pointLists.get(i)) {
+                minLat = Math.min(minLat, coord.y);
+                maxLat = Math.max(maxLat, coord.y);
+                minLon = Math.min(minLon, coord.x);
+                maxLon = Math.max(maxLon, coord.x);
+            }
+        }
+        if (minLat > maxLat)
+            throw new IllegalStateException("no maximum polygon was found?");
+
+        double deltaLat = cellSizeInMeter / METERS_PER_DEGREE;
+        double deltaLon = deltaLat / Math.max(0.01, Math.cos(Math.toRadians((minLat + maxLat) / 2)));
+        // keep unreached vertices around the points so that all isolines are closed
+        int padding = bufferCells + 1;
+        int width = (int) Math.ceil((maxLon - minLon) / deltaLon) + 1 + 2 * padding;
+        int height = (int) Math.ceil((maxLat - minLat) / deltaLat) + 1 + 2 * padding;
+        if ((long) width * height > maxCells) {
+            double factor = Math.sqrt((double) width * height / maxCells);
+            deltaLat *= factor;
+            deltaLon *= factor;
+            width = (int) Math.ceil((maxLon - minLon) / deltaLon) + 1 + 2 * padding;
+            height = (int) Math.ceil((maxLat - minLat) / deltaLat) + 1 + 2 * padding;
+        }
+        Grid grid = new Grid(width, height, minLon - padding * deltaLon, minLat - padding * deltaLat, deltaLon, deltaLat);
+        for (int i = 0; i < count; i++) {
+            for (Coordinate coord : pointLists.get(i)) {
+                grid.mark(coord, i, bufferCells);
+            }
+        }
+        return grid;
+    }
+
+    static class Grid {
+        final int width, height;
+        final double minLon, minLat, deltaLon, deltaLat;
+        final int[] values;
+        // if true only the vertices of exactly the bucket are inside, e.g. for catchments
+        boolean exact;
+
+        Grid(int width, int height, double minLon, double minLat, double deltaLon, double deltaLat) {
+            this.width = width;
+            this.height = height;
+            this.minLon = minLon;
+            this.minLat = minLat;
+            this.deltaLon = deltaLon;
+            this.deltaLat = deltaLat;
+            values = new int[width * height];
+            Arrays.fill(values, UNREACHED);
+        }
+
+        void mark(Coordinate coord, int bucket, int buffer) {
+            int x = (int) Math.round((coord.x - minLon) / deltaLon);
+            int y = (int) Math.round((coord.y - minLat) / deltaLat);
+            if (x < 0 || y < 0 || x >= width || y >= height)
+                return;
+            int fromX = Math.max(1, x - buffer), toX = Math.min(width - 2, x + buffer);
+            int fromY = Math.max(1, y - buffer), toY = Math.min(height - 2, y + buffer);
+            for (int currY = fromY; currY <= toY; currY++) {
+                for (int currX = fromX; currX <= toX; currX++) {
+                    int index = currY * width + currX;
+                    if (bucket < values[index])
+                        values[index] = bucket;
+                }
+            }
+        }
+
+        boolean isInside(int x, int y, int bucket) {
+            int value = values[y * width + x];
+            return exact ? value == bucket : value <= bucket;
+        }
+
+        /**
+         * The crossing on the horizontal edge from (x, y) to (x + 1, y) has the id 2 * (y * width + x)
+         * and the one on the vertical edge from (x, y) to (x, y + 1) the id 2 * (y * width + x) + 1.
+         */
+        int horizontal(int x, int y) {
+            return 2 * (y * width + x);
+        }
+
+        int vertical(int x, int y) {
+            return 2 * (y * width + x) + 1;
+        }
+
+        Coordinate toCoordinate(int crossing) {
+            int vertex = crossing / 2;
+            double x = vertex % width, y = vertex / width;
+            if (crossing % 2 == 0)
+                x += 0.5;
+            else
+                y += 0.5;
+            return new Coordinate(minLon + x * deltaLon, minLat + y * deltaLat);
+        }
+
+        /**
+         * Marching squares: every cell is walked counter-clockwise and every crossing from inside
+         * to outside is connected with the previous crossing, which goes from outside to inside.
+         * This orients all rings counter-clockwise around the inside and separates diagonal
+         * neighbors in the ambiguous saddle cases.
+         */
+        Coordinate[] traceLargestRing(int bucket) {
+            IntIntHashMap next = new IntIntHashMap();
+            int[] crossings = new int[4];
+            boolean[] entering = new boolean[4];
+            for (int y = 0; y < height - 1; y++) {
+                for (int x = 0; x < width - 1; x++) {
+                    boolean bl = isInside(x, y, bucket), br = isInside(x + 1, y, bucket),
+                            tr = isInside(x + 1, y + 1, bucket), tl = isInside(x, y + 1, bucket);
+                    if (bl == br && br == tr && tr == tl)
+                        continue;
+
+                    int count = 0;
+                    if (bl != br) {
+                        crossings[count] = horizontal(x, y);
+                        entering[count++] = br;
+                    }
+                    if (br != tr) {
+                        crossings[count] = vertical(x + 1, y);
+                        entering[count++] = tr;
+                    }
+                    if (tr != tl) {
+                        crossings[count] = horizontal(x, y + 1);
+                        entering[count++] = tl;
+                    }
+                    if (tl != bl) {
+                        crossings[count] = vertical(x, y);
+                        entering[count++] = bl;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        if (!entering[i])
+                            next.put(crossings[i], crossings[(i + count - 1) % count]);
+                    }
+                }
+            }
+
+            List<Coordinate> largest = null;
+            double largestArea = 0;
+            IntArrayList ring = new IntArrayList();
+            for (int start : next.keys().toArray()) {
+                ring.clear();
+                int curr = start;
+                while (next.containsKey(curr)) {
+                    ring.add(curr);
+                    int tmp = next.get(curr);
+                    next.remove(curr);
+                    curr = tmp;
+                }
+                if (ring.size() < 3)
+                    continue;
+
+                List<Coordinate> coords = new ArrayList<>(ring.size() + 1);
+                for (int i = 0; i < ring.size(); i++) {
+                    coords.add(toCoordinate(ring.get(i)));
+                }
+                coords.add(coords.get(0));
+                // holes are oriented clockwise and have a negative area
+                double area = signedArea(coords);
+                if (area > largestArea) {
+                    largestArea = area;
+                    largest = coords;
+                }
+            }
+            if (largest == null)
+                throw new IllegalStateException("no maximum polygon was found?");
+            return largest.toArray(new Coordinate[0]);
+        }
+    }
+
+    static double signedArea(List<Coordinate> ring) {
+        double sum = 0;
+        for (int i = 0; i < ring.size() - 1; i++) {
+            Coordinate c1 = ring.get(i), c2 = ring.get(i + 1);
+            sum += c1.x * c2.y - c2.x * c1.y;
+        }
+        return sum / 2;
+    }
+}
@@ -17,6 +17,8 @@
  */
 package com.graphhopper.isochrone.algorithm;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntObjectHashMap;
 import com.carrotsearch.hppc.procedures.IntObjectProcedure;
 import com.graphhopper.coll.GHIntObjectHashMap;
@@ -55,10 +57,12 @@ public class Isochrone extends AbstractRoutingAlgorithm {
 
         public long time;
         public double distance;
+        // the index of the source this node was reached from
+        public int source;
 
         @Override
         public String toString() {
-            return super.toString() + ", time:" + time + ", distance:" + distance;
+            return super.toString() + ", time:" + time + ", distance:" + distance + ", source:" + source;
         }
     }
 
@@ -70,6 +74,8 @@ public class Isochrone extends AbstractRoutingAlgorithm {
     private double finishLimit = -1;
     private ExploreType exploreType = TIME;
     private final boolean reverseFlow;
+    private final IntArrayList sourceNodes = new IntArrayList();
+    private final DoubleArrayList sourceOffsets = new DoubleArrayList();
 
     public Isochrone(Graph g, Weighting weighting, boolean reverseFlow) {
         super(g, weighting, TraversalMode.NODE_BASED);
@@ -104,8 +110,26 @@ public class Isochrone extends AbstractRoutingAlgorithm {
         this.finishLimit = limit + Math.max(limit * 0.14, 2_000);
     }
 
+    /**
+     * Adds a start node to the next search. With multiple sources a single search labels every node
+     * with its closest source, e.g. for the service area of many depots.
+     *
+     * @param startOffset the time in seconds or distance in meter that is already used up at this
+     *                    source, depending on the limit, e.g. to reach it from the snapped location.
+     *                    It is added to the weight as well, which is exact for the fastest weighting
+     *                    with a time limit and the shortest weighting with a distance limit.
+     */
+    public Isochrone addSource(int node, double startOffset) {
+        if (startOffset < 0)
+            throw new IllegalArgumentException("startOffset cannot be negative but was " + startOffset);
+        sourceNodes.add(node);
+        sourceOffsets.add(startOffset);
+        return this;
+    }
+
     public static class IsoLabelWithCoordinates {
         public final int nodeId;
+        public int source;
         public int edgeId, prevEdgeId, prevNodeId;
         public int timeMillis, prevTimeMillis;
         public int distance, prevDistance;
@@ -121,7 +145,15 @@ public class Isochrone extends AbstractRoutingAlgorithm {
     }
 
     public void search(int from, final Callback callback) {
-        searchInternal(from);
+        addSource(from, 0);
+        search(callback);
+    }
+
+    /**
+     * Searches from all sources added via {@link #addSource(int, double)}
+     */
+    public void search(final Callback callback) {
+        searchInternal();
 
         final NodeAccess na = graph.getNodeAccess();
         fromMap.forEach(new IntObjectProcedure<IsoLabel>() {
@@ -135,6 +167,7 @@ public class Isochrone extends AbstractRoutingAlgorithm {
                 isoLabelWC.timeMillis = Math.round(label.time);
                 isoLabelWC.distance = (int) Math.round(label.distance);
                 isoLabelWC.edgeId = label.edge;
+                isoLabelWC.source = label.source;
                 if (label.parent != null) {
                     IsoLabel prevLabel = (IsoLabel) label.parent;
                     nodeId = prevLabel.adjNode;
@@ -152,7 +185,16 @@ public class Isochrone extends AbstractRoutingAlgorithm {
     }
 
     public List<List<Coordinate>> searchGPS(int from, final int bucketCount) {
-        searchInternal(from);
+        addSource(from, 0);
+        return searchGPS(bucketCount);
+    }
+
+    /**
+     * Searches from all sources added via {@link #addSource(int, double)}. The buckets contain the
+     * nodes reached from any source, i.e. they form the coverage of all sources.
+     */
+    public List<List<Coordinate>> searchGPS(final int bucketCount) {
+        searchInternal();
 
         final double bucketSize = limit / bucketCount;
         final List<List<Coordinate>> buckets = new ArrayList<>(bucketCount);
@@ -188,8 +230,42 @@ public class Isochrone extends AbstractRoutingAlgorithm {
         return buckets;
     }
 
+    /**
+     * Searches from all sources added via {@link #addSource(int, double)} and returns the
+     * coordinates of the nodes within the limit separately for every source. Every node is only
+     * part of the catchment of its closest source.
+     */
+    public List<List<Coordinate>> searchCatchments() {
+        searchInternal();
+
+        final List<List<Coordinate>> catchments = new ArrayList<>(sourceNodes.size());
+        for (int i = 0; i < sourceNodes.size(); i++) {
+            catchments.add(new ArrayList<Coordinate>());
+        }
+        final NodeAccess na = graph.getNodeAccess();
+        fromMap.forEach(new IntObjectProcedure<IsoLabel>() {
+
+            @Override
+            public void apply(int nodeId, IsoLabel label) {
+                if (getExploreValue(label) > limit)
+                    return;
+
+                List<Coordinate> catchment = catchments.get(label.source);
+                double lat = na.getLatitude(nodeId);
+                double lon = na.getLongitude(nodeId);
+                catchment.add(new Coordinate(lon, lat));
+                if (label.parent != null) {
+                    nodeId = label.parent.adjNode;
+                    catchment.add(new Coordinate((lon + na.getLongitude(nodeId)) / 2, (lat + na.getLatitude(nodeId)) / 2));
+                }
+            }
+        });
+        return catchments;
+    }
+
     public List<Set<Integer>> search(int from, final int bucketCount) {
-        searchInternal(from);
+        addSource(from, 0);
+        searchInternal();
 
         final double bucketSize = limit / bucketCount;
         final List<Set<Integer>> list = new ArrayList<>(bucketCount);
@@ -221,10 +297,28 @@ public class Isochrone extends AbstractRoutingAlgorithm {
         return list;
     }
 
-    private void searchInternal(int from) {
+    private void searchInternal() {
         checkAlreadyRun();
-        currEdge = new IsoLabel(-1, from, 0, 0, 0);
-        fromMap.put(from, currEdge);
+        if (sourceNodes.isEmpty())
+            throw new IllegalStateException("Add at least one source before the search");
+
+        for (int i = 0; i < sourceNodes.size(); i++) {
+            int node = sourceNodes.get(i);
+            double offset = sourceOffsets.get(i);
+            IsoLabel label = exploreType == TIME
+                    ? new IsoLabel(-1, node, offset, Math.round(offset * 1000), 0)
+                    : new IsoLabel(-1, node, offset, 0, offset);
+            label.source = i;
+            IsoLabel existing = fromMap.get(node);
+            if (existing != null) {
+                if (existing.weight <= label.weight)
+                    continue;
+                fromHeap.remove(existing);
+            }
+            fromMap.put(node, label);
+            fromHeap.add(label);
+        }
+        currEdge = fromHeap.poll();
         EdgeExplorer explorer = reverseFlow ? inEdgeExplorer : outEdgeExplorer;
         while (true) {
             visitedNodes++;
@@ -250,6 +344,7 @@ public class Isochrone extends AbstractRoutingAlgorithm {
                 if (nEdge == null) {
                     nEdge = new IsoLabel(iter.getEdge(), tmpNode, tmpWeight, tmpTime, tmpDistance);
                     nEdge.parent = currEdge;
+                    nEdge.source = currEdge.source;
                     fromMap.put(tmpNode, nEdge);
                     fromHeap.add(nEdge);
                 } else if (nEdge.weight > tmpWeight) {
@@ -259,6 +354,7 @@ public class Isochrone extends AbstractRoutingAlgorithm {
                     nEdge.distance = tmpDistance;
                     nEdge.time = tmpTime;
                     nEdge.parent = currEdge;
+                    nEdge.source = currEdge.source;
                     fromHeap.add(nEdge);
                 }
             }
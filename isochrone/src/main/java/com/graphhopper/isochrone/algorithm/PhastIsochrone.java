@@ -0,0 +1,197 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.graphhopper.routing.ch.PhastSearch;
+import com.graphhopper.routing.profiles.BooleanEncodedValue;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.ShortestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.GHPoint;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calculates the same buckets as {@link Isochrone#searchGPS(int, int)}, but uses a
+ * {@link PhastSearch} on a node-based CHGraph instead of a Dijkstra on the base graph. The CH
+ * shortcuts only store the weight, so a time limit requires the fastest weighting (weight in
+ * seconds) and a distance limit the shortest weighting (weight in meters).
+ * <p>
+ * Creating an instance is linear in the number of nodes. It can be reused for many searches, but
+ * only by one thread at a time.
+ */
+public class PhastIsochrone {
+    private final PhastSearch search;
+    private final Weighting weighting;
+    private final NodeAccess na;
+    private final boolean reverseFlow;
+    private double limit = -1;
+
+    public PhastIsochrone(CHGraph chGraph, boolean reverseFlow) {
+        this.search = new PhastSearch(chGraph, reverseFlow);
+        this.weighting = chGraph.getCHProfile().getWeighting();
+        this.na = chGraph.getNodeAccess();
+        this.reverseFlow = reverseFlow;
+    }
+
+    /**
+     * @return true if the limit of the specified type can be translated into a weight limit of the
+     * specified weighting
+     */
+    public static boolean isSupported(Weighting weighting, boolean distanceLimit) {
+        if (distanceLimit)
+            return weighting instanceof ShortestWeighting;
+        return weighting instanceof FastestWeighting && weighting.getName().equals("fastest");
+    }
+
+    /**
+     * Time limit in seconds
+     */
+    public void setTimeLimit(double limit) {
+        if (!isSupported(weighting, false))
+            throw new IllegalArgumentException("A time limit requires the fastest weighting, but was " + weighting);
+        setLimit(limit, Math.max(limit * 0.14, 200));
+    }
+
+    /**
+     * Distance limit in meter
+     */
+    public void setDistanceLimit(double limit) {
+        if (!isSupported(weighting, true))
+            throw new IllegalArgumentException("A distance limit requires the shortest weighting, but was " + weighting);
+        setLimit(limit, Math.max(limit * 0.14, 2_000));
+    }
+
+    private void setLimit(double limit, double extra) {
+        this.limit = limit;
+        // explore a bit further like Isochrone to avoid artifacts at the border of the last bucket
+        search.setWeightLimit(limit + extra);
+    }
+
+    /**
+     * The CHGraph cannot be combined with a QueryGraph, so a location snapped to the middle of an
+     * edge has to start at both nodes of the edge, with the weight of the part of the edge between
+     * the location and the node as start offset.
+     *
+     * @return the weight from the snapped location to the base node (index 0) and to the adjacent
+     * node (index 1) of the closest edge, or from the nodes to the location with reverseFlow.
+     * Infinity if the node cannot be reached via the edge.
+     */
+    public double[] calcSnapWeights(QueryResult qr) {
+        EdgeIteratorState edge = qr.getClosestEdge();
+        PointList points = edge.fetchWayGeometry(3);
+        double toSnap = 0, total = 0;
+        for (int i = 1; i < points.size(); i++) {
+            double dist = Helper.DIST_PLANE.calcDist(points.getLat(i - 1), points.getLon(i - 1), points.getLat(i), points.getLon(i));
+            if (i <= qr.getWayIndex())
+                toSnap += dist;
+            total += dist;
+        }
+        GHPoint snapped = qr.getSnappedPoint();
+        toSnap += Helper.DIST_PLANE.calcDist(points.getLat(qr.getWayIndex()), points.getLon(qr.getWayIndex()), snapped.lat, snapped.lon);
+        double fraction = total > 0 ? Math.min(1, toSnap / total) : 0;
+
+        // without reverseFlow the part to the base node is traversed against the edge direction
+        double baseWeight = fraction == 0 ? 0 : calcWeight(edge, !reverseFlow) * fraction;
+        double adjWeight = fraction == 1 ? 0 : calcWeight(edge, reverseFlow) * (1 - fraction);
+        return new double[]{baseWeight, adjWeight};
+    }
+
+    private double calcWeight(EdgeIteratorState edge, boolean reverse) {
+        BooleanEncodedValue accessEnc = weighting.getFlagEncoder().getAccessEnc();
+        if (!(reverse ? edge.getReverse(accessEnc) : edge.get(accessEnc)))
+            return Double.POSITIVE_INFINITY;
+        return weighting.calcWeight(edge, reverse, EdgeIterator.NO_EDGE);
+    }
+
+    public List<List<Coordinate>> searchGPS(int from, int bucketCount) {
+        return searchGPS(new int[]{from}, new double[]{0}, bucketCount);
+    }
+
+    /**
+     * Searches from all specified nodes at once and returns the buckets of the coverage of all
+     * sources.
+     *
+     * @param startOffsets the time in seconds or distance in meter already used up at every source
+     */
+    public List<List<Coordinate>> searchGPS(int[] from, double[] startOffsets, int bucketCount) {
+        double[] weights = search(from, startOffsets);
+        double bucketSize = limit / bucketCount;
+        List<List<Coordinate>> buckets = new ArrayList<>(bucketCount + 1);
+        for (int i = 0; i < bucketCount + 1; i++) {
+            buckets.add(new ArrayList<Coordinate>());
+        }
+        for (int node = 0; node < weights.length; node++) {
+            if (weights[node] == Double.POSITIVE_INFINITY)
+                continue;
+
+            int bucketIndex = (int) (weights[node] / bucketSize);
+            if (bucketIndex > bucketCount)
+                continue;
+            buckets.get(bucketIndex).add(new Coordinate(na.getLongitude(node), na.getLatitude(node)));
+        }
+        return buckets;
+    }
+
+    /**
+     * Searches from all specified nodes at once and returns the coordinates of the nodes within the
+     * limit separately for every source. Every node is only part of the catchment of its closest
+     * source.
+     */
+    public List<List<Coordinate>> searchCatchments(int[] from, double[] startOffsets) {
+        double[] weights = search(from, startOffsets);
+        List<List<Coordinate>> catchments = new ArrayList<>(from.length);
+        for (int i = 0; i < from.length; i++) {
+            catchments.add(new ArrayList<Coordinate>());
+        }
+        for (int node = 0; node < weights.length; node++) {
+            if (weights[node] <= limit)
+                catchments.get(search.getSource(node)).add(new Coordinate(na.getLongitude(node), na.getLatitude(node)));
+        }
+        return catchments;
+    }
+
+    private double[] search(int[] from, double[] startOffsets) {
+        if (limit < 0)
+            throw new IllegalStateException("Set a time or distance limit before the search");
+
+        search.search(from, startOffsets);
+        return search.getWeights();
+    }
+
+    public int getVisitedNodes() {
+        return search.getVisitedNodes();
+    }
+
+    /**
+     * @return the number of nodes within the weight limit of the last search, including the extra
+     * weight that is added to the limit
+     */
+    public int getReachedNodes() {
+        return search.getReachedNodes();
+    }
+}
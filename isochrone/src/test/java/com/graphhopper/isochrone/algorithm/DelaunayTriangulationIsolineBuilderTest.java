@@ -5,6 +5,8 @@ import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
 
 /**
  *
@@ -29,4 +31,17 @@ public class DelaunayTriangulationIsolineBuilderTest {
         Coordinate[] geometry = res.get(0);
         Assert.assertEquals(9, geometry.length);
     }
+
+    @Test
+    public void testCatchments() {
+        GeometryFactory geometryFactory = new GeometryFactory();
+        List<List<Coordinate>> catchments = GridIsolineBuilderTest.createCatchments();
+        List<Coordinate[]> res = new DelaunayTriangulationIsolineBuilder().calcCatchments(catchments);
+        Assert.assertEquals(2, res.size());
+        for (int i = 0; i < res.size(); i++) {
+            Polygon polygon = geometryFactory.createPolygon(res.get(i));
+            Assert.assertTrue(polygon.contains(geometryFactory.createPoint(catchments.get(i).get(1))));
+            Assert.assertFalse(polygon.contains(geometryFactory.createPoint(catchments.get(1 - i).get(1))));
+        }
+    }
 }
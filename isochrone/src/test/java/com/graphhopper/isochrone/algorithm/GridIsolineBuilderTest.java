@@ -0,0 +1,123 @@
+package com.graphhopper.isochrone.algorithm;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GridIsolineBuilderTest {
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    @Test
+    public void testCalc() {
+        GridIsolineBuilder instance = new GridIsolineBuilder(50, 1);
+        List<List<Coordinate>> listOfList = new ArrayList<>();
+        List<Coordinate> list = new ArrayList<>();
+        listOfList.add(list);
+        // lon,lat!
+        list.add(new Coordinate(0.000, 0.000));
+        list.add(new Coordinate(0.001, 0.000));
+        list.add(new Coordinate(0.001, 0.001));
+        list.add(new Coordinate(0.001, 0.002));
+        list.add(new Coordinate(0.000, 0.002));
+
+        List<Coordinate[]> res = instance.calcList(listOfList, listOfList.size());
+        assertEquals(1, res.size());
+        Polygon polygon = geometryFactory.createPolygon(res.get(0));
+        assertTrue(polygon.isValid());
+        for (Coordinate coord : list) {
+            assertTrue(coord.toString(), polygon.contains(point(coord)));
+        }
+    }
+
+    @Test
+    public void testBuckets() {
+        GridIsolineBuilder instance = new GridIsolineBuilder(50, 1);
+        List<List<Coordinate>> listOfList = new ArrayList<>();
+        // three rings of points around the center, the last one is only the border of the previous ones
+        for (int bucket = 0; bucket < 4; bucket++) {
+            List<Coordinate> list = new ArrayList<>();
+            double radius = 0.002 * (bucket + 1);
+            for (int i = 0; i < 36; i++) {
+                double angle = Math.toRadians(i * 10);
+                list.add(new Coordinate(radius * Math.cos(angle), radius * Math.sin(angle)));
+            }
+            if (bucket == 0)
+                list.add(new Coordinate(0, 0));
+            listOfList.add(list);
+        }
+
+        List<Coordinate[]> res = instance.calcList(listOfList, listOfList.size() - 1);
+        assertEquals(3, res.size());
+        Polygon prev = null;
+        for (int bucket = 0; bucket < res.size(); bucket++) {
+            Polygon polygon = geometryFactory.createPolygon(res.get(bucket));
+            assertTrue(polygon.isValid());
+            for (Coordinate coord : listOfList.get(bucket)) {
+                assertTrue(coord.toString(), polygon.contains(point(coord)));
+            }
+            assertFalse(polygon.contains(point(listOfList.get(bucket + 1).get(0))));
+            // the exterior ring is used even if the points of a bucket form a ring with a hole
+            assertTrue(polygon.contains(point(new Coordinate(0, 0))));
+            if (prev != null)
+                assertTrue(polygon.getArea() > prev.getArea());
+            prev = polygon;
+        }
+    }
+
+    @Test
+    public void testMaxCells() {
+        // with 1m cells the grid would have more than 10^8 vertices
+        GridIsolineBuilder instance = new GridIsolineBuilder(1, 1).setMaxCells(10_000);
+        List<Coordinate> list = new ArrayList<>();
+        for (int i = 0; i <= 100; i++) {
+            list.add(new Coordinate(i * 0.001, i * 0.001));
+        }
+        List<Coordinate[]> res = instance.calcList(Arrays.asList(list, new ArrayList<Coordinate>()), 1);
+        Polygon polygon = geometryFactory.createPolygon(res.get(0));
+        for (Coordinate coord : list) {
+            assertTrue(coord.toString(), polygon.contains(point(coord)));
+        }
+    }
+
+    @Test
+    public void testCatchments() {
+        List<List<Coordinate>> catchments = createCatchments();
+        List<Coordinate[]> res = new GridIsolineBuilder(50, 1).calcCatchments(catchments);
+        assertEquals(2, res.size());
+        for (int i = 0; i < res.size(); i++) {
+            Polygon polygon = geometryFactory.createPolygon(res.get(i));
+            assertTrue(polygon.isValid());
+            assertTrue(polygon.contains(point(catchments.get(i).get(1))));
+            assertFalse(polygon.contains(point(catchments.get(1 - i).get(1))));
+        }
+    }
+
+    static List<List<Coordinate>> createCatchments() {
+        // two squares next to each other
+        List<List<Coordinate>> catchments = new ArrayList<>();
+        for (int c = 0; c < 2; c++) {
+            List<Coordinate> list = new ArrayList<>();
+            for (int x = 0; x < 5; x++) {
+                for (int y = 0; y < 5; y++) {
+                    list.add(new Coordinate(c * 0.005 + x * 0.001, y * 0.001));
+                }
+            }
+            // the second point is the center of the first column
+            list.add(1, new Coordinate(c * 0.005 + 0.002, 0.002));
+            catchments.add(list);
+        }
+        return catchments;
+    }
+
+    private Point point(Coordinate coord) {
+        return geometryFactory.createPoint(coord);
+    }
+}
@@ -13,12 +13,16 @@ import com.graphhopper.util.PMap;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Peter Karich
@@ -84,4 +88,43 @@ public class IsochroneTest {
         res = instance.search(0, 5);
         assertEquals("[[0], [4], [], [6], [1, 7]]", res.toString());
     }
+
+    @Test
+    public void testMultipleSources() {
+        initDirectedAndDiffSpeed(graph);
+        final Map<Integer, Integer> sources = new TreeMap<>();
+        Isochrone instance = new Isochrone(graph, new FastestWeighting(carEncoder, new PMap()), false);
+        instance.setTimeLimit(30);
+        instance.addSource(0, 0).addSource(3, 0);
+        instance.search(new Isochrone.Callback() {
+            @Override
+            public void add(Isochrone.IsoLabelWithCoordinates label) {
+                sources.put(label.nodeId, label.source);
+            }
+        });
+        assertEquals(0, (int) sources.get(0));
+        assertEquals(0, (int) sources.get(4));
+        assertEquals(1, (int) sources.get(3));
+        // 3->7 takes 25s, 0->4->6->7 only 27s
+        assertEquals(1, (int) sources.get(7));
+
+        // the start offset makes 0 the closest source of 7
+        instance = new Isochrone(graph, new FastestWeighting(carEncoder, new PMap()), false);
+        instance.setTimeLimit(30);
+        List<List<Coordinate>> catchments = instance.addSource(0, 0).addSource(3, 5).searchCatchments();
+        assertEquals(2, catchments.size());
+        assertTrue(catchments.get(0).size() > catchments.get(1).size());
+        sources.clear();
+        instance = new Isochrone(graph, new FastestWeighting(carEncoder, new PMap()), false);
+        instance.setTimeLimit(30);
+        instance.addSource(0, 0).addSource(3, 5);
+        instance.search(new Isochrone.Callback() {
+            @Override
+            public void add(Isochrone.IsoLabelWithCoordinates label) {
+                sources.put(label.nodeId, label.source);
+            }
+        });
+        assertEquals(1, (int) sources.get(3));
+        assertEquals(0, (int) sources.get(7));
+    }
 }
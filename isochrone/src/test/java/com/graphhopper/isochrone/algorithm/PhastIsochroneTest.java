@@ -0,0 +1,167 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.ShortestWeighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.CHProfile;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PhastIsochroneTest {
+
+    private final EncodingManager encodingManager = EncodingManager.create("car");
+    private final FlagEncoder carEncoder = encodingManager.getEncoder("car");
+
+    // 0-1-2-3
+    // |/|/ /|
+    // 4-5-- |
+    // |/ \--7
+    // 6----/
+    private GraphHopperStorage createGraph(CHProfile chProfile) {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).setCHProfiles(chProfile).create();
+        GHUtility.setProperties(graph.edge(0, 1).setDistance(70), carEncoder, 10, true, false);
+        GHUtility.setProperties(graph.edge(0, 4).setDistance(50), carEncoder, 20, true, false);
+
+        GHUtility.setProperties(graph.edge(1, 4).setDistance(70), carEncoder, 10, true, true);
+        GHUtility.setProperties(graph.edge(1, 5).setDistance(70), carEncoder, 10, true, true);
+        GHUtility.setProperties(graph.edge(1, 2).setDistance(200), carEncoder, 10, true, true);
+
+        GHUtility.setProperties(graph.edge(5, 2).setDistance(50), carEncoder, 10, true, false);
+        GHUtility.setProperties(graph.edge(2, 3).setDistance(50), carEncoder, 10, true, false);
+
+        GHUtility.setProperties(graph.edge(5, 3).setDistance(110), carEncoder, 20, true, false);
+        GHUtility.setProperties(graph.edge(3, 7).setDistance(70), carEncoder, 10, true, false);
+
+        GHUtility.setProperties(graph.edge(4, 6).setDistance(50), carEncoder, 20, true, false);
+        GHUtility.setProperties(graph.edge(5, 4).setDistance(70), carEncoder, 10, true, false);
+
+        GHUtility.setProperties(graph.edge(5, 6).setDistance(70), carEncoder, 10, true, false);
+        GHUtility.setProperties(graph.edge(7, 5).setDistance(50), carEncoder, 20, true, false);
+
+        GHUtility.setProperties(graph.edge(6, 7).setDistance(50), carEncoder, 20, true, true);
+        for (int node = 0; node < graph.getNodes(); node++) {
+            // use the node id as latitude to map the coordinates of the buckets back to the nodes
+            graph.getNodeAccess().setNode(node, node, 0);
+        }
+        graph.freeze();
+        PrepareContractionHierarchies.fromGraphHopperStorage(graph, chProfile).doWork();
+        return graph;
+    }
+
+    private static List<Set<Integer>> toNodes(List<List<Coordinate>> buckets) {
+        List<Set<Integer>> result = new ArrayList<>();
+        for (List<Coordinate> bucket : buckets) {
+            Set<Integer> nodes = new TreeSet<>();
+            for (Coordinate coordinate : bucket) {
+                nodes.add((int) Math.round(coordinate.y));
+            }
+            result.add(nodes);
+        }
+        return result;
+    }
+
+    @Test
+    public void testTimeLimit() {
+        CHProfile chProfile = CHProfile.nodeBased(new FastestWeighting(carEncoder));
+        GraphHopperStorage graph = createGraph(chProfile);
+        CHGraph chGraph = graph.getCHGraph(chProfile);
+
+        PhastIsochrone instance = new PhastIsochrone(chGraph, false);
+        instance.setTimeLimit(60);
+        assertEquals("[[0, 4], [6], [1, 7], [5], [2, 3], []]", toNodes(instance.searchGPS(0, 5)).toString());
+        // the sweep visits all nodes, but only the reached ones count against the node limit
+        assertEquals(graph.getNodes(), instance.getReachedNodes());
+
+        // the instance can be reused
+        instance.setTimeLimit(30);
+        assertEquals("[[0], [4], [], [6], [1, 7], []]", toNodes(instance.searchGPS(0, 5)).toString());
+
+        // no edge leads to 0
+        instance = new PhastIsochrone(chGraph, true);
+        instance.setTimeLimit(30);
+        assertEquals("[[0], [], [], [], [], []]", toNodes(instance.searchGPS(0, 5)).toString());
+        assertEquals("[[4], [0], [], [], [1, 5], [7]]", toNodes(instance.searchGPS(4, 5)).toString());
+    }
+
+    @Test
+    public void testMultipleSources() {
+        CHProfile chProfile = CHProfile.nodeBased(new FastestWeighting(carEncoder));
+        PhastIsochrone instance = new PhastIsochrone(createGraph(chProfile).getCHGraph(chProfile), false);
+        instance.setTimeLimit(30);
+        assertEquals("[[0, 3], [4], [], [6], [1, 7], [5]]",
+                toNodes(instance.searchGPS(new int[]{0, 3}, new double[]{0, 0}, 5)).toString());
+        // 3->7 takes 25s, 0->4->6->7 27s
+        assertEquals("[[0, 1, 4, 6], [3, 7]]", toNodes(instance.searchCatchments(new int[]{0, 3}, new double[]{0, 0})).toString());
+        assertEquals("[[0, 1, 4, 6, 7], [3]]", toNodes(instance.searchCatchments(new int[]{0, 3}, new double[]{0, 5})).toString());
+    }
+
+    @Test
+    public void testSnapWeights() {
+        CHProfile chProfile = CHProfile.nodeBased(new FastestWeighting(carEncoder));
+        GraphHopperStorage graph = createGraph(chProfile);
+        // a quarter of the one-way edge 0->1, which takes 25.2s
+        QueryResult qr = new QueryResult(0.25, 0);
+        qr.setClosestNode(0);
+        qr.setClosestEdge(GHUtility.getEdge(graph, 0, 1));
+        qr.setWayIndex(0);
+        qr.setSnappedPosition(QueryResult.Position.EDGE);
+        qr.calcSnappedPoint(Helper.DIST_PLANE);
+
+        double[] weights = new PhastIsochrone(graph.getCHGraph(chProfile), false).calcSnapWeights(qr);
+        assertEquals(Double.POSITIVE_INFINITY, weights[0], 0);
+        assertEquals(18.9, weights[1], 1e-6);
+
+        weights = new PhastIsochrone(graph.getCHGraph(chProfile), true).calcSnapWeights(qr);
+        assertEquals(6.3, weights[0], 1e-6);
+        assertEquals(Double.POSITIVE_INFINITY, weights[1], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDistanceLimitRequiresShortest() {
+        CHProfile chProfile = CHProfile.nodeBased(new FastestWeighting(carEncoder));
+        PhastIsochrone instance = new PhastIsochrone(createGraph(chProfile).getCHGraph(chProfile), false);
+        instance.setDistanceLimit(100);
+    }
+
+    @Test
+    public void testIsSupported() {
+        assertTrue(PhastIsochrone.isSupported(new FastestWeighting(carEncoder), false));
+        assertFalse(PhastIsochrone.isSupported(new FastestWeighting(carEncoder), true));
+        assertTrue(PhastIsochrone.isSupported(new ShortestWeighting(carEncoder), true));
+        assertFalse(PhastIsochrone.isSupported(new ShortestWeighting(carEncoder), false));
+    }
+}
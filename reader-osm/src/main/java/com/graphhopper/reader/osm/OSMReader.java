@@ -116,6 +116,7 @@ public class OSMReader implements DataReader {
     private File osmFile;
     private Date osmDataDate;
     private boolean createStorage = true;
+    private ImportProfile importProfile = new ImportProfile();
 
     // ORS-GH MOD - Add variable for overriding of 3d calculations
     private boolean calcDistance3D = true;
@@ -171,11 +172,15 @@ public class OSMReader implements DataReader {
             throw new IllegalStateException("Your specified OSM file does not exist:" + osmFile.getAbsolutePath());
 
         StopWatch sw1 = new StopWatch().start();
+        importProfile.start("preprocess");
         preProcess(osmFile);
+        importProfile.recordDataAccess(ghStorage.getDirectory()).stop();
         sw1.stop();
 
         StopWatch sw2 = new StopWatch().start();
+        importProfile.start("nodes");
         writeOsm2Graph(osmFile);
+        importProfile.recordDataAccess(ghStorage.getDirectory()).stop();
         sw2.stop();
 
         LOGGER.info("time pass1:" + (int) sw1.getSeconds() + "s, "
@@ -193,6 +198,7 @@ public class OSMReader implements DataReader {
             long tmpRelationCounter = 1;
             ReaderElement item;
             while ((item = in.getNext()) != null) {
+                importProfile.count(1);
                 if (item.isType(ReaderElement.WAY)) {
                     final ReaderWay way = (ReaderWay) item;
                     boolean valid = filterWay(way);
@@ -298,6 +304,7 @@ public class OSMReader implements DataReader {
                         if (wayStart < 0) {
                             LOGGER.info(nf(counter) + ", now parsing ways");
                             wayStart = counter;
+                            importProfile.recordDataAccess(ghStorage.getDirectory()).start("ways");
                         }
                         processWay((ReaderWay) item);
                         break;
@@ -305,6 +312,7 @@ public class OSMReader implements DataReader {
                         if (relationStart < 0) {
                             LOGGER.info(nf(counter) + ", now parsing relations");
                             relationStart = counter;
+                            importProfile.recordDataAccess(ghStorage.getDirectory()).start("relations");
                         }
                         processRelation((ReaderRelation) item);
                         break;
@@ -313,6 +321,7 @@ public class OSMReader implements DataReader {
                     default:
                         throw new IllegalStateException("Unknown type " + item.getType());
                 }
+                importProfile.count(1);
                 if (++counter % 200_000_000 == 0) {
                     LOGGER.info(nf(counter) + ", locs:" + nf(locations) + " (" + skippedLocations + ") " + Helper.getMemInfo());
                 }
@@ -1095,6 +1104,12 @@ public class OSMReader implements DataReader {
         return this;
     }
 
+    @Override
+    public DataReader setImportProfile(ImportProfile importProfile) {
+        this.importProfile = importProfile;
+        return this;
+    }
+
     @Override
     public OSMReader setWorkerThreads(int numOfWorkers) {
         this.workerThreads = numOfWorkers;
@@ -145,6 +145,8 @@ public class Measurement {
             printLocationIndexQuery(g, hopper.getLocationIndex(), count);
             printTimeOfRouteQuery(hopper, isCH, isLM, count / 20, "routing", vehicleStr,
                     true, false, -1, true, false);
+            printTimeOfRouteQuery(hopper, isCH, isLM, count / 20, "routing_primitive_arrays", vehicleStr,
+                    true, false, -1, true, false, true);
 
             if (hopper.getLMFactoryDecorator().isEnabled()) {
                 System.gc();
@@ -183,6 +185,8 @@ public class Measurement {
                             true, true, -1, true, false);
                     printTimeOfRouteQuery(hopper, isCH, isLM, count, "routingCH_no_sod", vehicleStr,
                             true, false, -1, false, false);
+                    printTimeOfRouteQuery(hopper, isCH, isLM, count, "routingCH_primitive_arrays", vehicleStr,
+                            true, false, -1, true, false, true);
                     printTimeOfRouteQuery(hopper, isCH, isLM, count, "routingCH_no_instr", vehicleStr,
                             false, false, -1, true, false);
                 }
@@ -419,6 +423,15 @@ public class Measurement {
                                        int count, String prefix, final String vehicle,
                                        final boolean withInstructions, final boolean withPointHints,
                                        final int activeLandmarks, final boolean sod, final boolean edgeBased) {
+        printTimeOfRouteQuery(hopper, ch, lm, count, prefix, vehicle, withInstructions, withPointHints, activeLandmarks,
+                sod, edgeBased, false);
+    }
+
+    private void printTimeOfRouteQuery(final GraphHopper hopper, final boolean ch, final boolean lm,
+                                       int count, String prefix, final String vehicle,
+                                       final boolean withInstructions, final boolean withPointHints,
+                                       final int activeLandmarks, final boolean sod, final boolean edgeBased,
+                                       final boolean primitiveArrays) {
         final Graph g = hopper.getGraphHopperStorage();
         final AtomicLong maxDistance = new AtomicLong(0);
         final AtomicLong minDistance = new AtomicLong(Long.MAX_VALUE);
@@ -452,6 +465,7 @@ public class Measurement {
                 req.getHints().put(CH.DISABLE, !ch).
                         put("stall_on_demand", sod).
                         put(Parameters.Routing.EDGE_BASED, edgeBased).
+                        put(Parameters.Routing.PRIMITIVE_ARRAYS, primitiveArrays).
                         put(Landmark.DISABLE, !lm).
                         put(Landmark.ACTIVE_COUNT, activeLandmarks).
                         put("instructions", withInstructions);
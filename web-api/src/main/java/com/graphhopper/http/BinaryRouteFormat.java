@@ -0,0 +1,463 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A compact binary alternative to the JSON route response, e.g. for service-to-service calls.
+ * <p>
+ * All strings (instruction texts, street names, path detail keys, ...) are stored once in a
+ * dictionary at the beginning and referenced via their index. Coordinates use the same scheme as
+ * the encoded polyline (see {@link WebHelper#encodePolyline}), i.e. the deltas of the coordinates
+ * multiplied with 1e5 (elevation with 100), but are written as zigzag varints instead of
+ * characters. The intervals of the path details are written as fixed width ints. Errors are not
+ * part of this format, they are still returned as JSON. The public transit legs are not supported,
+ * see {@link #checkSupported(GHResponse)}.
+ */
+public class BinaryRouteFormat {
+    public static final String MEDIA_TYPE = "application/x-graphhopper-route";
+    private static final int MAGIC = 0x47484231; // "GHB1"
+    private static final double PRECISION = 1e5;
+    private static final double ELE_PRECISION = 100;
+
+    private static final int POINTS = 1, ELEVATION = 2, INSTRUCTIONS = 4;
+    private static final byte NULL = 0, DOUBLE = 1, LONG = 2, INT = 3, BOOLEAN = 4, STRING = 5;
+
+    private BinaryRouteFormat() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the response contains something that cannot be written
+     *                                  in this format like public transit legs
+     */
+    public static void checkSupported(GHResponse rsp) {
+        for (PathWrapper path : rsp.getAll()) {
+            if (!path.getLegs().isEmpty())
+                throw new IllegalArgumentException("The binary route format does not support public transit legs, use type=json instead");
+        }
+    }
+
+    public static void write(OutputStream out, GHResponse rsp, boolean enableInstructions, boolean calcPoints, boolean enableElevation) throws IOException {
+        checkSupported(rsp);
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        Map<String, String> hints = rsp.getHints().toMap();
+        writeVarInt(body, hints.size());
+        for (Map.Entry<String, String> entry : hints.entrySet()) {
+            writeString(body, dictionary, entry.getKey());
+            writeString(body, dictionary, entry.getValue());
+        }
+
+        writeVarInt(body, rsp.getAll().size());
+        for (PathWrapper path : rsp.getAll()) {
+            body.writeDouble(path.getDistance());
+            body.writeDouble(path.getRouteWeight());
+            writeVarLong(body, path.getTime());
+            writeVarInt(body, path.getNumChanges());
+            body.writeDouble(path.getAscend());
+            body.writeDouble(path.getDescend());
+            writeVarInt(body, path.getDescription().size());
+            for (String description : path.getDescription()) {
+                writeString(body, dictionary, description);
+            }
+            writeString(body, dictionary, path.getFare() == null ? null : path.getFare().toPlainString());
+
+            int flags = (calcPoints ? POINTS : 0) | (enableElevation ? ELEVATION : 0)
+                    | (calcPoints && enableInstructions ? INSTRUCTIONS : 0);
+            body.writeByte(flags);
+            writePoints(body, path.getWaypoints(), enableElevation);
+            if (!calcPoints)
+                continue;
+
+            writePoints(body, path.getPoints(), enableElevation);
+            if (enableInstructions) {
+                InstructionList instructions = path.getInstructions();
+                writeVarInt(body, instructions.size());
+                for (Instruction instruction : instructions) {
+                    writeVarInt(body, zigzag(instruction.getSign()));
+                    InstructionAnnotation ia = instruction.getAnnotation();
+                    String text = instruction.getTurnDescription(instructions.getTr());
+                    if (Helper.isEmpty(text))
+                        text = ia.getMessage();
+                    writeString(body, dictionary, Helper.firstBig(text));
+                    writeString(body, dictionary, instruction.getName());
+                    writeVarInt(body, ia.isEmpty() ? 0 : zigzag(ia.getImportance()) + 1);
+                    if (!ia.isEmpty())
+                        writeString(body, dictionary, ia.getMessage());
+                    writeVarLong(body, instruction.getTime());
+                    body.writeDouble(instruction.getDistance());
+                    writeVarInt(body, instruction.getPoints().size());
+
+                    Map<String, Object> extraInfo = instruction.getExtraInfoJSON();
+                    writeVarInt(body, extraInfo.size());
+                    for (Map.Entry<String, Object> entry : extraInfo.entrySet()) {
+                        writeString(body, dictionary, entry.getKey());
+                        writeValue(body, dictionary, entry.getValue());
+                    }
+                }
+            }
+
+            Map<String, List<PathDetail>> details = path.getPathDetails();
+            writeVarInt(body, details.size());
+            for (Map.Entry<String, List<PathDetail>> entry : details.entrySet()) {
+                writeString(body, dictionary, entry.getKey());
+                writeVarInt(body, entry.getValue().size());
+                for (PathDetail detail : entry.getValue()) {
+                    body.writeInt(detail.getFirst());
+                    body.writeInt(detail.getLast());
+                    writeValue(body, dictionary, detail.getValue());
+                }
+            }
+        }
+        body.flush();
+
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(MAGIC);
+        writeVarInt(dataOut, dictionary.size());
+        for (String str : dictionary.keySet()) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(dataOut, bytes.length);
+            dataOut.write(bytes);
+        }
+        bodyBytes.writeTo(dataOut);
+        dataOut.flush();
+    }
+
+    /**
+     * @param turnDescription if true the text of the instructions is the translated turn
+     *                        description like for the JSON response, otherwise the street name
+     */
+    public static GHResponse read(InputStream in, boolean turnDescription) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in));
+        if (input.readInt() != MAGIC)
+            throw new IllegalArgumentException("Input is not in the binary route format");
+
+        String[] dictionary = new String[readVarInt(input)];
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] bytes = new byte[readVarInt(input)];
+            input.readFully(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        GHResponse rsp = new GHResponse();
+        int hints = readVarInt(input);
+        for (int i = 0; i < hints; i++) {
+            rsp.getHints().put(readString(input, dictionary), readString(input, dictionary));
+        }
+
+        int paths = readVarInt(input);
+        for (int p = 0; p < paths; p++) {
+            PathWrapper path = new PathWrapper();
+            path.setDistance(input.readDouble());
+            path.setRouteWeight(input.readDouble());
+            path.setTime(readVarLong(input));
+            path.setNumChanges(readVarInt(input));
+            path.setAscend(input.readDouble());
+            path.setDescend(input.readDouble());
+            int descriptions = readVarInt(input);
+            if (descriptions > 0) {
+                List<String> description = new ArrayList<>(descriptions);
+                for (int i = 0; i < descriptions; i++) {
+                    description.add(readString(input, dictionary));
+                }
+                path.setDescription(description);
+            }
+            String fare = readString(input, dictionary);
+            if (fare != null)
+                path.setFare(new BigDecimal(fare));
+
+            int flags = input.readByte();
+            boolean is3D = (flags & ELEVATION) != 0;
+            path.setWaypoints(readPoints(input, is3D));
+            List<Integer> pointsOrder = new ArrayList<>(path.getWaypoints().size());
+            for (int i = 0; i < path.getWaypoints().size(); i++) {
+                pointsOrder.add(i);
+            }
+            path.setPointsOrder(pointsOrder);
+            rsp.add(path);
+            if ((flags & POINTS) == 0)
+                continue;
+
+            PointList points = readPoints(input, is3D);
+            path.setPoints(points);
+            if ((flags & INSTRUCTIONS) != 0)
+                path.setInstructions(readInstructions(input, dictionary, points, turnDescription));
+
+            int detailCount = readVarInt(input);
+            Map<String, List<PathDetail>> details = new HashMap<>(detailCount);
+            for (int i = 0; i < detailCount; i++) {
+                String key = readString(input, dictionary);
+                int size = readVarInt(input);
+                List<PathDetail> list = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    int first = input.readInt();
+                    int last = input.readInt();
+                    PathDetail detail = createPathDetail(readValue(input, dictionary));
+                    detail.setFirst(first);
+                    detail.setLast(last);
+                    list.add(detail);
+                }
+                details.put(key, list);
+            }
+            path.addPathDetails(details);
+        }
+        return rsp;
+    }
+
+    private static InstructionList readInstructions(DataInputStream input, String[] dictionary, PointList points,
+                                                    boolean turnDescription) throws IOException {
+        int size = readVarInt(input);
+        InstructionList il = new InstructionList(size, null);
+        int viaCount = 1;
+        int pointsIndex = 0;
+        for (int i = 0; i < size; i++) {
+            int sign = unzigzag(readVarInt(input));
+            String text = readString(input, dictionary);
+            String streetName = readString(input, dictionary);
+            int importance = readVarInt(input);
+            InstructionAnnotation ia = importance == 0 ? InstructionAnnotation.EMPTY
+                    : new InstructionAnnotation(unzigzag(importance - 1), readString(input, dictionary));
+            long time = readVarLong(input);
+            double distance = input.readDouble();
+            int pointCount = readVarInt(input);
+            Map<String, Object> extraInfo = new HashMap<>();
+            int extras = readVarInt(input);
+            for (int j = 0; j < extras; j++) {
+                extraInfo.put(readString(input, dictionary), readValue(input, dictionary));
+            }
+
+            PointList instPL = new PointList(pointCount, points.is3D());
+            for (int j = pointsIndex; j < pointsIndex + pointCount; j++) {
+                instPL.add(points, j);
+            }
+
+            String name = turnDescription ? text : streetName;
+            Instruction instr;
+            if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT) {
+                RoundaboutInstruction ri = new RoundaboutInstruction(sign, name, ia, instPL);
+                if (extraInfo.containsKey("exit_number"))
+                    ri.setExitNumber(((Number) extraInfo.get("exit_number")).intValue());
+                if (Boolean.TRUE.equals(extraInfo.get("exited")))
+                    ri.setExited();
+                if (extraInfo.containsKey("turn_angle")) {
+                    double angle = ((Number) extraInfo.get("turn_angle")).doubleValue();
+                    ri.setDirOfRotation(angle);
+                    ri.setRadian((angle < 0 ? -Math.PI : Math.PI) - angle);
+                }
+                instr = ri;
+            } else if (sign == Instruction.REACHED_VIA) {
+                ViaInstruction tmpInstr = new ViaInstruction(name, ia, instPL);
+                tmpInstr.setViaCount(viaCount);
+                viaCount++;
+                instr = tmpInstr;
+            } else if (sign == Instruction.FINISH) {
+                instr = new FinishInstruction(name, instPL, 0);
+            } else {
+                instr = new Instruction(sign, name, ia, instPL);
+                for (Map.Entry<String, Object> entry : extraInfo.entrySet()) {
+                    instr.setExtraInfo(entry.getKey(), entry.getValue());
+                }
+            }
+
+            if (turnDescription)
+                instr.setUseRawName();
+
+            instr.setDistance(distance).setTime(time);
+            // via and finish instructions do not count, see Instruction.getLength
+            pointsIndex += instr.getLength();
+            il.add(instr);
+        }
+        return il;
+    }
+
+    private static PathDetail createPathDetail(Object value) {
+        // same types as created by the PathDetailDeserializer
+        if (value instanceof Boolean)
+            return new PathDetail((Boolean) value);
+        else if (value instanceof Double)
+            return new PathDetail((Double) value);
+        else if (value instanceof Number)
+            return new PathDetail(((Number) value).longValue());
+        else if (value instanceof String)
+            return new PathDetail((String) value);
+        throw new IllegalArgumentException("Unsupported type of PathDetail value " + value);
+    }
+
+    private static void writePoints(DataOutputStream out, PointList points, boolean includeElevation) throws IOException {
+        int size = points.getSize();
+        writeVarInt(out, size);
+        int prevLat = 0, prevLon = 0, prevEle = 0;
+        for (int i = 0; i < size; i++) {
+            int num = (int) Math.floor(points.getLatitude(i) * PRECISION);
+            writeVarInt(out, zigzag(num - prevLat));
+            prevLat = num;
+            num = (int) Math.floor(points.getLongitude(i) * PRECISION);
+            writeVarInt(out, zigzag(num - prevLon));
+            prevLon = num;
+            if (includeElevation) {
+                num = (int) Math.floor(points.getElevation(i) * ELE_PRECISION);
+                writeVarInt(out, zigzag(num - prevEle));
+                prevEle = num;
+            }
+        }
+    }
+
+    private static PointList readPoints(DataInputStream in, boolean is3D) throws IOException {
+        int size = readVarInt(in);
+        PointList points = new PointList(size, is3D);
+        int lat = 0, lon = 0, ele = 0;
+        for (int i = 0; i < size; i++) {
+            lat += unzigzag(readVarInt(in));
+            lon += unzigzag(readVarInt(in));
+            if (is3D) {
+                ele += unzigzag(readVarInt(in));
+                points.add(lat / PRECISION, lon / PRECISION, ele / ELE_PRECISION);
+            } else {
+                points.add(lat / PRECISION, lon / PRECISION);
+            }
+        }
+        return points;
+    }
+
+    private static void writeValue(DataOutputStream out, Map<String, Integer> dictionary, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, zigzag((Long) value));
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            writeVarInt(out, zigzag((Integer) value));
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, dictionary, (String) value);
+        } else {
+            throw new IllegalArgumentException("Unsupported type " + value.getClass());
+        }
+    }
+
+    private static Object readValue(DataInputStream in, String[] dictionary) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case DOUBLE:
+                return in.readDouble();
+            case LONG:
+                return unzigzag(readVarLong(in));
+            case INT:
+                return unzigzag(readVarInt(in));
+            case BOOLEAN:
+                return in.readBoolean();
+            case STRING:
+                return readString(in, dictionary);
+            default:
+                throw new IllegalArgumentException("Unknown value type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, Map<String, Integer> dictionary, String str) throws IOException {
+        if (str == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        Integer index = dictionary.get(str);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.put(str, index);
+        }
+        // 0 is reserved for null
+        writeVarInt(out, index + 1);
+    }
+
+    private static String readString(DataInputStream in, String[] dictionary) throws IOException {
+        int index = readVarInt(in);
+        return index == 0 ? null : dictionary[index - 1];
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed varlong");
+    }
+}
@@ -17,20 +17,24 @@
  */
 package com.graphhopper.http;
 
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.graphhopper.GHResponse;
 import com.graphhopper.PathWrapper;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
+import com.graphhopper.util.details.PathDetail;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Code which handles polyline encoding and other web stuff.
@@ -43,6 +47,8 @@ import java.util.Locale;
  * @author Peter Karich
  */
 public class WebHelper {
+    private static final ObjectMapper TREE_MAPPER = new ObjectMapper();
+
     public static String encodeURL(String str) {
         try {
             return URLEncoder.encode(str, "UTF-8");
@@ -108,39 +114,62 @@ public class WebHelper {
     }
 
     public static String encodePolyline(PointList poly, boolean includeElevation, double precision) {
-        StringBuilder sb = new StringBuilder();
+        char[] buffer = createPolylineBuffer(poly, includeElevation);
+        return new String(buffer, 0, encodePolyline(poly, includeElevation, precision, buffer));
+    }
+
+    /**
+     * Writes the encoded polyline directly as JSON string value into the specified generator
+     * without creating an intermediate String.
+     */
+    public static void writePolyline(JsonGenerator gen, PointList poly, boolean includeElevation) throws IOException {
+        char[] buffer = createPolylineBuffer(poly, includeElevation);
+        gen.writeString(buffer, 0, encodePolyline(poly, includeElevation, 1e5, buffer));
+    }
+
+    private static char[] createPolylineBuffer(PointList poly, boolean includeElevation) {
+        // a zigzag encoded int needs at most 7 chars with 5 bits per char
+        return new char[poly.getSize() * (includeElevation ? 3 : 2) * 7];
+    }
+
+    /**
+     * @return the number of chars written into the buffer
+     */
+    private static int encodePolyline(PointList poly, boolean includeElevation, double precision, char[] buffer) {
+        int pos = 0;
         int size = poly.getSize();
         int prevLat = 0;
         int prevLon = 0;
         int prevEle = 0;
         for (int i = 0; i < size; i++) {
             int num = (int) Math.floor(poly.getLatitude(i) * precision);
-            encodeNumber(sb, num - prevLat);
+            pos = encodeNumber(buffer, pos, num - prevLat);
             prevLat = num;
             num = (int) Math.floor(poly.getLongitude(i) * precision);
-            encodeNumber(sb, num - prevLon);
+            pos = encodeNumber(buffer, pos, num - prevLon);
             prevLon = num;
             if (includeElevation) {
                 num = (int) Math.floor(poly.getElevation(i) * 100);
-                encodeNumber(sb, num - prevEle);
+                pos = encodeNumber(buffer, pos, num - prevEle);
                 prevEle = num;
             }
         }
-        return sb.toString();
+        return pos;
     }
 
-    private static void encodeNumber(StringBuilder sb, int num) {
+    private static int encodeNumber(char[] buffer, int pos, int num) {
         num = num << 1;
         if (num < 0) {
             num = ~num;
         }
         while (num >= 0x20) {
             int nextValue = (0x20 | (num & 0x1f)) + 63;
-            sb.append((char) (nextValue));
+            buffer[pos++] = (char) (nextValue);
             num >>= 5;
         }
         num += 63;
-        sb.append((char) (num));
+        buffer[pos++] = (char) (num);
+        return pos;
     }
 
     /**
@@ -157,40 +186,103 @@ public class WebHelper {
         return json;
     }
 
+    /**
+     * Creates the JSON tree of the specified response. The tree is built from {@link #writeJson} so
+     * that both formats cannot diverge. Values like the instructions are stored as POJOs and are
+     * only serialized when the tree is written via an ObjectMapper.
+     */
     public static ObjectNode jsonObject(GHResponse ghRsp, boolean enableInstructions, boolean calcPoints, boolean enableElevation, boolean pointsEncoded, float took) {
-        ObjectNode json = JsonNodeFactory.instance.objectNode();
-        json.putPOJO("hints", ghRsp.getHints().toMap());
-        jsonResponsePutInfo(json, took);
-        ArrayNode jsonPathList = json.putArray("paths");
+        // without a codec the buffer keeps the POJOs as embedded objects which are read as POJONode
+        TokenBuffer buffer = new TokenBuffer(null, false);
+        try {
+            writeJson(buffer, ghRsp, enableInstructions, calcPoints, enableElevation, pointsEncoded, took);
+            return (ObjectNode) TREE_MAPPER.readTree(buffer.asParser());
+        } catch (IOException ex) {
+            throw new RuntimeException("Cannot create JSON for response", ex);
+        }
+    }
+
+    /**
+     * Writes the JSON of the specified response directly into the specified generator instead of
+     * building the full JSON tree in memory first. The points are encoded without intermediate
+     * objects, which avoids most allocations for long routes. The generator has to be created from
+     * an ObjectMapper that is configured via {@link com.graphhopper.jackson.Jackson}, as e.g. the
+     * instructions and path details are written via the registered serializers.
+     */
+    public static void writeJson(JsonGenerator gen, GHResponse ghRsp, boolean enableInstructions, boolean calcPoints, boolean enableElevation, boolean pointsEncoded, float took) throws IOException {
+        gen.writeStartObject();
+        gen.writeObjectField("hints", ghRsp.getHints().toMap());
+        gen.writeObjectFieldStart("info");
+        gen.writeObjectField("copyrights", COPYRIGHTS);
+        gen.writeNumberField("took", Math.round(took * 1000));
+        gen.writeEndObject();
+        gen.writeArrayFieldStart("paths");
         for (PathWrapper ar : ghRsp.getAll()) {
-            ObjectNode jsonPath = jsonPathList.addObject();
-            jsonPath.put("distance", Helper.round(ar.getDistance(), 3));
-            jsonPath.put("weight", Helper.round6(ar.getRouteWeight()));
-            jsonPath.put("time", ar.getTime());
-            jsonPath.put("transfers", ar.getNumChanges());
+            gen.writeStartObject();
+            gen.writeNumberField("distance", Helper.round(ar.getDistance(), 3));
+            gen.writeNumberField("weight", Helper.round6(ar.getRouteWeight()));
+            gen.writeNumberField("time", ar.getTime());
+            gen.writeNumberField("transfers", ar.getNumChanges());
             if (!ar.getDescription().isEmpty()) {
-                jsonPath.putPOJO("description", ar.getDescription());
+                gen.writeObjectField("description", ar.getDescription());
             }
             if (calcPoints) {
-                jsonPath.put("points_encoded", pointsEncoded);
+                gen.writeBooleanField("points_encoded", pointsEncoded);
                 if (ar.getPoints().getSize() >= 2) {
-                    jsonPath.putPOJO("bbox", ar.calcBBox2D());
+                    gen.writeObjectField("bbox", ar.calcBBox2D());
                 }
-                jsonPath.putPOJO("points", pointsEncoded ? encodePolyline(ar.getPoints(), enableElevation) : ar.getPoints().toLineString(enableElevation));
+                gen.writeFieldName("points");
+                writePoints(gen, ar.getPoints(), enableElevation, pointsEncoded);
                 if (enableInstructions) {
-                    jsonPath.putPOJO("instructions", ar.getInstructions());
+                    gen.writeObjectField("instructions", ar.getInstructions());
+                }
+                gen.writeObjectField("legs", ar.getLegs());
+                gen.writeObjectFieldStart("details");
+                for (Map.Entry<String, List<PathDetail>> entry : ar.getPathDetails().entrySet()) {
+                    gen.writeArrayFieldStart(entry.getKey());
+                    for (PathDetail detail : entry.getValue()) {
+                        gen.writeObject(detail);
+                    }
+                    gen.writeEndArray();
                 }
-                jsonPath.putPOJO("legs", ar.getLegs());
-                jsonPath.putPOJO("details", ar.getPathDetails());
-                jsonPath.put("ascend", ar.getAscend());
-                jsonPath.put("descend", ar.getDescend());
+                gen.writeEndObject();
+                gen.writeNumberField("ascend", ar.getAscend());
+                gen.writeNumberField("descend", ar.getDescend());
             }
-            jsonPath.putPOJO("snapped_waypoints", pointsEncoded ? encodePolyline(ar.getWaypoints(), enableElevation) : ar.getWaypoints().toLineString(enableElevation));
+            gen.writeFieldName("snapped_waypoints");
+            writePoints(gen, ar.getWaypoints(), enableElevation, pointsEncoded);
             if (ar.getFare() != null) {
-                jsonPath.put("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(ar.getFare()));
+                gen.writeStringField("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(ar.getFare()));
             }
+            gen.writeEndObject();
         }
-        return json;
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private static void writePoints(JsonGenerator gen, PointList points, boolean enableElevation, boolean pointsEncoded) throws IOException {
+        if (pointsEncoded) {
+            writePolyline(gen, points, enableElevation);
+            return;
+        }
+
+        // the same GeoJSON as created via PointList.toLineString
+        gen.writeStartObject();
+        gen.writeStringField("type", "LineString");
+        gen.writeArrayFieldStart("coordinates");
+        int size = points.getSize();
+        // special case as just 1 point is not supported in the specification #1412
+        for (int i = 0; i < (size == 1 ? 2 : size); i++) {
+            int index = size == 1 ? 0 : i;
+            gen.writeStartArray();
+            gen.writeNumber(PointList.round6(points.getLongitude(index)));
+            gen.writeNumber(PointList.round6(points.getLatitude(index)));
+            if (enableElevation)
+                gen.writeNumber(PointList.round2(points.getElevation(index)));
+            gen.writeEndArray();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
     }
 
 }
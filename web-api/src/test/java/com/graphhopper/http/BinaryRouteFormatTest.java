@@ -0,0 +1,178 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.Trip;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryRouteFormatTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ObjectMapper objectMapper = Jackson.newObjectMapper();
+        GHResponse rsp = createResponse();
+        for (boolean elevation : new boolean[]{true, false}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryRouteFormat.write(out, rsp, true, true, elevation);
+            GHResponse decoded = BinaryRouteFormat.read(new ByteArrayInputStream(out.toByteArray()), true);
+
+            assertEquals(objectMapper.writeValueAsString(WebHelper.jsonObject(rsp, false, true, elevation, true, 0)),
+                    objectMapper.writeValueAsString(WebHelper.jsonObject(decoded, false, true, elevation, true, 0)));
+            String json = objectMapper.writeValueAsString(WebHelper.jsonObject(rsp, true, true, elevation, false, 0));
+            assertTrue("binary format should be smaller than JSON, " + out.size() + " vs. " + json.length(),
+                    out.size() < json.length());
+
+            InstructionList expected = rsp.getBest().getInstructions();
+            InstructionList instructions = decoded.getBest().getInstructions();
+            assertEquals(expected.size(), instructions.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Instruction expectedInstr = expected.get(i);
+                Instruction instr = instructions.get(i);
+                assertEquals(expectedInstr.getClass(), instr.getClass());
+                assertEquals(expectedInstr.getSign(), instr.getSign());
+                assertEquals(Helper.firstBig(expectedInstr.getTurnDescription(usTR)), instr.getTurnDescription(null));
+                assertEquals(expectedInstr.getAnnotation().getMessage(), instr.getAnnotation().getMessage());
+                assertEquals(expectedInstr.getDistance(), instr.getDistance(), 1e-6);
+                assertEquals(expectedInstr.getTime(), instr.getTime());
+                assertEquals(expectedInstr.getLength(), instr.getLength());
+                assertEquals(expectedInstr.getPoints().size(), instr.getPoints().size());
+                assertEquals(expectedInstr.getExtraInfoJSON(), instr.getExtraInfoJSON());
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRouteFormat.write(out, rsp, true, true, false);
+        InstructionList instructions = BinaryRouteFormat.read(new ByteArrayInputStream(out.toByteArray()), false).
+                getBest().getInstructions();
+        assertEquals("main street", instructions.get(0).getName());
+        assertEquals("streetname", instructions.get(1).getName());
+    }
+
+    @Test
+    public void testWithoutPoints() throws IOException {
+        GHResponse rsp = createResponse();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRouteFormat.write(out, rsp, true, false, false);
+        PathWrapper path = BinaryRouteFormat.read(new ByteArrayInputStream(out.toByteArray()), true).getBest();
+        assertEquals(1234.5678, path.getDistance(), 1e-6);
+        assertEquals(100_000, path.getTime());
+        assertEquals(2, path.getWaypoints().size());
+        assertEquals(0, path.getPoints().size());
+        assertEquals(new BigDecimal("2.70"), path.getFare());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLegsNotSupported() throws IOException {
+        GHResponse rsp = createResponse();
+        rsp.getBest().getLegs().add(new Trip.WalkLeg("a", new Date(0), null, 100, new InstructionList(null), new Date(1000)));
+        BinaryRouteFormat.write(new ByteArrayOutputStream(), rsp, true, true, false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidInput() throws IOException {
+        BinaryRouteFormat.read(new ByteArrayInputStream("{\"paths\":[]}".getBytes()), true);
+    }
+
+    private static GHResponse createResponse() {
+        PathWrapper path = new PathWrapper();
+        PointList points = Helper.createPointList3D(52.514, 13.348, 10, 52.514, 13.349, 11, 52.5135, 13.35, 12,
+                52.514, 13.351, 13, 52.5142, 13.352, 14);
+        path.setPoints(points);
+        path.setWaypoints(Helper.createPointList3D(52.514, 13.348, 10, 52.5142, 13.352, 14));
+        path.setDistance(1234.5678).setTime(100_000).setRouteWeight(12.3456789);
+        path.setAscend(4).setDescend(0);
+        path.setDescription(Arrays.asList("a", "b"));
+        path.setFare(new BigDecimal("2.70"));
+
+        InstructionList il = new InstructionList(usTR);
+        Instruction instr = new Instruction(Instruction.CONTINUE_ON_STREET, "main street", InstructionAnnotation.EMPTY,
+                points.copy(0, 2));
+        instr.setExtraInfo("heading", 90.0);
+        instr.setDistance(100).setTime(10_000);
+        il.add(instr);
+        RoundaboutInstruction roundabout = new RoundaboutInstruction(Instruction.USE_ROUNDABOUT, "streetname",
+                new InstructionAnnotation(1, "toll"), points.copy(2, 4))
+                .setDirOfRotation(-0.1)
+                .setRadian(-Math.PI + 1)
+                .setExitNumber(2)
+                .setExited();
+        roundabout.setDistance(1134.5678).setTime(90_000);
+        il.add(roundabout);
+        il.add(new FinishInstruction("finish", points.copy(4, 5), 0));
+        path.setInstructions(il);
+
+        List<PathDetail> names = new ArrayList<>();
+        names.add(createDetail(new PathDetail("main street"), 0, 1));
+        names.add(createDetail(new PathDetail("streetname"), 1, 4));
+        Map<String, List<PathDetail>> details = new HashMap<>();
+        details.put("street_name", names);
+        details.put("average_speed", Collections.singletonList(createDetail(new PathDetail(35.5), 0, 4)));
+        details.put("edge_id", Collections.singletonList(createDetail(new PathDetail(42L), 0, 4)));
+        path.addPathDetails(details);
+
+        GHResponse rsp = new GHResponse();
+        rsp.add(path);
+        rsp.getHints().put("test", "value");
+        return rsp;
+    }
+
+    private static PathDetail createDetail(PathDetail detail, int first, int last) {
+        detail.setFirst(first);
+        detail.setLast(last);
+        return detail;
+    }
+
+    private static final Translation usTR = new Translation() {
+        @Override
+        public String tr(String key, Object... params) {
+            if (key.equals("roundabout_exit_onto"))
+                return "At roundabout, take exit 2 onto streetname";
+            return key;
+        }
+
+        @Override
+        public Map<String, String> asMap() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Locale getLocale() {
+            return Locale.US;
+        }
+
+        @Override
+        public String getLanguage() {
+            return "en";
+        }
+    };
+}
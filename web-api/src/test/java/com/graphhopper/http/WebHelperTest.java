@@ -17,11 +17,16 @@
  */
 package com.graphhopper.http;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.graphhopper.jackson.Jackson;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -79,4 +84,14 @@ public class WebHelperTest {
     public void testEncode1e6() throws Exception {
         assertEquals("ohdfzAgt}bVoEL", WebHelper.encodePolyline(Helper.createPointList(47.827608, 12.123476, 47.827712, 12.123469), false, 1e6));
     }
+
+    @Test
+    public void testWritePolyline() throws IOException {
+        PointList list = Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234, 43.252, -126.453, 1234);
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator gen = Jackson.newObjectMapper().getFactory().createGenerator(writer)) {
+            WebHelper.writePolyline(gen, list, true);
+        }
+        assertEquals("\"_p~iF~ps|Uo}@_ulLnnqC_anF_mqNvxq`@?\"", writer.toString());
+    }
 }
@@ -20,6 +20,7 @@ package com.graphhopper.http;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationConfig;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
@@ -263,6 +264,22 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
     private void runRegularGraphHopper(CmdArgs configuration, Environment environment) {
         final GraphHopperManaged graphHopperManaged = new GraphHopperManaged(configuration, environment.getObjectMapper());
         environment.lifecycle().manage(graphHopperManaged);
+        final MVTTileCache mvtTileCache = new MVTTileCache(configuration.getInt("web.mvt.cache_size", 1000));
+        final MVTGeneralizedEdges mvtGeneralizedEdges = new MVTGeneralizedEdges(graphHopperManaged.getGraphHopper());
+        final PhastIsochronePool phastIsochronePool = new PhastIsochronePool(configuration.getInt("web.isochrone.phast_pool_size",
+                Runtime.getRuntime().availableProcessors()), configuration.getInt("web.isochrone.phast_max_instances",
+                Runtime.getRuntime().availableProcessors()));
+        // managed objects are started in the order they were added, i.e. after the graph was loaded
+        environment.lifecycle().manage(new Managed() {
+            @Override
+            public void start() {
+                mvtGeneralizedEdges.prepare();
+            }
+
+            @Override
+            public void stop() {
+            }
+        });
         environment.jersey().register(new AbstractBinder() {
             @Override
             protected void configure() {
@@ -270,6 +287,10 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
                 bind(graphHopperManaged).to(GraphHopperManaged.class);
                 bind(graphHopperManaged.getGraphHopper()).to(GraphHopper.class);
                 bind(graphHopperManaged.getGraphHopper()).to(GraphHopperAPI.class);
+                bind(environment.getObjectMapper()).to(ObjectMapper.class);
+                bind(mvtTileCache).to(MVTTileCache.class);
+                bind(mvtGeneralizedEdges).to(MVTGeneralizedEdges.class);
+                bind(phastIsochronePool).to(PhastIsochronePool.class);
 
                 bindFactory(HasElevation.class).to(Boolean.class).named("hasElevation");
                 bindFactory(LocationIndexFactory.class).to(LocationIndex.class);
@@ -0,0 +1,189 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.profiles.EnumEncodedValue;
+import com.graphhopper.routing.profiles.RoadClass;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.CompactPointList;
+import com.graphhopper.util.DouglasPeucker;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the edges shown for the lower zoom levels of the vector tiles. For every zoom level from
+ * {@link #MIN_ZOOM} to {@link #MAX_ZOOM} only the edges of the visible road classes are kept, their
+ * geometry is simplified to the resolution of the zoom level and the edges are assigned to the
+ * tiles they touch. This is done after the graph was loaded so that a tile request for these zoom
+ * levels does not need to query the location index or fetch and simplify the full geometry. The
+ * edges have to be prepared again whenever the graph changes, together with clearing the
+ * {@link MVTTileCache}.
+ */
+public class MVTGeneralizedEdges {
+    public static final int MIN_ZOOM = 6;
+    // for higher zoom levels the tiles are created from the location index
+    public static final int MAX_ZOOM = 12;
+    // meters per pixel at zoom 0 for 256 pixel tiles at the equator
+    private static final double METERS_PER_PIXEL = 156543.03;
+
+    private final GraphHopper graphHopper;
+    private volatile Level[] levels;
+
+    public MVTGeneralizedEdges(GraphHopper graphHopper) {
+        this.graphHopper = graphHopper;
+    }
+
+    /**
+     * @return true if the specified road class is shown in the tiles of the specified zoom level
+     */
+    public static boolean isVisible(RoadClass rc, int zoom) {
+        return rc == RoadClass.MOTORWAY
+                || zoom > 10 && (rc == RoadClass.PRIMARY || rc == RoadClass.TRUNK)
+                || zoom > 11 && rc == RoadClass.SECONDARY
+                || zoom > 12;
+    }
+
+    /**
+     * Creates the simplified geometries. This must be called after the graph was loaded and does
+     * nothing if the road class is not stored. Calling it again replaces the edges at once, the
+     * tiles can be requested meanwhile.
+     */
+    public void prepare() {
+        EncodingManager encodingManager = graphHopper.getEncodingManager();
+        if (!encodingManager.hasEncodedValue(RoadClass.KEY))
+            return;
+
+        EnumEncodedValue<RoadClass> roadClassEnc = encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class);
+        Graph graph = graphHopper.getGraphHopperStorage();
+        BBox bounds = graph.getBounds();
+        double cosLat = Math.cos(Math.toRadians((bounds.minLat + bounds.maxLat) / 2));
+        Level[] tmpLevels = new Level[MAX_ZOOM + 1];
+        for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; zoom++) {
+            // half a pixel is not visible
+            tmpLevels[zoom] = new Level(zoom, METERS_PER_PIXEL * cosLat / (1 << zoom) / 2);
+        }
+
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            RoadClass rc = iter.get(roadClassEnc);
+            PointList geometry = null;
+            for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; zoom++) {
+                if (!isVisible(rc, zoom))
+                    continue;
+                if (geometry == null)
+                    geometry = iter.fetchWayGeometry(3);
+                tmpLevels[zoom].add(iter.getEdge(), geometry);
+            }
+        }
+        levels = tmpLevels;
+    }
+
+    /**
+     * @return true if the tiles of the specified zoom level can be created from this object
+     */
+    public boolean covers(int zoom) {
+        return levels != null && zoom >= MIN_ZOOM && zoom <= MAX_ZOOM;
+    }
+
+    /**
+     * Calls the visitor for every edge that touches the specified tile.
+     */
+    public void forEachEdge(int zoom, int x, int y, EdgeVisitor visitor) {
+        if (!covers(zoom))
+            throw new IllegalArgumentException("Zoom " + zoom + " is not covered");
+
+        Level level = levels[zoom];
+        IntArrayList indices = level.tiles.get(toKey(x, y));
+        if (indices == null)
+            return;
+        for (int i = 0; i < indices.size(); i++) {
+            int index = indices.get(i);
+            visitor.onEdge(level.edges.get(index), level.geometries.get(index));
+        }
+    }
+
+    private static long toKey(int x, int y) {
+        return ((long) x << 32) | y;
+    }
+
+    static int lon2tile(double lon, int zoom) {
+        int n = 1 << zoom;
+        return Math.max(0, Math.min(n - 1, (int) Math.floor((lon + 180) / 360 * n)));
+    }
+
+    static int lat2tile(double lat, int zoom) {
+        int n = 1 << zoom;
+        double latRad = Math.toRadians(lat);
+        double y = (1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * n;
+        return Math.max(0, Math.min(n - 1, (int) Math.floor(y)));
+    }
+
+    public interface EdgeVisitor {
+        void onEdge(int edge, PointList geometry);
+    }
+
+    private static class Level {
+        final int zoom;
+        final DouglasPeucker douglasPeucker;
+        final IntArrayList edges = new IntArrayList();
+        final List<PointList> geometries = new ArrayList<>();
+        final LongObjectHashMap<IntArrayList> tiles = new LongObjectHashMap<>();
+
+        Level(int zoom, double maxDistance) {
+            this.zoom = zoom;
+            this.douglasPeucker = new DouglasPeucker().setMaxDistance(maxDistance);
+        }
+
+        void add(int edge, PointList geometry) {
+            PointList simplified = geometry.copy(0, geometry.size());
+            douglasPeucker.simplify(simplified);
+            CompactPointList compact = new CompactPointList(simplified.size(), false);
+            BBox bbox = BBox.createInverse(false);
+            for (int i = 0; i < simplified.size(); i++) {
+                compact.add(simplified.getLat(i), simplified.getLon(i));
+                bbox.update(simplified.getLat(i), simplified.getLon(i));
+            }
+
+            int index = edges.size();
+            edges.add(edge);
+            geometries.add(compact);
+            // y grows from north to south
+            int minX = lon2tile(bbox.minLon, zoom), maxX = lon2tile(bbox.maxLon, zoom);
+            int minY = lat2tile(bbox.maxLat, zoom), maxY = lat2tile(bbox.minLat, zoom);
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    long key = toKey(x, y);
+                    IntArrayList indices = tiles.get(key);
+                    if (indices == null) {
+                        indices = new IntArrayList(4);
+                        tiles.put(key, indices);
+                    }
+                    indices.add(index);
+                }
+            }
+        }
+    }
+}
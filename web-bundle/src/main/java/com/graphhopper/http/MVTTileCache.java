@@ -0,0 +1,68 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded in-memory cache for encoded vector tiles. If the cache is full the least recently used
+ * tile is removed. A maximum of 0 disables the cache.
+ */
+public class MVTTileCache {
+    private final int maxTiles;
+    private final Map<String, byte[]> tiles;
+
+    public MVTTileCache(int maxTiles) {
+        this.maxTiles = maxTiles;
+        this.tiles = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > MVTTileCache.this.maxTiles;
+            }
+        };
+    }
+
+    public static String createKey(int zoom, int x, int y, List<String> details) {
+        return zoom + "/" + x + "/" + y + "/" + String.join(",", details);
+    }
+
+    /**
+     * @return the cached tile or null if the tile is not in the cache
+     */
+    public synchronized byte[] get(String key) {
+        return tiles.get(key);
+    }
+
+    public synchronized void put(String key, byte[] tile) {
+        if (maxTiles > 0)
+            tiles.put(key, tile);
+    }
+
+    /**
+     * Removes all tiles, e.g. after the graph was changed.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+    }
+
+    public synchronized int size() {
+        return tiles.size();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.isochrone.algorithm.PhastIsochrone;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.CHProfile;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Keeps idle PhastIsochrone instances for the next requests, because creating one is linear in the
+ * number of nodes and allocates several arrays of the graph size. At most maxIdle instances are kept
+ * per CHGraph and flow direction, a maximum of 0 disables the pool. At most maxLive instances are in
+ * use at the same time, further requests wait until an instance is released.
+ */
+public class PhastIsochronePool {
+    private final int maxIdle;
+    private final Semaphore live;
+    private final Map<CHProfile, Deque<PhastIsochrone>> forward = new HashMap<>();
+    private final Map<CHProfile, Deque<PhastIsochrone>> reverse = new HashMap<>();
+
+    public PhastIsochronePool(int maxIdle, int maxLive) {
+        if (maxIdle < 0)
+            throw new IllegalArgumentException("maxIdle cannot be negative but was " + maxIdle);
+        if (maxLive <= 0)
+            throw new IllegalArgumentException("maxLive has to be positive but was " + maxLive);
+        this.maxIdle = maxIdle;
+        this.live = new Semaphore(maxLive, true);
+    }
+
+    /**
+     * @return an idle instance or a new one. It must only be used by the calling thread until it
+     * is released. Blocks while maxLive instances are in use.
+     */
+    public PhastIsochrone acquire(CHGraph chGraph, boolean reverseFlow) {
+        live.acquireUninterruptibly();
+        try {
+            synchronized (this) {
+                Deque<PhastIsochrone> idle = getIdle(chGraph, reverseFlow);
+                if (!idle.isEmpty())
+                    return idle.pop();
+            }
+            return new PhastIsochrone(chGraph, reverseFlow);
+        } catch (RuntimeException ex) {
+            live.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns an instance from {@link #acquire} and has to be called exactly once for it.
+     */
+    public void release(CHGraph chGraph, boolean reverseFlow, PhastIsochrone isochrone) {
+        synchronized (this) {
+            Deque<PhastIsochrone> idle = getIdle(chGraph, reverseFlow);
+            if (idle.size() < maxIdle)
+                idle.push(isochrone);
+        }
+        live.release();
+    }
+
+    private Deque<PhastIsochrone> getIdle(CHGraph chGraph, boolean reverseFlow) {
+        Map<CHProfile, Deque<PhastIsochrone>> map = reverseFlow ? reverse : forward;
+        Deque<PhastIsochrone> idle = map.get(chGraph.getCHProfile());
+        if (idle == null) {
+            idle = new ArrayDeque<>();
+            map.put(chGraph.getCHProfile(), idle);
+        }
+        return idle;
+    }
+}
@@ -19,7 +19,10 @@ package com.graphhopper.resources;
 
 import com.codahale.metrics.annotation.Timed;
 import com.graphhopper.GraphHopper;
+import com.graphhopper.http.MVTGeneralizedEdges;
+import com.graphhopper.http.MVTTileCache;
 import com.graphhopper.json.geo.JsonFeatureCollection;
+import com.graphhopper.storage.change.ChangeGraphResponse;
 import org.glassfish.jersey.server.ManagedAsync;
 
 import javax.inject.Inject;
@@ -44,17 +47,26 @@ import javax.ws.rs.core.MediaType;
 public class ChangeGraphResource {
 
     private GraphHopper graphHopper;
+    private MVTTileCache tileCache;
+    private MVTGeneralizedEdges generalizedEdges;
 
     @Inject
-    ChangeGraphResource(GraphHopper graphHopper) {
+    ChangeGraphResource(GraphHopper graphHopper, MVTTileCache tileCache, MVTGeneralizedEdges generalizedEdges) {
         this.graphHopper = graphHopper;
+        this.tileCache = tileCache;
+        this.generalizedEdges = generalizedEdges;
     }
 
     @POST
     @Timed
     @ManagedAsync
     public void changeGraph(JsonFeatureCollection collection, @Suspended AsyncResponse response) {
-        response.resume(graphHopper.changeGraph(collection.getFeatures()));
+        ChangeGraphResponse changeGraphResponse = graphHopper.changeGraph(collection.getFeatures());
+        // the generalized edges and the cached tiles could contain outdated details. The edges are
+        // rebuilt first, so that no tile is created from the old ones after the cache was cleared
+        generalizedEdges.prepare();
+        tileCache.clear();
+        response.resume(changeGraphResponse);
     }
 
 }
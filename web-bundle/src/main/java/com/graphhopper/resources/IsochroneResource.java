@@ -1,18 +1,28 @@
 package com.graphhopper.resources;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GraphHopper;
+import com.graphhopper.http.PhastIsochronePool;
 import com.graphhopper.http.WebHelper;
 import com.graphhopper.isochrone.algorithm.DelaunayTriangulationIsolineBuilder;
+import com.graphhopper.isochrone.algorithm.GridIsolineBuilder;
 import com.graphhopper.isochrone.algorithm.Isochrone;
+import com.graphhopper.isochrone.algorithm.PhastIsochrone;
 import com.graphhopper.json.geo.JsonFeature;
 import com.graphhopper.routing.QueryGraph;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.Weighting;
-import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.CHProfile;
+import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Parameters;
 import com.graphhopper.util.StopWatch;
 import com.graphhopper.util.shapes.GHPoint;
 import org.locationtech.jts.geom.Coordinate;
@@ -28,7 +38,6 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -40,13 +49,16 @@ public class IsochroneResource {
     private final GraphHopper graphHopper;
     private final EncodingManager encodingManager;
     private final DelaunayTriangulationIsolineBuilder delaunayTriangulationIsolineBuilder;
+    private final PhastIsochronePool phastIsochronePool;
     private final GeometryFactory geometryFactory = new GeometryFactory();
 
     @Inject
-    public IsochroneResource(GraphHopper graphHopper, EncodingManager encodingManager, DelaunayTriangulationIsolineBuilder delaunayTriangulationIsolineBuilder) {
+    public IsochroneResource(GraphHopper graphHopper, EncodingManager encodingManager, DelaunayTriangulationIsolineBuilder delaunayTriangulationIsolineBuilder,
+                             PhastIsochronePool phastIsochronePool) {
         this.graphHopper = graphHopper;
         this.encodingManager = encodingManager;
         this.delaunayTriangulationIsolineBuilder = delaunayTriangulationIsolineBuilder;
+        this.phastIsochronePool = phastIsochronePool;
     }
 
     @GET
@@ -57,16 +69,19 @@ public class IsochroneResource {
             @QueryParam("vehicle") @DefaultValue("car") String vehicle,
             @QueryParam("buckets") @DefaultValue("1") int nBuckets,
             @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
-            @QueryParam("point") GHPoint point,
+            @QueryParam("point") List<GHPoint> points,
+            @QueryParam("start_offset") List<Double> startOffsets,
             @QueryParam("result") @DefaultValue("polygon") String resultStr,
             @QueryParam("time_limit") @DefaultValue("600") long timeLimitInSeconds,
             @QueryParam("distance_limit") @DefaultValue("-1") double distanceInMeter,
+            @QueryParam("isoline_builder") @DefaultValue("delaunay") String isolineBuilder,
+            @QueryParam("cell_size") @DefaultValue("200") double cellSizeInMeter,
             @QueryParam("type") @DefaultValue("json") String respType) {
 
         if (nBuckets > 20 || nBuckets < 1)
             throw new IllegalArgumentException("Number of buckets has to be in the range [1, 20]");
 
-        if (point == null)
+        if (points.isEmpty())
             throw new IllegalArgumentException("point parameter cannot be null");
 
         StopWatch sw = new StopWatch().start();
@@ -78,76 +93,219 @@ public class IsochroneResource {
             throw new IllegalArgumentException("Format not supported:" + respType);
         }
 
+        if (!"delaunay".equalsIgnoreCase(isolineBuilder) && !"grid".equalsIgnoreCase(isolineBuilder))
+            throw new IllegalArgumentException("isoline_builder not supported:" + isolineBuilder);
+
+        if (cellSizeInMeter < 10)
+            throw new IllegalArgumentException("cell_size has to be at least 10m");
+
+        if (!startOffsets.isEmpty() && startOffsets.size() != points.size())
+            throw new IllegalArgumentException("Specify one start_offset per point or none, but was " + startOffsets.size() + " for " + points.size() + " points");
+        for (double startOffset : startOffsets) {
+            if (startOffset < 0)
+                throw new IllegalArgumentException("start_offset cannot be negative but was " + startOffset);
+        }
+
         FlagEncoder encoder = encodingManager.getEncoder(vehicle);
         EdgeFilter edgeFilter = DefaultEdgeFilter.allEdges(encoder);
         LocationIndex locationIndex = graphHopper.getLocationIndex();
-        QueryResult qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
-        if (!qr.isValid())
-            throw new IllegalArgumentException("Point not found:" + point);
-
-        Graph graph = graphHopper.getGraphHopperStorage();
-        QueryGraph queryGraph = new QueryGraph(graph);
-        queryGraph.lookup(Collections.singletonList(qr));
+        List<QueryResult> qrs = new ArrayList<>(points.size());
+        for (GHPoint point : points) {
+            QueryResult qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
+            if (!qr.isValid())
+                throw new IllegalArgumentException("Point not found:" + point);
+            qrs.add(qr);
+        }
 
+        GraphHopperStorage ghStorage = graphHopper.getGraphHopperStorage();
         HintsMap hintsMap = new HintsMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        Weighting weighting = graphHopper.createWeighting(hintsMap, encoder, ghStorage);
 
-        Weighting weighting = graphHopper.createWeighting(hintsMap, encoder, graph);
-        Isochrone isochrone = new Isochrone(queryGraph, weighting, reverseFlow);
+        boolean catchments = "catchment".equalsIgnoreCase(resultStr);
+        if (!catchments && !"polygon".equalsIgnoreCase(resultStr))
+            throw new IllegalArgumentException("type not supported:" + resultStr);
 
-        if (distanceInMeter > 0) {
-            isochrone.setDistanceLimit(distanceInMeter);
-        } else {
-            isochrone.setTimeLimit(timeLimitInSeconds);
+        // with multiple points all of them are searched at once: "polygon" returns the area reachable
+        // from any point and "catchment" the area per point that is closer to it than to the others
+        CHGraph chGraph = findCHGraph(ghStorage, weighting, hintsMap, distanceInMeter > 0);
+        QueryGraph queryGraph = null;
+        if (chGraph == null) {
+            queryGraph = new QueryGraph(ghStorage);
+            queryGraph.lookup(qrs);
         }
 
-        if ("polygon".equalsIgnoreCase(resultStr)) {
-            List<List<Coordinate>> buckets = isochrone.searchGPS(qr.getClosestNode(), nBuckets);
-            if (isochrone.getVisitedNodes() > graphHopper.getMaxVisitedNodes() / 5) {
-                throw new IllegalArgumentException("Server side reset: too many junction nodes would have to explored (" + isochrone.getVisitedNodes() + "). Let us know if you need this increased.");
+        // points that snap to the same node are searched as one source with the smallest start
+        // offset, otherwise all but one of them would end up with an empty catchment
+        IntIntHashMap nodeToSource = new IntIntHashMap(points.size());
+        IntArrayList sourceNodes = new IntArrayList(points.size());
+        DoubleArrayList sourceOffsets = new DoubleArrayList(points.size());
+        IntArrayList sourcePoints = new IntArrayList(points.size());
+        int[] pointToSource = new int[points.size()];
+        for (int i = 0; i < qrs.size(); i++) {
+            int node = qrs.get(i).getClosestNode();
+            double startOffset = startOffsets.isEmpty() ? 0 : startOffsets.get(i);
+            int source = nodeToSource.getOrDefault(node, -1);
+            if (source < 0) {
+                source = sourceNodes.size();
+                nodeToSource.put(node, source);
+                sourceNodes.add(node);
+                sourceOffsets.add(startOffset);
+                sourcePoints.add(i);
+            } else if (startOffset < sourceOffsets.get(source)) {
+                sourceOffsets.set(source, startOffset);
             }
+            pointToSource[i] = source;
+        }
 
-            int counter = 0;
-            for (List<Coordinate> bucket : buckets) {
-                if (bucket.size() < 2) {
-                    throw new IllegalArgumentException("Too few points found for bucket " + counter + ". "
-                            + "Please try a different 'point', a smaller 'buckets' count or a larger 'time_limit'. "
-                            + "And let us know if you think this is a bug!");
+        List<List<Coordinate>> pointLists;
+        int visitedNodes;
+        // PHAST sweeps over all nodes, so only the nodes within the limit are compared to the maximum
+        int exploredNodes;
+        if (chGraph != null) {
+            PhastIsochrone isochrone = phastIsochronePool.acquire(chGraph, reverseFlow);
+            try {
+                if (distanceInMeter > 0) {
+                    isochrone.setDistanceLimit(distanceInMeter);
+                } else {
+                    isochrone.setTimeLimit(timeLimitInSeconds);
                 }
-                counter++;
-            }
-            ArrayList<JsonFeature> features = new ArrayList<>();
-            List<Coordinate[]> polygonShells = delaunayTriangulationIsolineBuilder.calcList(buckets, buckets.size() - 1);
-            for (Coordinate[] polygonShell : polygonShells) {
-                JsonFeature feature = new JsonFeature();
-                HashMap<String, Object> properties = new HashMap<>();
-                properties.put("bucket", features.size());
-                if (respType.equalsIgnoreCase("geojson")) {
-                    properties.put("copyrights", WebHelper.COPYRIGHTS);
+                // the CHGraph cannot be combined with a QueryGraph, so a location on an edge starts at
+                // both nodes of the edge with the weight of the remaining part of the edge as offset
+                IntArrayList seedNodes = new IntArrayList();
+                DoubleArrayList seedOffsets = new DoubleArrayList();
+                IntArrayList seedSources = new IntArrayList();
+                for (int source = 0; source < sourceNodes.size(); source++) {
+                    QueryResult qr = qrs.get(sourcePoints.get(source));
+                    double startOffset = sourceOffsets.get(source);
+                    int seeds = seedNodes.size();
+                    if (qr.getSnappedPosition() != QueryResult.Position.TOWER) {
+                        double[] snapWeights = isochrone.calcSnapWeights(qr);
+                        EdgeIteratorState edge = qr.getClosestEdge();
+                        int[] edgeNodes = {edge.getBaseNode(), edge.getAdjNode()};
+                        for (int i = 0; i < 2; i++) {
+                            if (Double.isInfinite(snapWeights[i]))
+                                continue;
+                            seedNodes.add(edgeNodes[i]);
+                            seedOffsets.add(startOffset + snapWeights[i]);
+                            seedSources.add(source);
+                        }
+                    }
+                    if (seeds == seedNodes.size()) {
+                        seedNodes.add(qr.getClosestNode());
+                        seedOffsets.add(startOffset);
+                        seedSources.add(source);
+                    }
+                }
+                int[] from = seedNodes.toArray();
+                double[] offsets = seedOffsets.toArray();
+                if (catchments) {
+                    List<List<Coordinate>> seedLists = isochrone.searchCatchments(from, offsets);
+                    pointLists = new ArrayList<>(sourceNodes.size());
+                    for (int source = 0; source < sourceNodes.size(); source++) {
+                        pointLists.add(new ArrayList<Coordinate>());
+                    }
+                    for (int seed = 0; seed < seedLists.size(); seed++) {
+                        pointLists.get(seedSources.get(seed)).addAll(seedLists.get(seed));
+                    }
+                } else {
+                    pointLists = isochrone.searchGPS(from, offsets, nBuckets);
                 }
-                feature.setProperties(properties);
-                feature.setGeometry(geometryFactory.createPolygon(polygonShell));
-                features.add(feature);
+                visitedNodes = isochrone.getVisitedNodes();
+                exploredNodes = isochrone.getReachedNodes();
+            } finally {
+                phastIsochronePool.release(chGraph, reverseFlow, isochrone);
             }
-            ObjectNode json = JsonNodeFactory.instance.objectNode();
-            
-            ObjectNode finalJson = null;
-            if (respType.equalsIgnoreCase("geojson")) {
-            	json.put("type", "FeatureCollection");
-                json.putPOJO("features", features);
-                finalJson = json;
+        } else {
+            Isochrone isochrone = new Isochrone(queryGraph, weighting, reverseFlow);
+            if (distanceInMeter > 0) {
+                isochrone.setDistanceLimit(distanceInMeter);
             } else {
-            	json.putPOJO("polygons", features);
-            	finalJson = WebHelper.jsonResponsePutInfo(json, sw.getSeconds());
+                isochrone.setTimeLimit(timeLimitInSeconds);
             }
-            
-            sw.stop();
-            logger.info("took: " + sw.getSeconds() + ", visited nodes:" + isochrone.getVisitedNodes() + ", " + uriInfo.getQueryParameters());
-            return Response.ok(finalJson).header("X-GH-Took", "" + sw.getSeconds() * 1000).
-                    build();
+            for (int source = 0; source < sourceNodes.size(); source++) {
+                isochrone.addSource(sourceNodes.get(source), sourceOffsets.get(source));
+            }
+            pointLists = catchments ? isochrone.searchCatchments() : isochrone.searchGPS(nBuckets);
+            visitedNodes = isochrone.getVisitedNodes();
+            exploredNodes = visitedNodes;
+        }
+        if (exploredNodes > graphHopper.getMaxVisitedNodes() / 5) {
+            throw new IllegalArgumentException("Server side reset: too many junction nodes would have to explored (" + exploredNodes + "). Let us know if you need this increased.");
+        }
 
+        int counter = 0;
+        for (List<Coordinate> bucket : pointLists) {
+            if (bucket.size() < 2) {
+                throw new IllegalArgumentException("Too few points found for " + (catchments ? "point " + sourcePoints.get(counter) : "bucket " + counter) + ". "
+                        + "Please try a different 'point', a smaller 'buckets' count or a larger 'time_limit'. "
+                        + "And let us know if you think this is a bug!");
+            }
+            counter++;
+        }
+        ArrayList<JsonFeature> features = new ArrayList<>();
+        List<Coordinate[]> polygonShells;
+        if (catchments) {
+            // all catchments share a single triangulation or grid, labelled by their source
+            List<Coordinate[]> sourceShells = "grid".equalsIgnoreCase(isolineBuilder)
+                    ? new GridIsolineBuilder(cellSizeInMeter, 1).calcCatchments(pointLists)
+                    : delaunayTriangulationIsolineBuilder.calcCatchments(pointLists);
+            polygonShells = new ArrayList<>(points.size());
+            for (int i = 0; i < points.size(); i++) {
+                polygonShells.add(sourceShells.get(pointToSource[i]));
+            }
         } else {
-            throw new IllegalArgumentException("type not supported:" + resultStr);
+            polygonShells = calcPolygonShells(pointLists, isolineBuilder, cellSizeInMeter);
+        }
+        for (Coordinate[] polygonShell : polygonShells) {
+            JsonFeature feature = new JsonFeature();
+            HashMap<String, Object> properties = new HashMap<>();
+            properties.put(catchments ? "point" : "bucket", features.size());
+            if (respType.equalsIgnoreCase("geojson")) {
+                properties.put("copyrights", WebHelper.COPYRIGHTS);
+            }
+            feature.setProperties(properties);
+            feature.setGeometry(geometryFactory.createPolygon(polygonShell));
+            features.add(feature);
+        }
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+
+        ObjectNode finalJson = null;
+        if (respType.equalsIgnoreCase("geojson")) {
+            json.put("type", "FeatureCollection");
+            json.putPOJO("features", features);
+            finalJson = json;
+        } else {
+            json.putPOJO("polygons", features);
+            finalJson = WebHelper.jsonResponsePutInfo(json, sw.getSeconds());
+        }
+
+        sw.stop();
+        logger.info("took: " + sw.getSeconds() + ", visited nodes:" + visitedNodes + ", " + uriInfo.getQueryParameters());
+        return Response.ok(finalJson).header("X-GH-Took", "" + sw.getSeconds() * 1000).
+                build();
+    }
+
+    private List<Coordinate[]> calcPolygonShells(List<List<Coordinate>> pointLists, String isolineBuilder, double cellSizeInMeter) {
+        if ("grid".equalsIgnoreCase(isolineBuilder))
+            return new GridIsolineBuilder(cellSizeInMeter, 1).calcList(pointLists, pointLists.size() - 1);
+        return delaunayTriangulationIsolineBuilder.calcList(pointLists, pointLists.size() - 1);
+    }
+
+    /**
+     * @return the node-based CHGraph that can be used for a PHAST search with the specified
+     * weighting or null if the isochrone has to be calculated without CH
+     */
+    private CHGraph findCHGraph(GraphHopperStorage ghStorage, Weighting weighting, HintsMap hintsMap, boolean distanceLimit) {
+        if (!graphHopper.isCHEnabled() || hintsMap.getBool(Parameters.CH.DISABLE, false)
+                || !PhastIsochrone.isSupported(weighting, distanceLimit))
+            return null;
+
+        for (CHProfile chProfile : ghStorage.getCHProfiles(false)) {
+            // ORS core graphs are only partially contracted
+            if ("ch".equals(chProfile.getType()) && chProfile.getWeighting().matches(hintsMap) && chProfile.getWeighting().getFlagEncoder() == weighting.getFlagEncoder())
+                return ghStorage.getCHGraph(chProfile);
         }
+        return null;
     }
-}
\ No newline at end of file
+}
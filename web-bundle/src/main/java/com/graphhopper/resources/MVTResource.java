@@ -1,10 +1,14 @@
 package com.graphhopper.resources;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.http.MVTGeneralizedEdges;
+import com.graphhopper.http.MVTTileCache;
 import com.graphhopper.routing.profiles.*;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
@@ -35,6 +39,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Creates vector tiles of the road network. For the lower zoom levels the tiles are created from
+ * the simplified geometries of {@link MVTGeneralizedEdges}, for the higher zoom levels from the
+ * location index. The encoded tiles are kept in the {@link MVTTileCache}.
+ */
 @Path("mvt")
 public class MVTResource {
 
@@ -42,11 +51,16 @@ public class MVTResource {
     private static final MediaType PBF = new MediaType("application", "x-protobuf");
     private final GraphHopper graphHopper;
     private final EncodingManager encodingManager;
+    private final MVTTileCache tileCache;
+    private final MVTGeneralizedEdges generalizedEdges;
 
     @Inject
-    public MVTResource(GraphHopper graphHopper, EncodingManager encodingManager) {
+    public MVTResource(GraphHopper graphHopper, EncodingManager encodingManager, MVTTileCache tileCache,
+                       MVTGeneralizedEdges generalizedEdges) {
         this.graphHopper = graphHopper;
         this.encodingManager = encodingManager;
+        this.tileCache = tileCache;
+        this.generalizedEdges = generalizedEdges;
     }
 
     @GET
@@ -60,7 +74,8 @@ public class MVTResource {
             @PathParam("y") int yInfo,
             @QueryParam(Parameters.Details.PATH_DETAILS) List<String> pathDetails) {
 
-        if (zInfo <= 9) {
+        boolean generalized = generalizedEdges.covers(zInfo);
+        if (zInfo < MVTGeneralizedEdges.MIN_ZOOM || zInfo <= 9 && !generalized) {
             VectorTile.Tile.Builder mvtBuilder = VectorTile.Tile.newBuilder();
             return Response.fromResponse(Response.ok(mvtBuilder.build().toByteArray(), PBF).build())
                     .header("X-GH-Took", "0")
@@ -68,94 +83,131 @@ public class MVTResource {
         }
 
         StopWatch totalSW = new StopWatch().start();
+        String cacheKey = MVTTileCache.createKey(zInfo, xInfo, yInfo, pathDetails);
+        byte[] cachedBytes = tileCache.get(cacheKey);
+        if (cachedBytes != null) {
+            totalSW.stop();
+            return Response.ok(cachedBytes, PBF).header("X-GH-Took", "" + totalSW.getSeconds() * 1000)
+                    .build();
+        }
+
         Coordinate nw = num2deg(xInfo, yInfo, zInfo);
         Coordinate se = num2deg(xInfo + 1, yInfo + 1, zInfo);
-        LocationIndexTree locationIndex = (LocationIndexTree) graphHopper.getLocationIndex();
-        final NodeAccess na = graphHopper.getGraphHopperStorage().getNodeAccess();
-        EdgeExplorer edgeExplorer = graphHopper.getGraphHopperStorage().createEdgeExplorer(DefaultEdgeFilter.ALL_EDGES);
+        LocationIndex locationIndex = graphHopper.getLocationIndex();
+        final GraphHopperStorage graph = graphHopper.getGraphHopperStorage();
+        final NodeAccess na = graph.getNodeAccess();
+        EdgeExplorer edgeExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.ALL_EDGES);
         BBox bbox = new BBox(nw.x, se.x, se.y, nw.y);
         if (!bbox.isValid())
             throw new IllegalStateException("Invalid bbox " + bbox);
 
         final GeometryFactory geometryFactory = new GeometryFactory();
         VectorTile.Tile.Builder mvtBuilder = VectorTile.Tile.newBuilder();
-        final IGeometryFilter acceptAllGeomFilter = geometry -> true;
         final Envelope tileEnvelope = new Envelope(se, nw);
-        final MvtLayerParams layerParams = new MvtLayerParams(256, 4096);
-        final UserDataKeyValueMapConverter converter = new UserDataKeyValueMapConverter();
         if (!encodingManager.hasEncodedValue(RoadClass.KEY))
             throw new IllegalStateException("You need to configure GraphHopper to store road_class, e.g. graph.encoded_values: road_class,max_speed,... ");
 
         final EnumEncodedValue<RoadClass> roadClassEnc = encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class);
         final AtomicInteger edgeCounter = new AtomicInteger(0);
-        // in toFeatures addTags of the converter is called and layerProps is filled with keys&values => those need to be stored in the layerBuilder
-        // otherwise the decoding won't be successful and "undefined":"undefined" instead of "speed": 30 is the result
-        final MvtLayerProps layerProps = new MvtLayerProps();
-        final VectorTile.Tile.Layer.Builder layerBuilder = MvtLayerBuild.newLayerBuilder("roads", layerParams);
-
-        locationIndex.query(bbox, new LocationIndexTree.EdgeVisitor(edgeExplorer) {
-            @Override
-            public void onEdge(EdgeIteratorState edge, int nodeA, int nodeB) {
-                LineString lineString;
-                RoadClass rc = edge.get(roadClassEnc);
-                if (zInfo >= 14) {
-                    PointList pl = edge.fetchWayGeometry(3);
-                    lineString = pl.toLineString(false);
-                } else if (rc == RoadClass.MOTORWAY
-                        || zInfo > 10 && (rc == RoadClass.PRIMARY || rc == RoadClass.TRUNK)
-                        || zInfo > 11 && (rc == RoadClass.SECONDARY)
-                        || zInfo > 12) {
-                    double lat = na.getLatitude(nodeA);
-                    double lon = na.getLongitude(nodeA);
-                    double toLat = na.getLatitude(nodeB);
-                    double toLon = na.getLongitude(nodeB);
-                    lineString = geometryFactory.createLineString(new Coordinate[]{new Coordinate(lon, lat), new Coordinate(toLon, toLat)});
-                } else {
-                    // skip edge for certain zoom
-                    return;
-                }
+        final LayerBuilder layer = new LayerBuilder(tileEnvelope, geometryFactory, pathDetails);
 
+        if (generalized) {
+            generalizedEdges.forEachEdge(zInfo, xInfo, yInfo, (edge, geometry) -> {
                 edgeCounter.incrementAndGet();
-                Map<String, Object> map = new HashMap<>(2);
-                map.put("name", edge.getName());
-                for (String str : pathDetails) {
-                    // how to indicate an erroneous parameter?
-                    if (str.contains(",") || !encodingManager.hasEncodedValue(str))
-                        continue;
-
-                    EncodedValue ev = encodingManager.getEncodedValue(str, EncodedValue.class);
-                    if (ev instanceof EnumEncodedValue)
-                        map.put(ev.getName(), edge.get((EnumEncodedValue) ev).toString());
-                    else if (ev instanceof DecimalEncodedValue)
-                        map.put(ev.getName(), edge.get((DecimalEncodedValue) ev));
-                    else if (ev instanceof BooleanEncodedValue)
-                        map.put(ev.getName(), edge.get((BooleanEncodedValue) ev));
-                    else if (ev instanceof IntEncodedValue)
-                        map.put(ev.getName(), edge.get((IntEncodedValue) ev));
+                layer.add(geometry.toLineString(false), graph.getEdgeIteratorState(edge, Integer.MIN_VALUE));
+            });
+        } else {
+            locationIndex.query(bbox, new LocationIndexTree.EdgeVisitor(edgeExplorer) {
+                @Override
+                public void onEdge(EdgeIteratorState edge, int nodeA, int nodeB) {
+                    LineString lineString;
+                    if (zInfo >= 14) {
+                        PointList pl = edge.fetchWayGeometry(3);
+                        lineString = pl.toLineString(false);
+                    } else if (MVTGeneralizedEdges.isVisible(edge.get(roadClassEnc), zInfo)) {
+                        double lat = na.getLatitude(nodeA);
+                        double lon = na.getLongitude(nodeA);
+                        double toLat = na.getLatitude(nodeB);
+                        double toLon = na.getLongitude(nodeB);
+                        lineString = geometryFactory.createLineString(new Coordinate[]{new Coordinate(lon, lat), new Coordinate(toLon, toLat)});
+                    } else {
+                        // skip edge for certain zoom
+                        return;
+                    }
+
+                    edgeCounter.incrementAndGet();
+                    layer.add(lineString, edge);
                 }
 
-                lineString.setUserData(map);
-
-                // doing some AffineTransformation
-                TileGeomResult tileGeom = JtsAdapter.createTileGeom(lineString, tileEnvelope, geometryFactory, layerParams, acceptAllGeomFilter);
-                List<VectorTile.Tile.Feature> features = JtsAdapter.toFeatures(tileGeom.mvtGeoms, layerProps, converter);
-                layerBuilder.addAllFeatures(features);
-            }
-
-            @Override
-            public void onTile(BBox bbox, int depth) {
-            }
-        });
+                @Override
+                public void onTile(BBox bbox, int depth) {
+                }
+            });
+        }
 
-        MvtLayerBuild.writeProps(layerBuilder, layerProps);
-        mvtBuilder.addLayers(layerBuilder.build());
+        mvtBuilder.addLayers(layer.build());
         byte[] bytes = mvtBuilder.build().toByteArray();
+        tileCache.put(cacheKey, bytes);
         totalSW.stop();
         logger.debug("took: " + totalSW.getSeconds() + ", edges:" + edgeCounter.get());
         return Response.ok(bytes, PBF).header("X-GH-Took", "" + totalSW.getSeconds() * 1000)
                 .build();
     }
 
+    /**
+     * Collects the features of the "roads" layer.
+     */
+    private class LayerBuilder {
+        final Envelope tileEnvelope;
+        final GeometryFactory geometryFactory;
+        final List<String> pathDetails;
+        final IGeometryFilter acceptAllGeomFilter = geometry -> true;
+        final MvtLayerParams layerParams = new MvtLayerParams(256, 4096);
+        final UserDataKeyValueMapConverter converter = new UserDataKeyValueMapConverter();
+        // in toFeatures addTags of the converter is called and layerProps is filled with keys&values => those need to be stored in the layerBuilder
+        // otherwise the decoding won't be successful and "undefined":"undefined" instead of "speed": 30 is the result
+        final MvtLayerProps layerProps = new MvtLayerProps();
+        final VectorTile.Tile.Layer.Builder layerBuilder = MvtLayerBuild.newLayerBuilder("roads", layerParams);
+
+        LayerBuilder(Envelope tileEnvelope, GeometryFactory geometryFactory, List<String> pathDetails) {
+            this.tileEnvelope = tileEnvelope;
+            this.geometryFactory = geometryFactory;
+            this.pathDetails = pathDetails;
+        }
+
+        void add(LineString lineString, EdgeIteratorState edge) {
+            Map<String, Object> map = new HashMap<>(2);
+            map.put("name", edge.getName());
+            for (String str : pathDetails) {
+                // how to indicate an erroneous parameter?
+                if (str.contains(",") || !encodingManager.hasEncodedValue(str))
+                    continue;
+
+                EncodedValue ev = encodingManager.getEncodedValue(str, EncodedValue.class);
+                if (ev instanceof EnumEncodedValue)
+                    map.put(ev.getName(), edge.get((EnumEncodedValue) ev).toString());
+                else if (ev instanceof DecimalEncodedValue)
+                    map.put(ev.getName(), edge.get((DecimalEncodedValue) ev));
+                else if (ev instanceof BooleanEncodedValue)
+                    map.put(ev.getName(), edge.get((BooleanEncodedValue) ev));
+                else if (ev instanceof IntEncodedValue)
+                    map.put(ev.getName(), edge.get((IntEncodedValue) ev));
+            }
+
+            lineString.setUserData(map);
+
+            // doing some AffineTransformation
+            TileGeomResult tileGeom = JtsAdapter.createTileGeom(lineString, tileEnvelope, geometryFactory, layerParams, acceptAllGeomFilter);
+            List<VectorTile.Tile.Feature> features = JtsAdapter.toFeatures(tileGeom.mvtGeoms, layerProps, converter);
+            layerBuilder.addAllFeatures(features);
+        }
+
+        VectorTile.Tile.Layer build() {
+            MvtLayerBuild.writeProps(layerBuilder, layerProps);
+            return layerBuilder.build();
+        }
+    }
+
     Coordinate num2deg(int xInfo, int yInfo, int zoom) {
         double n = Math.pow(2, zoom);
         double lonDeg = xInfo / n * 360.0 - 180.0;
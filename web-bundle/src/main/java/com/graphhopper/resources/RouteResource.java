@@ -17,10 +17,13 @@
  */
 package com.graphhopper.resources;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.MultiException;
+import com.graphhopper.http.BinaryRouteFormat;
 import com.graphhopper.http.WebHelper;
 import com.graphhopper.routing.util.HintsMap;
 import com.graphhopper.util.Constants;
@@ -48,7 +51,8 @@ import static com.graphhopper.util.Parameters.Routing.*;
 /**
  * Resource to use GraphHopper in a remote client application like mobile or browser. Note: If type
  * is json it returns the points in GeoJson array format [longitude,latitude] unlike the format "lat,lon"
- * used for the request. See the full API response format in docs/web/api-doc.md
+ * used for the request. If type is binary the compact {@link BinaryRouteFormat} is returned. See the
+ * full API response format in docs/web/api-doc.md
  *
  * @author Peter Karich
  */
@@ -59,15 +63,17 @@ public class RouteResource {
 
     private final GraphHopperAPI graphHopper;
     private final Boolean hasElevation;
+    private final ObjectMapper objectMapper;
 
     @Inject
-    public RouteResource(GraphHopperAPI graphHopper, @Named("hasElevation") Boolean hasElevation) {
+    public RouteResource(GraphHopperAPI graphHopper, @Named("hasElevation") Boolean hasElevation, ObjectMapper objectMapper) {
         this.graphHopper = graphHopper;
         this.hasElevation = hasElevation;
+        this.objectMapper = objectMapper;
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml"})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml", BinaryRouteFormat.MEDIA_TYPE})
     public Response doGet(
             @Context HttpServletRequest httpReq,
             @Context UriInfo uriInfo,
@@ -93,6 +99,7 @@ public class RouteResource {
             @QueryParam("gpx.trackname") @DefaultValue("GraphHopper Track") String trackName,
             @QueryParam("gpx.millis") String timeString) {
         boolean writeGPX = "gpx".equalsIgnoreCase(type);
+        boolean writeBinary = "binary".equalsIgnoreCase(type);
         instructions = writeGPX || instructions;
 
         StopWatch sw = new StopWatch().start();
@@ -147,6 +154,8 @@ public class RouteResource {
             logger.error(logStr + ", errors:" + ghResponse.getErrors());
             throw new MultiException(ghResponse.getErrors());
         } else {
+            if (writeBinary)
+                BinaryRouteFormat.checkSupported(ghResponse);
             logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
                     + ", distance0: " + ghResponse.getBest().getDistance()
                     + ", weight0: " + ghResponse.getBest().getRouteWeight()
@@ -157,13 +166,36 @@ public class RouteResource {
                     gpxSuccessResponseBuilder(ghResponse, timeString, trackName, enableElevation, withRoute, withTrack, withWayPoints, Constants.VERSION).
                             header("X-GH-Took", "" + Math.round(took * 1000)).
                             build()
+                    : writeBinary ?
+                    Response.ok(binaryStreamingOutput(ghResponse, instructions, calcPoints, enableElevation), BinaryRouteFormat.MEDIA_TYPE).
+                            header("X-GH-Took", "" + Math.round(took * 1000)).
+                            build()
                     :
-                    Response.ok(WebHelper.jsonObject(ghResponse, instructions, calcPoints, enableElevation, pointsEncoded, took)).
+                    Response.ok(jsonStreamingOutput(ghResponse, instructions, calcPoints, enableElevation, pointsEncoded, took), MediaType.APPLICATION_JSON).
                             header("X-GH-Took", "" + Math.round(took * 1000)).
                             build();
         }
     }
 
+    /**
+     * Writes the response directly into the output stream to avoid building the full JSON tree in
+     * memory, which matters for long routes. The generator is created from the ObjectMapper of the
+     * application, i.e. the same configuration is used as for all other JSON responses.
+     */
+    private StreamingOutput jsonStreamingOutput(final GHResponse ghResponse, final boolean instructions, final boolean calcPoints,
+                                                final boolean enableElevation, final boolean pointsEncoded, final float took) {
+        return output -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(output)) {
+                WebHelper.writeJson(gen, ghResponse, instructions, calcPoints, enableElevation, pointsEncoded, took);
+            }
+        };
+    }
+
+    private static StreamingOutput binaryStreamingOutput(final GHResponse ghResponse, final boolean instructions, final boolean calcPoints,
+                                                         final boolean enableElevation) {
+        return output -> BinaryRouteFormat.write(output, ghResponse, instructions, calcPoints, enableElevation);
+    }
+
     private void translateTurnCostsParamToEdgeBased(GHRequest request, MultivaluedMap<String, String> queryParams) {
         if (queryParams.containsKey(TURN_COSTS)) {
             List<String> turnCosts = queryParams.get(TURN_COSTS);
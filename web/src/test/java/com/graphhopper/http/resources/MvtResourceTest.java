@@ -35,6 +35,7 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.MultiLineString;
 
 import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -42,6 +43,7 @@ import java.util.List;
 import java.util.Map;
 
 import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -113,4 +115,22 @@ public class MvtResourceTest {
         map = (Map) ((Geometry) layerGeoList.get(12)).getUserData();
         assertEquals("bridge", map.get("road_environment"));
     }
+
+    @Test
+    public void testLowZoomFromGeneralizedEdges() throws IOException {
+        final Response response = app.client().target("http://localhost:8080/mvt/11/1032/756.mvt?details=road_class").request().buildGet().invoke();
+        assertEquals(200, response.getStatus());
+        byte[] bytes = response.readEntity(byte[].class);
+        JtsMvt result = MvtReader.loadMvt(new ByteArrayInputStream(bytes), new GeometryFactory(), new TagKeyValueMapConverter());
+        JtsLayer layer = result.getLayersByName().get("roads");
+        assertTrue(layer.getGeometries().size() > 0);
+        for (Geometry geometry : layer.getGeometries()) {
+            String roadClass = (String) ((Map) geometry.getUserData()).get("road_class");
+            assertTrue(roadClass, roadClass.equals("motorway") || roadClass.equals("trunk") || roadClass.equals("primary"));
+        }
+
+        // the second request is served from the tile cache
+        final Response cachedResponse = app.client().target("http://localhost:8080/mvt/11/1032/756.mvt?details=road_class").request().buildGet().invoke();
+        assertArrayEquals(bytes, cachedResponse.readEntity(byte[].class));
+    }
 }
@@ -17,7 +17,9 @@
  */
 package com.graphhopper.http.resources;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
@@ -25,6 +27,7 @@ import com.graphhopper.PathWrapper;
 import com.graphhopper.api.GraphHopperWeb;
 import com.graphhopper.http.GraphHopperApplication;
 import com.graphhopper.http.GraphHopperServerConfiguration;
+import com.graphhopper.http.WebHelper;
 import com.graphhopper.routing.profiles.RoadClass;
 import com.graphhopper.routing.profiles.RoadEnvironment;
 import com.graphhopper.routing.profiles.Surface;
@@ -42,7 +45,10 @@ import org.junit.Test;
 
 import javax.ws.rs.core.Response;
 import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -420,4 +426,33 @@ public class RouteResourceTest {
         assertEquals("The number of 'heading' parameters must be <= 1 or equal to the number of points (1)", json.get("message").asText());
     }
 
+    @Test
+    public void testWriteJsonEqualsJsonObject() throws IOException {
+        // the streamed JSON has to be the same as the JSON tree written via the mapper of the application
+        ObjectMapper objectMapper = app.getObjectMapper();
+        PathWrapper path = new PathWrapper();
+        path.setPoints(Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234, 43.252, -126.453, 1234));
+        path.setWaypoints(Helper.createPointList3D(38.5, -120.2, 10, 43.252, -126.453, 1234));
+        path.setDistance(1234.5678).setTime(100_000).setRouteWeight(12.3456789);
+        path.setDescription(Arrays.asList("a", "b"));
+        PathDetail detail = new PathDetail("main street");
+        detail.setFirst(0);
+        detail.setLast(2);
+        path.addPathDetails(Collections.singletonMap("street_name", Collections.singletonList(detail)));
+        GHResponse rsp = new GHResponse();
+        rsp.add(path);
+        rsp.getHints().put("test", "value");
+
+        for (boolean elevation : new boolean[]{true, false}) {
+            for (boolean encoded : new boolean[]{true, false}) {
+                StringWriter writer = new StringWriter();
+                try (JsonGenerator gen = objectMapper.getFactory().createGenerator(writer)) {
+                    WebHelper.writeJson(gen, rsp, false, true, elevation, encoded, 0.123f);
+                }
+                assertEquals(objectMapper.writeValueAsString(WebHelper.jsonObject(rsp, false, true, elevation, encoded, 0.123f)),
+                        writer.toString());
+            }
+        }
+    }
+
 }